@@ -17,6 +17,7 @@ import io.horizen.secret.Secret;
 import io.horizen.secret.SecretSerializer;
 import io.horizen.settings.SettingsReader;
 import io.horizen.storage.Storage;
+import io.horizen.storage.leveldb.SharedLevelDbDatabase;
 import io.horizen.storage.leveldb.VersionedLevelDbStorageAdapter;
 import io.horizen.utxo.transaction.BoxTransaction;
 import io.horizen.transaction.TransactionSerializer;
@@ -81,6 +82,10 @@ public class SimpleAppModule extends SidechainAppModule
         File consensusStore = new File(dataDirAbsolutePath + "/consensusData");
         File backupStore = new File(dataDirAbsolutePath + "/backupStorage");
 
+        // optionally keep all the sdk storages in a single database, so that a block is committed with one write
+        SharedLevelDbDatabase sharedDatabase = sidechainSettings.storage().singleDatabase() ?
+                new SharedLevelDbDatabase(new File(dataDirAbsolutePath + "/storages")) : null;
+
         String appVersion = "";
 
         // Here I can add my custom rest api and/or override existing one
@@ -120,37 +125,37 @@ public class SimpleAppModule extends SidechainAppModule
 
         bind(Storage.class)
                 .annotatedWith(Names.named("SecretStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(secretStore, 5));
+                .toInstance(openStorage(sharedDatabase, secretStore, 5));
         bind(Storage.class)
                 .annotatedWith(Names.named("WalletBoxStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(walletBoxStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, walletBoxStore, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("WalletTransactionStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(walletTransactionStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, walletTransactionStore, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("WalletForgingBoxesInfoStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(walletForgingBoxesInfoStorage, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, walletForgingBoxesInfoStorage, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("WalletCswDataStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(walletCswDataStorage, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, walletCswDataStorage, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("StateStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(stateStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, stateStore, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("StateForgerBoxStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(stateForgerBoxStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, stateForgerBoxStore, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("StateUtxoMerkleTreeStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(stateUtxoMerkleTreeStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, stateUtxoMerkleTreeStore, maxHistoryRewritingLength));
         bind(Storage.class)
                 .annotatedWith(Names.named("HistoryStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(historyStore, 5));
+                .toInstance(openStorage(sharedDatabase, historyStore, 5));
         bind(Storage.class)
                 .annotatedWith(Names.named("ConsensusStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(consensusStore, 5));
+                .toInstance(openStorage(sharedDatabase, consensusStore, 5));
         bind(Storage.class)
                 .annotatedWith(Names.named("BackupStorage"))
-                .toInstance(new VersionedLevelDbStorageAdapter(backupStore, maxHistoryRewritingLength));
+                .toInstance(openStorage(sharedDatabase, backupStore, maxHistoryRewritingLength));
 
         bind(new TypeLiteral<List<SidechainApplicationApiGroup>> () {})
                 .annotatedWith(Names.named("CustomApiGroups"))
@@ -178,4 +183,10 @@ public class SimpleAppModule extends SidechainAppModule
                 .annotatedWith(Names.named("MaxHistoryRewriteLength"))
                 .toInstance(maxHistRewLen);
     }
+
+    private static Storage openStorage(SharedLevelDbDatabase sharedDatabase, File store, int versionsToKeep) {
+        if (sharedDatabase != null)
+            return sharedDatabase.namespace(store.getName(), versionsToKeep);
+        return new VersionedLevelDbStorageAdapter(store, versionsToKeep);
+    }
 }
@@ -8,7 +8,7 @@ from SidechainTestFramework.scutil import generate_next_block, \
     assert_equal, \
     assert_true
 from httpCalls.transaction.allTransactions import allTransactions
-from test_framework.util import forward_transfer_to_sidechain, assert_false
+from test_framework.util import forward_transfer_to_sidechain, assert_false, fail
 
 """
 Check mem pool behaviour when it reached its maximum size.
@@ -18,13 +18,15 @@ Configuration:
     - 1 MC node
 Tests:
     - Create 3 MC blocks and 3 corresponding SC blocks, containing some transactions
-    - Add as many transactions as needed to reach the maximum mempool size. Add an additional tx and verify that the 
-    oldest tx in the mempool is evicted. This eviction in turn will transform some txs from executable to non executable 
-    so the non exec sub pool size will be exceeded too. A second tx will then be evicted.
+    - Add as many transactions as needed to reach the maximum mempool size. Verify that a tx cheaper than all the 
+    account tails (the tx with the highest nonce of each account) is rejected as underpriced.
+    - Add an additional tx with the same price of the others and verify that the oldest account tail is evicted.
+    - Add a more expensive non exec tx and verify that the cheapest account tail is evicted. Evicting the tail of an 
+    account doesn't make its other txs non executable, so no other tx is evicted.
     - Revert the 3 MC blocks. This will revert the SC blocks and the contained transactions will be reinserted in the 
-    mempool. The sum of the txs already in the mempool and of the reinserted txs will exceeds the maximum size of the 
-    mempool and the oldest txs will be evicted, including some of the reinserted txs. Check that the reinserted txs are 
-    evicted starting from the biggest nonce.
+    mempool. The reinserted txs fill the account slots, so the txs with higher nonces of the same account are dropped, 
+    and then the mempool size is exceeded: check that the cheapest account tail is evicted, keeping the reinserted txs 
+    with the lowest nonces.
 
 Note: The second SC node is used to check that locally and remotely generated transactions/blocks are treated in the 
 same way.
@@ -67,10 +69,13 @@ class SCEvmMempoolSize(AccountChainSetup):
         self.sc_sync_all()
 
         """
-        Test that adding a transaction when the mem pool is already full will evict the oldest tx.
-        First an exec tx (oldest_tx) will be created. This will become the oldest tx that will be evicted.
-        After having generated some blocks (that will be reverted later), the mem pool is filled with txs. 
-        Verify that when an exceeding tx is added to the mempool, oldest_tx is evicted.
+        Test that adding a transaction when the mem pool is already full will evict the cheapest account tail, the
+        oldest one among the tails with the same price.
+        First a tx (oldest_tx) will be created. This will be the only tx of its account, so its tail, and the oldest
+        one. After having generated some blocks (that will be reverted later), the mem pool is filled with txs with
+        the same price of oldest_tx.
+        Verify that a cheaper tx is rejected and that when an exceeding tx is added to the mempool, oldest_tx is
+        evicted.
         """
         oldest_tx = createEIP1559Transaction(sc_node_1, fromAddress=evm_address_sc2, toAddress=evm_address_sc2,
                                              nonce=14, gasLimit=23000, maxPriorityFeePerGas=900000000,
@@ -127,15 +132,31 @@ class SCEvmMempoolSize(AccountChainSetup):
         # Check that oldest_tx is still in mem pool
         assert_true(oldest_tx in response['transactionIds'], "oldest_tx should still be in mem pool of node 2")
 
-        # Create an additional tx and verify that oldest_tx is evicted
-        createEIP1559Transaction(sc_node_1, fromAddress=evm_address_sc1, toAddress=evm_address_sc1, nonce=nonce,
-                                 gasLimit=230000, maxPriorityFeePerGas=900000000,
-                                 maxFeePerGas=900000000, value=1)
+        # Create a tx cheaper than all the account tails and verify that it is rejected, since the mempool is full
+        try:
+            createEIP1559Transaction(sc_node_1, fromAddress=evm_address_sc1, toAddress=evm_address_sc1, nonce=nonce,
+                                     gasLimit=230000, maxPriorityFeePerGas=899999999,
+                                     maxFeePerGas=899999999, value=1)
+            fail("Underpriced tx should have been rejected")
+        except RuntimeError as e:
+            assert_true("underpriced" in str(e), "Unexpected error: {}".format(str(e)))
+
+        response = allTransactions(sc_node_1, False)
+        assert_equal(self.max_mempool_slots, len(response['transactionIds']),
+                     "Wrong number of txs in mempool of node 1")
+        assert_true(oldest_tx in response['transactionIds'], "oldest_tx should still be in mem pool of node 1")
+
+        # Create an additional tx with the same price and verify that oldest_tx, the oldest account tail, is evicted
+        last_sc1_tx = createEIP1559Transaction(sc_node_1, fromAddress=evm_address_sc1, toAddress=evm_address_sc1,
+                                               nonce=nonce, gasLimit=230000, maxPriorityFeePerGas=900000000,
+                                               maxFeePerGas=900000000, value=1)
+        nonce += 1
 
         response = allTransactions(sc_node_1, False)
         assert_equal(self.max_mempool_slots, len(response['transactionIds']),
                      "Wrong number of txs in mempool of node 1")
         assert_false(oldest_tx in response['transactionIds'], "oldest_tx is still in mem pool of node 1")
+        assert_true(last_sc1_tx in response['transactionIds'], "new tx is not in mem pool of node 1")
         txs_in_mempool = response['transactionIds']
 
         self.sc_sync_all()
@@ -144,34 +165,38 @@ class SCEvmMempoolSize(AccountChainSetup):
                      "Wrong number of txs in mempool of node 2")
         assert_false(oldest_tx in response['transactionIds'], "oldest_tx is still in mem pool of node 2")
 
-        # Now an additional non exec tx will be added to the mempool, so the size of the mempool exceeds the allowed max
-        # size by one slot (that corresponds to 1 tx in this test). This will evict the current oldest tx in the
-        # mempool, that is an exec tx. This will cause in turn the other exec txs to become non exec, so in the mempool
-        # there will be only non exec txs. Their number will exceed the max non exec size. A second tx will be then
-        # evicted.
+        # Now an additional non exec tx, more expensive than the others, will be added to the mempool, so the size of
+        # the mempool exceeds the allowed max size by one slot (that corresponds to 1 tx in this test). This will evict
+        # the cheapest account tail, that is last_sc1_tx. The other txs of its account stay executable, so no other tx
+        # is evicted.
         non_exec_tx = createEIP1559Transaction(sc_node_1, fromAddress=evm_address_sc2, toAddress=evm_address_sc2,
-                                               nonce=15, gasLimit=23000, maxPriorityFeePerGas=900000000,
-                                               maxFeePerGas=900000000, value=1)
+                                               nonce=15, gasLimit=23000, maxPriorityFeePerGas=1000000000,
+                                               maxFeePerGas=1000000000, value=1)
 
         response = allTransactions(sc_node_1, False)
-        assert_equal(self.max_nonexec_pool_slots, len(response['transactionIds']),
+        assert_equal(self.max_mempool_slots, len(response['transactionIds']),
                      "Wrong number of txs in mempool of node 1")
         assert_true(non_exec_tx in response['transactionIds'], "new tx is not in mem pool of node 1")
-        txs_in_mempool_before_fork = response['transactionIds']
+        assert_false(last_sc1_tx in response['transactionIds'], "last_sc1_tx is still in mem pool of node 1")
+        for tx in txs_in_mempool:
+            if tx != last_sc1_tx:
+                assert_true(tx in response['transactionIds'], "tx should still be in mem pool of node 1")
+        txs_in_mempool_before_fork = [tx for tx in response['transactionIds'] if tx != non_exec_tx]
 
         self.sc_sync_all()
 
         response = allTransactions(sc_node_2, False)
-        assert_equal(self.max_nonexec_pool_slots, len(response['transactionIds']),
+        assert_equal(self.max_mempool_slots, len(response['transactionIds']),
                      "Wrong number of txs in mempool of node 2")
         assert_true(non_exec_tx in response['transactionIds'], "new tx is not in mem pool of node 2")
+        assert_false(last_sc1_tx in response['transactionIds'], "last_sc1_tx is still in mem pool of node 2")
 
         # Now the mainchain will revert to the block created with the second FT. All the txs in the sidechain blocks
-        # created after that will be readded to the mem pool. The total number of reinserted txs is bigger than the max
-        # mem pool size so all the txs that were already in the mempool are evicted and then some reinserted too.
-        # Verify that only max_mempool_slots txs will be in the mem pool in the end. Verify that the oldest txs are
-        # evicted, that are the txs that were in the mempool, then that some reinserted txs are evicted too, starting
-        # from the ones with higher nonces.
+        # created after that will be readded to the mem pool. The reinserted txs fill the account slots of their
+        # account, so the ones with higher nonces and the txs of the same account that were already in the mempool are
+        # dropped. Then the mempool size is exceeded by one slot and the cheapest account tail is evicted, that is the
+        # reinserted tx with the highest nonce, while the more expensive non_exec_tx is kept.
+        # Verify that only max_mempool_slots txs will be in the mem pool in the end.
 
         # Create a fork on MC: invalidate the old MC blocks and create new ones
         mc_node.invalidateblock(list_of_mc_block_hash_to_be_reverted[0])
@@ -189,16 +214,17 @@ class SCEvmMempoolSize(AccountChainSetup):
         assert_equal(self.max_mempool_slots, len(txs_in_mempool_after_fork),
                      "Wrong number of txs in mempool of node 1")
 
-        # Check that all txs_in_mempool_before_fork txs were evicted
+        # Check that all txs_in_mempool_before_fork txs were evicted and that non_exec_tx was kept
         for tx in txs_in_mempool_before_fork:
             assert_false(tx in txs_in_mempool_after_fork, "txs_in_mempool_before_fork is still in mem pool of node 1")
+        assert_true(non_exec_tx in txs_in_mempool_after_fork, "non_exec_tx is not in mem pool of node 1")
 
         # Check that in the mempool were just kept the reinjected txs with the lowest nonce
 
-        for i in range(self.max_mempool_slots):
+        for i in range(self.max_mempool_slots - 1):
             assert_true(reinjected_txs[i] in txs_in_mempool_after_fork, "tx is not in mem pool of node 1")
 
-        for i in range(self.max_mempool_slots, len(reinjected_txs)):
+        for i in range(self.max_mempool_slots - 1, len(reinjected_txs)):
             assert_false(reinjected_txs[i] in txs_in_mempool_after_fork,
                          "tx should have been evicted from mem pool of node 1")
 
@@ -209,16 +235,17 @@ class SCEvmMempoolSize(AccountChainSetup):
         assert_equal(self.max_mempool_slots, len(response['transactionIds']),
                      "Wrong number of txs in mempool of node 2")
 
-        # Check that all txs_in_mempool txs were evicted
-        for tx in txs_in_mempool:
-            assert_false(tx in response['transactionIds'], "txs_in_mempool is still in mem pool of node 2")
+        # Check that all txs_in_mempool_before_fork txs were evicted and that non_exec_tx was kept
+        for tx in txs_in_mempool_before_fork:
+            assert_false(tx in response['transactionIds'], "txs_in_mempool_before_fork is still in mem pool of node 2")
+        assert_true(non_exec_tx in response['transactionIds'], "non_exec_tx is not in mem pool of node 2")
 
         # Check that in the mempool were just kept the reinjected txs with the lowest nonce
 
-        for i in range(self.max_mempool_slots):
+        for i in range(self.max_mempool_slots - 1):
             assert_true(reinjected_txs[i] in response['transactionIds'], "tx is not in mem pool of node 2")
 
-        for i in range(self.max_mempool_slots, len(reinjected_txs)):
+        for i in range(self.max_mempool_slots - 1, len(reinjected_txs)):
             assert_false(reinjected_txs[i] in response['transactionIds'],
                          "tx should have been evicted from mem pool of node 2")
 
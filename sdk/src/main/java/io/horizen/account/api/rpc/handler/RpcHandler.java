@@ -3,6 +3,7 @@ package io.horizen.account.api.rpc.handler;
 import io.horizen.account.api.rpc.request.RpcRequest;
 import io.horizen.account.api.rpc.response.RpcResponseError;
 import io.horizen.account.api.rpc.response.RpcResponseSuccess;
+import io.horizen.account.api.rpc.service.RpcBatchScope;
 import io.horizen.account.api.rpc.service.RpcService;
 import io.horizen.account.api.rpc.utils.RpcCode;
 import io.horizen.account.api.rpc.utils.RpcError;
@@ -29,4 +30,8 @@ public class RpcHandler {
         }
     }
 
+    public RpcBatchScope openBatchScope() {
+        return rpcService.openBatchScope();
+    }
+
 }
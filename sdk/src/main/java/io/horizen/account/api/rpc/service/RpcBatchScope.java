@@ -0,0 +1,20 @@
+package io.horizen.account.api.rpc.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Context shared by all the requests of a JSON-RPC batch, e.g. the node view they are executed against.
+ * The requests of a batch may be executed concurrently on different threads: every request is executed through
+ * the scope of the batch.
+ */
+public interface RpcBatchScope {
+
+    RpcBatchScope NONE = new RpcBatchScope() {
+        @Override
+        public <T> T execute(Supplier<T> request) {
+            return request.get();
+        }
+    };
+
+    <T> T execute(Supplier<T> request);
+}
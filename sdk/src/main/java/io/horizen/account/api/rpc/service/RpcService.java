@@ -40,6 +40,13 @@ public class RpcService {
         return false;
     }
 
+    /**
+     * Opens the scope shared by the requests of a batch. By default the requests of a batch don't share anything.
+     */
+    public RpcBatchScope openBatchScope() {
+        return RpcBatchScope.NONE;
+    }
+
 
     private Object[] convertArgs(Method method, JsonNode args) throws RpcException {
         var optionalAnnotation = method.getAnnotation(RpcOptionalParameters.class);
@@ -9,6 +9,7 @@ import io.horizen.account.api.rpc.utils.RpcError;
 import io.horizen.account.history.AccountHistory;
 import io.horizen.account.mempool.AccountMemoryPool;
 import io.horizen.account.proposition.AddressProposition;
+import io.horizen.account.state.AccountState;
 import io.horizen.account.state.Message;
 import io.horizen.account.transaction.EthereumTransaction;
 import io.horizen.account.transaction.EthereumTransaction.EthereumTransactionType;
@@ -123,6 +124,7 @@ public class TransactionArgs {
      *
      * @param params       to get the current chainId
      * @param history      to calculate fee values
+     * @param state        to get the fee records of the blocks
      * @param pool         to get current nonce
      * @param gasEstimator to estimate gas if required
      * @return a new unsigned EthereumTransaction
@@ -132,6 +134,7 @@ public class TransactionArgs {
     public EthereumTransaction toTransaction(
         NetworkParams params,
         AccountHistory history,
+        AccountState state,
         AccountMemoryPool pool,
         Supplier<BigInteger> gasEstimator
     )
@@ -150,7 +153,7 @@ public class TransactionArgs {
 
         if (saneType == EthereumTransactionType.DynamicFeeTxType) {
             // if omitted use suggested tip cap
-            if (maxPriorityFeePerGas == null) maxPriorityFeePerGas = Backend.suggestTipCap(history);
+            if (maxPriorityFeePerGas == null) maxPriorityFeePerGas = Backend.suggestTipCap(history, state);
             // if omitted use 2 * baseFee + maxPriorityFeePerGas
             if (maxFeePerGas == null) {
                 var baseFee = history.bestBlock().header().baseFee();
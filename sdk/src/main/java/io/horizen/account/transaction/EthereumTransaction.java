@@ -431,6 +431,16 @@ public class EthereumTransaction extends AccountTransaction<AddressProposition,
         return this.from;
     }
 
+    // sender recovered from another copy of this transaction by SenderRecoveryService
+    synchronized void setRecoveredSender(AddressProposition sender) {
+        if (this.from == null && this.signature != null)
+            this.from = sender;
+    }
+
+    synchronized boolean isSenderKnown() {
+        return this.from != null;
+    }
+
     @JsonIgnore
     public Address getFromAddress() {
         if (this.getFrom() == null) return null;
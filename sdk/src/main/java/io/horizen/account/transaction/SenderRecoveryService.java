@@ -0,0 +1,141 @@
+package io.horizen.account.transaction;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.horizen.account.proposition.AddressProposition;
+import io.horizen.transaction.Transaction;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recovers the senders of Ethereum transactions, i.e. the secp256k1 public key recovery from the signature.
+ * The senders of a whole block or batch of transactions are recovered in parallel on a pool of workers.
+ * Recovered senders are kept in a bounded cache keyed by transaction hash, which is looked up before recovering a
+ * sender: the same transaction is often parsed several times (gossip, block, rpc) and each copy would otherwise
+ * repeat the recovery.
+ *
+ * The application owns one instance and passes it to the components recovering the senders of a batch. The workers
+ * are started on the first parallel recovery and stopped by close: after that the senders are recovered on the
+ * calling thread.
+ */
+public final class SenderRecoveryService implements AutoCloseable {
+
+    public static final int DEFAULT_SENDER_CACHE_SIZE = 100000;
+
+    // below this number of transactions the recovery is not worth dispatching to the workers
+    private static final int MIN_PARALLEL_BATCH_SIZE = 4;
+
+    private final int recoveryThreads;
+    private final Cache<String, AddressProposition> senderCache;
+
+    // guarded by this
+    private ExecutorService recoveryPool = null;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates the service with the given number of workers, 0 for the number of available processors, and the
+     * given number of cached senders, 0 to disable the cache.
+     */
+    public SenderRecoveryService(int threads, int cacheSize) {
+        if (threads < 0)
+            throw new IllegalArgumentException("Number of sender recovery threads must be non-negative.");
+        if (cacheSize < 0)
+            throw new IllegalArgumentException("Sender cache size must be non-negative.");
+        this.recoveryThreads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.senderCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    /**
+     * Stops the workers and drops the cached senders. The following recoveries run on the calling thread.
+     */
+    @Override
+    public synchronized void close() {
+        if (recoveryPool != null) {
+            recoveryPool.shutdown();
+            recoveryPool = null;
+        }
+        senderCache.invalidateAll();
+        stopped = true;
+    }
+
+    // workers of the parallel recoveries, null if the recovery runs on the calling thread
+    private synchronized ExecutorService recoveryPool() {
+        if (recoveryPool == null && !stopped && recoveryThreads > 1) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            recoveryPool = Executors.newFixedThreadPool(recoveryThreads, runnable -> {
+                Thread thread = new Thread(runnable, "sender-recovery-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return recoveryPool;
+    }
+
+    AddressProposition cachedSender(String txHash) {
+        return senderCache.getIfPresent(txHash);
+    }
+
+    // the hash of a signed transaction covers the signature, so it identifies the sender as well
+    private AddressProposition recoverSender(EthereumTransaction tx) {
+        AddressProposition sender = tx.getFrom();
+        if (sender != null && !stopped)
+            senderCache.put(tx.id(), sender);
+        return sender;
+    }
+
+    /**
+     * Recovers the senders of the given transactions that are signed Ethereum transactions and don't know their
+     * sender yet, in parallel. Returns when all of them are recovered; an invalid signature leaves the sender unset,
+     * as with EthereumTransaction.getFrom.
+     */
+    public void recoverSenders(Collection<? extends Transaction> txs) {
+        List<Callable<AddressProposition>> recoveries = new ArrayList<>();
+        for (Transaction tx : txs) {
+            if (tx instanceof EthereumTransaction) {
+                EthereumTransaction ethTx = (EthereumTransaction) tx;
+                if (ethTx.isSigned() && !ethTx.isSenderKnown()) {
+                    AddressProposition cached = cachedSender(ethTx.id());
+                    if (cached != null)
+                        ethTx.setRecoveredSender(cached);
+                    else
+                        recoveries.add(() -> recoverSender(ethTx));
+                }
+            }
+        }
+
+        ExecutorService pool = recoveries.size() < MIN_PARALLEL_BATCH_SIZE ? null : recoveryPool();
+        if (pool != null) {
+            try {
+                for (Future<AddressProposition> result : pool.invokeAll(recoveries)) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException e) {
+                        LogManager.getLogger().warn("Could not recover transaction sender", e.getCause());
+                    }
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RejectedExecutionException e) {
+                // stopped meanwhile: the senders not recovered yet are recovered below
+            }
+        }
+
+        for (Callable<AddressProposition> recovery : recoveries) {
+            try {
+                recovery.call();
+            } catch (Exception e) {
+                // getFrom handles the signature errors itself
+                LogManager.getLogger().warn("Could not recover transaction sender", e);
+            }
+        }
+    }
+}
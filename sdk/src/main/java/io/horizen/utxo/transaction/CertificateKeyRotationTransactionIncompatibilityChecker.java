@@ -1,5 +1,11 @@
 package io.horizen.utxo.transaction;
 
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import io.horizen.utils.ByteArrayWrapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 
 public class CertificateKeyRotationTransactionIncompatibilityChecker extends DefaultTransactionIncompatibilityChecker {
@@ -20,4 +26,22 @@ public class CertificateKeyRotationTransactionIncompatibilityChecker extends Def
         }
         return true;
     }
+
+    @Override
+    public List<ByteArrayWrapper> conflictKeys(BoxTransaction tx) {
+        // only one key rotation per key type and index
+        if (tx instanceof CertificateKeyRotationTransaction) {
+            CertificateKeyRotationTransaction keyRotationTransaction = (CertificateKeyRotationTransaction) tx;
+            return Collections.singletonList(new ByteArrayWrapper(Bytes.concat(
+                    "certificateKeyRotation".getBytes(StandardCharsets.UTF_8),
+                    Ints.toByteArray(keyRotationTransaction.keyRotationProof.keyType().id()),
+                    Ints.toByteArray(keyRotationTransaction.keyRotationProof.index()))));
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected boolean isIndexed() {
+        return getClass() == CertificateKeyRotationTransactionIncompatibilityChecker.class;
+    }
 }
@@ -28,6 +28,34 @@ public class DefaultTransactionIncompatibilityChecker
         return true;
     }
 
+    @Override
+    public <T extends BoxTransaction> boolean isTransactionCompatible(T newTx,
+                                                                      MemoryPoolConflictIndex<T> memoryPool) {
+        if(newTx == null || memoryPool == null)
+            throw new IllegalArgumentException("Parameters can't be null.");
+
+        if(!isIndexed())
+            return isTransactionCompatible(newTx, memoryPool.getTransactions());
+
+        // Algorithm difficulty is O(n+k), where n - number of spent boxes in newTx, k - number of its conflict keys
+        for(BoxUnlocker unlocker : (List<BoxUnlocker>)newTx.unlockers()) {
+            if(memoryPool.getSpendingTransactionId(new ByteArrayWrapper(unlocker.closedBoxId())).isPresent())
+                return false;
+        }
+        for(ByteArrayWrapper conflictKey : conflictKeys(newTx)) {
+            if(memoryPool.getConflictKeyHolderId(conflictKey).isPresent())
+                return false;
+        }
+        return true;
+    }
+
+    // Tells if the rules of the checker are fully expressed by the spent boxes and the conflict keys.
+    // Subclasses adding other rules to the list based check must return false, to be checked against all the
+    // memory pool transactions.
+    protected boolean isIndexed() {
+        return getClass() == DefaultTransactionIncompatibilityChecker.class;
+    }
+
     @Override
     public boolean isMemoryPoolCompatible() {
         return true;
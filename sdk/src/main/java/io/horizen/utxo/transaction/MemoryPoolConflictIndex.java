@@ -0,0 +1,23 @@
+package io.horizen.utxo.transaction;
+
+import io.horizen.utils.ByteArrayWrapper;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Indexes of the memory pool transactions used to check the compatibility of a new transaction without scanning
+ * all of them.
+ */
+public interface MemoryPoolConflictIndex<T extends BoxTransaction>
+{
+    // Id of the memory pool transaction spending the given box, if any.
+    Optional<String> getSpendingTransactionId(ByteArrayWrapper boxId);
+
+    // Id of the memory pool transaction holding the given conflict key, if any.
+    // See TransactionIncompatibilityChecker.conflictKeys.
+    Optional<String> getConflictKeyHolderId(ByteArrayWrapper conflictKey);
+
+    // All the memory pool transactions, for the checkers that can't rely on the indexes.
+    List<T> getTransactions();
+}
@@ -1,5 +1,11 @@
 package io.horizen.utxo.transaction;
 
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import io.horizen.utils.ByteArrayWrapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 
 public class OpenStakeTransactionIncompatibilityChecker extends DefaultTransactionIncompatibilityChecker{
@@ -19,4 +25,18 @@ public class OpenStakeTransactionIncompatibilityChecker extends DefaultTransacti
         }
         return true;
     }
+
+    @Override
+    public List<ByteArrayWrapper> conflictKeys(BoxTransaction tx) {
+        // only one open stake transaction per forger index
+        if (tx instanceof OpenStakeTransaction)
+            return Collections.singletonList(new ByteArrayWrapper(Bytes.concat(
+                    "openStakeForger".getBytes(StandardCharsets.UTF_8), Ints.toByteArray(((OpenStakeTransaction) tx).getForgerIndex()))));
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected boolean isIndexed() {
+        return getClass() == OpenStakeTransactionIncompatibilityChecker.class;
+    }
 }
@@ -1,10 +1,25 @@
 package io.horizen.utxo.transaction;
 
+import io.horizen.utils.ByteArrayWrapper;
+
+import java.util.Collections;
 import java.util.List;
 
 public interface TransactionIncompatibilityChecker
 {
     <T extends BoxTransaction> boolean isTransactionCompatible(T newTx, List<T> currentTxs);
 
+    // Same check as above against the memory pool transactions.
+    // Checkers that can express their rules through the memory pool indexes override it to avoid the full scan.
+    default <T extends BoxTransaction> boolean isTransactionCompatible(T newTx, MemoryPoolConflictIndex<T> memoryPool) {
+        return isTransactionCompatible(newTx, memoryPool.getTransactions());
+    }
+
+    // Keys that at most one memory pool transaction can hold, e.g. the forger index of an open stake transaction.
+    // The memory pool indexes the keys of its transactions, as computed by their own checkers.
+    default List<ByteArrayWrapper> conflictKeys(BoxTransaction tx) {
+        return Collections.emptyList();
+    }
+
     boolean isMemoryPoolCompatible();
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ import io.horizen.api.http.client.SecureEnclaveApiClient
 import io.horizen.api.http.route.{DisableApiRoute, SidechainRejectionApiRoute}
 import io.horizen.block.{ProofOfWorkVerifier, SidechainBlockBase, SidechainBlockHeaderBase}
 import io.horizen.certificatesubmitter.network.{CertificateSignaturesSpec, GetCertificateSignaturesSpec}
+import io.horizen.chain.ActiveChainCheckpoint
 import io.horizen.companion._
 import io.horizen.consensus.{ConsensusParamsUtil, intToConsensusEpochNumber, intToConsensusSlotNumber}
 import io.horizen.cryptolibprovider.CircuitTypes.{CircuitTypes, NaiveThresholdSignatureCircuit, NaiveThresholdSignatureCircuitWithKeyRotation}
@@ -37,6 +38,7 @@ import sparkz.core.network.message.MessageSpec
 import sparkz.core.settings.SparkzSettings
 import sparkz.util.SparkzLogging
 
+import java.io.File
 import java.lang.{Byte => JByte}
 import java.nio.file.{Files, Paths}
 import java.util.concurrent.TimeUnit
@@ -72,6 +74,14 @@ abstract class AbstractSidechainApp
   protected val terminationTimeout: FiniteDuration = Duration(30, TimeUnit.SECONDS)
   protected val maxMcBlockRefDelay = 10
 
+  protected lazy val activeChainCheckpoint: Option[ActiveChainCheckpoint] =
+    if (sidechainSettings.history.activeChainCheckpointEnabled)
+      Some(new ActiveChainCheckpoint(
+        new File(sidechainSettings.sparkzSettings.dataDir.getAbsolutePath + "/activeChainCheckpoint"),
+        sidechainSettings.history.activeChainCheckpointInterval))
+    else
+      None
+
 
   log.info(s"Starting application with settings \n$sidechainSettings")
 
@@ -343,7 +353,7 @@ abstract class AbstractSidechainApp
 
   // Init Forger with a proper web socket client
   val mainchainNodeChannel = new MainchainNodeChannelImpl(communicationClient, params)
-  val mainchainSynchronizer = new MainchainSynchronizer(mainchainNodeChannel)
+  val mainchainSynchronizer = registerClosableResource(new MainchainSynchronizer(mainchainNodeChannel, sidechainSettings.websocketClient.maxBlocksInFlight))
 
 //  val rejectedApiRoutes: Seq[SidechainRejectionApiRoute]
 //  val applicationApiRoutes: Seq[ApplicationApiRoute]
@@ -7,7 +7,7 @@ import io.horizen.history.AbstractHistory
 import io.horizen.history.validation._
 import io.horizen.params.NetworkParams
 import io.horizen.secret.{Secret, SecretCreator}
-import io.horizen.storage.{AbstractHistoryStorage, SidechainStorageInfo}
+import io.horizen.storage.{AbstractHistoryStorage, SidechainStorageInfo, StorageBatching}
 import io.horizen.transaction.Transaction
 import io.horizen.utils.{BytesUtils, TimeToEpochUtils}
 import io.horizen.wallet.AbstractWallet
@@ -44,6 +44,11 @@ abstract class AbstractSidechainNodeViewHolder[
 
   protected var applyingBlock: Boolean = false
 
+  /**
+   * Groups the storage writes done while applying a modifier, NoBatching when the storages are independent databases.
+   */
+  protected def storageBatching: StorageBatching = StorageBatching.NoBatching
+
   val maxTxFee: Long = sidechainSettings.wallet.maxTxFee
   val listOfStorageInfo: Seq[SidechainStorageInfo]
 
@@ -66,6 +71,22 @@ abstract class AbstractSidechainNodeViewHolder[
 
   protected def semanticBlockValidators(params: NetworkParams): Seq[SemanticBlockValidator[PMOD]] = Seq(new SidechainBlockSemanticValidator[TX, PMOD](params))
 
+  /**
+   * Validates the semantic of the cached modifiers on a pool of workers while the previous ones are being applied.
+   * Disabled when no pre-validation threads are configured.
+   */
+  protected lazy val semanticValidationPipeline: Option[SemanticValidationPipeline[PMOD]] =
+    Option(sidechainSettings.history)
+      .filter(_.blockPreValidationThreads > 0)
+      .map(settings => new SemanticValidationPipeline[PMOD](semanticBlockValidators(networkParams),
+        settings.blockPreValidationThreads, settings.blockPreValidationQueueSize, settings.blockPreValidationTimeout))
+
+  /**
+   * Semantic validators to create the history with: the validation pipeline, if enabled, or the validators themselves.
+   */
+  protected def historySemanticBlockValidators(params: NetworkParams): Seq[SemanticBlockValidator[PMOD]] =
+    semanticValidationPipeline.map(Seq(_)).getOrElse(semanticBlockValidators(params))
+
   protected def historyBlockValidators(params: NetworkParams): Seq[HistoryBlockValidator[TX, H, PMOD, FPI, HSTOR, HIS]] = Seq(
     new WithdrawalEpochValidator(params),
     new MainchainPoWValidator(params),
@@ -104,6 +125,7 @@ abstract class AbstractSidechainNodeViewHolder[
       processRemoteModifiers orElse
       applyModifier orElse
       processGetStorageVersions orElse
+      processGetHistoryStorageCacheStats orElse
       processLocallyGeneratedTransaction orElse
       super.receive
   }
@@ -177,12 +199,14 @@ abstract class AbstractSidechainNodeViewHolder[
         val bestBlockTimestampPlus24H = history().bestBlock.timestamp + TimeUnit.HOURS.toSeconds(24)
         val (modsToApply, modsToSkip) = mods.partition(m => m.timestamp <= bestBlockTimestampPlus24H)
         modsToApply.foreach(m => modifiersCache.put(m.id, m))
+        semanticValidationPipeline.foreach(pipeline => modsToApply.foreach(pipeline.submit))
         if (modsToSkip.nonEmpty) {
           // reset the status of the modifiers to Unknown, so that we try to fetch them again in the future
           context.system.eventStream.publish(ModifiersProcessingResult(Seq(), modsToSkip))
         }
       } else {
         mods.foreach(m => modifiersCache.put(m.id, m))
+        semanticValidationPipeline.foreach(pipeline => mods.foreach(pipeline.submit))
       }
 
       log.debug(s"Cache size before: ${modifiersCache.size}")
@@ -220,16 +244,20 @@ abstract class AbstractSidechainNodeViewHolder[
       modifiersCache.popCandidate(history()) match {
         case Some(mod) =>
           pmodModify(mod)
+          // the modifier may have been rejected before its validation result was consumed
+          semanticValidationPipeline.foreach(_.discard(Seq(mod.id)))
           var accumulator = mod +: applied
           //if accumulator(applied) is too big, clear cache, publish result and start applying from empty sequence again
           if (accumulator.size >= 100) {
             val cleared = modifiersCache.cleanOverfull()
+            semanticValidationPipeline.foreach(_.discard(cleared.map(_.id)))
             context.system.eventStream.publish(ModifiersProcessingResult(accumulator, cleared))
             accumulator = Seq()
           }
           self ! AbstractSidechainNodeViewHolder.InternalReceivableMessages.ApplyModifier(accumulator)
         case None =>
           val cleared = modifiersCache.cleanOverfull()
+          semanticValidationPipeline.foreach(_.discard(cleared.map(_.id)))
           context.system.eventStream.publish(ModifiersProcessingResult(applied, cleared))
           applyingBlock = false
           log.debug(s"Cache size after: ${modifiersCache.size}")
@@ -241,6 +269,11 @@ abstract class AbstractSidechainNodeViewHolder[
       sender() ! getStorageVersions
   }
 
+  def processGetHistoryStorageCacheStats: Receive = {
+    case AbstractSidechainNodeViewHolder.ReceivableMessages.GetHistoryStorageCacheStats =>
+      sender() ! history().storage.cacheStats
+  }
+
   protected def applyLocallyGeneratedTransactions(newTxs: Iterable[TX]): Unit
 
   def processLocallyGeneratedTransaction: Receive = {
@@ -275,41 +308,52 @@ abstract class AbstractSidechainNodeViewHolder[
 
   // This method is actually a copy-paste of parent NodeViewHolder.pmodModify method.
   // The difference is that modifiers are applied to the State and Wallet simultaneously.
+  // History, State and Wallet storages are updated within a single storage batch, committed before the node view is
+  // updated, so that no reader can see the new node view before its storages are written.
   override protected def pmodModify(pmod: PMOD): Unit = {
     if (!history().contains(pmod.id)) {
       context.system.eventStream.publish(StartingPersistentModifierApplication(pmod))
 
       log.info(s"Apply modifier ${pmod.encodedId} of type ${pmod.modifierTypeId} to nodeViewHolder")
 
-      history().append(pmod) match {
-        case Success((historyBeforeStUpdate, progressInfo)) =>
+      val appendResult = storageBatching.withBatch {
+        history().append(pmod).map { case (historyBeforeStUpdate, progressInfo) =>
           log.debug(s"Going to apply modifications to the state: $progressInfo")
+          val stateAndWalletUpdate =
+            if (progressInfo.toApply.nonEmpty)
+              Some(updateStateAndWallet(historyBeforeStUpdate, minimalState(), vault(), progressInfo, IndexedSeq()))
+            else
+              None
+          (historyBeforeStUpdate, progressInfo, stateAndWalletUpdate)
+        }
+      }
+
+      appendResult match {
+        case Success((historyBeforeStUpdate, progressInfo, stateAndWalletUpdate)) =>
           context.system.eventStream.publish(SyntacticallySuccessfulModifier(pmod))
           context.system.eventStream.publish(NewOpenSurface(historyBeforeStUpdate.openSurfaceIds()))
 
-          if (progressInfo.toApply.nonEmpty) {
-            val (newHistory, newStateTry, newWallet, blocksApplied) =
-              updateStateAndWallet(historyBeforeStUpdate, minimalState(), vault(), progressInfo, IndexedSeq())
-
-            newStateTry match {
-              case Success(newState) =>
-                val newMemPool = updateMemPool(progressInfo.toRemove, blocksApplied, memoryPool(), newState)
-                // Note: in parent NodeViewHolder.pmodModify wallet was updated here.
-
-                updateNodeView(Some(newHistory), Some(newState), Some(newWallet), Some(newMemPool))
-                log.info(s"Persistent modifier ${pmod.encodedId} applied successfully and node view updated!")
-
-                log.debug(s"Current mempool size: ${newMemPool.size} transactions")
-              // TODO FOR MERGE: usedSizeKBytes()/usedPercentage() should be moved into sparkz.core.transaction.MemoryPool
-              //                 or a new AbstractMemoryPool class should be created between MP and the concrete classes
-              // - ${newMemPool.usedSizeKBytes}kb (${newMemPool.usedPercentage}%)")
-              case Failure(e) =>
-                log.warn(s"Can`t apply persistent modifier (id: ${pmod.encodedId}, contents: $pmod) to minimal state", e)
-                updateNodeView(updatedHistory = Some(newHistory))
-                context.system.eventStream.publish(SemanticallyFailedModification(pmod, e))
-            }
-          } else {
-            updateNodeView(updatedHistory = Some(historyBeforeStUpdate))
+          stateAndWalletUpdate match {
+            case Some((newHistory, newStateTry, newWallet, blocksApplied)) =>
+              newStateTry match {
+                case Success(newState) =>
+                  val newMemPool = updateMemPool(progressInfo.toRemove, blocksApplied, memoryPool(), newState)
+                  // Note: in parent NodeViewHolder.pmodModify wallet was updated here.
+
+                  updateNodeView(Some(newHistory), Some(newState), Some(newWallet), Some(newMemPool))
+                  log.info(s"Persistent modifier ${pmod.encodedId} applied successfully and node view updated!")
+
+                  log.debug(s"Current mempool size: ${newMemPool.size} transactions")
+                // TODO FOR MERGE: usedSizeKBytes()/usedPercentage() should be moved into sparkz.core.transaction.MemoryPool
+                //                 or a new AbstractMemoryPool class should be created between MP and the concrete classes
+                // - ${newMemPool.usedSizeKBytes}kb (${newMemPool.usedPercentage}%)")
+                case Failure(e) =>
+                  log.warn(s"Can`t apply persistent modifier (id: ${pmod.encodedId}, contents: $pmod) to minimal state", e)
+                  updateNodeView(updatedHistory = Some(newHistory))
+                  context.system.eventStream.publish(SemanticallyFailedModification(pmod, e))
+              }
+            case None =>
+              updateNodeView(updatedHistory = Some(historyBeforeStUpdate))
           }
         case Failure(e) =>
           log.warn(s"Can`t apply persistent modifier (id: ${pmod.encodedId}, contents: $pmod) to history", e)
@@ -502,6 +546,12 @@ abstract class AbstractSidechainNodeViewHolder[
 
   override def postStop(): Unit = {
     log.info(s"${getClass.getSimpleName} actor is stopping...")
+    // the checkpoint lets the next startup skip rebuilding the active chain from the history storage
+    Try(history().storage.writeActiveChainCheckpoint()) match {
+      case Failure(e) => log.warn("Could not write active chain checkpoint: " + e.getMessage, e)
+      case _ =>
+    }
+    semanticValidationPipeline.foreach(_.shutdown())
     super.postStop()
   }
 }
@@ -524,6 +574,8 @@ object AbstractSidechainNodeViewHolder {
 
     case object GetStorageVersions
 
+    case object GetHistoryStorageCacheStats
+
   }
 
   protected[horizen] object InternalReceivableMessages {
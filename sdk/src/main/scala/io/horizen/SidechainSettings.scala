@@ -1,8 +1,11 @@
 package io.horizen
 
 import io.horizen.account.mempool.MempoolMap
+import io.horizen.account.transaction.SenderRecoveryService
 import io.horizen.cryptolibprovider.CircuitTypes
 import io.horizen.cryptolibprovider.CircuitTypes.CircuitTypes
+import io.horizen.forge.MainchainSynchronizer
+import io.horizen.storage.AbstractHistoryStorage
 import sparkz.core.settings.SparkzSettings
 
 import java.math.BigInteger
@@ -21,12 +24,16 @@ case class WebSocketClientSettings(
     reconnectionMaxAttempts: Int,
     // In Regtest allow to forge new blocks without connection to MC node, for example.
     allowNoConnectionInRegtest: Boolean = true,
-    enabled: Boolean
+    enabled: Boolean,
+    // max number of mainchain block references requested in advance while forging, their responses are parsed in parallel
+    maxBlocksInFlight: Int = MainchainSynchronizer.DEFAULT_MAX_BLOCKS_IN_FLIGHT
 ) extends SensitiveStringer
 
 case class WebSocketServerSettings(
     wsServer: Boolean = false,
-    wsServerPort: Int = 8025
+    wsServerPort: Int = 8025,
+    // max number of messages waiting to be sent to a client, further messages are dropped
+    wsServerMaxPendingMessages: Int = 1000
 )
 
 case class GenesisDataSettings(
@@ -89,7 +96,20 @@ case class WalletSettings(
 case class CeasedSidechainWithdrawalSettings(
     cswProvingKeyFilePath: String,
     cswVerificationKeyFilePath: String,
-) extends SensitiveStringer
+    // max number of CSW proofs generated in parallel, further requests wait in the queue
+    proofGenerationThreads: Int = 2,
+    // memory available to the CSW proofs generated in parallel and memory taken by each of them, in MB:
+    // the proofs in parallel are limited to fit the budget too
+    proofGenerationMemoryBudgetMb: Int = 8192,
+    proofGenerationMemoryPerProofMb: Int = 4096,
+) extends SensitiveStringer {
+  require(proofGenerationThreads > 0, s"Number of CSW proof generation threads not positive: $proofGenerationThreads")
+  require(proofGenerationMemoryPerProofMb > 0, s"Memory per CSW proof not positive: $proofGenerationMemoryPerProofMb")
+  require(proofGenerationMemoryBudgetMb >= proofGenerationMemoryPerProofMb,
+    s"CSW proof generation memory budget ($proofGenerationMemoryBudgetMb MB) is less than the memory of a proof ($proofGenerationMemoryPerProofMb MB)")
+
+  def maxParallelProofs: Int = math.min(proofGenerationThreads, proofGenerationMemoryBudgetMb / proofGenerationMemoryPerProofMb)
+}
 
 case class LogInfoSettings(
     logFileName: String = "debug.log",
@@ -117,8 +137,42 @@ case class EthServiceSettings(
     /**
      * Timeout limit for the RPC call eth_getLogs
      */
-    getLogsQueryTimeout: FiniteDuration = 10.seconds
-) extends SensitiveStringer
+    getLogsQueryTimeout: FiniteDuration = 10.seconds,
+
+    /**
+     * Execute read-only RPC calls against the last published node view snapshot instead of queueing them on the
+     * node view holder actor. Calls depending on the mempool or on the "pending" block are always executed on the actor.
+     * Disabled by default: the evm state is read at the state root of the snapshot, but the state metadata (receipts,
+     * base fee, log index, fee records) is read at the last version of its storage, that can be a block newer than the
+     * snapshot.
+     */
+    snapshotReadsEnabled: Boolean = false,
+
+    /**
+     * Number of threads of the pool executing the RPC calls against the node view snapshot
+     */
+    snapshotReadThreads: Int = 4,
+
+    /**
+     * Number of threads of the pool executing in parallel the requests of a JSON-RPC batch
+     */
+    rpcBatchThreads: Int = 4,
+
+    /**
+     * Maximum number of requests of a JSON-RPC batch
+     */
+    rpcBatchSizeLimit: Int = 1000,
+
+    /**
+     * Maximum number of batch requests waiting for a thread of the batch pool, the requests beyond are rejected
+     */
+    rpcBatchQueueSize: Int = 1000
+) extends SensitiveStringer {
+  require(snapshotReadThreads > 0, s"Number of snapshot read threads not positive: $snapshotReadThreads")
+  require(rpcBatchThreads > 0, s"Number of RPC batch threads not positive: $rpcBatchThreads")
+  require(rpcBatchSizeLimit > 0, s"RPC batch size limit not positive: $rpcBatchSizeLimit")
+  require(rpcBatchQueueSize > 0, s"RPC batch queue size not positive: $rpcBatchQueueSize")
+}
 
 // Default values are the same as in Geth/Erigon
 case class AccountMempoolSettings(
@@ -127,7 +181,14 @@ case class AccountMempoolSettings(
     maxMemPoolSlots: Int = 6144, // It is the sum of the default values of GlobalQueue and GlobalSlots in Geth
     maxNonExecMemPoolSlots: Int = 1024,
     txLifetime: FiniteDuration = 3.hours,
-    allowUnprotectedTxs: Boolean = false
+    allowUnprotectedTxs: Boolean = false,
+    // add the txs submitted by eth_sendRawTransaction from the RPC threads instead of the node view holder. Ignored if
+    // the API rate limiter is enabled, because it throttles the txs sent to the node view holder.
+    concurrentAdmission: Boolean = false,
+    // workers recovering the senders of the txs of a block or batch in parallel, 0 for the number of processors
+    senderRecoveryThreads: Int = 0,
+    // number of recovered senders cached by tx hash, 0 to disable the cache
+    senderCacheSize: Int = SenderRecoveryService.DEFAULT_SENDER_CACHE_SIZE
 ) extends SensitiveStringer {
   require(maxNonceGap > 0, s"Maximum Nonce Gap not positive: $maxNonceGap")
   require(maxAccountSlots > 0, s"Maximum Account Slots not positive: $maxAccountSlots")
@@ -148,6 +209,8 @@ case class AccountMempoolSettings(
     s"Maximum number of account slots cannot be bigger than maximum number of Memory Pool slots: account slots $maxAccountSlots - Memory Pool slots $maxMemPoolSlots"
   )
   require(txLifetime.toSeconds > 0, s"Transaction lifetime cannot be 0 or less seconds: $txLifetime")
+  require(senderRecoveryThreads >= 0, s"Sender recovery threads negative: $senderRecoveryThreads")
+  require(senderCacheSize >= 0, s"Sender cache size negative: $senderCacheSize")
 }
 
 case class ApiRateLimiterSettings(
@@ -158,6 +221,20 @@ case class ApiRateLimiterSettings(
 
 case class HistorySettings(
     resetModifiersStatus: Boolean = false,
+    blockCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_CACHE_MAX_BYTES,
+    blockInfoCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_INFO_CACHE_MAX_BYTES,
+    activeChainCheckpointEnabled: Boolean = true,
+    activeChainCheckpointInterval: Int = 10000,
+    // number of workers validating the cached blocks ahead of their application, 0 to validate them on application only
+    blockPreValidationThreads: Int = 2,
+    // maximum number of cached blocks being validated ahead of their application at the same time
+    blockPreValidationQueueSize: Int = 32,
+    // maximum time to wait for a block validation started ahead, before validating the block on its application
+    blockPreValidationTimeout: FiniteDuration = 5.seconds,
+)
+
+case class StorageSettings(
+    singleDatabase: Boolean = false,
 )
 
 case class SidechainSettings(
@@ -175,7 +252,8 @@ case class SidechainSettings(
     ethService: EthServiceSettings,
     accountMempool: AccountMempoolSettings,
     apiRateLimiter: ApiRateLimiterSettings,
-    history: HistorySettings
+    history: HistorySettings,
+    storage: StorageSettings = StorageSettings()
 ){
   require(sparkzSettings.network.handlingTransactionsEnabled || !forger.automaticForging,
     s"Node that does not support transaction handling cannot be a forger node: " +
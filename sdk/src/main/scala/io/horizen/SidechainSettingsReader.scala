@@ -49,10 +49,11 @@ object SidechainSettingsReader
     val ethServiceSettings = config.as[EthServiceSettings]("sparkz.ethService")
     val apiRateLimiterSettings = config.as[ApiRateLimiterSettings]("sparkz.apiRateLimiter")
     val historySettings = config.as[HistorySettings]("sparkz.history")
+    val storageSettings = config.as[StorageSettings]("sparkz.storage")
 
     SidechainSettings(sparkzSettings, genesisSettings, webSocketClientSettings, webSocketServerSettings, certificateSettings,
       remoteKeysManagerSettings, mempoolSettings, walletSettings, forgerSettings, cswSettings, logInfoSettings,
-      ethServiceSettings, accountMempoolSettings, apiRateLimiterSettings, historySettings)
+      ethServiceSettings, accountMempoolSettings, apiRateLimiterSettings, historySettings, storageSettings)
   }
 
   def readConfigFromPath(userConfigPath: String, applicationConfigPath: Option[String]): Config = {
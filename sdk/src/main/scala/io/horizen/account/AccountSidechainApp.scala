@@ -14,10 +14,12 @@ import io.horizen.account.chain.AccountFeePaymentsInfo
 import io.horizen.account.companion.SidechainAccountTransactionsCompanion
 import io.horizen.account.forger.AccountForgerRef
 import io.horizen.account.history.AccountHistory
+import io.horizen.account.mempool.AccountMempoolAdmission
 import io.horizen.account.network.AccountNodeViewSynchronizer
-import io.horizen.account.node.{AccountNodeView, NodeAccountHistory, NodeAccountMemoryPool, NodeAccountState}
+import io.horizen.account.node.{AccountNodeView, AccountNodeViewSnapshotProvider, NodeAccountHistory, NodeAccountMemoryPool, NodeAccountState}
 import io.horizen.account.state.MessageProcessor
 import io.horizen.account.storage.{AccountHistoryStorage, AccountStateMetadataStorage}
+import io.horizen.account.transaction.SenderRecoveryService
 import io.horizen.account.websocket.WebSocketAccountServerRef
 import io.horizen.api.http._
 import io.horizen.api.http.route.{MainchainBlockApiRoute, SidechainNodeApiRoute, SidechainSubmitterApiRoute}
@@ -31,7 +33,7 @@ import io.horizen.network.SyncStatusActorRef
 import io.horizen.node.NodeWalletBase
 import io.horizen.secret.SecretSerializer
 import io.horizen.storage._
-import io.horizen.storage.leveldb.VersionedLevelDbStorageAdapter
+import io.horizen.storage.leveldb.{SharedLevelDbDatabase, VersionedLevelDbStorageAdapter}
 import io.horizen.transaction._
 import io.horizen.utils.{BytesUtils, Pair}
 import sparkz.core.api.http.ApiRoute
@@ -93,23 +95,43 @@ class AccountSidechainApp @Inject()
   val historyStore = new File(dataDirAbsolutePath + "/history")
   val consensusStore = new File(dataDirAbsolutePath + "/consensusData")
 
+  // single LevelDB holding the storages as namespaces, so that a block is committed with one write
+  protected val sharedStorageDatabase: Option[SharedLevelDbDatabase] =
+    if (sidechainSettings.storage.singleDatabase)
+      Some(registerClosableResource(new SharedLevelDbDatabase(new File(dataDirAbsolutePath + "/storages"))))
+    else
+      None
+
+  private def openStorage(store: File, versionsToKeep: Int): Storage = registerClosableResource(
+    sharedStorageDatabase match {
+      case Some(database) => database.namespace(store.getName, versionsToKeep)
+      case None => new VersionedLevelDbStorageAdapter(store, versionsToKeep)
+    })
+
+  // workers and cache of the recovery of the transaction senders, stopped with the other resources
+  protected val senderRecoveryService: SenderRecoveryService = registerClosableResource(new SenderRecoveryService(
+    sidechainSettings.accountMempool.senderRecoveryThreads, sidechainSettings.accountMempool.senderCacheSize))
+
   // Init all storages
   protected val sidechainHistoryStorage = new AccountHistoryStorage(
-    registerClosableResource(new VersionedLevelDbStorageAdapter(historyStore, 5)),
+    openStorage(historyStore, 5),
     sidechainTransactionsCompanion,
-    params)
+    params,
+    sidechainSettings.history.blockCacheMaxBytes,
+    sidechainSettings.history.blockInfoCacheMaxBytes,
+    activeChainCheckpoint)
 
   protected val sidechainSecretStorage = new SidechainSecretStorage(
-    registerClosableResource(new VersionedLevelDbStorageAdapter(secretStore, 5)),
+    openStorage(secretStore, 5),
     sidechainSecretsCompanion)
 
   protected val stateMetadataStorage = new AccountStateMetadataStorage(
-    registerClosableResource(new VersionedLevelDbStorageAdapter(metaStateStore, params.maxHistoryRewritingLength * 2)))
+    openStorage(metaStateStore, params.maxHistoryRewritingLength * 2))
 
   protected val stateDbStorage: LevelDBDatabase = registerClosableResource(new LevelDBDatabase(dataDirAbsolutePath + "/evm-state"))
 
   protected val consensusDataStorage = new ConsensusDataStorage(
-    registerClosableResource(new VersionedLevelDbStorageAdapter(consensusStore, 5)))
+    openStorage(consensusStore, 5))
 
   // Append genesis secrets if we start the node first time
   if(sidechainSecretStorage.isEmpty) {
@@ -120,6 +142,9 @@ class AccountSidechainApp @Inject()
       sidechainSecretStorage.add(sidechainSecretsCompanion.parseBytes(BytesUtils.fromHexString(secretSchnorr)))
   }
 
+  // node view snapshot published by the node view holder and consumed by the RPC layer
+  protected val nodeViewSnapshotProvider = new AccountNodeViewSnapshotProvider
+
   override val nodeViewHolderRef: ActorRef = AccountNodeViewHolderRef(
     sidechainSettings,
     sidechainHistoryStorage,
@@ -130,7 +155,10 @@ class AccountSidechainApp @Inject()
     sidechainSecretStorage,
     params,
     timeProvider,
-    genesisBlock
+    genesisBlock,
+    nodeViewSnapshotProvider,
+    senderRecoveryService,
+    sharedStorageDatabase.getOrElse(StorageBatching.NoBatching)
     ) // TO DO: why not to put genesisBlock as a part of params? REVIEW Params structure
 
   def modifierSerializers: Map[ModifierTypeId, SparkzSerializer[_ <: NodeViewModifier]] =
@@ -161,23 +189,31 @@ class AccountSidechainApp @Inject()
   // Init Sync Status actor
   val syncStatusActorRef: ActorRef = SyncStatusActorRef("SyncStatus", sidechainSettings, nodeViewHolderRef, sidechainBlockForgerActorRef, params, timeProvider)
 
-  //rpcHandler
-  val rpcHandler = new RpcHandler(
-    new EthService(
-      nodeViewHolderRef,
-      networkControllerRef,
-      settings.restApi.timeout,
-      params,
-      sidechainSettings.ethService,
-      sidechainSettings.sparkzSettings.network.maxIncomingConnections,
-      RpcUtils.getClientVersion,
-      sidechainTransactionActorRef,
-      syncStatusActorRef,
-      sidechainTransactionsCompanion
-    )
+  // Add the txs submitted through the RPC off the node view holder, unless they must go through the rate limiter
+  val mempoolAdmission: Option[AccountMempoolAdmission] =
+    if (sidechainSettings.accountMempool.concurrentAdmission && !sidechainSettings.apiRateLimiter.enabled)
+      Some(new AccountMempoolAdmission(nodeViewSnapshotProvider, sidechainSettings.accountMempool, actorSystem.eventStream))
+    else
+      None
+
+  val ethService = new EthService(
+    nodeViewHolderRef,
+    networkControllerRef,
+    settings.restApi.timeout,
+    params,
+    sidechainSettings.ethService,
+    sidechainSettings.sparkzSettings.network.maxIncomingConnections,
+    RpcUtils.getClientVersion,
+    sidechainTransactionActorRef,
+    syncStatusActorRef,
+    sidechainTransactionsCompanion,
+    Some(nodeViewSnapshotProvider),
+    mempoolAdmission
   )
+  //rpcHandler
+  val rpcHandler = new RpcHandler(ethService)
   //Initialize RpcProcessor object with the rpcHandler
-  val rpcProcessor: RpcProcessor = RpcProcessor(rpcHandler)
+  val rpcProcessor: RpcProcessor = RpcProcessor(rpcHandler, sidechainSettings.ethService, settings.restApi.timeout)
   
   if(sidechainSettings.websocketServer.wsServer) {
     val webSocketServerActor: ActorRef = WebSocketAccountServerRef(nodeViewHolderRef, rpcProcessor, sidechainSettings.websocketServer)
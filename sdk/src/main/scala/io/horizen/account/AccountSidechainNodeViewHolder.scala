@@ -5,26 +5,28 @@ import io.horizen.account.AccountSidechainNodeViewHolder.NewExecTransactionsEven
 import io.horizen.account.block.{AccountBlock, AccountBlockHeader}
 import io.horizen.account.chain.AccountFeePaymentsInfo
 import io.horizen.account.history.AccountHistory
-import io.horizen.account.history.validation.{BaseFeeBlockValidator, ChainIdBlockSemanticValidator}
+import io.horizen.account.history.validation.{BaseFeeBlockValidator, ChainIdBlockSemanticValidator, SenderRecoveryBlockSemanticValidator}
 import io.horizen.account.mempool.AccountMemoryPool
-import io.horizen.account.node.AccountNodeView
+import io.horizen.account.node.{AccountNodeView, AccountNodeViewSnapshotProvider}
 import io.horizen.account.state._
 import io.horizen.account.storage.{AccountHistoryStorage, AccountStateMetadataStorage}
-import io.horizen.account.transaction.EthereumTransaction
+import io.horizen.account.transaction.{EthereumTransaction, SenderRecoveryService}
 import io.horizen.account.wallet.AccountWallet
 import io.horizen.consensus._
 import io.horizen.history.validation.{HistoryBlockValidator, SemanticBlockValidator}
 import io.horizen.params.NetworkParams
-import io.horizen.storage.{SidechainSecretStorage, SidechainStorageInfo}
+import io.horizen.storage.{SidechainSecretStorage, SidechainStorageInfo, StorageBatching}
 import io.horizen.{AbstractSidechainNodeViewHolder, NodeViewHolderForSeederNode, SidechainSettings, SidechainTypes}
 import io.horizen.evm.Database
 import sparkz.util.{ModifierId, bytesToId}
+import sparkz.core.NodeViewHolder.CurrentView
 import sparkz.core.idToVersion
 import sparkz.core.network.NodeViewSynchronizer.ReceivableMessages.{FailedTransaction, NodeViewHolderEvent, RollbackFailed}
 import sparkz.core.utils.NetworkTimeProvider
 
 import java.nio.charset.StandardCharsets
-import scala.util.{Failure, Success}
+import scala.collection.JavaConverters._
+import scala.util.{Failure, Success, Try}
 
 class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
                                      params: NetworkParams,
@@ -35,7 +37,10 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
                                      stateDbStorage: Database,
                                      customMessageProcessors: Seq[MessageProcessor],
                                      secretStorage: SidechainSecretStorage,
-                                     genesisBlock: AccountBlock)
+                                     genesisBlock: AccountBlock,
+                                     snapshotProvider: AccountNodeViewSnapshotProvider,
+                                     senderRecoveryService: SenderRecoveryService,
+                                     override protected val storageBatching: StorageBatching = StorageBatching.NoBatching)
   extends AbstractSidechainNodeViewHolder[SidechainTypes#SCAT, AccountBlockHeader, AccountBlock](sidechainSettings, timeProvider, params)
   with AccountEventNotifier {
 
@@ -53,7 +58,9 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
   }
 
   override def semanticBlockValidators(params: NetworkParams): Seq[SemanticBlockValidator[AccountBlock]] = {
-    super.semanticBlockValidators(params) :+ ChainIdBlockSemanticValidator(params)
+    // the senders are recovered first, they are needed by the tx validity checks and later by the state transition
+    SenderRecoveryBlockSemanticValidator(senderRecoveryService) +:
+      super.semanticBlockValidators(params) :+ ChainIdBlockSemanticValidator(params)
   }
 
   override def historyBlockValidators(params: NetworkParams): Seq[HistoryBlockValidator[SidechainTypes#SCAT, AccountBlockHeader, AccountBlock, AccountFeePaymentsInfo, AccountHistoryStorage, AccountHistory]] = {
@@ -127,7 +134,7 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
     log.info("Restoring persistent state from storage...")
 
     val restoredData = for {
-      history <- AccountHistory.restoreHistory(historyStorage, consensusDataStorage, params, semanticBlockValidators(params), historyBlockValidators(params))
+      history <- AccountHistory.restoreHistory(historyStorage, consensusDataStorage, params, historySemanticBlockValidators(params), historyBlockValidators(params))
       state <- AccountState.restoreState(stateMetadataStorage, stateDbStorage, messageProcessors(params), params, timeProvider, blockHashProvider)
       wallet <- AccountWallet.restoreWallet(sidechainSettings.wallet.seed.getBytes(StandardCharsets.UTF_8), secretStorage)
       pool <- Some(AccountMemoryPool.createEmptyMempool(() => minimalState(),
@@ -144,7 +151,7 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
     val result = for {
       state <- AccountState.createGenesisState(stateMetadataStorage, stateDbStorage, messageProcessors(params), params, timeProvider, blockHashProvider, genesisBlock)
       (_: ModifierId, consensusEpochInfo: ConsensusEpochInfo) <- Success(state.getCurrentConsensusEpochInfo)
-      history <- AccountHistory.createGenesisHistory(historyStorage, consensusDataStorage, params, genesisBlock, semanticBlockValidators(params),
+      history <- AccountHistory.createGenesisHistory(historyStorage, consensusDataStorage, params, genesisBlock, historySemanticBlockValidators(params),
         historyBlockValidators(params), StakeConsensusEpochInfo(consensusEpochInfo.forgingStakeInfoTree.rootHash(), consensusEpochInfo.forgersStake))
       wallet <- AccountWallet.createGenesisWallet(sidechainSettings.wallet.seed.getBytes(StandardCharsets.UTF_8), secretStorage)
       pool <- Success(AccountMemoryPool.createEmptyMempool(() => minimalState(),
@@ -170,10 +177,33 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
 
   override protected def getNodeView(): AccountNodeView = new AccountNodeView(history(), minimalState(), vault(), memoryPool())
 
+  override def preStart(): Unit = {
+    super.preStart()
+    // make the restored (or genesis) node view available to the snapshot readers
+    publishSnapshot()
+  }
+
+  override protected def updateNodeView(updatedHistory: Option[HIS],
+                                        updatedState: Option[MS],
+                                        updatedVault: Option[VL],
+                                        updatedMempool: Option[MP]): Unit = {
+    super.updateNodeView(updatedHistory, updatedState, updatedVault, updatedMempool)
+    publishSnapshot()
+  }
+
+  // Publish an immutable snapshot of the current node view, so that read-only consumers (like the RPC layer)
+  // can run concurrently without queueing behind the node view holder actor.
+  private def publishSnapshot(): Unit = {
+    val snapshot = snapshotProvider.publish(CurrentView(history(), minimalState(), vault(), memoryPool()))
+    log.debug(s"Published node view snapshot: $snapshot")
+  }
+
   override lazy val listOfStorageInfo: Seq[SidechainStorageInfo] = Seq[SidechainStorageInfo](
     historyStorage, consensusDataStorage, stateMetadataStorage, secretStorage)
 
   override protected def applyLocallyGeneratedTransactions(newTxs: Iterable[SidechainTypes#SCAT]): Unit = {
+    // recover the senders of the batch in parallel, the mempool needs them to admit the txs
+    senderRecoveryService.recoverSenders(newTxs.asJavaCollection)
     newTxs.foreach {
       case tx if Some(tx).filter(_.isInstanceOf[EthereumTransaction]).map(_.asInstanceOf[EthereumTransaction])
         .exists(ethTx => !sidechainSettings.accountMempool.allowUnprotectedTxs && ethTx.isLegacy && !ethTx.isEIP155) =>
@@ -198,6 +228,15 @@ class AccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
   override def sendNewExecTxsEvent(listOfNewExecTxs: Iterable[SidechainTypes#SCAT]): Unit = {
     context.system.eventStream.publish(NewExecTransactionsEvent(listOfNewExecTxs))
   }
+
+  override def postStop(): Unit = {
+    // the pooled state db views must be closed before the state db storage
+    Try(minimalState().closeStateDbViews()) match {
+      case Failure(e) => log.warn("Could not close the state db views: " + e.getMessage, e)
+      case _ =>
+    }
+    super.postStop()
+  }
 }
 
 /* In a Seeder node transactions handling is disabled, so there is a specific NodeViewHolder */
@@ -210,7 +249,10 @@ class AccountSidechainNodeViewHolderForSeederNode(sidechainSettings: SidechainSe
                                      stateDbStorage: Database,
                                      customMessageProcessors: Seq[MessageProcessor],
                                      secretStorage: SidechainSecretStorage,
-                                     genesisBlock: AccountBlock)
+                                     genesisBlock: AccountBlock,
+                                     snapshotProvider: AccountNodeViewSnapshotProvider,
+                                     senderRecoveryService: SenderRecoveryService,
+                                     storageBatching: StorageBatching)
   extends  AccountSidechainNodeViewHolder(sidechainSettings,
     params,
     timeProvider,
@@ -220,7 +262,10 @@ class AccountSidechainNodeViewHolderForSeederNode(sidechainSettings: SidechainSe
     stateDbStorage,
     customMessageProcessors,
     secretStorage,
-    genesisBlock)
+    genesisBlock,
+    snapshotProvider,
+    senderRecoveryService,
+    storageBatching)
     with NodeViewHolderForSeederNode[SidechainTypes#SCAT, AccountBlockHeader, AccountBlock]
 
 
@@ -241,13 +286,16 @@ object AccountNodeViewHolderRef {
                                    secretStorage: SidechainSecretStorage,
                                    params: NetworkParams,
                                    timeProvider: NetworkTimeProvider,
-                                   genesisBlock: AccountBlock): AccountSidechainNodeViewHolder = {
+                                   genesisBlock: AccountBlock,
+                                   snapshotProvider: AccountNodeViewSnapshotProvider,
+                                   senderRecoveryService: SenderRecoveryService,
+                                   storageBatching: StorageBatching): AccountSidechainNodeViewHolder = {
     if (isASeederNode(params))
       new AccountSidechainNodeViewHolderForSeederNode(sidechainSettings, params, timeProvider, historyStorage,
-        consensusDataStorage, stateMetadataStorage, stateDbStorage, customMessageProcessors, secretStorage, genesisBlock)
+        consensusDataStorage, stateMetadataStorage, stateDbStorage, customMessageProcessors, secretStorage, genesisBlock, snapshotProvider, senderRecoveryService, storageBatching)
     else
       new AccountSidechainNodeViewHolder(sidechainSettings, params, timeProvider, historyStorage,
-        consensusDataStorage, stateMetadataStorage, stateDbStorage, customMessageProcessors, secretStorage, genesisBlock)
+        consensusDataStorage, stateMetadataStorage, stateDbStorage, customMessageProcessors, secretStorage, genesisBlock, snapshotProvider, senderRecoveryService, storageBatching)
 
   }
 
@@ -262,9 +310,12 @@ object AccountNodeViewHolderRef {
             secretStorage: SidechainSecretStorage,
             params: NetworkParams,
             timeProvider: NetworkTimeProvider,
-            genesisBlock: AccountBlock): Props =
+            genesisBlock: AccountBlock,
+            snapshotProvider: AccountNodeViewSnapshotProvider,
+            senderRecoveryService: SenderRecoveryService,
+            storageBatching: StorageBatching): Props =
     Props(createNodeViewHolder(sidechainSettings, historyStorage, consensusDataStorage, stateMetadataStorage, stateDbStorage,
-      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock)).withMailbox("akka.actor.deployment.prio-mailbox")
+      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock, snapshotProvider, senderRecoveryService, storageBatching)).withMailbox("akka.actor.deployment.prio-mailbox")
 
   def apply(sidechainSettings: SidechainSettings,
             historyStorage: AccountHistoryStorage,
@@ -275,10 +326,13 @@ object AccountNodeViewHolderRef {
             secretStorage: SidechainSecretStorage,
             params: NetworkParams,
             timeProvider: NetworkTimeProvider,
-            genesisBlock: AccountBlock)
+            genesisBlock: AccountBlock,
+            snapshotProvider: AccountNodeViewSnapshotProvider,
+            senderRecoveryService: SenderRecoveryService,
+            storageBatching: StorageBatching)
            (implicit system: ActorSystem): ActorRef =
     system.actorOf(props(sidechainSettings, historyStorage, consensusDataStorage, stateMetadataStorage, stateDbStorage,
-      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock))
+      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock, snapshotProvider, senderRecoveryService, storageBatching))
 
   def apply(name: String,
             sidechainSettings: SidechainSettings,
@@ -290,10 +344,13 @@ object AccountNodeViewHolderRef {
             secretStorage: SidechainSecretStorage,
             params: NetworkParams,
             timeProvider: NetworkTimeProvider,
-            genesisBlock: AccountBlock)
+            genesisBlock: AccountBlock,
+            snapshotProvider: AccountNodeViewSnapshotProvider,
+            senderRecoveryService: SenderRecoveryService,
+            storageBatching: StorageBatching)
            (implicit system: ActorSystem): ActorRef =
     system.actorOf(props(sidechainSettings, historyStorage, consensusDataStorage, stateMetadataStorage, stateDbStorage,
-      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock), name)
+      customMessageProcessors, secretStorage, params, timeProvider, genesisBlock, snapshotProvider, senderRecoveryService, storageBatching), name)
 
 }
 
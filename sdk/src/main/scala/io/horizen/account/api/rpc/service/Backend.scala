@@ -2,8 +2,10 @@ package io.horizen.account.api.rpc.service
 
 import io.horizen.account.block.AccountBlock
 import io.horizen.account.history.AccountHistory
-import io.horizen.account.state.AccountStateView
+import io.horizen.account.node.AccountNodeViewSnapshot
+import io.horizen.account.state.{AccountState, AccountStateView}
 import io.horizen.account.transaction.EthereumTransaction
+import io.horizen.account.utils.BlockFeeStats
 import io.horizen.account.utils.FeeUtils.INITIAL_BASE_FEE
 import io.horizen.utils.BytesUtils
 import sparkz.util.{ModifierId, SparkzLogging}
@@ -22,8 +24,13 @@ object Backend extends SparkzLogging {
   /**
    * Calculate suggested legacy gas price, i.e. including base fee.
    */
-  def calculateGasPrice(history: AccountHistory, baseFee: BigInteger): BigInteger = {
-    suggestTipCap(history).add(baseFee)
+  def calculateGasPrice(
+      history: AccountHistory,
+      state: AccountState,
+      baseFee: BigInteger,
+      snapshot: Option[AccountNodeViewSnapshot] = None
+  ): BigInteger = {
+    suggestTipCap(history, blockFeeStats = state.getBlockFeeStats _, snapshot = snapshot).add(baseFee)
   }
 
   /**
@@ -31,6 +38,12 @@ object Backend extends SparkzLogging {
    */
   def suggestTipCap(history: AccountHistory): BigInteger = suggestTipCap(history, 20, 20, MAX_GAS_PRICE, BigInteger.TWO)
 
+  /**
+   * Overload with default arguments, using the fee records of the state instead of loading the blocks when available.
+   */
+  def suggestTipCap(history: AccountHistory, state: AccountState): BigInteger =
+    suggestTipCap(history, blockFeeStats = state.getBlockFeeStats _)
+
   /**
    * Get tip cap that newly created transactions can use to have a high chance to be included in the following blocks.
    * Replication of the original implementation in GETH
@@ -51,6 +64,10 @@ object Backend extends SparkzLogging {
    *   default 500 GWei
    * @param ignorePrice
    *   default 2 Wei
+   * @param blockFeeStats
+   *   fee record of the block at the given height, if available the block is not loaded from the history
+   * @param snapshot
+   *   node view snapshot to take the tip and the active chain from, instead of the live history
    * @return
    *   suggestion for maxPriorityFeePerGas
    */
@@ -59,10 +76,13 @@ object Backend extends SparkzLogging {
       blockCount: Int = 20,
       percentile: Int = 20,
       maxPrice: BigInteger = MAX_GAS_PRICE,
-      ignorePrice: BigInteger = BigInteger.TWO
+      ignorePrice: BigInteger = BigInteger.TWO,
+      blockFeeStats: Int => Option[BlockFeeStats] = _ => None,
+      snapshot: Option[AccountNodeViewSnapshot] = None
   ): BigInteger = {
-    var number = history.getCurrentHeight
-    val headHash = history.bestBlockId
+    var number = snapshot.map(_.bestBlockHeight).getOrElse(history.getCurrentHeight)
+    val headHash = snapshot.map(_.bestBlockId).getOrElse(history.bestBlockId)
+    val blockIdByHeight: Int => Option[String] = snapshot.map(_.blockIdByHeight _).getOrElse(history.blockIdByHeight _)
     val (lastHead : Option[ModifierId], lastPrice: BigInteger) = tipCache.fold(
       (Option.empty[ModifierId], BigInteger.ZERO)
     )(cache =>
@@ -79,7 +99,7 @@ object Backend extends SparkzLogging {
     var prices: Seq[Option[Seq[BigInteger]]] =  Seq() //in go-ethereum this is called result
     var results: Seq[BigInteger] = Seq()
     while (sent < blockCount && number > 0){
-      prices = prices :+ getBlockPrices(history, number, ignorePrice, SUGGEST_TIP_TX_LIMIT)
+      prices = prices :+ getBlockPrices(history, blockIdByHeight, blockFeeStats, number, ignorePrice, SUGGEST_TIP_TX_LIMIT)
       sent += 1
       exp += 1
       number -= 1
@@ -106,7 +126,7 @@ object Backend extends SparkzLogging {
       // meaningful returned, try to query more blocks. But the maximum
       // is 2*checkBlocks.
       if (res.length == 1 && results.length + 1 + exp < blockCount * 2 && number > 0) {
-        prices = prices :+ getBlockPrices(history, number, ignorePrice, SUGGEST_TIP_TX_LIMIT)
+        prices = prices :+ getBlockPrices(history, blockIdByHeight, blockFeeStats, number, ignorePrice, SUGGEST_TIP_TX_LIMIT)
         exp += 1
         number -= 1
       }
@@ -136,11 +156,17 @@ object Backend extends SparkzLogging {
    * https://github.com/ethereum/go-ethereum/blob/v1.10.26/eth/gasprice/gasprice.go#L257
    */
   private def getBlockPrices(history: AccountHistory,
+                             blockIdByHeight: Int => Option[String],
+                             blockFeeStats: Int => Option[BlockFeeStats],
                              blockHeight: Int,
                              ignoreUnder: BigInteger,
                              limit: Int): Option[Seq[BigInteger]] = {
 
-    val blockId = history.blockIdByHeight(blockHeight)
+    val stats = blockFeeStats(blockHeight)
+    if (stats.isDefined) {
+      return Some(stats.get.lowestTips(ignoreUnder, limit))
+    }
+    val blockId = blockIdByHeight(blockHeight)
     if (blockId.isEmpty){
       return Option.empty
     }
@@ -151,52 +177,23 @@ object Backend extends SparkzLogging {
     val block = blockOpt.get
     Some(block.transactions
       .filter(tx => !(tx.getFrom.bytes() sameElements block.forgerPublicKey.bytes()))
-      .map(tx => getEffectiveGasTip(tx.asInstanceOf[EthereumTransaction], block.header.baseFee))
+      .map(tx => BlockFeeStats.getEffectiveGasTip(tx.asInstanceOf[EthereumTransaction], block.header.baseFee))
       .filter(gasTip => ignoreUnder == null || gasTip.compareTo(ignoreUnder) >= 0)
       .sorted
       .take(limit))
   }
 
+  /**
+   * Rewards of a block applied before fee records were introduced, computed from the block and its receipts.
+   */
   def getRewardsForBlock(
       block: AccountBlock,
       stateView: AccountStateView,
       percentiles: Array[Double]
   ): Array[BigInteger] = {
-    val txs = block.transactions.map(_.asInstanceOf[EthereumTransaction])
-    // return an all zero row if there are no transactions to gather data from
-    if (txs.isEmpty) return percentiles.map(_ => BigInteger.ZERO)
-
-    // collect gas used and reward (effective gas tip) per transaction, sorted ascending by reward
-    case class GasAndReward(gasUsed: Long, reward: BigInteger)
-    val sortedRewards = txs
-      .map(tx =>
-        GasAndReward(
-          stateView.getTransactionReceipt(BytesUtils.fromHexString(tx.id)).get.gasUsed.longValueExact(),
-          getEffectiveGasTip(tx, block.header.baseFee)
-        )
-      )
-      .sortBy(_.reward)
-      .iterator
-
-    var current = sortedRewards.next()
-    var sumGasUsed = current.gasUsed
-    val rewards = new Array[BigInteger](percentiles.length)
-    for (i <- percentiles.indices) {
-      val thresholdGasUsed = (block.header.gasUsed.doubleValue() * percentiles(i) / 100).toLong
-      // continue summation as long as the total is below the percentile threshold
-      while (sumGasUsed < thresholdGasUsed && sortedRewards.hasNext) {
-        current = sortedRewards.next()
-        sumGasUsed += current.gasUsed
-      }
-      rewards(i) = current.reward
-    }
-    rewards
-  }
-
-  private def getEffectiveGasTip(tx: EthereumTransaction, baseFee: BigInteger): BigInteger = {
-    if (baseFee == null) tx.getMaxPriorityFeePerGas
-    // we do not need to check if MaxFeePerGas is higher than baseFee, because the tx is already included in the block
-    else tx.getMaxPriorityFeePerGas.min(tx.getMaxFeePerGas.subtract(baseFee))
+    val txGasUsed = block.transactions
+      .map(tx => stateView.getTransactionReceipt(BytesUtils.fromHexString(tx.id)).get.gasUsed)
+    BlockFeeStats(block, txGasUsed).rewards(percentiles)
   }
 }
 
@@ -0,0 +1,56 @@
+package io.horizen.account.api.rpc.service
+
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Values of the EstimateGasMetrics at a given time, as served by the node API.
+ */
+case class EstimateGasStats(
+    duration: DurationHistogramStats,
+    averageProbes: Double,
+    probeBucketBounds: Seq[Int],
+    probeBucketCounts: Seq[Long]
+)
+
+/**
+ * Metrics of the eth_estimateGas executions:
+ *  - duration: time to estimate the gas of a call, including all the probes
+ *  - probes: number of executions of the call needed by the estimates, counted in buckets with the given upper bounds
+ *    plus one last bucket for more probes
+ */
+class EstimateGasMetrics(val probeBucketBounds: Seq[Int] = Seq(1, 2, 3, 5, 10, 15, 20, 25)) {
+  require(probeBucketBounds.nonEmpty && probeBucketBounds.sorted == probeBucketBounds, "Bucket bounds must be sorted")
+
+  val duration = new DurationHistogram
+  private val probeBuckets = Array.fill(probeBucketBounds.size + 1)(new LongAdder())
+  private val totalProbes = new LongAdder()
+
+  def record(probes: Int, durationNanos: Long): Unit = {
+    val bucket = probeBucketBounds.indexWhere(probes <= _) match {
+      case -1 => probeBucketBounds.size
+      case index => index
+    }
+    probeBuckets(bucket).increment()
+    totalProbes.add(probes)
+    duration.record(durationNanos)
+  }
+
+  /**
+   * Number of estimates of every probe bucket, the last one counting the estimates above the greatest bound.
+   */
+  def getProbeBucketCounts: Seq[Long] = probeBuckets.map(_.sum()).toSeq
+
+  def getAverageProbes: Double = {
+    val estimates = duration.getCount
+    if (estimates == 0) 0.0 else totalProbes.sum().toDouble / estimates
+  }
+
+  def getStats: EstimateGasStats =
+    EstimateGasStats(duration.getStats, getAverageProbes, probeBucketBounds, getProbeBucketCounts)
+
+  override def toString: String = {
+    val labels = probeBucketBounds.map(bound => s"<=$bound") :+ s">${probeBucketBounds.last}"
+    val probes = labels.zip(getProbeBucketCounts).map { case (label, count) => s"$label:$count" }
+    f"duration[$duration], probes[avg=$getAverageProbes%.2f, ${probes.mkString(", ")}]"
+  }
+}
@@ -15,7 +15,8 @@ import io.horizen.account.companion.SidechainAccountTransactionsCompanion
 import io.horizen.account.forger.AccountForgeMessageBuilder
 import io.horizen.account.fork.Version1_2_0Fork
 import io.horizen.account.history.AccountHistory
-import io.horizen.account.mempool.AccountMemoryPool
+import io.horizen.account.mempool.{AccountMemoryPool, AccountMempoolAdmission}
+import io.horizen.account.node.{AccountNodeViewSnapshot, AccountNodeViewSnapshotProvider}
 import io.horizen.account.proof.SignatureSecp256k1
 import io.horizen.account.secret.PrivateKeySecp256k1
 import io.horizen.account.state._
@@ -51,12 +52,15 @@ import java.lang.reflect.Method
 import java.math.BigInteger
 import java.nio.charset.StandardCharsets
 import java.util.Collections
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
 import scala.collection.JavaConverters.seqAsJavaListConverter
 import scala.collection.convert.ImplicitConversions.`collection AsScalaIterable`
 import scala.collection.mutable.ListBuffer
 import scala.compat.java8.OptionConverters.RichOptionalGeneric
 import scala.concurrent.duration.FiniteDuration
-import scala.concurrent.{Await, Future, TimeoutException}
+import scala.concurrent.{Await, ExecutionContext, ExecutionContextExecutorService, Future, TimeoutException}
 import scala.language.postfixOps
 import scala.util.{Failure, Success, Try}
 import scala.concurrent.ExecutionContext.Implicits.global
@@ -71,7 +75,9 @@ class EthService(
     rpcClientVersion: String,
     sidechainTransactionActorRef: ActorRef,
     syncStatusActorRef: ActorRef,
-    transactionsCompanion: SidechainAccountTransactionsCompanion
+    transactionsCompanion: SidechainAccountTransactionsCompanion,
+    snapshotProvider: Option[AccountNodeViewSnapshotProvider] = None,
+    mempoolAdmission: Option[AccountMempoolAdmission] = None
 ) extends RpcService
       with ClosableResourceHandler
       with SparkzLogging {
@@ -81,17 +87,171 @@ class EthService(
 
   override def isNotAllowed(method: Method): Boolean = !networkParams.isHandlingTransactionsEnabled && super.isDisabledOnSeederNode(method)
 
+  val viewAccessMetrics = new ViewAccessMetrics
+
+  val estimateGasMetrics = new EstimateGasMetrics
+
+  /**
+   * Pending block forged from the mempool, along with the state view resulting from its application. It is shared by
+   * the "pending" tag calls through the pending block cache.
+   */
+  private class PendingBlockState(
+      val block: AccountBlock,
+      val blockInfo: SidechainBlockInfo,
+      val stateView: AccountStateView,
+      val gasPool: GasPool,
+      val receipts: ListBuffer[EthereumReceipt]
+  )
+
+  // the state view of a replaced pending block is closed, unless the new pending block extended it
+  private val pendingBlockCache = new PendingBlockCache[PendingBlockState](
+    (replaced, updated) => if (!updated.exists(_.stateView eq replaced.stateView)) replaced.stateView.close()
+  )
+
+  // pool executing the read-only calls against the node view snapshot, created on first use
+  private lazy val snapshotReadContext: ExecutionContextExecutorService = {
+    val threadCounter = new AtomicInteger()
+    ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(settings.snapshotReadThreads, (runnable: Runnable) => {
+      val thread = new Thread(runnable, s"eth-rpc-snapshot-reader-${threadCounter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }))
+  }
+
+  // set while a function is executed against the node view snapshot on the snapshot read pool
+  private val onSnapshotView = new ThreadLocal[Option[AccountNodeViewSnapshot]] {
+    override def initialValue(): Option[AccountNodeViewSnapshot] = None
+  }
+
   private def applyOnAccountView[R](functionToBeApplied: NV => R,  fTimeout: FiniteDuration = nvtimeout): R  = {
+    val queuedAt = System.nanoTime()
     val res = scNodeViewHolderRef
       .ask {
         NodeViewHolder.ReceivableMessages.GetDataFromCurrentView { (nodeview: NV) =>
+          viewAccessMetrics.actorQueueWait.record(System.nanoTime() - queuedAt)
           // wrap any exceptions
           Try(functionToBeApplied(nodeview))
         }
       }(fTimeout)
       .asInstanceOf[Future[Try[R]]]
     // return result or rethrow potential exceptions
-    Await.result(res, fTimeout) match {
+    unwrapResult(Await.result(res, fTimeout))
+  }
+
+  /**
+   * Apply a read-only function on the last node view snapshot published by the node view holder. The function is
+   * executed on a dedicated pool, concurrently with block application and other RPC calls. It falls back to
+   * applyOnAccountView if snapshot reads are disabled, no snapshot has been published yet, or the function needs the
+   * live node view, i.e. it touches the "pending" block which depends on the mempool.
+   * Within a batch scope the function is executed on the calling thread, against the snapshot of the batch.
+   */
+  private def readOnAccountView[R](functionToBeApplied: NV => R, fTimeout: FiniteDuration = nvtimeout): R = {
+    def applyOnSnapshot(snapshot: AccountNodeViewSnapshot): Try[R] = {
+      onSnapshotView.set(Some(snapshot))
+      try {
+        Try(functionToBeApplied(snapshot.nodeView))
+      } finally {
+        onSnapshotView.remove()
+      }
+    }
+
+    val result = batchSnapshot.get() match {
+      case Some(snapshot) =>
+        Some(applyOnSnapshot(snapshot))
+      case None =>
+        lastSnapshot.map { snapshot =>
+          val queuedAt = System.nanoTime()
+          val res = Future {
+            viewAccessMetrics.snapshotQueueWait.record(System.nanoTime() - queuedAt)
+            applyOnSnapshot(snapshot)
+          }(snapshotReadContext)
+          Await.result(res, fTimeout)
+        }
+    }
+    result match {
+      case Some(Failure(_: LiveViewRequiredException)) | None => applyOnAccountView(functionToBeApplied, fTimeout)
+      case Some(res) => unwrapResult(res)
+    }
+  }
+
+  private def lastSnapshot: Option[AccountNodeViewSnapshot] =
+    snapshotProvider.filter(_ => settings.snapshotReadsEnabled).flatMap(_.snapshot)
+
+  // snapshot of the batch the current thread is executing a request of
+  private val batchSnapshot = new ThreadLocal[Option[AccountNodeViewSnapshot]] {
+    override def initialValue(): Option[AccountNodeViewSnapshot] = None
+  }
+
+  /**
+   * The requests of a batch are all executed against the node view snapshot available when the batch starts: they see
+   * its tip and open their state views at its state root, so they are consistent even if a block is applied meanwhile.
+   * Requests needing the live node view are still executed on the node view holder actor, on the live tip and state.
+   */
+  override def openBatchScope(): RpcBatchScope = {
+    lastSnapshot match {
+      case Some(snapshot) =>
+        new RpcBatchScope {
+          override def execute[T](request: Supplier[T]): T = {
+            batchSnapshot.set(Some(snapshot))
+            try {
+              request.get()
+            } finally {
+              batchSnapshot.remove()
+            }
+          }
+        }
+      case None => RpcBatchScope.NONE
+    }
+  }
+
+  // abort the current snapshot read, the caller retries it on the node view holder actor
+  private def requireLiveView(): Unit = {
+    if (onSnapshotView.get().isDefined) throw new LiveViewRequiredException
+  }
+
+  // The history and state of a snapshot are the live ones: the readers get the tip and the state views through these
+  // helpers, pinned to the snapshot when executed on it
+
+  // view of the latest state, at the state root of the snapshot if any
+  private def latestStateView(nodeView: NV): AccountStateView =
+    onSnapshotView.get().map(snapshot => nodeView.state.getViewFromRoot(snapshot.stateRoot)).getOrElse(nodeView.state.getView)
+
+  private def currentHeight(nodeView: NV): Int =
+    onSnapshotView.get().map(_.bestBlockHeight).getOrElse(nodeView.history.getCurrentHeight)
+
+  private def bestBlock(nodeView: NV): AccountBlock =
+    onSnapshotView.get().map(_.bestBlock).getOrElse(nodeView.history.bestBlock)
+
+  // id of the block at the given height, if not beyond the tip
+  private def blockIdByHeight(nodeView: NV, height: Int): Option[ModifierId] =
+    onSnapshotView.get() match {
+      case Some(snapshot) => snapshot.blockIdByHeight(height)
+      case None =>
+        if (height > currentHeight(nodeView)) None
+        else nodeView.history.blockIdByHeight(height).map(ModifierId(_))
+    }
+
+  // the active chain of the live history is mutated by the node view holder actor: on a snapshot the block infos are
+  // read from the history storage and the block ids by height from the snapshot
+  private def blockInfoById(nodeView: NV, blockId: ModifierId): SidechainBlockInfo =
+    onSnapshotView.get() match {
+      case Some(_) =>
+        nodeView.history.getStoredBlockInfoById(blockId)
+          .getOrElse(throw new IllegalStateException(s"No block info for block $blockId"))
+      case None => nodeView.history.blockInfoById(blockId)
+    }
+
+  private def blockHeightById(nodeView: NV, blockId: ModifierId): Option[Int] =
+    onSnapshotView.get() match {
+      case Some(_) => nodeView.history.getStoredBlockInfoById(blockId).map(_.height)
+      case None => nodeView.history.getBlockHeightById(blockId).asScala.map(_.intValue())
+    }
+
+  private def blockHashProvider(nodeView: NV): HistoryBlockHashProvider =
+    onSnapshotView.get().getOrElse(nodeView.history)
+
+  private def unwrapResult[R](result: Try[R]): R = {
+    result match {
       case Success(value) => value
       case Failure(exception) =>
         exception match {
@@ -149,7 +309,7 @@ class EthService(
 
   @RpcMethod("eth_getBlockByNumber")
   def getBlockByNumber(tag: String, hydratedTx: Boolean): EthereumBlockView = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       try {
         constructEthBlockWithTransactions(nodeView, getBlockIdByTag(nodeView, tag), hydratedTx)
       } catch {
@@ -160,7 +320,7 @@ class EthService(
 
   @RpcMethod("eth_getBlockByHash")
   def getBlockByHash(hash: Hash, hydratedTx: Boolean): EthereumBlockView = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       try {
         constructEthBlockWithTransactions(nodeView, bytesToId(hash.toBytes), hydratedTx)
       } catch {
@@ -175,19 +335,8 @@ class EthService(
       hydratedTx: Boolean
   ): EthereumBlockView = {
     val (block, blockInfo): (AccountBlock, SidechainBlockInfo) = getBlockById(nodeView, blockId)
-    val history = nodeView.history
-    val (blockNumber, blockHash, view): (Long, Hash, AccountStateView) =
-      if (blockId == null) {
-        (history.getCurrentHeight + 1, null, getPendingStateView(nodeView, block, blockInfo))
-      } else {
-        (
-          history.getBlockHeightById(blockId).get().toLong,
-          new Hash(blockId.toBytes),
-          nodeView.state.getView
-        )
-      }
 
-    using(view) { stateView =>
+    def blockView(blockNumber: Long, blockHash: Hash, stateView: AccountStateView): EthereumBlockView = {
       if (hydratedTx) {
         val receipts = block.transactions.map(_.id.toBytes).flatMap(stateView.getTransactionReceipt)
         EthereumBlockView.hydrated(blockNumber, blockHash, block, receipts.asJava)
@@ -195,6 +344,14 @@ class EthService(
         EthereumBlockView.notHydrated(blockNumber, blockHash, block)
       }
     }
+
+    if (blockId == null) {
+      withPendingStateView(nodeView)(blockView(currentHeight(nodeView) + 1, null, _))
+    } else {
+      using(latestStateView(nodeView))(
+        blockView(blockInfo.height.toLong, new Hash(blockId.toBytes), _)
+      )
+    }
   }
 
   @RpcMethod("eth_getBlockTransactionCountByHash")
@@ -235,7 +392,7 @@ class EthService(
   @RpcOptionalParameters(1)
   @NotAllowedOnSeederNode
   def call(params: TransactionArgs, input: Object): Array[Byte] = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val tag = getBlockTagByEip1898Input(nodeView, input)
       doCall(nodeView, params, tag)
     }
@@ -258,6 +415,7 @@ class EthService(
         params.toTransaction(
           networkParams,
           nodeView.history,
+          nodeView.state,
           nodeView.pool,
           () => doEstimateGas(nodeView, params, "pending")
         )
@@ -325,11 +483,11 @@ class EthService(
   }
 
   private def doEstimateGas(nodeView: NV, params: TransactionArgs, tag: String): BigInteger = {
-    // Binary search the gas requirement, as it may be higher than the amount used
-    val lowBound = GasUtil.TxGas.subtract(BigInteger.ONE)
+    val startTime = System.nanoTime()
+    var probes = 0
     // Determine the highest gas limit can be used during the estimation.
     var highBound = params.gas
-    getStateViewAtTag(nodeView, tag) { (tagStateView, blockContext) =>
+    val requiredGasLimit = getStateViewAtTag(nodeView, tag) { (tagStateView, blockContext) =>
       if (highBound == null || highBound.compareTo(GasUtil.TxGas) < 0) {
         highBound = blockContext.blockGasLimit
       }
@@ -351,29 +509,33 @@ class EthService(
           highBound = allowance
         }
       }
-    }
-    if (highBound.compareTo(settings.globalRpcGasCap) > 0) {
-      highBound = settings.globalRpcGasCap
-    }
-    // lambda that tests a given gas limit, returns true on successful execution, false on out-of-gas error
-    // other exceptions are not caught as the call would not succeed with any amount of gas
-    val check = (gas: BigInteger) =>
-      try {
+      if (highBound.compareTo(settings.globalRpcGasCap) > 0) {
+        highBound = settings.globalRpcGasCap
+      }
+      // All the probes are executed on the same view, reverting the changes of each one before the next
+      val revision = tagStateView.snapshot
+      // lambda that tests a given gas limit, returns true on successful execution, false on out-of-gas error,
+      // along with the used gas and the gas refund counter of the execution
+      // other exceptions are not caught as the call would not succeed with any amount of gas
+      val check = (gas: BigInteger) => {
+        probes += 1
         params.gas = gas
-        doCall(nodeView, params, tag)
-        (true, None)
-      } catch {
-        case err: ExecutionRevertedException => (false, Some(err))
-        case _: ExecutionFailedException => (false, None)
-        case _: IntrinsicGasException => (false, None)
+        val msg = params.toMessage(blockContext.baseFee, settings.globalRpcGasCap)
+        val gasPool = new GasPool(msg.getGasLimit)
+        try {
+          tagStateView.applyMessage(msg, gasPool, blockContext)
+          (true, None, gasPool.getUsedGas, tagStateView.getRefund)
+        } catch {
+          case err: ExecutionRevertedException => (false, Some(err), gasPool.getUsedGas, BigInteger.ZERO)
+          case _: ExecutionFailedException => (false, None, gasPool.getUsedGas, BigInteger.ZERO)
+          case _: IntrinsicGasException => (false, None, BigInteger.ZERO, BigInteger.ZERO)
+        } finally {
+          tagStateView.revertToSnapshot(revision)
+        }
       }
-    // Execute the binary search and hone in on an executable gas limit
-    // We need to do a search because the gas required during execution is not necessarily equal to the consumed
-    // gas after the execution. See https://github.com/ethereum/go-ethereum/commit/682875adff760a29a2bb0024190883e4b4dd5d72
-    val requiredGasLimit = binarySearch(lowBound, highBound)(check(_)._1)
-    // Reject the transaction as invalid if it still fails at the highest allowance
-    if (requiredGasLimit == highBound) {
-      val (success, reverted) = check(highBound)
+      // Execute once with the highest allowance: reject the transaction as invalid if it fails, otherwise the amount
+      // of gas used is a lower bound for the gas limit.
+      val (success, reverted, usedGas, refund) = check(highBound)
       if (!success) {
         val error = reverted
           .map(err => {
@@ -384,7 +546,24 @@ class EthService(
           .getOrElse(RpcError.fromCode(RpcCode.InvalidParams, s"gas required exceeds allowance ($highBound)"))
         throw new RpcException(error)
       }
+      var lowBound = GasUtil.TxGas.subtract(BigInteger.ONE).max(usedGas.subtract(BigInteger.ONE))
+      var upperBound = highBound
+      // Most calls succeed with the used gas plus the refund, once the 1/64th of the gas withheld by every nested call
+      // and the call stipend are accounted for: try it first to narrow the search to a small range.
+      val optimisticGasLimit = usedGas.add(refund).add(GasUtil.CallStipend)
+        .multiply(BigInteger.valueOf(64)).divide(BigInteger.valueOf(63))
+      if (optimisticGasLimit.compareTo(upperBound) < 0 && optimisticGasLimit.compareTo(lowBound) > 0) {
+        if (check(optimisticGasLimit)._1) upperBound = optimisticGasLimit
+        else lowBound = optimisticGasLimit
+      }
+      // Execute the binary search and hone in on an executable gas limit
+      // We need to do a search because the gas required during execution is not necessarily equal to the consumed
+      // gas after the execution. See https://github.com/ethereum/go-ethereum/commit/682875adff760a29a2bb0024190883e4b4dd5d72
+      binarySearch(lowBound, upperBound)(check(_)._1)
     }
+    val duration = System.nanoTime() - startTime
+    estimateGasMetrics.record(probes, duration)
+    log.debug(s"Estimated gas $requiredGasLimit with $probes probes in ${duration / 1000} us")
     requiredGasLimit
   }
 
@@ -392,14 +571,14 @@ class EthService(
   @RpcOptionalParameters(1)
   @NotAllowedOnSeederNode
   def estimateGas(params: TransactionArgs, tag: String): BigInteger = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       doEstimateGas(nodeView, params, tag)
     }
   }
 
   @RpcMethod("eth_blockNumber")
-  def blockNumber: BigInteger = applyOnAccountView { nodeView =>
-    BigInteger.valueOf(nodeView.history.getCurrentHeight)
+  def blockNumber: BigInteger = readOnAccountView { nodeView =>
+    BigInteger.valueOf(currentHeight(nodeView))
   }
 
   @RpcMethod("eth_chainId")
@@ -408,7 +587,7 @@ class EthService(
   @RpcMethod("eth_getBalance")
   @RpcOptionalParameters(1)
   def getBalance(address: Address, input: Object): BigInteger = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val tag = getBlockTagByEip1898Input(nodeView, input)
       getStateViewAtTag(nodeView, tag) { (tagStateView, _) =>
         tagStateView.getBalance(address)
@@ -447,7 +626,7 @@ class EthService(
   @RpcMethod("eth_getTransactionCount")
   @RpcOptionalParameters(1)
   def getTransactionCount(address: Address, input: Object): BigInteger = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val tag = getBlockTagByEip1898Input(nodeView, input)
       getStateViewAtTag(nodeView, tag) { (tagStateView, _) =>
         tagStateView.getNonce(address)
@@ -461,17 +640,17 @@ class EthService(
    */
   private def getBlockById(nodeView: NV, blockId: ModifierId): (AccountBlock, SidechainBlockInfo) = {
     val (block, blockInfo) = if (blockId == null) {
-      val pendingBlock = getPendingBlock(nodeView).getOrElse(throw BlockNotFoundException())
+      val pendingBlockState = getPendingBlockState(nodeView).getOrElse(throw BlockNotFoundException())
       (
-        pendingBlock,
-        getPendingBlockInfo(nodeView)
+        pendingBlockState.block,
+        pendingBlockState.blockInfo
       )
     } else {
       (
         nodeView.history
           .getStorageBlockById(blockId)
           .getOrElse(throw BlockNotFoundException()),
-        nodeView.history.blockInfoById(blockId)
+        blockInfoById(nodeView, blockId)
       )
     }
     (block, blockInfo)
@@ -486,7 +665,7 @@ class EthService(
     val blockInfo = if (blockId == null) {
       getPendingBlockInfo(nodeView)
     } else {
-      nodeView.history.blockInfoById(blockId)
+      blockInfoById(nodeView, blockId)
     }
     blockInfo
   }
@@ -514,9 +693,9 @@ class EthService(
 
   private def getStateViewAtTag[A](nodeView: NV, tag: String)(fun: (StateDbAccountStateView, BlockContext) => A): A = {
     val (block, blockInfo) = getBlockByTag(nodeView, tag)
-    val blockContext = getBlockContext(block, blockInfo, nodeView.history)
+    val blockContext = getBlockContext(block, blockInfo, blockHashProvider(nodeView))
     if (tag == "pending") {
-      using(getPendingStateView(nodeView, block, blockInfo))(fun(_, blockContext))
+      withPendingStateView(nodeView)(fun(_, blockContext))
     } else {
       using(nodeView.state.getStateDbViewFromRoot(block.header.stateRoot))(fun(_, blockContext))
     }
@@ -524,10 +703,10 @@ class EthService(
 
 
   private def getStateViewAndStateRootAtTag[A](nodeView: NV, tag: String)(fun: (StateDbAccountStateView, Hash) => A): A = {
-    val (block, blockInfo) = getBlockByTag(nodeView, tag)
+    val (block, _) = getBlockByTag(nodeView, tag)
     val stateRootHash = new Hash(block.header.stateRoot)
     if (tag == "pending") {
-      using(getPendingStateView(nodeView, block, blockInfo))(fun(_, stateRootHash))
+      withPendingStateView(nodeView)(fun(_, stateRootHash))
     } else {
       using(nodeView.state.getStateDbViewFromRoot(block.header.stateRoot))(fun(_, stateRootHash))
     }
@@ -537,12 +716,12 @@ class EthService(
   private def parseBlockTag(nodeView: NV, tag: String): Int = {
     tag match {
       case "earliest" => 1
-      case "finalized" | "safe" => nodeView.history.getCurrentHeight match {
+      case "finalized" | "safe" => currentHeight(nodeView) match {
           case height if height <= 100 => throw BlockNotFoundException()
           case height => height - 100
         }
-      case "latest" | null => nodeView.history.getCurrentHeight
-      case "pending" => nodeView.history.getCurrentHeight + 1
+      case "latest" | null => currentHeight(nodeView)
+      case "pending" => currentHeight(nodeView) + 1
       case height => parseBlockNumber(height)
           .getOrElse(throw new RpcException(RpcError.fromCode(RpcCode.UnknownBlock, "invalid block number or tag")))
     }
@@ -554,17 +733,17 @@ class EthService(
 
   private def getBlockIdByTag(nodeView: NV, tag: String): ModifierId = {
     val blockId = parseBlockTag(nodeView, tag) match {
-      case height if height == nodeView.history.getCurrentHeight + 1 => null
-      case height => ModifierId(nodeView.history.blockIdByHeight(height).getOrElse(throw BlockNotFoundException()))
+      case height if height == currentHeight(nodeView) + 1 => null
+      case height => blockIdByHeight(nodeView, height).getOrElse(throw BlockNotFoundException())
     }
     blockId
   }
 
   private def getBlockTagById(nodeView: NV, id: String): String = {
-    val blockNumberOptional = nodeView.history.getBlockHeightById(id)
+    val blockNumberOptional = blockHeightById(nodeView, ModifierId(id))
     if(blockNumberOptional.isEmpty)
       throw new RpcException(RpcError.fromCode(RpcCode.UnknownBlock, "invalid block hash"))
-    val blockNumber = blockNumberOptional.get()
+    val blockNumber = blockNumberOptional.get
     val blockTag = "0x" + blockNumber.longValue().toHexString
     blockTag
   }
@@ -583,8 +762,7 @@ class EthService(
   private def getBlockIdByHashOrNumber(nodeView: NV, blockHashOrNumber: String): ModifierId = {
     getBlockIdByHash(blockHashOrNumber).getOrElse(
       parseBlockNumber(blockHashOrNumber)
-        .flatMap(nodeView.history.blockIdByHeight)
-        .map(ModifierId(_))
+        .flatMap(blockIdByHeight(nodeView, _))
         .getOrElse(throw new RpcException(new RpcError(RpcCode.InvalidParams, "Invalid block input parameter", null)))
     )
   }
@@ -611,21 +789,19 @@ class EthService(
 
   @RpcMethod("eth_gasPrice")
   def gasPrice: BigInteger = {
-    applyOnAccountView { nodeView =>
-      Backend.calculateGasPrice(nodeView.history, nodeView.history.bestBlock.header.baseFee)
+    readOnAccountView { nodeView =>
+      Backend.calculateGasPrice(nodeView.history, nodeView.state, bestBlock(nodeView).header.baseFee, onSnapshotView.get())
     }
   }
 
   private def getTransactionAndReceipt(transactionHash: Hash)
       : Option[(AccountBlock, EthereumTransaction, EthereumReceipt)] = {
-    applyOnAccountView { nodeView =>
-      using(nodeView.state.getView) { stateView =>
+    readOnAccountView { nodeView =>
+      using(latestStateView(nodeView)) { stateView =>
         stateView
           .getTransactionReceipt(transactionHash.toBytes)
           .flatMap(receipt => {
-            nodeView.history
-              .blockIdByHeight(receipt.blockNumber)
-              .map(ModifierId(_))
+            blockIdByHeight(nodeView, receipt.blockNumber)
               .flatMap(nodeView.history.getStorageBlockById)
               .map(block => {
                 val tx = block.transactions(receipt.transactionIndex).asInstanceOf[EthereumTransaction]
@@ -680,6 +856,8 @@ class EthService(
   }
 
   private def getPendingBlock(nodeView: NV): Option[AccountBlock] = {
+    // the pending block is built from the mempool, which is only consistent on the live node view
+    requireLiveView()
     new AccountForgeMessageBuilder(new MainchainSynchronizer(null), transactionsCompanion, networkParams, false)
       .getPendingBlock(nodeView)
   }
@@ -701,27 +879,72 @@ class EthService(
     )
   }
 
-  private def getPendingStateView(
+  /**
+   * Applies the function to the pending block state, taken from the pending block cache: see PendingBlockCache for
+   * when it is rebuilt. When the new pending block only appends transactions to the previous one built on the same
+   * best block, the state of the previous pending block is reused and only the new transactions are applied.
+   */
+  private def usingPendingBlockState[A](nodeView: NV)(f: Option[PendingBlockState] => A): A = {
+    requireLiveView()
+    pendingBlockCache.use(nodeView.history.bestBlockId, nodeView.pool.version) { previous =>
+      getPendingBlock(nodeView).map(buildPendingBlockState(nodeView, _, previous))
+    }(f)
+  }
+
+  private def getPendingBlockState(nodeView: NV): Option[PendingBlockState] = usingPendingBlockState(nodeView)(identity)
+
+  private def buildPendingBlockState(
       nodeView: NV,
       block: AccountBlock,
-      blockInfo: SidechainBlockInfo
-  ): AccountStateView = {
-    val pendingStateView = nodeView.state.getView
-
-    // apply mainchain references
-    val epochNumber = TimeToEpochUtils.timeStampToEpochNumber(networkParams.sidechainGenesisBlockTimestamp, block.timestamp)
-    val ftToSmartContractForkActive = Version1_2_0Fork.get(epochNumber).active
-    for (mcBlockRefData <- block.mainchainBlockReferencesData) {
-      pendingStateView.applyMainchainBlockReferenceData(mcBlockRefData, ftToSmartContractForkActive)
-    }
+      previous: Option[PendingBlockState]
+  ): PendingBlockState = {
+    val blockInfo = getPendingBlockInfo(nodeView)
+    previous match {
+      case Some(prev)
+          if prev.block.mainchainBlockReferencesData.isEmpty && block.mainchainBlockReferencesData.isEmpty &&
+            block.transactions.map(_.id).startsWith(prev.block.transactions.map(_.id)) =>
+        applyPendingTransactions(nodeView, prev.stateView, block, blockInfo, prev.block.transactions.size, prev.gasPool, prev.receipts)
+        new PendingBlockState(block, blockInfo, prev.stateView, prev.gasPool, prev.receipts)
+
+      case _ =>
+        val pendingStateView = nodeView.state.getView
+        try {
+          // apply mainchain references
+          val epochNumber = TimeToEpochUtils.timeStampToEpochNumber(networkParams.sidechainGenesisBlockTimestamp, block.timestamp)
+          val ftToSmartContractForkActive = Version1_2_0Fork.get(epochNumber).active
+          for (mcBlockRefData <- block.mainchainBlockReferencesData) {
+            pendingStateView.applyMainchainBlockReferenceData(mcBlockRefData, ftToSmartContractForkActive)
+          }
 
-    val gasPool = new GasPool(block.header.gasLimit)
+          val gasPool = new GasPool(block.header.gasLimit)
+          val receipts = new ListBuffer[EthereumReceipt]()
+          applyPendingTransactions(nodeView, pendingStateView, block, blockInfo, 0, gasPool, receipts)
+          new PendingBlockState(block, blockInfo, pendingStateView, gasPool, receipts)
+        } catch {
+          case e: Throwable =>
+            pendingStateView.close()
+            throw e
+        }
+    }
+  }
 
-    val receiptList = new ListBuffer[EthereumReceipt]()
-    var cumGasUsed: BigInteger = BigInteger.ZERO
+  /**
+   * Applies the transactions of the pending block starting from the given index, on top of a state view where the
+   * previous ones were already applied with the given gas pool and receipts.
+   */
+  private def applyPendingTransactions(
+      nodeView: NV,
+      pendingStateView: AccountStateView,
+      block: AccountBlock,
+      blockInfo: SidechainBlockInfo,
+      fromIndex: Int,
+      gasPool: GasPool,
+      receiptList: ListBuffer[EthereumReceipt]
+  ): Unit = {
+    var cumGasUsed: BigInteger = receiptList.lastOption.map(_.consensusDataReceipt.cumulativeGasUsed).getOrElse(BigInteger.ZERO)
 
     // apply transactions
-    for ((tx, i) <- block.transactions.zipWithIndex) {
+    for ((tx, i) <- block.transactions.zipWithIndex.drop(fromIndex)) {
       pendingStateView.applyTransaction(tx, i, gasPool, getBlockContext(block, blockInfo, nodeView.history)) match {
         case Success(consensusDataReceipt) =>
           val txGasUsed = consensusDataReceipt.cumulativeGasUsed.subtract(cumGasUsed)
@@ -763,26 +986,47 @@ class EthService(
     pendingStateView.updateTransactionReceipts(receiptList)
 
     // update next base fee
-    pendingStateView.updateNextBaseFee(FeeUtils.calculateNextBaseFee(block, networkParams))
-
-    pendingStateView
+    pendingStateView.updateNextBaseFee(calculateNextBaseFee(block, networkParams))
   }
 
+  /**
+   * Applies the given function to the state view of the pending block, under the lock of the pending block cache. The
+   * changes made by the function are reverted afterwards, so that the view can be shared by the following calls.
+   * If the changes can't be reverted, e.g. because the function finalized them, the pending state is discarded.
+   */
+  private def withPendingStateView[A](nodeView: NV)(fun: AccountStateView => A): A =
+    usingPendingBlockState(nodeView) { pendingStateOpt =>
+      val pendingState = pendingStateOpt.getOrElse(throw BlockNotFoundException())
+      val revision = pendingState.stateView.snapshot
+      try {
+        fun(pendingState.stateView)
+      } finally {
+        Try(pendingState.stateView.revertToSnapshot(revision)) match {
+          case Failure(e) =>
+            log.warn("Unable to revert the pending state view, discarding it", e)
+            pendingBlockCache.discard()
+          case _ =>
+        }
+      }
+    }
+
   private def blockTransactionByIndex(getBlockId: NV => ModifierId, index: BigInteger): EthereumTransactionView = {
     val txIndex = index.intValueExact()
     applyOnAccountView { nodeView =>
       try {
         val blockId = getBlockId(nodeView)
-        val (block, blockInfo): (AccountBlock, SidechainBlockInfo) = getBlockById(nodeView, blockId)
-        val view = if (blockId == null) getPendingStateView(nodeView, block, blockInfo) else nodeView.state.getView
+        val (block, _): (AccountBlock, SidechainBlockInfo) = getBlockById(nodeView, blockId)
         block.transactions
           .drop(txIndex)
           .headOption
           .map(_.asInstanceOf[EthereumTransaction])
-          .flatMap(tx =>
-            using(view)(_.getTransactionReceipt(BytesUtils.fromHexString(tx.id)))
-              .map(new EthereumTransactionView(tx, _, block.header.baseFee))
-          ).orNull
+          .flatMap { tx =>
+            val txHash = BytesUtils.fromHexString(tx.id)
+            val receipt =
+              if (blockId == null) withPendingStateView(nodeView)(_.getTransactionReceipt(txHash))
+              else using(latestStateView(nodeView))(_.getTransactionReceipt(txHash))
+            receipt.map(new EthereumTransactionView(tx, _, block.header.baseFee))
+          }.orNull
       } catch {
         case _: BlockNotFoundException => null
       }
@@ -793,8 +1037,8 @@ class EthService(
   def getTransactionReceipt(transactionHash: Hash): EthereumReceiptView = {
     getTransactionAndReceipt(transactionHash).map { case (block, tx, receipt) =>
       // count the number of logs in the block before this transaction
-      val firstLogIndex = applyOnAccountView { nodeView =>
-        using(nodeView.state.getView) { stateView =>
+      val firstLogIndex = readOnAccountView { nodeView =>
+        using(latestStateView(nodeView)) { stateView =>
           block.sidechainTransactions
             .take(receipt.transactionIndex)
             .map(_.id.toBytes)
@@ -815,19 +1059,24 @@ class EthService(
     } catch {
       case err: RuntimeException => throw new RpcException(RpcError.fromCode(RpcCode.InvalidParams, err.getMessage))
     }
-    // submit tx to sidechain transaction actor
-    val submit = (sidechainTransactionActorRef ? BroadcastTransaction(tx)).asInstanceOf[Future[Future[ModifierId]]]
-    // wait for submit
-    val validate = Await.result(submit, timeout.duration)
-    // wait for validation of the transaction
-    val txHash = Await.result(validate, timeout.duration)
+    val txHash = mempoolAdmission match {
+      // add the tx to the mempool on this thread
+      case Some(admission) => admission.submit(tx).get
+      case None =>
+        // submit tx to sidechain transaction actor
+        val submit = (sidechainTransactionActorRef ? BroadcastTransaction(tx)).asInstanceOf[Future[Future[ModifierId]]]
+        // wait for submit
+        val validate = Await.result(submit, timeout.duration)
+        // wait for validation of the transaction
+        Await.result(validate, timeout.duration)
+    }
     new Hash(idToBytes(txHash))
   }
 
   @RpcMethod("eth_getCode")
   @RpcOptionalParameters(1)
   def getCode(address: Address, input: Object): Array[Byte] = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val tag = getBlockTagByEip1898Input(nodeView, input)
       getStateViewAtTag(nodeView, tag) { (tagStateView, _) =>
         Option.apply(tagStateView.getCode(address)).getOrElse(Array.emptyByteArray)
@@ -903,7 +1152,7 @@ class EthService(
   @RpcMethod("debug_traceBlockByNumber")
   @RpcOptionalParameters(1)
   def traceBlockByNumber(number: String, config: TraceOptions): List[JsonNode] = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       try {
         traceBlockById(nodeView, getBlockIdByTag(nodeView, number), config)
       } catch {
@@ -915,7 +1164,7 @@ class EthService(
   @RpcMethod("debug_traceBlockByHash")
   @RpcOptionalParameters(1)
   def traceBlockByHash(hash: Hash, config: TraceOptions): List[JsonNode] = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       try {
         traceBlockById(nodeView, bytesToId(hash.toBytes), config)
       } catch {
@@ -936,7 +1185,7 @@ class EthService(
         throw new RpcException(RpcError.fromCode(RpcCode.InvalidParams, s"transaction not found: $transactionHash"))
       )
 
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       getStateViewAtTag(nodeView, (blockNumber - 1).toString) { (tagStateView, blockContext) =>
         // apply mainchain references
         val epochNumber = TimeToEpochUtils.timeStampToEpochNumber(networkParams.sidechainGenesisBlockTimestamp, block.timestamp)
@@ -971,7 +1220,7 @@ class EthService(
   @RpcMethod("debug_traceCall")
   @RpcOptionalParameters(1)
   def traceCall(params: TransactionArgs, tag: String, config: TraceOptions): JsonNode = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       // get block info
       val blockInfo = getBlockInfoById(nodeView, getBlockIdByHashOrTag(nodeView, tag))
 
@@ -994,7 +1243,7 @@ class EthService(
 
   @RpcMethod("zen_getForwardTransfers")
   def getForwardTransfers(blockHashOrNumber: String): ForwardTransfersView = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       nodeView.history
         .getStorageBlockById(getBlockIdByHashOrNumber(nodeView, blockHashOrNumber))
         .map(getForwardTransfersForBlock(_).asJava)
@@ -1005,7 +1254,7 @@ class EthService(
 
   @RpcMethod("zen_getFeePayments")
   def getFeePayments(blockHashOrNumber: String): FeePaymentsView = {
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val feePaymentsInfo = nodeView.history
         .feePaymentsInfo(getBlockIdByHashOrNumber(nodeView, blockHashOrNumber))
         .getOrElse(AccountFeePaymentsInfo(Seq.empty))
@@ -1018,7 +1267,7 @@ class EthService(
   @RpcOptionalParameters(1)
   def getStorageAt(address: Address, key: BigInteger, input: Object): Hash = {
     val storageKey = BigIntegerUtil.toUint256Bytes(key)
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val tag = getBlockTagByEip1898Input(nodeView, input)
       getStateViewAtTag(nodeView, tag) { (stateView, _) =>
         new Hash(stateView.getAccountStorage(address, storageKey))
@@ -1030,7 +1279,7 @@ class EthService(
   @RpcOptionalParameters(1)
   def getProof(address: Address, keys: Array[BigInteger], input: Object): ProofAccountResult = {
     val storageKeys = keys.map(BigIntegerUtil.toUint256Bytes)
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       try {
         val tag = getBlockTagByEip1898Input(nodeView, input)
         getStateViewAndStateRootAtTag(nodeView, tag) { (stateView, stateRootHash) =>
@@ -1060,10 +1309,10 @@ class EthService(
       rewardPercentiles: Array[Double]
   ): EthereumFeeHistoryView = {
     val percentiles = sanitizePercentiles(rewardPercentiles)
-    applyOnAccountView { nodeView =>
+    readOnAccountView { nodeView =>
       val (requestedBlock, requestedBlockInfo) = getBlockByTag(nodeView, if (newestBlock != "pending") newestBlock else "latest")
       // limit the range of blocks by the number of available blocks and cap at 1024
-      val blocks = blockCount.intValueExact().min(requestedBlockInfo.height).min(1024)
+      val blocks = blockCount.intValueExact().min(requestedBlockInfo.height).min(BlockFeeStats.MaxFeeHistoryBlocks)
       // geth comment: returning with no data and no error means there are no retrievable blocks
       if (blocks < 1) {
         new EthereumFeeHistoryView()
@@ -1076,16 +1325,20 @@ class EthService(
         val gasUsedRatio = new Array[Double](blocks)
         val reward = if (percentiles.nonEmpty) new Array[Array[BigInteger]](blocks) else null
 
-        using(nodeView.state.getView) { stateView =>
-          for (i <- 0 until blocks) {
-            val block = nodeView.history
-              .blockIdByHeight(oldestBlock + i)
-              .map(ModifierId(_))
-              .flatMap(nodeView.history.getStorageBlockById)
-              .get
-            baseFeePerGas(i) = block.header.baseFee
-            gasUsedRatio(i) = block.header.gasUsed.doubleValue() / block.header.gasLimit.doubleValue()
-            if (percentiles.nonEmpty) reward(i) = Backend.getRewardsForBlock(block, stateView, percentiles)
+        for (i <- 0 until blocks) {
+          nodeView.state.getBlockFeeStats(oldestBlock + i) match {
+            case Some(stats) =>
+              baseFeePerGas(i) = stats.baseFee
+              gasUsedRatio(i) = stats.gasUsedRatio
+              if (percentiles.nonEmpty) reward(i) = stats.rewards(percentiles)
+            case None =>
+              // blocks applied before fee records were introduced, or whose record was pruned
+              val block = blockIdByHeight(nodeView, oldestBlock + i)
+                .flatMap(nodeView.history.getStorageBlockById)
+                .get
+              baseFeePerGas(i) = block.header.baseFee
+              gasUsedRatio(i) = block.header.gasUsed.doubleValue() / block.header.gasLimit.doubleValue()
+              if (percentiles.nonEmpty) reward(i) = using(latestStateView(nodeView))(Backend.getRewardsForBlock(block, _, percentiles))
           }
         }
         // calculate baseFee for the next block after the requested range
@@ -1117,8 +1370,8 @@ class EthService(
   @RpcMethod("eth_getLogs")
   def getLogs(query: FilterQuery): Seq[EthereumLogView] = {
     try {
-      applyOnAccountView({ nodeView =>
-        using(nodeView.state.getView) { stateView =>
+      readOnAccountView({ nodeView =>
+        using(latestStateView(nodeView)) { stateView =>
           if (query.blockHash != null) {
             // we currently need to get the block by blockhash and then retrieve the receipt for each tx via tx-hash
             // geth retrieves all logs of a block by blockhash
@@ -1133,7 +1386,7 @@ class EthService(
               throw new RpcException(RpcError.fromCode(RpcCode.InvalidParams,
                 "negative values not admitted for fromBlock and toBlock parameters"))
             }
-            val maxHeight = nodeView.history.getCurrentHeight;
+            val maxHeight = currentHeight(nodeView);
             if (start > maxHeight +1){
               throw new RpcException(RpcError.fromCode(RpcCode.InvalidParams,
                 "fromBlock value too high (max height in local history =  "+maxHeight+")"))
@@ -1148,21 +1401,41 @@ class EthService(
             }
 
             var resultCount = 0
-            // get the logs from all blocks in the range into one flat list
-            (start to end).flatMap(blockNumber => {
-              val logs = nodeView.history
-                .blockIdByHeight(blockNumber)
-                .map(ModifierId(_))
-                .flatMap(nodeView.history.getStorageBlockById)
-                .map(RpcFilter.getBlockLogs(stateView, _, query))
-                .getOrElse(Seq.empty)
-
+            val checkResultCount = (logs: Seq[EthereumLogView]) => {
               resultCount += logs.length
               if (resultCount > settings.getLogsSizeLimit)
                 throw new RpcException(RpcError.fromCode(RpcCode.InvalidParams, "Log response size exceeded. You can make eth_getLogs requests with up to a " + settings.getLogsSizeLimit + " response size. Limit some parameters and try again."))
-
               logs
-            })
+            }
+            // compile the query for the bloom tests once for the whole range
+            val bloomQuery = Some(BloomQuery(query))
+            // get the logs from a single block by scanning all its receipts
+            val scanBlockLogs = (blockNumber: Int) => checkResultCount(
+              blockIdByHeight(nodeView, blockNumber)
+                .flatMap(nodeView.history.getStorageBlockById)
+                .map(RpcFilter.getBlockLogs(stateView, _, query, bloomQuery))
+                .getOrElse(Seq.empty)
+            )
+
+            // The log index covers the committed blocks starting from the height it was introduced at, and can only
+            // be used when the query filters by address or topic. Blocks outside the indexed range are scanned.
+            val filtered = query.address.length > 0 || query.topics.exists(_.length > 0)
+            val indexedRange = stateView.getLogIndexStartHeight
+              .filter(_ => filtered)
+              .map(indexStart => (start.max(indexStart), end.min(maxHeight)))
+              .filter { case (from, to) => from <= to }
+
+            // get the logs from all blocks in the range into one flat list
+            indexedRange match {
+              case Some((indexedFrom, indexedTo)) =>
+                (start until indexedFrom).flatMap(scanBlockLogs) ++
+                  // one more log than the remaining response size is enough to detect that the limit is exceeded
+                  checkResultCount(RpcFilter.getIndexedLogs(stateView, query, indexedFrom, indexedTo,
+                    settings.getLogsSizeLimit - resultCount + 1)) ++
+                  (indexedTo + 1 to end).flatMap(scanBlockLogs)
+              case None =>
+                (start to end).flatMap(scanBlockLogs)
+            }
 
           }
         }
@@ -1179,3 +1452,8 @@ class EthService(
   }
 
 }
+
+/**
+ * Thrown when a function executed against the node view snapshot needs the live node view.
+ */
+private class LiveViewRequiredException extends RuntimeException("live node view required", null, false, false)
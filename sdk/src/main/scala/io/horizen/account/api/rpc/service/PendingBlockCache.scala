@@ -0,0 +1,56 @@
+package io.horizen.account.api.rpc.service
+
+import sparkz.util.ModifierId
+
+import scala.util.Try
+
+/**
+ * Cache of the last pending block state, built on top of the best block with the transactions of the mempool.
+ *
+ * The cached state is keyed by the best block it was built on and the mempool version: any mempool change rebuilds it
+ * at the next call, so the pending state always includes the last accepted transactions. On the same best block the
+ * builder gets the previous state, to apply only the transactions added since; a new best block always rebuilds it
+ * from scratch.
+ *
+ * The cached state is used under the lock of the cache, not the lock of its owner. A replaced state is released, with
+ * the state replacing it: the builder may have extended the previous state instead of creating a new one.
+ *
+ * @param release releases a replaced state, given the state replacing it if any
+ */
+private[service] class PendingBlockCache[S](release: (S, Option[S]) => Unit) {
+
+  private case class Key(bestBlockId: ModifierId, mempoolVersion: Long)
+
+  private case class Entry(key: Key, state: Option[S])
+
+  private val lock = new Object
+  private var entry: Option[Entry] = None
+
+  /**
+   * Applies the function to the state for the given best block and mempool version, under the lock of the cache.
+   * The builder gets the previous state if it was built on the same best block, so it can extend it.
+   */
+  def use[A](bestBlockId: ModifierId, mempoolVersion: Long)(build: Option[S] => Option[S])(f: Option[S] => A): A =
+    lock.synchronized {
+      val key = Key(bestBlockId, mempoolVersion)
+      val state = entry match {
+        case Some(cached) if cached.key == key => cached.state
+        case previous =>
+          entry = None
+          val previousState = previous.flatMap(_.state)
+          val updated = Try(build(previousState.filter(_ => previous.exists(_.key.bestBlockId == bestBlockId))))
+          previousState.foreach(release(_, updated.toOption.flatten))
+          entry = Some(Entry(key, updated.get))
+          entry.get.state
+      }
+      f(state)
+    }
+
+  /**
+   * Drops and releases the cached state, e.g. when it can no longer be used.
+   */
+  def discard(): Unit = lock.synchronized {
+    entry.flatMap(_.state).foreach(release(_, None))
+    entry = None
+  }
+}
@@ -0,0 +1,88 @@
+package io.horizen.account.api.rpc.service
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Histogram of durations, counted in buckets with the given upper bounds in milliseconds, plus one last bucket for
+ * longer durations.
+ */
+class DurationHistogram(val bucketBoundsMillis: Seq[Long] = Seq(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000)) {
+  require(bucketBoundsMillis.nonEmpty && bucketBoundsMillis.sorted == bucketBoundsMillis, "Bucket bounds must be sorted")
+
+  private val buckets = Array.fill(bucketBoundsMillis.size + 1)(new LongAdder())
+  private val stats = new WaitTimeStats
+
+  def record(durationNanos: Long): Unit = {
+    val durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos)
+    val bucket = bucketBoundsMillis.indexWhere(durationMillis <= _) match {
+      case -1 => bucketBoundsMillis.size
+      case index => index
+    }
+    buckets(bucket).increment()
+    stats.record(durationNanos)
+  }
+
+  /**
+   * Number of samples of every bucket, the last one counting the samples above the greatest bound.
+   */
+  def getBucketCounts: Seq[Long] = buckets.map(_.sum()).toSeq
+
+  def getCount: Long = stats.getCount
+
+  def getAverageMillis: Double = stats.getAverageMillis
+
+  def getMaxMillis: Double = stats.getMaxMillis
+
+  def getStats: DurationHistogramStats =
+    DurationHistogramStats(getCount, getAverageMillis, getMaxMillis, bucketBoundsMillis, getBucketCounts)
+
+  override def toString: String = {
+    val labels = bucketBoundsMillis.map(bound => s"<=${bound}ms") :+ s">${bucketBoundsMillis.last}ms"
+    labels.zip(getBucketCounts).map { case (label, count) => s"$label:$count" }.mkString(s"$stats, [", ", ", "]")
+  }
+}
+
+/**
+ * Values of a DurationHistogram at a given time, as served by the node API.
+ */
+case class DurationHistogramStats(
+    count: Long,
+    averageMillis: Double,
+    maxMillis: Double,
+    bucketBoundsMillis: Seq[Long],
+    bucketCounts: Seq[Long]
+)
+
+/**
+ * Values of the RpcBatchMetrics at a given time, as served by the node API.
+ */
+case class RpcBatchStats(
+    duration: DurationHistogramStats,
+    requests: Long,
+    rejected: Long,
+    rejectedRequests: Long,
+    timedOut: Long
+)
+
+/**
+ * Execution metrics of the JSON-RPC batches:
+ *  - duration: time to execute all the requests of a batch
+ *  - requests: number of requests of the executed batches
+ *  - rejected: number of batches rejected for exceeding the size limit
+ *  - rejectedRequests: number of requests rejected by the full queue of the batch pool
+ *  - timedOut: number of requests not completed within the request timeout
+ */
+class RpcBatchMetrics {
+  val duration = new DurationHistogram
+  val requests = new LongAdder()
+  val rejected = new LongAdder()
+  val rejectedRequests = new LongAdder()
+  val timedOut = new LongAdder()
+
+  def getStats: RpcBatchStats =
+    RpcBatchStats(duration.getStats, requests.sum(), rejected.sum(), rejectedRequests.sum(), timedOut.sum())
+
+  override def toString: String = s"duration[$duration], requests=${requests.sum()}, rejected=${rejected.sum()}, " +
+    s"rejectedRequests=${rejectedRequests.sum()}, timedOut=${timedOut.sum()}"
+}
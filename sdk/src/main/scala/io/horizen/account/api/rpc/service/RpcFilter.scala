@@ -4,26 +4,86 @@ import io.horizen.account.api.rpc.types.{EthereumLogView, FilterQuery}
 import io.horizen.evm.{Address, Hash}
 import io.horizen.account.block.AccountBlock
 import io.horizen.account.state.AccountStateView
-import io.horizen.account.utils.Bloom
+import io.horizen.account.state.receipt.EthereumReceipt
+import io.horizen.account.storage.{LogIndex, LogIndexPosting}
+import io.horizen.account.utils.{Bloom, BloomBits}
+import io.horizen.utils.ByteArrayWrapper
+
+import scala.collection.mutable
+
+/**
+ * Address and topic queries of a filter compiled to the bits they set in a bloom filter, so that they can be tested
+ * against the blooms of any number of blocks without hashing nor allocating anything.
+ */
+final class BloomQuery(addresses: Array[BloomBits], topics: Array[Array[BloomBits]]) {
+
+  private def testAny(bloom: Bloom, alternatives: Array[BloomBits]): Boolean = {
+    var i = 0
+    while (i < alternatives.length) {
+      if (bloom.test(alternatives(i))) return true
+      i += 1
+    }
+    false
+  }
+
+  /**
+   * Tests if a bloom filter matches the address and topic queries. Replication of the original implementation in
+   * GETH, see: github.com/ethereum/go-ethereum@v1.10.26/eth/filters/filter.go:328
+   */
+  def matches(bloom: Bloom): Boolean = {
+    // bail out if an address filter is given and none of the addresses are contained in the bloom filter
+    if (addresses.length > 0 && !testAny(bloom, addresses)) return false
+    var i = 0
+    while (i < topics.length) {
+      // empty rule set == wildcard, otherwise test if at least one of the given topics is contained
+      if (topics(i).length > 0 && !testAny(bloom, topics(i))) return false
+      i += 1
+    }
+    true
+  }
+}
+
+object BloomQuery {
+  def apply(addresses: Array[Address], topics: Array[Array[Hash]]): BloomQuery =
+    new BloomQuery(addresses.map(address => Bloom.bitsOf(address.toBytes)), topics.map(_.map(topic => Bloom.bitsOf(topic.toBytes))))
+
+  def apply(query: FilterQuery): BloomQuery = apply(query.address, query.topics)
+}
 
 object RpcFilter {
   /**
    * Get all logs of a block matching the given query. Replication of the original implementation in GETH, see:
    * github.com/ethereum/go-ethereum@v1.10.26/eth/filters/filter.go:227
+   *
+   * @param bloomQuery the query compiled for bloom tests, to be passed when getting the logs of many blocks
    */
   def getBlockLogs(
                     stateView: AccountStateView,
                     block: AccountBlock,
-                    query: FilterQuery
+                    query: FilterQuery,
+                    bloomQuery: Option[BloomQuery] = None
                   ): Seq[EthereumLogView] = {
     val filtered = query.address.length > 0 || query.topics.length > 0
-    if (filtered && !testBloom(block.header.logsBloom, query.address, query.topics)) {
+    if (filtered && !bloomQuery.getOrElse(BloomQuery(query)).matches(block.header.logsBloom)) {
       // bail out if address or topic queries are given, but they fail the bloom filter test
       return Seq.empty
     }
-    // retrieve all logs of the given block
+    val logs = getAllBlockLogs(stateView, block)
+    if (filtered) {
+      // return filtered logs
+      logs.filter(testLog(query.address, query.topics))
+    } else {
+      // return all logs
+      logs
+    }
+  }
+
+  /**
+   * Get all logs of a block, in the order they were emitted.
+   */
+  def getAllBlockLogs(stateView: AccountStateView, block: AccountBlock): Seq[EthereumLogView] = {
     var logIndex = 0
-    val logs = block.sidechainTransactions
+    block.sidechainTransactions
       .map(_.id.toBytes)
       .flatMap(stateView.getTransactionReceipt)
       .flatMap(receipt =>
@@ -33,30 +93,60 @@ object RpcFilter {
           logView
         })
       )
-    if (filtered) {
-      // return filtered logs
-      logs.filter(testLog(query.address, query.topics))
-    } else {
-      // return all logs
-      logs
-    }
+  }
+
+  /**
+   * Get all logs in the block range [fromBlock, toBlock] matching the given query, using the log index. The query must
+   * contain at least one address or topic criterion: the most selective one is used to read the candidate logs from
+   * the index, that are then tested against the whole query. The candidates are read in chain order and the reading
+   * stops after maxLogs matching logs, so the cost is proportional to the number of candidates read, regardless of
+   * the size of the range.
+   */
+  def getIndexedLogs(
+                      stateView: AccountStateView,
+                      query: FilterQuery,
+                      fromBlock: Int,
+                      toBlock: Int,
+                      maxLogs: Int = Int.MaxValue
+                    ): Seq[EthereumLogView] = {
+    // every criterion matches any of its terms: the addresses, or the alternatives of a non-wildcard topic position
+    val criteria: Seq[Seq[ByteArrayWrapper]] =
+      Seq(query.address.map(LogIndex.addressTerm).toSeq).filter(_.nonEmpty) ++
+        query.topics.zipWithIndex.collect {
+          case (sub, position) if sub.length > 0 => sub.map(LogIndex.topicTerm(position, _)).toSeq
+        }
+    require(criteria.nonEmpty, "At least one address or topic criterion is required to use the log index")
+
+    val mostSelective = criteria.minBy(_.map(stateView.getLogIndexPostingsCount).sum)
+    // merge of the postings of the terms in chain order, a log matching several terms is taken once
+    val postings = mostSelective.map(stateView.getLogIndexPostings(_, fromBlock, toBlock).buffered)
+    val chainOrder = Ordering.by((posting: LogIndexPosting) => (posting.blockNumber, posting.blockLogIndex))
+    val candidates = Iterator.continually(postings.filter(_.hasNext))
+      .takeWhile(_.nonEmpty)
+      .map { remaining =>
+        val next = remaining.map(_.head).min(chainOrder)
+        remaining.filter(terms => chainOrder.equiv(terms.head, next)).foreach(_.next())
+        next
+      }
+
+    val receipts = mutable.Map[ByteArrayWrapper, Option[EthereumReceipt]]()
+    candidates
+      .flatMap(posting =>
+        receipts
+          .getOrElseUpdate(new ByteArrayWrapper(posting.txHash), stateView.getTransactionReceipt(posting.txHash))
+          .map(receipt => new EthereumLogView(receipt, receipt.consensusDataReceipt.logs(posting.txLogIndex), posting.blockLogIndex))
+      )
+      .filter(testLog(query.address, query.topics))
+      .take(maxLogs)
+      .toList
   }
 
   /**
    * Tests if a bloom filter matches the given address and topic queries. Replication of the original implementation in
    * GETH, see: github.com/ethereum/go-ethereum@v1.10.26/eth/filters/filter.go:328
    */
-  def testBloom(bloom: Bloom, addresses: Array[Address], topics: Array[Array[Hash]]): Boolean = {
-    // bail out if an address filter is given and none of the addresses are contained in the bloom filter
-    if (addresses.length > 0 && !addresses.map(_.toBytes).exists(bloom.test)) {
-      false
-    } else {
-      topics.forall(sub => {
-        // empty rule set == wildcard, otherwise test if at least one of the given topics is contained
-        sub.length == 0 || sub.map(_.toBytes).exists(bloom.test)
-      })
-    }
-  }
+  def testBloom(bloom: Bloom, addresses: Array[Address], topics: Array[Array[Hash]]): Boolean =
+    BloomQuery(addresses, topics).matches(bloom)
 
   /**
    * Tests if a log matches the given address and topic queries. Replication of the original implementation in GETH,
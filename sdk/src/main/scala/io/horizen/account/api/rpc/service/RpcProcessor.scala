@@ -1,38 +1,53 @@
 package io.horizen.account.api.rpc.service
 
 import com.fasterxml.jackson.databind.JsonNode
+import io.horizen.EthServiceSettings
 import io.horizen.account.api.rpc.handler.{RpcException, RpcHandler}
 import io.horizen.account.api.rpc.request.{RpcId, RpcRequest}
 import io.horizen.account.api.rpc.response.RpcResponseError
 import io.horizen.account.api.rpc.utils.{RpcCode, RpcError}
 import io.horizen.account.serialization.EthJsonMapper
+import io.horizen.api.http.ApiResponse
 import sparkz.util.SparkzLogging
 
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ArrayBlockingQueue, RejectedExecutionException, ThreadPoolExecutor, TimeUnit}
+import scala.concurrent.duration.{Duration, DurationInt, FiniteDuration}
+import scala.concurrent.{Await, ExecutionContext, ExecutionContextExecutorService, Future, TimeoutException}
 import scala.jdk.CollectionConverters.asScalaIteratorConverter
 import scala.util.{Failure, Success, Try}
 
 
-case class RpcProcessor(val rpcHandler: RpcHandler) extends SparkzLogging {
+case class RpcProcessor(val rpcHandler: RpcHandler,
+                        settings: EthServiceSettings = EthServiceSettings(),
+                        requestTimeout: FiniteDuration = 5.seconds) extends SparkzLogging {
+
+  val batchMetrics = new RpcBatchMetrics
+
+  // pool executing the requests of the batches, created on first use: the requests exceeding the queue are rejected
+  private lazy val batchContext: ExecutionContextExecutorService = {
+    val threadCounter = new AtomicInteger()
+    ExecutionContext.fromExecutorService(new ThreadPoolExecutor(
+      settings.rpcBatchThreads, settings.rpcBatchThreads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue[Runnable](settings.rpcBatchQueueSize),
+      (runnable: Runnable) => {
+        val thread = new Thread(runnable, s"eth-rpc-batch-${threadCounter.incrementAndGet()}")
+        thread.setDaemon(true)
+        thread
+      }))
+  }
 
   def processEthRpc(body: JsonNode): String = {
-    val requests = if (body.isArray && !body.isEmpty) {
+    val responses = if (body.isArray && !body.isEmpty) {
       // if the input json is an array a batch rpc request will be handled
       // the single rpc request will retrieve from the input json and they will be processed by rpcHandler
       // the position of the elements in the output will reflect their position in the input request
-      body.iterator().asScala.toArray
+      processBatch(body.iterator().asScala.toArray)
     } else {
       // if the input json is not an array a single rpc request will be handled
-      Array(body)
+      Array(processRequest(body))
     }
 
-    val responses = requests.map(json => Try.apply(new RpcRequest(json)).map(rpcHandler.apply) match {
-      case Success(value) => value
-      case Failure(exception: RpcException) => new RpcResponseError(new RpcId(), exception.error);
-      case Failure(exception) =>
-        log.trace(s"internal error on RPC call: $exception")
-        new RpcResponseError(new RpcId(), RpcError.fromCode(RpcCode.InvalidRequest));
-    })
-
     val json = if (responses.length > 1) {
       EthJsonMapper.serialize(responses)
     } else {
@@ -43,4 +58,62 @@ case class RpcProcessor(val rpcHandler: RpcHandler) extends SparkzLogging {
     json
   }
 
+  /**
+   * The requests of a batch are executed in parallel on the batch pool, within the scope of the batch: as allowed by
+   * the JSON-RPC 2.0 specification they are processed in any order, but the responses keep the order of the requests.
+   * The requests not accepted by the full pool queue, or not completed within the request timeout from the start of
+   * the batch, get an error response.
+   */
+  private def processBatch(requests: Array[JsonNode]): Array[ApiResponse] = {
+    if (requests.length > settings.rpcBatchSizeLimit) {
+      batchMetrics.rejected.increment()
+      return Array(new RpcResponseError(new RpcId(),
+        RpcError.fromCode(RpcCode.InvalidRequest, s"batch too large: max ${settings.rpcBatchSizeLimit} requests")))
+    }
+    if (requests.length == 1)
+      return Array(processRequest(requests.head))
+
+    val startTime = System.nanoTime()
+    val scope = rpcHandler.openBatchScope()
+    val deadline = requestTimeout.fromNow
+    val responses = requests.map(json => submit(json, scope.execute[ApiResponse](() => processRequest(json))))
+    val result = requests.zip(responses).map { case (json, response) =>
+      try {
+        Await.result(response, deadline.timeLeft.max(Duration.Zero))
+      } catch {
+        case _: TimeoutException =>
+          batchMetrics.timedOut.increment()
+          new RpcResponseError(requestId(json), new RpcError(RpcCode.InternalError.code, "batch request timed out", null))
+      }
+    }
+    batchMetrics.duration.record(System.nanoTime() - startTime)
+    batchMetrics.requests.add(requests.length)
+    result
+  }
+
+  // a request rejected by the full queue of the pool gets an error response
+  private def submit(json: JsonNode, request: => ApiResponse): Future[ApiResponse] = {
+    try {
+      Future(request)(batchContext)
+    } catch {
+      case _: RejectedExecutionException =>
+        batchMetrics.rejectedRequests.increment()
+        Future.successful(new RpcResponseError(requestId(json), new RpcError(RpcCode.InternalError.code, "RPC batch queue full", null)))
+    }
+  }
+
+  // id of the request, to match the errors produced outside of the request execution: empty if the id is not valid
+  private def requestId(json: JsonNode): RpcId =
+    Option(json.get("id")).flatMap(id => Try(new RpcId(id)).toOption).getOrElse(new RpcId())
+
+  private def processRequest(json: JsonNode): ApiResponse = {
+    Try.apply(new RpcRequest(json)).map(rpcHandler.apply) match {
+      case Success(value) => value
+      case Failure(exception: RpcException) => new RpcResponseError(new RpcId(), exception.error);
+      case Failure(exception) =>
+        log.trace(s"internal error on RPC call: $exception")
+        new RpcResponseError(new RpcId(), RpcError.fromCode(RpcCode.InvalidRequest));
+    }
+  }
+
 }
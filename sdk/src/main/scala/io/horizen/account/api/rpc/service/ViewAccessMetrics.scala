@@ -0,0 +1,56 @@
+package io.horizen.account.api.rpc.service
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.{AtomicLong, LongAdder}
+
+/**
+ * Values of a WaitTimeStats at a given time, as served by the node API.
+ */
+case class WaitTimeValues(count: Long, averageMillis: Double, maxMillis: Double)
+
+/**
+ * Values of the ViewAccessMetrics at a given time, as served by the node API.
+ */
+case class ViewAccessStats(actorQueueWait: WaitTimeValues, snapshotQueueWait: WaitTimeValues)
+
+/**
+ * Time spent by RPC calls waiting in a queue before they start executing on a node view.
+ */
+class WaitTimeStats {
+  private val count = new LongAdder()
+  private val totalNanos = new LongAdder()
+  private val maxNanos = new AtomicLong()
+
+  def record(waitNanos: Long): Unit = {
+    count.increment()
+    totalNanos.add(waitNanos)
+    maxNanos.accumulateAndGet(waitNanos, (current: Long, sample: Long) => Math.max(current, sample))
+  }
+
+  def getCount: Long = count.sum()
+
+  def getAverageMillis: Double = {
+    val samples = getCount
+    if (samples == 0) 0.0 else TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / samples) / 1000.0
+  }
+
+  def getMaxMillis: Double = TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) / 1000.0
+
+  def getValues: WaitTimeValues = WaitTimeValues(getCount, getAverageMillis, getMaxMillis)
+
+  override def toString: String = f"count=$getCount, avg=$getAverageMillis%.3fms, max=$getMaxMillis%.3fms"
+}
+
+/**
+ * Queue wait times of the two RPC execution paths:
+ *  - actorQueueWait: calls sent to the node view holder actor, queued behind block application and other messages
+ *  - snapshotQueueWait: calls executed against the node view snapshot, queued on the snapshot read pool
+ */
+class ViewAccessMetrics {
+  val actorQueueWait = new WaitTimeStats
+  val snapshotQueueWait = new WaitTimeStats
+
+  def getStats: ViewAccessStats = ViewAccessStats(actorQueueWait.getValues, snapshotQueueWait.getValues)
+
+  override def toString: String = s"actorQueueWait[$actorQueueWait], snapshotQueueWait[$snapshotQueueWait]"
+}
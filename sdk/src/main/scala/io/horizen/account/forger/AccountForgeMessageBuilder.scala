@@ -24,8 +24,8 @@ import io.horizen.evm.{Address, Hash}
 import io.horizen.forge.{AbstractForgeMessageBuilder, ForgeFailure, ForgeSuccess, MainchainSynchronizer}
 import io.horizen.params.NetworkParams
 import io.horizen.proof.{Signature25519, VrfProof}
-import io.horizen.proposition.{PublicKey25519Proposition, VrfPublicKey}
-import io.horizen.secret.{PrivateKey25519, Secret}
+import io.horizen.proposition.{Proposition, PublicKey25519Proposition, VrfPublicKey}
+import io.horizen.secret.PrivateKey25519
 import io.horizen.transaction.TransactionSerializer
 import io.horizen.utils.{ByteArrayWrapper, ClosableResourceHandler, DynamicTypedSerializer, ForgingStakeMerklePathInfo, ListSerializer, MerklePath, MerkleTree, TimeToEpochUtils, WithdrawalEpochInfo, WithdrawalEpochUtils}
 import io.horizen.vrf.VrfOutput
@@ -406,43 +406,90 @@ class AccountForgeMessageBuilder(
     // 1. get from history the state root from the header of the block of 2 epochs before
     val stateRoot = getStateRoot(history, nextBlockTimestamp, branchPointInfo)
 
-    // 2. get from stateDb using root above the collection of all forger stakes (ordered)
-    val forgingStakeInfoSeq: Seq[ForgingStakeInfo] = using(state.getStateDbViewFromRoot(stateRoot)) {
-      stateViewFromRoot =>
-        stateViewFromRoot.getOrderedForgingStakesInfoSeq(nextConsensusEpochNumber)
-    }
+    // 2. get the merkle tree of all forger stakes (ordered) of the epoch, computed once per epoch
+    val stakesTree = getForgingStakesMerkleTree(nextConsensusEpochNumber, stateRoot, state)
 
-    // 3. using wallet secrets, filter out the not-mine forging stakes
-    val secrets: Seq[Secret] = wallet.allSecrets().asScala
+    // 3. using wallet secrets, extract path info of mine
+    val walletPubKeys: Set[Proposition] = wallet.allSecrets().asScala.map(e => e.publicImage(): Proposition).toSet
 
-    val walletPubKeys = secrets.map(e => e.publicImage())
+    stakesTree.getMerklePathInfo(walletPubKeys)
+  }
 
-    val filteredForgingStakeInfoSeq = forgingStakeInfoSeq.filter(p => {
-      walletPubKeys.contains(p.blockSignPublicKey) &&
-      walletPubKeys.contains(p.vrfPublicKey)
-    })
+  // Forging stakes merkle tree of the last requested epoch, reused by all the slots of the epoch
+  private var forgingStakesMerkleTreeOpt: Option[ForgingStakesMerkleTree] = None
+
+  private def getForgingStakesMerkleTree(
+      consensusEpochNumber: ConsensusEpochNumber,
+      stateRoot: Array[Byte],
+      state: AccountState
+  ): ForgingStakesMerkleTree = synchronized {
+    val stateRootWrapper = new ByteArrayWrapper(stateRoot)
+    forgingStakesMerkleTreeOpt match {
+      case Some(stakesTree) if stakesTree.consensusEpochNumber == consensusEpochNumber && stakesTree.stateRoot == stateRootWrapper =>
+        stakesTree
+      case _ =>
+        // get from stateDb using root above the collection of all forger stakes (ordered)
+        val forgingStakeInfoSeq: Seq[ForgingStakeInfo] = using(state.getStateDbViewFromRoot(stateRoot)) {
+          stateViewFromRoot =>
+            stateViewFromRoot.getOrderedForgingStakesInfoSeq(consensusEpochNumber)
+        }
+        val stakesTree = new ForgingStakesMerkleTree(consensusEpochNumber, stateRootWrapper, forgingStakeInfoSeq)
+        forgingStakesMerkleTreeOpt = Some(stakesTree)
+        stakesTree
+    }
+  }
 
-    // return an empty seq if we do not have forging stake, that is a legal (negative) result.
-    if (filteredForgingStakeInfoSeq.isEmpty)
-      return Seq()
+  /**
+   * Merkle tree of the ordered forging stakes of a consensus epoch, as of the given state root.
+   * The merkle paths of the wallet forging stakes are computed at the first request and then reused, as long as the
+   * wallet keys don't change.
+   */
+  private class ForgingStakesMerkleTree(
+      val consensusEpochNumber: ConsensusEpochNumber,
+      val stateRoot: ByteArrayWrapper,
+      forgingStakeInfoSeq: Seq[ForgingStakeInfo]
+  ) {
+    private lazy val tree: MerkleTree = MerkleTree.createMerkleTree(forgingStakeInfoSeq.map(info => info.hash).asJava)
+
+    // index of the first leaf of every forging stake hash
+    private lazy val leafIndexes: Map[ByteArrayWrapper, Int] =
+      tree.leaves().asScala.map(leaf => new ByteArrayWrapper(leaf)).zipWithIndex.reverse.toMap
+
+    private var ownMerklePathInfo: Option[(Set[Proposition], Seq[ForgingStakeMerklePathInfo])] = None
+
+    def getMerklePathInfo(walletPubKeys: Set[Proposition]): Seq[ForgingStakeMerklePathInfo] = synchronized {
+      ownMerklePathInfo match {
+        case Some((pubKeys, merklePathInfoSeq)) if pubKeys == walletPubKeys =>
+          merklePathInfoSeq
+        case _ =>
+          val merklePathInfoSeq = calculateMerklePathInfo(walletPubKeys)
+          ownMerklePathInfo = Some((walletPubKeys, merklePathInfoSeq))
+          merklePathInfoSeq
+      }
+    }
+
+    private def calculateMerklePathInfo(walletPubKeys: Set[Proposition]): Seq[ForgingStakeMerklePathInfo] = {
+      // filter out the not-mine forging stakes
+      val filteredForgingStakeInfoSeq = forgingStakeInfoSeq.filter(p => {
+        walletPubKeys.contains(p.blockSignPublicKey) &&
+        walletPubKeys.contains(p.vrfPublicKey)
+      })
 
-    // 4. prepare merkle tree of all forger stakes and extract path info of mine (what is left after 3)
-    val forgingStakeInfoTree = MerkleTree.createMerkleTree(forgingStakeInfoSeq.map(info => info.hash).asJava)
-    val merkleTreeLeaves = forgingStakeInfoTree.leaves().asScala.map(leaf => new ByteArrayWrapper(leaf))
+      // return an empty seq if we do not have forging stake, that is a legal (negative) result.
+      if (filteredForgingStakeInfoSeq.isEmpty)
+        return Seq()
 
-    // Calculate merkle path for all delegated forger stakes
-    val forgingStakeMerklePathInfoSeq: Seq[ForgingStakeMerklePathInfo] =
+      // Calculate merkle path for all delegated forger stakes
       filteredForgingStakeInfoSeq.flatMap(forgingStakeInfo => {
-        merkleTreeLeaves.indexOf(new ByteArrayWrapper(forgingStakeInfo.hash)) match {
-          case -1 =>
+        leafIndexes.get(new ByteArrayWrapper(forgingStakeInfo.hash)) match {
+          case None =>
             log.warn(s"ForgingStakeInfo not a leaf in merkle tree: should never happen: $forgingStakeInfo ")
             None
-          case index =>
-            Some(ForgingStakeMerklePathInfo(forgingStakeInfo, forgingStakeInfoTree.getMerklePathForLeaf(index)))
+          case Some(index) =>
+            Some(ForgingStakeMerklePathInfo(forgingStakeInfo, tree.getMerklePathForLeaf(index)))
         }
       })
-
-    forgingStakeMerklePathInfoSeq
+    }
   }
 
   def getPendingBlock(nodeView: View): Option[AccountBlock] = {
@@ -0,0 +1,18 @@
+package io.horizen.account.history.validation
+
+import io.horizen.account.block.AccountBlock
+import io.horizen.account.transaction.SenderRecoveryService
+import io.horizen.history.validation.SemanticBlockValidator
+
+import scala.collection.JavaConverters._
+import scala.util.Try
+
+/**
+ * Recovers the senders of the block transactions in parallel before the other semantic checks, which need them.
+ * It never fails: a transaction with an invalid signature is reported by the transaction semantic validity.
+ */
+case class SenderRecoveryBlockSemanticValidator(senderRecoveryService: SenderRecoveryService) extends SemanticBlockValidator[AccountBlock] {
+  override def validate(block: AccountBlock): Try[Unit] = Try {
+    senderRecoveryService.recoverSenders(block.sidechainTransactions.asJava)
+  }
+}
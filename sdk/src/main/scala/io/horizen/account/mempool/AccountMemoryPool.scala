@@ -4,7 +4,7 @@ import io.horizen.account.api.rpc.types.EthereumTransactionView
 import io.horizen.account.block.AccountBlock
 import io.horizen.account.node.NodeAccountMemoryPool
 import io.horizen.account.proposition.AddressProposition
-import io.horizen.account.state.{AccountEventNotifierProvider, AccountStateReaderProvider, BaseStateReaderProvider}
+import io.horizen.account.state.{AccountEventNotifierProvider, AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider}
 import io.horizen.evm.Address
 import io.horizen.{AccountMempoolSettings, SidechainTypes}
 import sparkz.core.transaction.MempoolReader
@@ -46,6 +46,11 @@ class AccountMemoryPool(
     unconfirmed.size
   }
 
+  /**
+   * Changes on every modification of the mempool content, see MempoolMap.version
+   */
+  def version: Long = unconfirmed.version
+
   override def take(limit: Int): Iterable[SidechainTypes#SCAT] = {
     unconfirmed.takeExecutableTxs(Seq()).take(limit)
   }
@@ -92,6 +97,16 @@ class AccountMemoryPool(
     }
   }
 
+  /**
+   * Adds a tx off the node view holder, checking its nonce against the given state reader. Txs of different accounts
+   * are added concurrently. Fails with StateChangedException if isStateCurrent tells that the state reader is no longer
+   * the committed state. Returns the txs that became executable, the caller is in charge of notifying them.
+   */
+  def admit(tx: SidechainTypes#SCAT,
+            accountStateReader: AccountStateReader,
+            isStateCurrent: () => Boolean): Try[Iterable[SidechainTypes#SCAT]] =
+    unconfirmed.add(tx, accountStateReader, isStateCurrent).map(_._2)
+
   override def put(
       txs: Iterable[SidechainTypes#SCAT]
   ): Try[AccountMemoryPool] = {
@@ -0,0 +1,88 @@
+package io.horizen.account.mempool
+
+import akka.event.EventStream
+import io.horizen.account.AccountSidechainNodeViewHolder.NewExecTransactionsEvent
+import io.horizen.account.mempool.exception.StateChangedException
+import io.horizen.account.node.AccountNodeViewSnapshotProvider
+import io.horizen.account.state.AccountState
+import io.horizen.account.transaction.EthereumTransaction
+import io.horizen.{AccountMempoolSettings, SidechainTypes}
+import sparkz.core.network.NodeViewSynchronizer.ReceivableMessages.{FailedTransaction, SuccessfulTransaction}
+import sparkz.util.{ModifierId, SparkzLogging}
+
+import scala.annotation.tailrec
+import scala.util.{Failure, Success, Try}
+
+/**
+ * Adds locally submitted txs to the mempool on the submitting threads, so that bursts of txs don't queue behind the
+ * block application in the node view holder. The admission of a tx has two phases:
+ *  - the checks of the tx alone (sender recovery, chain id, signature, gas and size), that run in parallel;
+ *  - the checks against the state and the insertion in the mempool, done with a state view pinned at the last committed
+ *    state root, under the lock of the sender account (see MempoolMap.add).
+ * The reconciliation of the mempool with the applied blocks stays in the node view holder, and it runs under the
+ * mempool write lock after the new root is committed. So, if the pinned root is still the committed one while the lock
+ * of the account is held, any later block is reconciled after the tx is added. Otherwise the tx could use a nonce
+ * consumed by the block: it is rejected by the mempool and the admission is retried against the new root.
+ *
+ * The outcome is published on the event stream as the node view holder does, so the tx is broadcast to the peers and
+ * the new executable txs are notified to the subscribers.
+ */
+object AccountMempoolAdmission {
+  // Each retry needs a block applied while the tx is validated, so they are rare: a few are enough
+  val MaxStateChangedRetries = 3
+}
+
+class AccountMempoolAdmission(snapshotProvider: AccountNodeViewSnapshotProvider,
+                              mempoolSettings: AccountMempoolSettings,
+                              eventStream: EventStream) extends SparkzLogging {
+  import AccountMempoolAdmission.MaxStateChangedRetries
+
+  def submit(tx: SidechainTypes#SCAT): Try[ModifierId] = {
+    val result = snapshotProvider.snapshot match {
+      case None => Failure(new IllegalStateException("Node view not available yet"))
+      case Some(snapshot) =>
+        val state = snapshot.nodeView.state
+        for {
+          _ <- checkProtection(tx)
+          _ <- state.validateStateless(tx)
+          newExecTxs <- admitAgainstState(tx, snapshot.nodeView.state, snapshot.nodeView.pool, MaxStateChangedRetries)
+        } yield newExecTxs
+    }
+
+    result match {
+      case Success(newExecTxs) =>
+        log.info(s"Got locally generated tx ${tx.id} of type ${tx.modifierTypeId}")
+        if (newExecTxs.nonEmpty) eventStream.publish(NewExecTransactionsEvent(newExecTxs))
+        eventStream.publish(SuccessfulTransaction[SidechainTypes#SCAT](tx))
+        Success(tx.id)
+      case Failure(e) =>
+        eventStream.publish(FailedTransaction(tx.id, e, immediateFailure = true))
+        Failure(e)
+    }
+  }
+
+  @tailrec
+  private def admitAgainstState(tx: SidechainTypes#SCAT,
+                                state: AccountState,
+                                pool: AccountMemoryPool,
+                                retries: Int): Try[Iterable[SidechainTypes#SCAT]] = {
+    val stateRoot = state.getAccountStateRoot
+    val isStateCurrent = () => java.util.Arrays.equals(state.getAccountStateRoot, stateRoot)
+    state.usingStateDbViewAt(stateRoot) { stateView =>
+      state.validateAgainstState(tx, stateView).flatMap(_ => pool.admit(tx, stateView, isStateCurrent))
+    } match {
+      case Failure(_: StateChangedException) if retries > 0 =>
+        log.debug(s"State changed while adding tx ${tx.id} to the mempool, retrying")
+        admitAgainstState(tx, state, pool, retries - 1)
+      case result => result
+    }
+  }
+
+  private def checkProtection(tx: SidechainTypes#SCAT): Try[Unit] = Try {
+    tx match {
+      case ethTx: EthereumTransaction if !mempoolSettings.allowUnprotectedTxs && ethTx.isLegacy && !ethTx.isEIP155 =>
+        throw new IllegalArgumentException("Legacy unprotected transactions are not allowed.")
+      case _ =>
+    }
+  }
+}
@@ -6,14 +6,17 @@ import io.horizen.account.mempool.MempoolMap._
 import io.horizen.account.mempool.TxExecutableStatus.TxExecutableStatus
 import io.horizen.account.mempool.exception._
 import io.horizen.account.proposition.AddressProposition
-import io.horizen.account.state.{AccountStateReaderProvider, BaseStateReaderProvider}
+import io.horizen.account.state.{AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider, NonceTooLowException}
 import io.horizen.account.transaction.EthereumTransaction
 import io.horizen.evm.Address
 import io.horizen.{AccountMempoolSettings, SidechainTypes}
 import sparkz.util.{ModifierId, SparkzLogging}
 
 import java.math.BigInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.{ReentrantLock, ReentrantReadWriteLock}
 import scala.collection.concurrent.TrieMap
+import scala.collection.immutable.TreeSet
 import scala.collection.mutable
 import scala.concurrent.duration.FiniteDuration
 import scala.util.Try
@@ -45,104 +48,167 @@ class MempoolMap(
   // same value of the statedb nonce.
   private val nonces: TrieMap[SidechainTypes#SCP, BigInteger] = TrieMap.empty[SidechainTypes#SCP, BigInteger]
 
+  // Executable tx with the lowest nonce of each account, i.e. the first one of the account that can be included in a block
+  private val executableHeads: TrieMap[SidechainTypes#SCP, ExecutableTxEntry] = TrieMap.empty[SidechainTypes#SCP, ExecutableTxEntry]
+  // Executable heads of all the accounts, ordered by effective gas tip computed with executableIndexBaseFee. The index
+  // is built from scratch only when the base fee changes and it is updated incrementally on every other modification
+  // of the executable txs, so that it is ready to be iterated when a block is assembled. It is immutable, so an iterator
+  // can hold it while the mempool is modified.
+  @volatile private var executableIndex: TreeSet[ExecutableTxEntry] = TreeSet.empty[ExecutableTxEntry](ExecutableTxEntry.ordering)
+  // None until the index is built for the first time
+  @volatile private var executableIndexBaseFee: Option[BigInteger] = None
+
+  // Tx with the highest nonce of each account, executable or not: it can be evicted without making other txs orphans
+  private val accountTails: TrieMap[SidechainTypes#SCP, AccountTailEntry] = TrieMap.empty[SidechainTypes#SCP, AccountTailEntry]
+  // Tails of all the accounts, cheapest first: when the mempool is full they are evicted in this order
+  private val evictionIndex: mutable.TreeSet[AccountTailEntry] = mutable.TreeSet.empty[AccountTailEntry](AccountTailEntry.ordering)
+
+  // Txs of different accounts can be added concurrently: an addition holds the read lock of the mempool and the lock of
+  // the stripe of its account, so the txs of an account are added one at a time. The operations touching the txs of
+  // many accounts (eviction, block reconciliation, removals, index rebuild) hold the write lock.
+  private val mempoolLock = new ReentrantReadWriteLock()
+  private val accountLocks: Array[ReentrantLock] = Array.fill(NumOfAccountLockStripes)(new ReentrantLock())
+  // Guards the structures shared by all the accounts (tx cache and indexes) among the holders of the read lock
+  private val sharedLock = new Object
+
+  // Stamp of the last modification, unique among all the instances: equal versions mean same content
+  @volatile private var currentVersion: Long = nextVersion()
+
+  def version: Long = currentVersion
+
   private def getMaxAcceptableNonce(stateNonce: BigInteger): BigInteger = stateNonce.add(maxAllowedNonceGap)
 
-  private[mempool] def findTxWithSameNonce(account: SidechainTypes#SCP, nonce: BigInteger): Option[SidechainTypes#SCAT] = {
-    val txOpt: Option[SidechainTypes#SCAT] = executableTxs.get(account).flatMap(txMap => txMap.get(nonce).map(txCache(_)))
-    txOpt.orElse(nonExecutableTxs.get(account).flatMap(txMap => txMap.get(nonce).map(txCache(_))))
-  }
+  private[mempool] def findTxWithSameNonce(account: SidechainTypes#SCP, nonce: BigInteger): Option[SidechainTypes#SCAT] =
+    withAccountLock(account) {
+      val txOpt: Option[SidechainTypes#SCAT] = executableTxs.get(account).flatMap(txMap => txMap.get(nonce).map(txCache(_)))
+      txOpt.orElse(nonExecutableTxs.get(account).flatMap(txMap => txMap.get(nonce).map(txCache(_))))
+    }
 
-  def add(ethTransaction: SidechainTypes#SCAT): Try[(MempoolMap, Iterable[SidechainTypes#SCAT])] = Try {
+  /**
+   * Adds the given tx, checking its nonce against the given state reader. It can be called concurrently, see
+   * mempoolLock: a caller off the node view holder passes a state view pinned at the root it validated the tx with, and
+   * a check that this root is still the committed one. The check is done under the lock: the reconciliation of the
+   * mempool with a block committed afterwards needs the write lock, so it runs after this addition and it also takes
+   * care of the added tx.
+   */
+  def add(ethTransaction: SidechainTypes#SCAT,
+          accountStateReader: AccountStateReader = accountStateReaderProvider.getAccountStateReader(),
+          isStateCurrent: () => Boolean = () => true): Try[(MempoolMap, Iterable[SidechainTypes#SCAT])] = Try {
     require(ethTransaction.isInstanceOf[EthereumTransaction], "Transaction is not EthereumTransaction")
     val promotedTxs = mutable.ListBuffer[SidechainTypes#SCAT]()
+    val account = ethTransaction.getFrom
+
+    withAccountLock(account) {
+      if (!contains(ethTransaction.id)) {
+        // A block committed after the state reader was taken may have used the nonce of the tx: the caller must retry
+        // with the new state
+        if (!isStateCurrent()) {
+          throw StateChangedException(ethTransaction.id)
+        }
 
-    if (!contains(ethTransaction.id)) {
-      val account = ethTransaction.getFrom
+        // Reject transactions that are too big
+        val txSize = ethTransaction.size()
+        if (txSize > MaxTxSize) {
+          log.trace(s"Transaction $ethTransaction size exceeds maximum allowed size: current size $txSize, " +
+            s"maximum size: $MaxTxSize")
+          throw TxOversizedException(account.asInstanceOf[AddressProposition].address(), txSize)
+        }
 
-      // Reject transactions that are too big
-      val txSize = ethTransaction.size()
-      if (txSize > MaxTxSize) {
-        log.trace(s"Transaction $ethTransaction size exceeds maximum allowed size: current size $txSize, " +
-          s"maximum size: $MaxTxSize")
-        throw TxOversizedException(account.asInstanceOf[AddressProposition].address(), txSize)
-      }
+        // Reject transactions with a nonce gap too big
+        val stateNonce = accountStateReader.getNonce(account.asInstanceOf[AddressProposition].address())
+        val maxAcceptableNonce = getMaxAcceptableNonce(stateNonce)
+        if (ethTransaction.getNonce.compareTo(maxAcceptableNonce) > 0) {
+          log.trace(s"Transaction $ethTransaction nonce gap respect state nonce exceeds maximum allowed size: tx nonce ${ethTransaction.getNonce}, " +
+            s"state nonce: $stateNonce, maximum nonce gap $maxAllowedNonceGap")
+          throw NonceGapTooWideException(ethTransaction.id, ethTransaction.getNonce, stateNonce)
+        }
 
-      // Reject transactions with a nonce gap too big
-      val stateNonce = accountStateReaderProvider.getAccountStateReader().getNonce(account.asInstanceOf[AddressProposition].address())
-      val maxAcceptableNonce = getMaxAcceptableNonce(stateNonce)
-      if (ethTransaction.getNonce.compareTo(maxAcceptableNonce) > 0) {
-        log.trace(s"Transaction $ethTransaction nonce gap respect state nonce exceeds maximum allowed size: tx nonce ${ethTransaction.getNonce}, " +
-          s"state nonce: $stateNonce, maximum nonce gap $maxAllowedNonceGap")
-        throw NonceGapTooWideException(ethTransaction.id, ethTransaction.getNonce, stateNonce)
-      }
+        // Reject transactions in case their account doesn't have enough space for them. If the new tx is replacing an
+        // existing one, the space used by the old one must be taken into account.
+        val txToReplaceOpt = findTxWithSameNonce(account, ethTransaction.getNonce)
+        val numOfSlotsOfTxToReplace = txToReplaceOpt match {
+          case Some(txToReplace) =>
+            if (!canPayHigherFee(ethTransaction, txToReplace)) {
+              log.trace(s"Transaction $ethTransaction cannot replace $txToReplace because it is underpriced")
+              throw TransactionReplaceUnderpricedException(ethTransaction.id)
+            }
+            txSizeInSlot(txToReplace)
+          case None => 0
+        }
 
-      // Reject transactions in case their account doesn't have enough space for them. If the new tx is replacing an
-      // existing one, the space used by the old one must be taken into account.
-      val txToReplaceOpt = findTxWithSameNonce(account, ethTransaction.getNonce)
-      val numOfSlotsOfTxToReplace = txToReplaceOpt match {
-        case Some(txToReplace) =>
-          if (!canPayHigherFee(ethTransaction, txToReplace)) {
-            log.trace(s"Transaction $ethTransaction cannot replace $txToReplace because it is underpriced")
-            throw TransactionReplaceUnderpricedException(ethTransaction.id)
-          }
-          txSizeInSlot(txToReplace)
-        case None => 0
-      }
+        val newTxSizeInSlot = sizeToSlot(txSize)
+        val additionalSlots = math.max(newTxSizeInSlot - numOfSlotsOfTxToReplace, 0)
 
-      val newTxSizeInSlot = sizeToSlot(txSize)
-      val additionalSlots = math.max(newTxSizeInSlot - numOfSlotsOfTxToReplace, 0)
+        val accountSlotsNumber = getAccountSlots(account)
+        if (accountSlotsNumber + additionalSlots > MaxSlotsPerAccount) {
+          log.trace(s"Adding transaction $ethTransaction exceeds maximum allowed size per account ($MaxSlotsPerAccount slots)")
+          throw AccountMemPoolOutOfBoundException(ethTransaction.id)
+        }
 
-      val accountSlotsNumber = getAccountSlots(account)
-      if (accountSlotsNumber + additionalSlots > MaxSlotsPerAccount) {
-        log.trace(s"Adding transaction $ethTransaction exceeds maximum allowed size per account ($MaxSlotsPerAccount slots)")
-        throw AccountMemPoolOutOfBoundException(ethTransaction.id)
-      }
+        // From here on the structures shared with the other accounts are read and modified
+        sharedLock.synchronized {
+          // Reject transactions that would be evicted right away: the mempool is full and they are cheaper than any tx that
+          // could be evicted to make room for them
+          if (getMempoolSizeInSlots + additionalSlots > MaxMemPoolSlots && isUnderpriced(ethTransaction)) {
+            log.trace(s"Transaction $ethTransaction is underpriced for a full mempool ($MaxMemPoolSlots slots)")
+            throw TxUnderpricedException(ethTransaction.id)
+          }
 
-      val expectedNonce = nonces.getOrElseUpdate(
-        account,
-        stateNonce)
-
-      expectedNonce.compareTo(ethTransaction.getNonce) match {
-        case AddNewExecTransaction =>
-          val executableTxsPerAccount =
-            executableTxs.getOrElseUpdate(account, new mutable.TreeMap[BigInteger, ModifierId]())
-          addNewTransaction(executableTxsPerAccount, ethTransaction, TxExecutableStatus.EXEC)
-          promotedTxs += ethTransaction
-          var nextNonce = expectedNonce.add(BigInteger.ONE)
-          nonExecutableTxs
-            .get(account)
-            .foreach(nonExecTxsPerAccount => {
-              var candidateToPromotionTx = nonExecTxsPerAccount.remove(nextNonce)
-              while (candidateToPromotionTx.isDefined) {
-                val promotedTxId = candidateToPromotionTx.get
-                executableTxsPerAccount.put(nextNonce, promotedTxId)
-                promotedTxs += txCache.promoteTransaction(promotedTxId)
-                nextNonce = nextNonce.add(BigInteger.ONE)
-                candidateToPromotionTx = nonExecTxsPerAccount.remove(nextNonce)
-              }
-              if (nonExecTxsPerAccount.isEmpty) nonExecutableTxs.remove(account)
-            })
-          nonces.put(account, nextNonce)
-        case AddOrReplaceNonExecTransaction =>
-          val nonExecTxsPerAccount =
-            nonExecutableTxs.getOrElseUpdate(account, new mutable.TreeMap[BigInteger, ModifierId]())
-          if (txToReplaceOpt.isDefined) {
-            replaceTransaction(txToReplaceOpt.get.id, ethTransaction, nonExecTxsPerAccount, TxExecutableStatus.NON_EXEC)
-          } else {
-            addNewTransaction(nonExecTxsPerAccount, ethTransaction, TxExecutableStatus.NON_EXEC)
+          val expectedNonce = nonces.getOrElse(account, stateNonce)
+          // A tx checked against a state older than the last applied block can have a nonce already used
+          if (expectedNonce.compareTo(ethTransaction.getNonce) > 0 && txToReplaceOpt.isEmpty) {
+            throw NonceTooLowException(account.asInstanceOf[AddressProposition].address(), ethTransaction.getNonce, expectedNonce)
           }
-        case ReplaceExecTransaction =>
-          // This case means there is already an executable tx with the same nonce in the mem pool
-          val executableTxsPerAccount = executableTxs(account)
-          replaceTransaction(txToReplaceOpt.get.id, ethTransaction, executableTxsPerAccount, TxExecutableStatus.EXEC)
-          promotedTxs += txToReplaceOpt.get
+          nonces.putIfAbsent(account, expectedNonce)
+
+          expectedNonce.compareTo(ethTransaction.getNonce) match {
+            case AddNewExecTransaction =>
+              val executableTxsPerAccount =
+                executableTxs.getOrElseUpdate(account, new mutable.TreeMap[BigInteger, ModifierId]())
+              addNewTransaction(executableTxsPerAccount, ethTransaction, TxExecutableStatus.EXEC)
+              promotedTxs += ethTransaction
+              var nextNonce = expectedNonce.add(BigInteger.ONE)
+              nonExecutableTxs
+                .get(account)
+                .foreach(nonExecTxsPerAccount => {
+                  var candidateToPromotionTx = nonExecTxsPerAccount.remove(nextNonce)
+                  while (candidateToPromotionTx.isDefined) {
+                    val promotedTxId = candidateToPromotionTx.get
+                    executableTxsPerAccount.put(nextNonce, promotedTxId)
+                    promotedTxs += txCache.promoteTransaction(promotedTxId)
+                    nextNonce = nextNonce.add(BigInteger.ONE)
+                    candidateToPromotionTx = nonExecTxsPerAccount.remove(nextNonce)
+                  }
+                  if (nonExecTxsPerAccount.isEmpty) nonExecutableTxs.remove(account)
+                })
+              nonces.put(account, nextNonce)
+            case AddOrReplaceNonExecTransaction =>
+              val nonExecTxsPerAccount =
+                nonExecutableTxs.getOrElseUpdate(account, new mutable.TreeMap[BigInteger, ModifierId]())
+              if (txToReplaceOpt.isDefined) {
+                replaceTransaction(txToReplaceOpt.get.id, ethTransaction, nonExecTxsPerAccount, TxExecutableStatus.NON_EXEC)
+              } else {
+                addNewTransaction(nonExecTxsPerAccount, ethTransaction, TxExecutableStatus.NON_EXEC)
+              }
+            case ReplaceExecTransaction =>
+              // This case means there is already an executable tx with the same nonce in the mem pool
+              val executableTxsPerAccount = executableTxs(account)
+              replaceTransaction(txToReplaceOpt.get.id, ethTransaction, executableTxsPerAccount, TxExecutableStatus.EXEC)
+              promotedTxs += txToReplaceOpt.get
 
+          }
+          updateAccountIndexes(account)
+        }
       }
-
-      // After having added the new tx, check the resulting size of the non exec sub pool and of the mempool. If one or
-      // both of them exceed the maximum limit, free some space.
-      checkMempoolSize()
     }
+
+    // After having added the new tx, check the resulting size of the non exec sub pool and of the mempool. If one or
+    // both of them exceed the maximum limit, free some space. Evicting touches the txs of other accounts, so it needs
+    // the write lock: concurrent additions may briefly exceed the limits before one of them gets it.
+    if (getNonExecSubpoolSizeInSlots > MaxNonExecSubPoolSlots || getMempoolSizeInSlots > MaxMemPoolSlots)
+      withWriteLock(checkMempoolSize())
+    // the version changes only once the content is complete, so a reader of the new version never sees the old content
+    currentVersion = nextVersion()
     (this, promotedTxs)
   }
 
@@ -158,7 +224,27 @@ class MempoolMap(
     mapOfTxsByNonce.put(newTx.getNonce, newTx.id)
   }
 
-  def getAccountSlots(account: SidechainTypes#SCP): Int = {
+  private def withAccountLock[A](account: SidechainTypes#SCP)(f: => A): A = {
+    val accountLock = accountLocks(Math.floorMod(account.hashCode(), accountLocks.length))
+    mempoolLock.readLock().lock()
+    try {
+      accountLock.lock()
+      try f finally accountLock.unlock()
+    } finally mempoolLock.readLock().unlock()
+  }
+
+  private def withWriteLock[A](f: => A): A = {
+    mempoolLock.writeLock().lock()
+    try f finally mempoolLock.writeLock().unlock()
+  }
+
+  // The per account maps are modified in place by the additions: the readers walk them under the lock of the account,
+  // so they never see a half updated map
+  private def readAccountTxs[A](txsByAccount: TrieMap[SidechainTypes#SCP, TxIdByNonceMap], account: SidechainTypes#SCP)
+                               (f: TxIdByNonceMap => A): Option[A] =
+    withAccountLock(account)(txsByAccount.get(account).map(f))
+
+  def getAccountSlots(account: SidechainTypes#SCP): Int = withAccountLock(account) {
     (executableTxs.get(account) ++ nonExecutableTxs.get(account))
       .flatMap(_.values)
       .foldLeft(0) { (sum, txId) => sum + txSizeInSlot(txCache(txId)) }
@@ -170,15 +256,25 @@ class MempoolMap(
 
   def getNonExecSubpoolSizeInSlots: Int = txCache.getNonExecSizeInSlots
 
+  /**
+   * Evicts the cheapest account tails until the mempool size is back within the limit. Removing the tx with the highest
+   * nonce of an account never demotes other txs, so each eviction is a single update of the account maps and no
+   * executable chain is broken.
+   */
   private[mempool] def freeMempoolSlots(): Unit = {
-    do {
-      val oldestTx = txCache.getOldestTransaction()
-      log.trace(s"Evicting transaction $oldestTx")
-      remove(oldestTx.get)
+    while (getMempoolSizeInSlots > MaxMemPoolSlots) {
+      val cheapestTail = evictionIndex.head.tx
+      log.trace(s"Evicting transaction $cheapestTail")
+      remove(cheapestTail)
     }
-    while (getMempoolSizeInSlots > MaxMemPoolSlots)
   }
 
+  /**
+   * Returns true if the given tx is cheaper than all the txs that can be evicted.
+   */
+  private[mempool] def isUnderpriced(tx: SidechainTypes#SCAT): Boolean =
+    evictionIndex.headOption.exists(cheapestTail => AccountTailEntry.comparePrice(tx, cheapestTail.tx) < 0)
+
   private[mempool] def freeNonExecSubpoolSlots(): Unit = {
     val nonExecIter = txCache.getNonExecIterator()
     do {
@@ -199,12 +295,18 @@ class MempoolMap(
   }
 
   def removeFromMempool(ethTransaction: SidechainTypes#SCAT): Try[MempoolMap] = Try {
-    remove(ethTransaction).get
-    // Only Non Exec sub pool size can change when removing a tx
-    if (getNonExecSubpoolSizeInSlots > MaxNonExecSubPoolSlots) {
-      log.trace(s"Removing transaction $ethTransaction exceeded maximum allowed non exec subpool size ($MaxNonExecSubPoolSlots slots). " +
-        s"Evicting oldest transactions")
-      freeNonExecSubpoolSlots()
+    withWriteLock {
+      try {
+        remove(ethTransaction).get
+        // Only Non Exec sub pool size can change when removing a tx
+        if (getNonExecSubpoolSizeInSlots > MaxNonExecSubPoolSlots) {
+          log.trace(s"Removing transaction $ethTransaction exceeded maximum allowed non exec subpool size ($MaxNonExecSubPoolSlots slots). " +
+            s"Evicting oldest transactions")
+          freeNonExecSubpoolSlots()
+        }
+      } finally {
+        currentVersion = nextVersion()
+      }
     }
     this
   }
@@ -252,10 +354,78 @@ class MempoolMap(
             }
           })
       }
+      updateAccountIndexes(ethTransaction.getFrom)
     }
     this
   }
 
+  private def updateAccountIndexes(account: SidechainTypes#SCP): Unit = {
+    updateExecutableHead(account)
+    updateAccountTail(account)
+  }
+
+  /**
+   * Updates the tail of the given account in the eviction index, after its txs have changed.
+   */
+  private def updateAccountTail(account: SidechainTypes#SCP): Unit = {
+    val oldTail = accountTails.get(account)
+    val newTailId = nonExecutableTxs.get(account).orElse(executableTxs.get(account)).map(_.last._2)
+    if (oldTail.map(_.tx.id) != newTailId) {
+      oldTail.foreach { tail =>
+        evictionIndex.remove(tail)
+        accountTails.remove(account)
+      }
+      newTailId.foreach { txId =>
+        val txInfo = txCache.getTransactionInfo(txId).get
+        val tail = new AccountTailEntry(txInfo.tx, txInfo.arrivalOrder)
+        evictionIndex.add(tail)
+        accountTails.put(account, tail)
+      }
+    }
+  }
+
+  /**
+   * Updates the executable head of the given account in the price ordered index, after its executable txs have changed.
+   * Nothing to do if the index was never built: it will be built from scratch on the first request.
+   */
+  private def updateExecutableHead(account: SidechainTypes#SCP): Unit = {
+    executableIndexBaseFee.foreach { baseFee =>
+      val oldHead = executableHeads.get(account)
+      val newHeadId = executableTxs.get(account).map(_.head._2)
+      if (oldHead.map(_.tx.id) != newHeadId) {
+        var index = executableIndex
+        oldHead.foreach { head =>
+          index = index - head
+          executableHeads.remove(account)
+        }
+        newHeadId.foreach { txId =>
+          val head = ExecutableTxEntry(txCache(txId), baseFee)
+          index = index + head
+          executableHeads.put(account, head)
+        }
+        executableIndex = index
+      }
+    }
+  }
+
+  /**
+   * Returns the executable heads of all the accounts ordered by effective gas tip with the given base fee. The index is
+   * rebuilt only if the base fee is not the one it was built with, i.e. at most once per block.
+   */
+  private def getExecutableIndex(baseFee: BigInteger): TreeSet[ExecutableTxEntry] = {
+    if (!executableIndexBaseFee.contains(baseFee)) withWriteLock {
+      if (!executableIndexBaseFee.contains(baseFee)) {
+        executableHeads.clear()
+        executableTxs.foreach { case (account, mapOfTxsPerAccount) =>
+          executableHeads.put(account, ExecutableTxEntry(txCache(mapOfTxsPerAccount.head._2), baseFee))
+        }
+        executableIndex = TreeSet.empty[ExecutableTxEntry](ExecutableTxEntry.ordering) ++ executableHeads.values
+        executableIndexBaseFee = Some(baseFee)
+      }
+    }
+    executableIndex
+  }
+
   def size: Int = txCache.size
 
   def getTransaction(txId: ModifierId): Option[SidechainTypes#SCAT] = txCache.getTransaction(txId)
@@ -266,7 +436,7 @@ class MempoolMap(
 
   def mempoolTransactions(executable: Boolean): Iterable[ModifierId] = {
     val mempoolIdsMap = if (executable) executableTxs else nonExecutableTxs
-    mempoolIdsMap.values.flatMap(_.values)
+    mempoolIdsMap.keys.toList.flatMap(account => readAccountTxs(mempoolIdsMap, account)(_.values.toList).getOrElse(Nil))
   }
 
   // method used by the txpool namespace rpc methods, it retrieves a map of executable or non-executable EthereumTransaction
@@ -277,8 +447,9 @@ class MempoolMap(
       executableTxs
     else
       nonExecutableTxs
-    for ((from, nonceIdsMap) <- mempoolIdsMap) {
-      txsMap.put(from.asInstanceOf[AddressProposition].address(), retrieveTxPoolByNonceMap(nonceIdsMap))
+    for (from <- mempoolIdsMap.keys) {
+      readAccountTxs(mempoolIdsMap, from)(retrieveTxPoolByNonceMap)
+        .foreach(txPool => txsMap.put(from.asInstanceOf[AddressProposition].address(), txPool))
     }
     txsMap
   }
@@ -286,14 +457,12 @@ class MempoolMap(
   // method used by the txpool namespace rpc methods, it retrieves a map of executable or non-executable EthereumTransaction
   // ordered by nonce filtering by from address
   def mempoolTransactionsMapFrom(executable: Boolean, fromAddress: Address): mutable.SortedMap[BigInteger, EthereumTransactionView] = {
-    val mempoolIdByNonceMapFrom = if (executable)
-      executableTxs.get(new AddressProposition(fromAddress))
+    val mempoolIdsMap = if (executable)
+      executableTxs
     else
-      nonExecutableTxs.get(new AddressProposition(fromAddress))
-    mempoolIdByNonceMapFrom match {
-      case Some(map) => retrieveTxPoolByNonceMap(map)
-      case None => mutable.SortedMap.empty[BigInteger, EthereumTransactionView]
-    }
+      nonExecutableTxs
+    readAccountTxs(mempoolIdsMap, new AddressProposition(fromAddress))(retrieveTxPoolByNonceMap)
+      .getOrElse(mutable.SortedMap.empty[BigInteger, EthereumTransactionView])
   }
 
   private def retrieveTxPoolByNonceMap(txIdByNonceMap: TxIdByNonceMap): mutable.SortedMap[BigInteger, EthereumTransactionView] = {
@@ -312,8 +481,9 @@ class MempoolMap(
       executableTxs
     else
       nonExecutableTxs
-    for ((from, nonceIdsMap) <- mempoolIdsMap) {
-      txsMap.put(from.asInstanceOf[AddressProposition].address(), retrieveTxInspectByNonceMap(nonceIdsMap))
+    for (from <- mempoolIdsMap.keys) {
+      readAccountTxs(mempoolIdsMap, from)(retrieveTxInspectByNonceMap)
+        .foreach(txInspect => txsMap.put(from.asInstanceOf[AddressProposition].address(), txInspect))
     }
     txsMap
   }
@@ -335,7 +505,8 @@ class MempoolMap(
 
   /**
    * Returns executable transactions sorted by gas tip (descending) and nonce. The ordering is performed in a semi-lazy
-   * way.
+   * way: the first tx of each account comes from the price ordered index kept by the mempool, the following ones are
+   * ordered on demand.
    */
   def takeExecutableTxs(forcedTx: Iterable[SidechainTypes#SCAT] = Seq()): TransactionsByPriceAndNonce = {
 
@@ -357,7 +528,7 @@ class MempoolMap(
    *         and now were removed from the blocks and readded to the mempool or they can be not executable transactions
    *         already in the mempool that were promoted to executable
    */
-  def updateMemPool(rejectedBlocks: Seq[AccountBlock], appliedBlocks: Seq[AccountBlock]): Iterable[SidechainTypes#SCAT] = {
+  def updateMemPool(rejectedBlocks: Seq[AccountBlock], appliedBlocks: Seq[AccountBlock]): Iterable[SidechainTypes#SCAT] = withWriteLock {
     /* Mem pool needs to be updated after state modifications. Transactions that have become invalid
     (or for a nonce too low or for insufficient balance or else), should be removed. Txs
     from blocks rejected due to a switch of the active chain, that are still valid, should be re-added
@@ -365,7 +536,11 @@ class MempoolMap(
     For efficiency, mem pool is updated account per account and only accounts whose state was modified
     are considered.
      */
+    try updateAccounts(rejectedBlocks, appliedBlocks)
+    finally currentVersion = nextVersion()
+  }
 
+  private def updateAccounts(rejectedBlocks: Seq[AccountBlock], appliedBlocks: Seq[AccountBlock]): Iterable[SidechainTypes#SCAT] = {
     // Creates a map with with the max nonce for each account. The txs in a block are ordered by nonce,
     // so there is no need to check if the nonce already in the map is greater or not => the last one is
     // always the greatest.
@@ -540,6 +715,8 @@ class MempoolMap(
       nonExecutableTxs.put(account, newNonExecTxs)
     }
 
+    updateAccountIndexes(account)
+
     txsToReinject.withFilter(_._2 == TxExecutableStatus.EXEC).map(el => el._1)
   }
 
@@ -645,6 +822,7 @@ class MempoolMap(
           nonExecutableTxs.put(account, newNonExecTxs)
         }
       }
+      updateAccountIndexes(account)
       listOfPromotedTxs
     }
     newExecTxs
@@ -659,13 +837,9 @@ class MempoolMap(
 
     if (getMempoolSizeInSlots > MaxMemPoolSlots) {
       log.warn(s"Memory pool size ($getMempoolSizeInSlots slots) exceeds maximum allowed size ($MaxMemPoolSlots slots). " +
-        s"Start evicting oldest transactions")
+        s"Start evicting cheapest transactions")
+      // Evicting account tails can't create orphans, so there is no need to check the non exec sub pool again
       freeMempoolSlots()
-      // Check a second time because evicting oldest txs can create orphans
-      if (getNonExecSubpoolSizeInSlots > MaxNonExecSubPoolSlots) {
-        freeNonExecSubpoolSlots()
-      }
-
     }
   }
 
@@ -674,36 +848,38 @@ class MempoolMap(
 
     class Iter extends TransactionsByPriceAndNonceIter {
 
-      def txOrder(tx: SidechainTypes#SCAT): BigInteger = {
-        tx.getMaxFeePerGas.subtract(baseFee).min(tx.getMaxPriorityFeePerGas)
-      }
-
       // used in some scenario (only regtest) where use is made of http api 'generate' setting explicitly some
       // transactions to be included in a forged block
       private val forcedTxQueue = new mutable.Queue[SidechainTypes#SCAT]()
 
-      private val orderedQueue = new mutable.PriorityQueue[SidechainTypes#SCAT]()(Ordering.by(txOrder))
+      // The executable heads of all the accounts come already ordered from the index, only the txs following the ones
+      // already returned need to be ordered here. The best tx is the best between the two.
+      private val orderedHeads = getExecutableIndex(baseFee).iterator.buffered
+      private val orderedQueue = new mutable.PriorityQueue[ExecutableTxEntry]()(ExecutableTxEntry.ordering.reverse)
 
-      executableTxs.foreach { case (_, mapOfTxsPerAccount) =>
-        val tx = getTransaction(mapOfTxsPerAccount.values.head).get
-        orderedQueue.enqueue(tx)
-      }
       forcedTx.foreach(
         forcedTxQueue.enqueue(_)
       )
 
-      override def hasNext: Boolean = forcedTxQueue.nonEmpty || orderedQueue.nonEmpty
+      private def bestIsHead: Boolean =
+        orderedQueue.isEmpty || (orderedHeads.hasNext && ExecutableTxEntry.ordering.lt(orderedHeads.head, orderedQueue.head))
+
+      private def dequeueBest(): SidechainTypes#SCAT = {
+        if (bestIsHead) orderedHeads.next().tx else orderedQueue.dequeue().tx
+      }
+
+      override def hasNext: Boolean = forcedTxQueue.nonEmpty || orderedHeads.hasNext || orderedQueue.nonEmpty
 
       override def next(): SidechainTypes#SCAT = {
         if (forcedTxQueue.nonEmpty) {
           forcedTxQueue.dequeue()
         } else {
-          val bestTx = orderedQueue.dequeue()
-          val nextTxIdOpt = executableTxs(bestTx.getFrom).get(bestTx.getNonce.add(BigInteger.ONE))
-          if (nextTxIdOpt.nonEmpty) {
-            val tx = getTransaction(nextTxIdOpt.get).get
-            orderedQueue.enqueue(tx)
+          val bestTx = dequeueBest()
+          // the txs of the account can be modified by a concurrent addition
+          val nextTxOpt = withAccountLock(bestTx.getFrom) {
+            executableTxs.get(bestTx.getFrom).flatMap(_.get(bestTx.getNonce.add(BigInteger.ONE))).flatMap(getTransaction)
           }
+          nextTxOpt.foreach(tx => orderedQueue.enqueue(ExecutableTxEntry(tx, baseFee)))
           bestTx
         }
       }
@@ -711,8 +887,10 @@ class MempoolMap(
       def peek: SidechainTypes#SCAT = {
         if (forcedTxQueue.nonEmpty) {
           forcedTxQueue.head
+        } else if (bestIsHead) {
+          orderedHeads.head.tx
         } else {
-          orderedQueue.head
+          orderedQueue.head.tx
         }
       }
 
@@ -720,7 +898,7 @@ class MempoolMap(
         if (forcedTxQueue.nonEmpty) {
           forcedTxQueue.dequeue()
         } else {
-          orderedQueue.dequeue()
+          dequeueBest()
         }
       }
     }
@@ -737,7 +915,53 @@ trait TransactionsByPriceAndNonceIter extends Iterator[SidechainTypes#SCAT] {
   def removeAndSkipAccount(): SidechainTypes#SCAT
 }
 
+/**
+ * Executable transaction along with its effective gas tip for a given base fee.
+ */
+private[mempool] class ExecutableTxEntry(val tx: SidechainTypes#SCAT, val tip: BigInteger)
+
+private[mempool] object ExecutableTxEntry {
+  def apply(tx: SidechainTypes#SCAT, baseFee: BigInteger): ExecutableTxEntry =
+    new ExecutableTxEntry(tx, tx.getMaxFeePerGas.subtract(baseFee).min(tx.getMaxPriorityFeePerGas))
+
+  // Highest tip first. Ties are broken by tx id, so that different txs are never equal.
+  val ordering: Ordering[ExecutableTxEntry] = new Ordering[ExecutableTxEntry] {
+    override def compare(x: ExecutableTxEntry, y: ExecutableTxEntry): Int = {
+      val byTip = y.tip.compareTo(x.tip)
+      if (byTip != 0) byTip else x.tx.id.compareTo(y.tx.id)
+    }
+  }
+}
+
+/**
+ * Tx with the highest nonce of an account, along with its arrival order in the mempool.
+ */
+private[mempool] class AccountTailEntry(val tx: SidechainTypes#SCAT, val arrivalOrder: Long)
+
+private[mempool] object AccountTailEntry {
+  // Compares the prices the txs are willing to pay: max fee per gas first, then max priority fee per gas
+  def comparePrice(x: SidechainTypes#SCAT, y: SidechainTypes#SCAT): Int = {
+    val byMaxFee = x.getMaxFeePerGas.compareTo(y.getMaxFeePerGas)
+    if (byMaxFee != 0) byMaxFee else x.getMaxPriorityFeePerGas.compareTo(y.getMaxPriorityFeePerGas)
+  }
+
+  // Cheapest first. Among txs with the same price the oldest comes first, as it was evicted before price ordering.
+  val ordering: Ordering[AccountTailEntry] = new Ordering[AccountTailEntry] {
+    override def compare(x: AccountTailEntry, y: AccountTailEntry): Int = {
+      val byPrice = comparePrice(x.tx, y.tx)
+      if (byPrice != 0) byPrice else java.lang.Long.compare(x.arrivalOrder, y.arrivalOrder)
+    }
+  }
+}
+
 object MempoolMap {
+  private val versionCounter = new AtomicLong()
+
+  // Number of locks the accounts are spread over: txs of accounts with different locks are added concurrently
+  private val NumOfAccountLockStripes: Int = 64
+
+  private def nextVersion(): Long = versionCounter.incrementAndGet()
+
   private val AddNewExecTransaction: Int = 0
   private val AddOrReplaceNonExecTransaction: Int = -1
   private val ReplaceExecTransaction: Int = 1
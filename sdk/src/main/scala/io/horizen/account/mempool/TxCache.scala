@@ -16,14 +16,18 @@ Transactions can be retrieved from the cache or by transaction id or by arrival
 class TxCache(txLifetime: FiniteDuration) {
   // All transactions currently in the mempool
   private val all: TrieMap[ModifierId, TxMetaInfo] = TrieMap.empty[ModifierId, TxMetaInfo]
-  private var sizeInSlots: Int = 0
-  private var nonExecSizeInSlots: Int = 0
+  // The modifications are serialized by the mempool, but the sizes and the ends of the list are read by any thread
+  @volatile private var sizeInSlots: Int = 0
+  @volatile private var nonExecSizeInSlots: Int = 0
 
-  private var oldestTx: Option[TxMetaInfo] = None
-  private var youngestTx: Option[TxMetaInfo] = None
+  @volatile private var oldestTx: Option[TxMetaInfo] = None
+  @volatile private var youngestTx: Option[TxMetaInfo] = None
+  // Incremented on every added transaction, so the transactions can be compared by arrival
+  private var arrivalCounter: Long = 0
 
   def add(tx: SidechainTypes#SCAT, execStatus: TxExecutableStatus): Unit = {
-    val txInfo = new TxMetaInfo(tx, execStatus, txLifetime)
+    arrivalCounter += 1
+    val txInfo = new TxMetaInfo(tx, execStatus, txLifetime, arrivalCounter)
     all.put(tx.id, txInfo)
     val txSize = txSizeInSlot(tx)
     sizeInSlots += txSize
@@ -89,6 +93,8 @@ class TxCache(txLifetime: FiniteDuration) {
 
   def getTransaction(txId: ModifierId): Option[SidechainTypes#SCAT] = all.get(txId).map(_.tx)
 
+  def getTransactionInfo(txId: ModifierId): Option[TxMetaInfo] = all.get(txId)
+
   def apply(txId: ModifierId): SidechainTypes#SCAT = all(txId).tx
 
   def values: Iterable[SidechainTypes#SCAT] = all.values.map(_.tx)
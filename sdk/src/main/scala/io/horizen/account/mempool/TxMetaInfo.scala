@@ -7,8 +7,9 @@ import scala.concurrent.duration.{Deadline, FiniteDuration}
 
 
 class TxMetaInfo(val tx: SidechainTypes#SCAT,
-                 var executableStatus: TxExecutableStatus,
-                 txLifetime: FiniteDuration) {
+                 @volatile var executableStatus: TxExecutableStatus,
+                 txLifetime: FiniteDuration,
+                 val arrivalOrder: Long = 0) {
   private val deadline: Deadline = txLifetime.fromNow
   var younger: Option[TxMetaInfo] = None
   var older: Option[TxMetaInfo] = None
@@ -20,3 +20,11 @@ case class AccountMemPoolOutOfBoundException(txId: ModifierId)
 
 case class TransactionReplaceUnderpricedException(txId: ModifierId)
   extends MempoolException(s"transaction with txId $txId cannot replace existing transaction because underpriced")
+
+/** TxUnderpricedException is thrown if the mempool is full and the transaction is cheaper than all the evictable ones. */
+case class TxUnderpricedException(txId: ModifierId)
+  extends MempoolException(s"transaction with txId $txId is underpriced for a full mempool")
+
+/** StateChangedException is thrown if a block was applied while the transaction was validated against the previous state. */
+case class StateChangedException(txId: ModifierId)
+  extends MempoolException(s"state changed while adding transaction with txId $txId")
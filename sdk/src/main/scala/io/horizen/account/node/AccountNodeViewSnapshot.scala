@@ -0,0 +1,72 @@
+package io.horizen.account.node
+
+import io.horizen.account.block.AccountBlock
+import io.horizen.account.history.AccountHistory
+import io.horizen.account.mempool.AccountMemoryPool
+import io.horizen.account.state.{AccountState, HistoryBlockHashProvider}
+import io.horizen.account.wallet.AccountWallet
+import io.horizen.utils.BytesUtils
+import sparkz.core.NodeViewHolder.CurrentView
+import sparkz.util.ModifierId
+
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Read-only view of the node published by the AccountSidechainNodeViewHolder after each node view update.
+ * The snapshot is immutable: a newer node view is published as a new snapshot with a greater sequence number.
+ * The node view references the live history and state, that keep changing after the publication: the readers must
+ * take the tip and the active chain ids from the snapshot, read blocks and block infos from the storage only and open
+ * the state views at its state root to see a consistent node view.
+ *
+ * @param nodeView               history, state, wallet and mempool references at the moment of the publication
+ * @param sequenceNumber         monotonically increasing number of the publication
+ * @param bestBlockId            history tip at the moment of the publication
+ * @param bestBlock              block of the history tip
+ * @param bestBlockHeight        height of the history tip
+ * @param stateRoot              evm state root the state metadata storage pointed to
+ * @param stateMetadataVersion   last version of the state metadata storage
+ * @param activeChainIds         immutable ids of the active chain blocks, the block at height h at index h - 1
+ */
+case class AccountNodeViewSnapshot(
+    nodeView: CurrentView[AccountHistory, AccountState, AccountWallet, AccountMemoryPool],
+    sequenceNumber: Long,
+    bestBlockId: ModifierId,
+    bestBlock: AccountBlock,
+    bestBlockHeight: Int,
+    stateRoot: Array[Byte],
+    stateMetadataVersion: String,
+    activeChainIds: IndexedSeq[ModifierId]
+) extends HistoryBlockHashProvider {
+  override def blockIdByHeight(height: Int): Option[ModifierId] =
+    if (height > bestBlockHeight) None else activeChainIds.lift(height - 1)
+
+  override def toString: String =
+    s"AccountNodeViewSnapshot(seq=$sequenceNumber, bestBlockId=$bestBlockId, bestBlockHeight=$bestBlockHeight, " +
+      s"stateRoot=${BytesUtils.toHexString(stateRoot)}, stateMetadataVersion=$stateMetadataVersion)"
+}
+
+/**
+ * Holder of the last published AccountNodeViewSnapshot.
+ * Written by the node view holder actor only, read concurrently by any number of threads without locking.
+ */
+class AccountNodeViewSnapshotProvider {
+  private val lastSnapshot = new AtomicReference[Option[AccountNodeViewSnapshot]](None)
+
+  def snapshot: Option[AccountNodeViewSnapshot] = lastSnapshot.get()
+
+  def publish(nodeView: CurrentView[AccountHistory, AccountState, AccountWallet, AccountMemoryPool]): AccountNodeViewSnapshot = {
+    val sequenceNumber = snapshot.map(_.sequenceNumber + 1).getOrElse(0L)
+    val newSnapshot = AccountNodeViewSnapshot(
+      nodeView,
+      sequenceNumber,
+      nodeView.history.bestBlockId,
+      nodeView.history.bestBlock,
+      nodeView.history.getCurrentHeight,
+      nodeView.state.getAccountStateRoot,
+      nodeView.state.stateMetadataVersion,
+      nodeView.history.activeChainIds
+    )
+    lastSnapshot.set(Some(newSnapshot))
+    newSnapshot
+  }
+}
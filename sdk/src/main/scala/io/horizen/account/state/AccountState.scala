@@ -10,7 +10,7 @@ import io.horizen.account.state.receipt.{EthereumConsensusDataLog, EthereumRecei
 import io.horizen.account.storage.AccountStateMetadataStorage
 import io.horizen.account.transaction.EthereumTransaction
 import io.horizen.account.utils.Secp256k1.generateContractAddress
-import io.horizen.account.utils.{AccountBlockFeeInfo, AccountFeePaymentsUtils, AccountPayment, FeeUtils}
+import io.horizen.account.utils.{AccountBlockFeeInfo, AccountFeePaymentsUtils, AccountPayment, BlockFeeStats, FeeUtils}
 import io.horizen.block.WithdrawalEpochCertificate
 import io.horizen.certificatesubmitter.keys.{CertifiersKeys, KeyRotationProof}
 import io.horizen.consensus.{ConsensusEpochInfo, ConsensusEpochNumber, ForgingStakeInfo, intToConsensusEpochNumber}
@@ -38,7 +38,8 @@ class AccountState(
     override val version: VersionTag,
     stateMetadataStorage: AccountStateMetadataStorage,
     stateDbStorage: Database,
-    messageProcessors: Seq[MessageProcessor]
+    messageProcessors: Seq[MessageProcessor],
+    stateDbViewPool: Option[StateDbViewPool] = None
 ) extends State[SidechainTypes#SCAT, AccountBlock, AccountStateView, AccountState]
       with TransactionValidation[SidechainTypes#SCAT]
       with NodeAccountState
@@ -47,6 +48,16 @@ class AccountState(
 
   override type NVCT = AccountState
 
+  // read-only views for the getters, shared by the following versions of the state
+  private lazy val stateDbViews: StateDbViewPool = stateDbViewPool.getOrElse {
+    val pool = new StateDbViewPool(stateDbStorage, messageProcessors, MessageProcessorDispatcher(messageProcessors))
+    Option(stateMetadataStorage.getAccountStateRoot).foreach(pool.setStateRoot)
+    pool
+  }
+
+  // shared by all the views of this state
+  private lazy val messageProcessorDispatcher = stateDbViews.dispatcher
+
   // Execute MessageProcessors initialization phase
   // Used once on genesis AccountState creation
   private def initProcessors(initialVersion: VersionTag): Try[AccountState] = Try {
@@ -231,7 +242,11 @@ class AccountState(
       // update next base fee
       stateView.updateNextBaseFee(FeeUtils.calculateNextBaseFee(mod, params))
 
+      // store the fee record of the block, used by the fee history and tip suggestion RPC methods
+      stateView.updateBlockFeeStats(blockNumber, BlockFeeStats(mod, receiptList.map(_.gasUsed)))
+
       stateView.commit(idToVersion(mod.id))
+      stateDbViews.setStateRoot(stateRoot)
 
       new AccountState(
         params,
@@ -240,7 +255,8 @@ class AccountState(
         idToVersion(mod.id),
         stateMetadataStorage,
         stateDbStorage,
-        messageProcessors
+        messageProcessors,
+        Some(stateDbViews)
       )
     }
   }
@@ -331,7 +347,9 @@ class AccountState(
   override def rollbackTo(version: VersionTag): Try[AccountState] = Try {
     require(version != null, "Version to rollback to must be NOT NULL.")
     val newMetaState = stateMetadataStorage.rollback(new ByteArrayWrapper(versionToBytes(version))).get
-    new AccountState(params, timeProvider, blockHashProvider, version, newMetaState, stateDbStorage, messageProcessors)
+    stateDbViews.setStateRoot(newMetaState.getAccountStateRoot)
+    new AccountState(params, timeProvider, blockHashProvider, version, newMetaState, stateDbStorage, messageProcessors,
+      Some(stateDbViews))
   } recoverWith { case exception =>
     log.error("Exception was thrown during rollback.", exception)
     Failure(exception)
@@ -346,30 +364,47 @@ class AccountState(
     val stateRoot = new Hash(stateMetadataStorage.getAccountStateRoot)
     val statedb = new StateDB(stateDbStorage, stateRoot)
 
-    new AccountStateView(stateMetadataStorage.getView, statedb, messageProcessors)
+    new AccountStateView(stateMetadataStorage.getView, statedb, messageProcessors, Some(messageProcessorDispatcher))
   }
 
+  // get a view built with the given state root, the metadata are read from the current version: they are consistent
+  // with the evm state only if no block was applied after the one of the given state root
+  def getViewFromRoot(stateRoot: Array[Byte]): AccountStateView =
+    new AccountStateView(stateMetadataStorage.getView, new StateDB(stateDbStorage, new Hash(stateRoot)), messageProcessors, Some(messageProcessorDispatcher))
+
   // get a view over state db which is built with the given state root
   def getStateDbViewFromRoot(stateRoot: Array[Byte]): StateDbAccountStateView =
-    new StateDbAccountStateView(new StateDB(stateDbStorage, new Hash(stateRoot)), messageProcessors)
+    new StateDbAccountStateView(new StateDB(stateDbStorage, new Hash(stateRoot)), messageProcessors, dispatcher = Some(messageProcessorDispatcher))
+
+  // read-only view at the current state root, taken from the pool of views
+  private def usingStateDbView[A](f: StateDbAccountStateView => A): A =
+    stateDbViews.withView(stateMetadataStorage.getAccountStateRoot)(f)
+
+  // read-only view at the given state root, taken from the pool of views: the callers pinning a root see the same
+  // state in all their reads, whatever is applied meanwhile
+  def usingStateDbViewAt[A](stateRoot: Array[Byte])(f: StateDbAccountStateView => A): A =
+    stateDbViews.withView(stateRoot)(f)
+
+  // closes the idle views of the pool, before the state db storage is closed
+  def closeStateDbViews(): Unit = stateDbViews.close()
 
   // Base getters
   override def getWithdrawalRequests(withdrawalEpoch: Int): Seq[WithdrawalRequest] =
-    using(getView)(_.getWithdrawalRequests(withdrawalEpoch))
+    usingStateDbView(_.getWithdrawalRequests(withdrawalEpoch))
 
   override def backwardTransfers(withdrawalEpoch: Int): Seq[BackwardTransfer] =
-    using(getView)(_.getWithdrawalRequests(withdrawalEpoch))
+    usingStateDbView(_.getWithdrawalRequests(withdrawalEpoch))
       .map(wr => new BackwardTransfer(wr.proposition.bytes(), wr.valueInZennies))
 
   override def keyRotationProof(withdrawalEpoch: Int, indexOfSigner: Int, keyType: Int): Option[KeyRotationProof] = {
-    using(getView)(_.keyRotationProof(withdrawalEpoch, indexOfSigner, keyType))
+    usingStateDbView(_.keyRotationProof(withdrawalEpoch, indexOfSigner, keyType))
   }
 
   override def certifiersKeys(withdrawalEpoch: Int): Option[CertifiersKeys] = {
     if (withdrawalEpoch == -1 || params.circuitType == NaiveThresholdSignatureCircuit)
       Some(CertifiersKeys(params.signersPublicKeys.toVector, params.mastersPublicKeys.toVector))
     else {
-      using(getView)(_.certifiersKeys(withdrawalEpoch))
+      usingStateDbView(_.certifiersKeys(withdrawalEpoch))
     }
   }
 
@@ -397,7 +432,7 @@ class AccountState(
 
   override def getConsensusEpochNumber: Option[ConsensusEpochNumber] = stateMetadataStorage.getConsensusEpochNumber
 
-  override def getOrderedForgingStakesInfoSeq(epochNumber: Int): Seq[ForgingStakeInfo] = using(getView)(_.getOrderedForgingStakesInfoSeq(epochNumber))
+  override def getOrderedForgingStakesInfoSeq(epochNumber: Int): Seq[ForgingStakeInfo] = usingStateDbView(_.getOrderedForgingStakesInfoSeq(epochNumber))
 
   // Returns lastBlockInEpoch and ConsensusEpochInfo for that epoch
   // TODO this is common code with SidechainState
@@ -422,33 +457,40 @@ class AccountState(
   }
 
   // Account specific getters
-  override def getBalance(address: Address): BigInteger = using(getView)(_.getBalance(address))
+  override def getBalance(address: Address): BigInteger = usingStateDbView(_.getBalance(address))
 
   override def getAccountStateRoot: Array[Byte] = stateMetadataStorage.getAccountStateRoot
 
-  override def getCodeHash(address: Address): Array[Byte] = using(getView)(_.getCodeHash(address))
+  // fee record of the block at the given height, None if it was applied before fee records were introduced
+  def getBlockFeeStats(height: Int): Option[BlockFeeStats] = stateMetadataStorage.getBlockFeeStats(height)
+
+  // last committed version of the state metadata storage, empty if nothing has been committed yet
+  def stateMetadataVersion: String =
+    stateMetadataStorage.lastVersionId.map(version => BytesUtils.toHexString(version.data())).getOrElse("")
 
-  override def getNonce(address: Address): BigInteger = using(getView)(_.getNonce(address))
+  override def getCodeHash(address: Address): Array[Byte] = usingStateDbView(_.getCodeHash(address))
 
-  override def getListOfForgersStakes(isForkV1_3Active: Boolean): Seq[AccountForgingStakeInfo] = using(getView)(_.getListOfForgersStakes(isForkV1_3Active))
+  override def getNonce(address: Address): BigInteger = usingStateDbView(_.getNonce(address))
 
-  override def getPagedListOfForgersStakes(startPos: Int, pageSize: Int): (Int, Seq[AccountForgingStakeInfo]) =  using(getView)(_.getPagedListOfForgersStakes(startPos, pageSize))
+  override def getListOfForgersStakes(isForkV1_3Active: Boolean): Seq[AccountForgingStakeInfo] = usingStateDbView(_.getListOfForgersStakes(isForkV1_3Active))
 
-  override def getAllowedForgerList: Seq[Int] = using(getView)(_.getAllowedForgerList)
+  override def getPagedListOfForgersStakes(startPos: Int, pageSize: Int): (Int, Seq[AccountForgingStakeInfo]) =  usingStateDbView(_.getPagedListOfForgersStakes(startPos, pageSize))
 
-  override def getForgerStakeData(stakeId: String, isForkV1_3Active: Boolean): Option[ForgerStakeData] = using(getView)(_.getForgerStakeData(stakeId, isForkV1_3Active))
+  override def getAllowedForgerList: Seq[Int] = usingStateDbView(_.getAllowedForgerList)
 
-  override def getListOfMcAddrOwnerships(scAddressOpt: Option[String] = None): Seq[McAddrOwnershipData] = using(getView)(_.getListOfMcAddrOwnerships(scAddressOpt))
+  override def getForgerStakeData(stakeId: String, isForkV1_3Active: Boolean): Option[ForgerStakeData] = usingStateDbView(_.getForgerStakeData(stakeId, isForkV1_3Active))
 
-  override def getListOfOwnerScAddresses(): Seq[OwnerScAddress] = using(getView)(_.getListOfOwnerScAddresses())
+  override def getListOfMcAddrOwnerships(scAddressOpt: Option[String] = None): Seq[McAddrOwnershipData] = usingStateDbView(_.getListOfMcAddrOwnerships(scAddressOpt))
 
-  override def ownershipDataExist(ownershipId: Array[Byte]): Boolean = using(getView)(_.ownershipDataExist(ownershipId))
+  override def getListOfOwnerScAddresses(): Seq[OwnerScAddress] = usingStateDbView(_.getListOfOwnerScAddresses())
+
+  override def ownershipDataExist(ownershipId: Array[Byte]): Boolean = usingStateDbView(_.ownershipDataExist(ownershipId))
 
   override def getLogs(txHash: Array[Byte]): Array[EthereumConsensusDataLog] = using(getView)(_.getLogs(txHash))
 
   override def getIntermediateRoot: Array[Byte] = using(getView)(_.getIntermediateRoot)
 
-  override def getCode(address: Address): Array[Byte] = using(getView)(_.getCode(address))
+  override def getCode(address: Address): Array[Byte] = usingStateDbView(_.getCode(address))
 
   override def getNextBaseFee: BigInteger = using(getView)(_.getNextBaseFee)
 
@@ -456,17 +498,23 @@ class AccountState(
 
   override def getStateDbHandle: ResourceHandle = using(getView)(_.getStateDbHandle)
 
-  override def getAccountStorage(address: Address, key: Array[Byte]): Array[Byte] = using(getView)(_.getAccountStorage(address, key))
+  override def getAccountStorage(address: Address, key: Array[Byte]): Array[Byte] = usingStateDbView(_.getAccountStorage(address, key))
+
+  override def getAccountStorageBytes(address: Address, key: Array[Byte]): Array[Byte] = usingStateDbView(_.getAccountStorageBytes(address, key))
 
-  override def getAccountStorageBytes(address: Address, key: Array[Byte]): Array[Byte] = using(getView)(_.getAccountStorageBytes(address, key))
+  override def accountExists(address: Address): Boolean = usingStateDbView(_.accountExists(address))
 
-  override def accountExists(address: Address): Boolean = using(getView)(_.accountExists(address))
+  override def isEoaAccount(address: Address): Boolean = usingStateDbView(_.isEoaAccount(address))
 
-  override def isEoaAccount(address: Address): Boolean = using(getView)(_.isEoaAccount(address))
+  override def isSmartContractAccount(address: Address): Boolean = usingStateDbView(_.isSmartContractAccount(address))
 
-  override def isSmartContractAccount(address: Address): Boolean = using(getView)(_.isSmartContractAccount(address))
+  override def validate(tx: SidechainTypes#SCAT): Try[Unit] =
+    validateStateless(tx).flatMap(_ => usingStateDbView(stateView => validateAgainstState(tx, stateView)))
 
-  override def validate(tx: SidechainTypes#SCAT): Try[Unit] = Try {
+  /**
+   * Checks of the tx that don't depend on the accounts: they can run in parallel on the threads submitting the txs.
+   */
+  def validateStateless(tx: SidechainTypes#SCAT): Try[Unit] = Try {
 
     if (!tx.isInstanceOf[EthereumTransaction]) {
       val errMsg = s"Transaction ${tx.id}: instance of class ${tx.getClass.getName}, not of type ${classOf[EthereumTransaction].getName}"
@@ -494,26 +542,35 @@ class AccountState(
 
     if (feeFork.baseFeeMinimum.compareTo(ethTx.getMaxFeePerGas) > 0)
       throw new IllegalArgumentException(s"max fee per gas below minimum: address $sender, maxFeePerGas ${ethTx.getMaxFeePerGas}, minimum ${feeFork.baseFeeMinimum}")
+  } recoverWith { case t =>
+    log.debug(s"Not valid transaction ${tx.id}", t)
+    Failure(t)
+  }
 
-    using(getView) { stateView =>
-        // Check the nonce
-        val stateNonce = stateView.getNonce(sender)
-        if (stateNonce.compareTo(ethTx.getNonce) > 0) {
-          throw NonceTooLowException(sender, ethTx.getNonce, stateNonce)
-        }
+  /**
+   * Checks of the tx against the nonce, balance and code of its sender in the given state view. The tx must have
+   * passed validateStateless.
+   */
+  def validateAgainstState(tx: SidechainTypes#SCAT, stateView: AccountStateReader): Try[Unit] = Try {
+    val ethTx = tx.asInstanceOf[EthereumTransaction]
+    val sender = ethTx.getFrom.address()
 
-        // Check the balance
-        val maxTxCost = ethTx.maxCost
-        val currentBalance = stateView.getBalance(sender)
-        if (currentBalance.compareTo(maxTxCost) < 0) {
-          throw new IllegalArgumentException(s"Insufficient funds for executing transaction: balance $currentBalance, tx cost $maxTxCost")
-        }
+    // Check the nonce
+    val stateNonce = stateView.getNonce(sender)
+    if (stateNonce.compareTo(ethTx.getNonce) > 0) {
+      throw NonceTooLowException(sender, ethTx.getNonce, stateNonce)
+    }
 
-        // Check that the sender is an EOA
-        if (!stateView.isEoaAccount(sender))
-          throw SenderNotEoaException(sender, stateView.getCodeHash(sender))
+    // Check the balance
+    val maxTxCost = ethTx.maxCost
+    val currentBalance = stateView.getBalance(sender)
+    if (currentBalance.compareTo(maxTxCost) < 0) {
+      throw new IllegalArgumentException(s"Insufficient funds for executing transaction: balance $currentBalance, tx cost $maxTxCost")
+    }
 
-      }
+    // Check that the sender is an EOA
+    if (!stateView.isEoaAccount(sender))
+      throw SenderNotEoaException(sender, stateView.getCodeHash(sender))
   } recoverWith { case t =>
     log.debug(s"Not valid transaction ${tx.id}", t)
     Failure(t)
@@ -526,12 +583,12 @@ class AccountState(
 
   override def isForgingOpen: Boolean = {
     if (params.restrictForgers)
-      using(getView)(_.isForgingOpen)
+      usingStateDbView(_.isForgingOpen)
     else
       true
   }
 
-  override def isForgerStakeAvailable(isForkV1_3Active: Boolean): Boolean = using(getView)(_.isForgerStakeAvailable(isForkV1_3Active))
+  override def isForgerStakeAvailable(isForkV1_3Active: Boolean): Boolean = usingStateDbView(_.isForgerStakeAvailable(isForkV1_3Active))
 
   override def utxoMerkleTreeRoot(withdrawalEpoch: Int): Option[Array[Byte]] = {
     // TODO: no CSW support expected for the Eth sidechain
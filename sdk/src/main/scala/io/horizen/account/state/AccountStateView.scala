@@ -4,12 +4,12 @@ import io.horizen.SidechainTypes
 import io.horizen.account.fork.Version1_2_0Fork
 import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.receipt.EthereumReceipt
-import io.horizen.account.storage.AccountStateMetadataStorageView
+import io.horizen.account.storage.{AccountStateMetadataStorageView, LogIndexPosting}
 import io.horizen.account.utils._
 import io.horizen.block.{MainchainBlockReferenceData, WithdrawalEpochCertificate}
 import io.horizen.consensus.ConsensusEpochNumber
 import io.horizen.state.StateView
-import io.horizen.utils.WithdrawalEpochInfo
+import io.horizen.utils.{ByteArrayWrapper, WithdrawalEpochInfo}
 import io.horizen.evm.StateDB
 import sparkz.core.VersionTag
 import sparkz.util.{ModifierId, SparkzLogging}
@@ -24,8 +24,9 @@ import java.math.BigInteger
 class AccountStateView(
     metadataStorageView: AccountStateMetadataStorageView,
     stateDb: StateDB,
-    messageProcessors: Seq[MessageProcessor]
-) extends StateDbAccountStateView(stateDb, messageProcessors)
+    messageProcessors: Seq[MessageProcessor],
+    dispatcher: Option[MessageProcessorDispatcher] = None
+) extends StateDbAccountStateView(stateDb, messageProcessors, dispatcher = dispatcher)
       with StateView[SidechainTypes#SCAT]
       with SparkzLogging {
 
@@ -59,10 +60,19 @@ class AccountStateView(
   def getTransactionReceipt(txHash: Array[Byte]): Option[EthereumReceipt] =
     metadataStorageView.getTransactionReceipt(txHash)
 
+  def getLogIndexStartHeight: Option[Int] = metadataStorageView.getLogIndexStartHeight
+
+  def getLogIndexPostingsCount(term: ByteArrayWrapper): Int = metadataStorageView.getLogIndexPostingsCount(term)
+
+  def getLogIndexPostings(term: ByteArrayWrapper, fromBlock: Int, toBlock: Int): Iterator[LogIndexPosting] =
+    metadataStorageView.getLogIndexPostings(term, fromBlock, toBlock)
+
   def updateNextBaseFee(baseFee: BigInteger): Unit = metadataStorageView.updateNextBaseFee(baseFee)
 
   def getNextBaseFee: BigInteger = metadataStorageView.getNextBaseFee
 
+  def updateBlockFeeStats(height: Int, stats: BlockFeeStats): Unit = metadataStorageView.updateBlockFeeStats(height, stats)
+
   override def setCeased(): Unit = metadataStorageView.setCeased()
 
   override def commit(version: VersionTag): Unit = {
@@ -14,6 +14,8 @@ object GasUtil {
   val TxDataZeroGas: BigInteger = BigInteger.valueOf(4)
   val TxDataNonZeroGasEIP2028: BigInteger = BigInteger.valueOf(16)
   val InitCodeWordGas: BigInteger = BigInteger.valueOf(2)
+  // Free gas given at beginning of call
+  val CallStipend: BigInteger = BigInteger.valueOf(2300)
 
 
   val ColdAccountAccessCostEIP2929: BigInteger = BigInteger.valueOf(2600)
@@ -0,0 +1,35 @@
+package io.horizen.account.state
+
+import io.horizen.evm.Address
+
+/**
+ * Selects the message processor of an invocation: the first processor of the list that can process it, exactly as a
+ * linear scan calling canProcess would do, with less work per invocation.
+ *
+ * A native smart contract processor can only process invocations to its own contract address (its canProcess is
+ * final and checks it), so processors are indexed by native contract address: an invocation is only tested against
+ * the native processor of its callee, if any, and the processors that are not bound to an address. The candidates
+ * are tested with their own canProcess.
+ */
+case class MessageProcessorDispatcher(messageProcessors: Seq[MessageProcessor]) {
+
+  private def nativeAddress(processor: MessageProcessor): Option[Address] = processor match {
+    case native: NativeSmartContractMsgProcessor => Option(native.contractAddress)
+    case _ => None
+  }
+
+  // processors that can process invocations to a native contract address, in the original order
+  private val processorsByNativeAddress: Map[Address, Array[MessageProcessor]] =
+    messageProcessors.flatMap(nativeAddress).distinct.map(address =>
+      address -> messageProcessors.filter(p => nativeAddress(p).forall(_ == address)).toArray
+    ).toMap
+
+  // processors that can process invocations to any other address and contract deployments, in the original order
+  private val processorsOfOtherAddresses: Array[MessageProcessor] =
+    messageProcessors.filter(nativeAddress(_).isEmpty).toArray
+
+  def find(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Option[MessageProcessor] = {
+    val candidates = invocation.callee.flatMap(processorsByNativeAddress.get).getOrElse(processorsOfOtherAddresses)
+    candidates.find(_.canProcess(invocation, view, consensusEpochNumber))
+  }
+}
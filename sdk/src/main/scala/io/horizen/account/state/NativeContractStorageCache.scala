@@ -0,0 +1,52 @@
+package io.horizen.account.state
+
+import io.horizen.evm.Address
+import io.horizen.utils.ByteArrayWrapper
+
+import scala.collection.mutable
+
+/**
+ * Write-through cache of the storage slots of native smart contracts, shared by a state view and its gas tracked
+ * views. Native contracts read the same slots over and over (list heads, sizes, linked list nodes), and each StateDB
+ * read is a call into libevm.
+ *
+ * Every write still goes to StateDB, so the cache never holds changes that StateDB doesn't have and there is
+ * nothing to flush on commit. It is discarded when StateDB may change behind it:
+ *   - on revert to a snapshot;
+ *   - while a processor executing outside of the view (e.g. the EVM) is running: StateDB may revert the writes of
+ *     nested native contract calls by itself, so the cache is suspended until it returns.
+ */
+class NativeContractStorageCache(nativeContractAddresses: Set[Address]) {
+
+  private val slots = mutable.HashMap[Address, mutable.HashMap[ByteArrayWrapper, Array[Byte]]]()
+  private var suspended = 0
+
+  private def isCached(address: Address): Boolean = suspended == 0 && nativeContractAddresses.contains(address)
+
+  def get(address: Address, key: Array[Byte])(read: => Array[Byte]): Array[Byte] = {
+    if (!isCached(address))
+      return read
+    val contractSlots = slots.getOrElseUpdate(address, mutable.HashMap())
+    contractSlots.getOrElseUpdate(new ByteArrayWrapper(key.clone()), read).clone()
+  }
+
+  def put(address: Address, key: Array[Byte], value: Array[Byte]): Unit = {
+    if (isCached(address))
+      slots.getOrElseUpdate(address, mutable.HashMap()).put(new ByteArrayWrapper(key.clone()), value.clone())
+  }
+
+  def clear(): Unit = slots.clear()
+
+  /**
+   * Discards the cache and bypasses it until the matching resume.
+   */
+  def suspend(): Unit = {
+    clear()
+    suspended += 1
+  }
+
+  def resume(): Unit = {
+    clear()
+    suspended -= 1
+  }
+}
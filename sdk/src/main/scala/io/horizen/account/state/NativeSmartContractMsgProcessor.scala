@@ -26,11 +26,18 @@ abstract class NativeSmartContractMsgProcessor extends MessageProcessor with Spa
 
   override def customTracing(): Boolean = false
 
-  override def canProcess(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
+  // Final: a native smart contract only processes invocations to its own contract address, the dispatcher relies on it.
+  // The subclasses restrict the invocations they process with canProcessContractInvocation.
+  override final def canProcess(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
     // we rely on the condition that init() has already been called at this point
-    invocation.callee.exists(contractAddress.equals(_))
+    invocation.callee.exists(contractAddress.equals(_)) && canProcessContractInvocation(invocation, view, consensusEpochNumber)
   }
 
+  /**
+   * Checks if an invocation to the contract address can be processed.
+   */
+  protected def canProcessContractInvocation(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = true
+
   def getEthereumConsensusDataLog(event: Any): EthereumConsensusDataLog = {
     EthereumEvent.getEthereumConsensusDataLog(contractAddress, event)
   }
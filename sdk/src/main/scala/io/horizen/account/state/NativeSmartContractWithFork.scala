@@ -36,8 +36,8 @@ abstract class NativeSmartContractWithFork extends NativeSmartContractMsgProcess
       log.warn("Can not perform initialization, fork is not active")
   }
 
-  override def canProcess(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
-    if (super.canProcess(invocation, view, consensusEpochNumber)) {
+  override protected def canProcessContractInvocation(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
+    if (super.canProcessContractInvocation(invocation, view, consensusEpochNumber)) {
       if (isForkActive(consensusEpochNumber)) {
         // the gas cost of these calls is not taken into account in this case, we are not tracking gas consumption (and
         // there is not an account to charge anyway)
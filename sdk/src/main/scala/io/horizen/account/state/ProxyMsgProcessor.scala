@@ -20,8 +20,8 @@ case class ProxyMsgProcessor(params: NetworkParams) extends NativeSmartContractW
   override val contractAddress: Address = PROXY_SMART_CONTRACT_ADDRESS
   override val contractCode: Array[Byte] = Keccak256.hash("ProxySmartContractCode")
 
-  override def canProcess(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
-    params.isInstanceOf[RegTestParams] && super.canProcess(invocation, view, consensusEpochNumber)
+  override protected def canProcessContractInvocation(invocation: Invocation, view: BaseAccountStateView, consensusEpochNumber: Int): Boolean = {
+    params.isInstanceOf[RegTestParams] && super.canProcessContractInvocation(invocation, view, consensusEpochNumber)
   }
 
   override def isForkActive(consensusEpochNumber: Int): Boolean = {
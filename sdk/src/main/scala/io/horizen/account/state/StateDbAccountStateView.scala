@@ -25,10 +25,16 @@ import scala.util.Try
 class StateDbAccountStateView(
     stateDb: StateDB,
     messageProcessors: Seq[MessageProcessor],
-    var readOnly: Boolean = false
+    var readOnly: Boolean = false,
+    dispatcher: Option[MessageProcessorDispatcher] = None,
+    storageCache: Option[NativeContractStorageCache] = None
 ) extends BaseAccountStateView
       with AutoCloseable
       with SparkzLogging {
+  // selects the processor of each invocation, usually shared by all the views of a state
+  lazy val messageProcessorDispatcher: MessageProcessorDispatcher =
+    dispatcher.getOrElse(MessageProcessorDispatcher(messageProcessors))
+
   lazy val withdrawalReqProvider: WithdrawalRequestProvider =
     messageProcessors.find(_.isInstanceOf[WithdrawalRequestProvider]).get.asInstanceOf[WithdrawalRequestProvider]
   lazy val forgerStakesProvider: ForgerStakesProvider =
@@ -43,6 +49,10 @@ class StateDbAccountStateView(
     case msgProcessor: NativeSmartContractMsgProcessor => msgProcessor.contractAddress
   }.toArray
 
+  // storage slots of the native smart contracts, shared with the gas tracked views
+  lazy val nativeContractStorageCache: NativeContractStorageCache =
+    storageCache.getOrElse(new NativeContractStorageCache(listOfNativeSmartContractAddresses.toSet))
+
   override def keyRotationProof(withdrawalEpoch: Int, indexOfSigner: Int, keyType: Int): Option[KeyRotationProof] = {
     certificateKeysProvider.getKeyRotationProof(withdrawalEpoch, indexOfSigner, KeyRotationProofTypes(keyType), this)
   }
@@ -166,7 +176,7 @@ class StateDbAccountStateView(
   @throws(classOf[InvalidMessageException])
   @throws(classOf[ExecutionFailedException])
   def applyMessage(msg: Message, blockGasPool: GasPool, blockContext: BlockContext): Array[Byte] = {
-    new StateTransition(this, messageProcessors, blockGasPool, blockContext, msg).transition()
+    new StateTransition(this, messageProcessorDispatcher, blockGasPool, blockContext, msg).transition()
   }
 
   /**
@@ -281,11 +291,13 @@ class StateDbAccountStateView(
   }
 
   override def getAccountStorage(address: Address, key: Array[Byte]): Array[Byte] =
-    stateDb.getStorage(address, new Hash(key)).toBytes
+    nativeContractStorageCache.get(address, key)(stateDb.getStorage(address, new Hash(key)).toBytes)
 
   override def updateAccountStorage(address: Address, key: Array[Byte], value: Array[Byte]): Unit = {
     if (readOnly) throw new WriteProtectionException("invalid write access to storage")
-    stateDb.setStorage(address, new Hash(key), new Hash(value))
+    val storageValue = new Hash(value)
+    stateDb.setStorage(address, new Hash(key), storageValue)
+    nativeContractStorageCache.put(address, key, storageValue.toBytes)
   }
 
   final override def removeAccountStorage(address: Address, key: Array[Byte]): Unit =
@@ -374,10 +386,14 @@ class StateDbAccountStateView(
 
   def finalizeChanges(): Unit = stateDb.finalizeChanges()
 
-  def revertToSnapshot(revisionId: Int): Unit = stateDb.revertToSnapshot(revisionId)
+  def revertToSnapshot(revisionId: Int): Unit = {
+    stateDb.revertToSnapshot(revisionId)
+    nativeContractStorageCache.clear()
+  }
 
   override def getGasTrackedView(gas: GasPool): BaseAccountStateView =
-    new StateDbAccountStateViewGasTracked(stateDb, messageProcessors, readOnly, gas)
+    new StateDbAccountStateViewGasTracked(stateDb, messageProcessors, readOnly, gas, Some(messageProcessorDispatcher),
+      Some(nativeContractStorageCache))
 
   /**
    * Prevent write access to account storage, balance, nonce and code. While write protection is enabled invalid access
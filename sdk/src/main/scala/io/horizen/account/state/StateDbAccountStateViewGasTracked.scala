@@ -14,8 +14,10 @@ class StateDbAccountStateViewGasTracked(
     stateDb: StateDB,
     messageProcessors: Seq[MessageProcessor],
     readOnly: Boolean,
-    gas: GasPool
-) extends StateDbAccountStateView(stateDb, messageProcessors, readOnly) {
+    gas: GasPool,
+    dispatcher: Option[MessageProcessorDispatcher] = None,
+    storageCache: Option[NativeContractStorageCache] = None
+) extends StateDbAccountStateView(stateDb, messageProcessors, readOnly, dispatcher, storageCache) {
 
   /**
    * Consume gas for account access:
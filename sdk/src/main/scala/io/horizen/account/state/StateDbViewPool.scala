@@ -0,0 +1,99 @@
+package io.horizen.account.state
+
+import io.horizen.evm.{Database, Hash, StateDB}
+import io.horizen.utils.ByteArrayWrapper
+
+/**
+ * Pool of write protected StateDB views over the current state root, used by the read accessors of AccountState
+ * instead of opening and closing a native StateDB for every lookup.
+ *
+ * Idle views are only kept for the current state root, set by the owner of the pool when the state changes (block
+ * applied, rollback): the idle views of the previous root are closed then. A lookup at another root, e.g. of a caller
+ * pinning an older root, uses a view opened for the lookup only and never moves the current root.
+ * A view is only used by one caller at a time, and it is closed instead of being pooled back if the caller failed.
+ * Closing the pool closes its idle views, the views in use are closed when released.
+ */
+class StateDbViewPool(
+    stateDbStorage: Database,
+    messageProcessors: Seq[MessageProcessor],
+    val dispatcher: MessageProcessorDispatcher,
+    maxIdleViews: Int = StateDbViewPool.DEFAULT_MAX_IDLE_VIEWS
+) extends AutoCloseable {
+
+  private var currentRoot: ByteArrayWrapper = _
+  private var idleViews = List.empty[StateDbAccountStateView]
+  private var closed = false
+
+  protected def openView(stateRoot: Array[Byte]): StateDbAccountStateView =
+    new StateDbAccountStateView(new StateDB(stateDbStorage, new Hash(stateRoot)), messageProcessors,
+      readOnly = true, dispatcher = Some(dispatcher))
+
+  /**
+   * Sets the current state root, closing the idle views of the previous one.
+   */
+  def setStateRoot(stateRoot: Array[Byte]): Unit = {
+    val root = new ByteArrayWrapper(stateRoot)
+    val staleViews = synchronized {
+      if (root == currentRoot) {
+        Seq()
+      } else {
+        currentRoot = root
+        val views = idleViews
+        idleViews = List.empty
+        views
+      }
+    }
+    staleViews.foreach(_.close())
+  }
+
+  private def borrow(root: ByteArrayWrapper): Option[StateDbAccountStateView] = synchronized {
+    idleViews match {
+      case view :: others if root == currentRoot =>
+        idleViews = others
+        Some(view)
+      case _ => None
+    }
+  }
+
+  private def release(root: ByteArrayWrapper, view: StateDbAccountStateView): Unit = {
+    val pooled = synchronized {
+      val pool = !closed && root == currentRoot && idleViews.size < maxIdleViews
+      if (pool) idleViews = view :: idleViews
+      pool
+    }
+    if (!pooled) view.close()
+  }
+
+  def idleCount: Int = synchronized(idleViews.size)
+
+  /**
+   * Applies the function to a view at the given state root, pooled if the root is the current one.
+   */
+  def withView[A](stateRoot: Array[Byte])(f: StateDbAccountStateView => A): A = {
+    val root = new ByteArrayWrapper(stateRoot)
+    val view = borrow(root).getOrElse(openView(stateRoot))
+    val result = try {
+      f(view)
+    } catch {
+      case e: Throwable =>
+        view.close()
+        throw e
+    }
+    release(root, view)
+    result
+  }
+
+  override def close(): Unit = {
+    val views = synchronized {
+      closed = true
+      val views = idleViews
+      idleViews = List.empty
+      views
+    }
+    views.foreach(_.close())
+  }
+}
+
+object StateDbViewPool {
+  val DEFAULT_MAX_IDLE_VIEWS = 8
+}
@@ -12,7 +12,7 @@ import scala.util.{Failure, Success, Try}
 
 class StateTransition(
     view: StateDbAccountStateView,
-    messageProcessors: Seq[MessageProcessor],
+    messageProcessorDispatcher: MessageProcessorDispatcher,
     blockGasPool: GasPool,
     val blockContext: BlockContext,
     val msg: Message,
@@ -179,7 +179,7 @@ class StateTransition(
         throw new WriteProtectionException("invalid value transfer during read-only invocation")
       }
       // find and execute the first matching processor
-      messageProcessors.find(_.canProcess(invocation, view, blockContext.consensusEpochNumber)) match {
+      messageProcessorDispatcher.find(invocation, view, blockContext.consensusEpochNumber) match {
         case None =>
           log.error(s"No message processor found for invocation: $invocation")
           throw new IllegalArgumentException("Unable to execute invocation.")
@@ -241,7 +241,15 @@ class StateTransition(
     // create a snapshot before any changes are made by the processor
     val revert = view.snapshot
     // execute the message processor
-    val result = Try.apply(processor.process(invocation, view, this))
+    val result = processor match {
+      case _: NativeSmartContractMsgProcessor | EoaMessageProcessor =>
+        Try.apply(processor.process(invocation, view, this))
+      case _ =>
+        // the processor may change the StateDB outside of the view, e.g. the EVM reverting nested native contract calls
+        view.nativeContractStorageCache.suspend()
+        try Try.apply(processor.process(invocation, view, this))
+        finally view.nativeContractStorageCache.resume()
+    }
     // handle errors
     result match {
       // if the processor throws ExecutionRevertedException we revert changes
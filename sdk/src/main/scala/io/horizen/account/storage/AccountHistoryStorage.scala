@@ -3,13 +3,17 @@ package io.horizen.account.storage
 import io.horizen.account.block.{AccountBlock, AccountBlockSerializer}
 import io.horizen.account.chain.{AccountFeePaymentsInfo, AccountFeePaymentsInfoSerializer}
 import io.horizen.account.companion.SidechainAccountTransactionsCompanion
+import io.horizen.chain.ActiveChainCheckpoint
 import io.horizen.params.NetworkParams
 import io.horizen.storage.{AbstractHistoryStorage, Storage}
 
 
 class AccountHistoryStorage(storage: Storage,
                             sidechainTransactionsCompanion: SidechainAccountTransactionsCompanion,
-                            params: NetworkParams)
+                            params: NetworkParams,
+                            blockCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_CACHE_MAX_BYTES,
+                            blockInfoCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_INFO_CACHE_MAX_BYTES,
+                            activeChainCheckpoint: Option[ActiveChainCheckpoint] = None)
   extends AbstractHistoryStorage[
     AccountBlock,
     AccountFeePaymentsInfo,
@@ -17,5 +21,8 @@ class AccountHistoryStorage(storage: Storage,
       storage,
       new AccountBlockSerializer(sidechainTransactionsCompanion),
       AccountFeePaymentsInfoSerializer,
-      params
+      params,
+      blockCacheMaxBytes,
+      blockInfoCacheMaxBytes,
+      activeChainCheckpoint
     ) {}
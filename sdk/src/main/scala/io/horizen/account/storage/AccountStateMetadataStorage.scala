@@ -2,7 +2,7 @@ package io.horizen.account.storage
 
 import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.receipt.EthereumReceipt
-import io.horizen.account.utils.AccountBlockFeeInfo
+import io.horizen.account.utils.{AccountBlockFeeInfo, BlockFeeStats}
 import io.horizen.block.WithdrawalEpochCertificate
 import io.horizen.consensus.ConsensusEpochNumber
 import io.horizen.storage.{SidechainStorageInfo, Storage}
@@ -56,6 +56,8 @@ class AccountStateMetadataStorage(storage: Storage)
 
   override def getTransactionReceipt(txHash: Array[Byte]): Option[EthereumReceipt] = getView.getTransactionReceipt(txHash)
 
+  override def getBlockFeeStats(height: Int): Option[BlockFeeStats] = getView.getBlockFeeStats(height)
+
   override def getForgerBlockCounters: Map[AddressProposition, Long] = getView.getForgerBlockCounters
 
   override def getMcForgerPoolRewards: Map[AddressProposition, BigInteger] = getView.getMcForgerPoolRewards
@@ -2,7 +2,7 @@ package io.horizen.account.storage
 
 import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.receipt.EthereumReceipt
-import io.horizen.account.utils.AccountBlockFeeInfo
+import io.horizen.account.utils.{AccountBlockFeeInfo, BlockFeeStats}
 import io.horizen.block.WithdrawalEpochCertificate
 import io.horizen.consensus.ConsensusEpochNumber
 import io.horizen.utils.WithdrawalEpochInfo
@@ -27,6 +27,8 @@ trait AccountStateMetadataStorageReader {
 
   def getTransactionReceipt(txHash: Array[Byte]): Option[EthereumReceipt]
 
+  def getBlockFeeStats(height: Int): Option[BlockFeeStats]
+
   def hasCeased: Boolean
 
   // tip height
@@ -5,7 +5,7 @@ import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.{ForgerBlockCountersSerializer, McForgerPoolRewardsSerializer}
 import io.horizen.account.state.receipt.{EthereumReceipt, EthereumReceiptSerializer}
 import io.horizen.account.storage.AccountStateMetadataStorageView.DEFAULT_ACCOUNT_STATE_ROOT
-import io.horizen.account.utils.{AccountBlockFeeInfo, AccountBlockFeeInfoSerializer, FeeUtils}
+import io.horizen.account.utils.{AccountBlockFeeInfo, AccountBlockFeeInfoSerializer, BlockFeeStats, BlockFeeStatsSerializer, FeeUtils}
 import io.horizen.block.SidechainBlockBase.GENESIS_BLOCK_PARENT_ID
 import io.horizen.block.{WithdrawalEpochCertificate, WithdrawalEpochCertificateSerializer}
 import io.horizen.consensus.{ConsensusEpochNumber, intToConsensusEpochNumber}
@@ -33,6 +33,7 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
   private[horizen] val consensusEpochKey = calculateKey("consensusEpoch".getBytes(StandardCharsets.UTF_8))
   private[horizen] val accountStateRootKey = calculateKey("accountStateRoot".getBytes(StandardCharsets.UTF_8))
   private[horizen] val baseFeeKey = calculateKey("baseFee".getBytes(StandardCharsets.UTF_8))
+  private[horizen] val logIndexStartHeightKey = calculateKey("logIndexStartHeight".getBytes(StandardCharsets.UTF_8))
 
   private val undefinedBlockFeeInfoCounter: Int = -1
 
@@ -50,6 +51,8 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
   private[horizen] var receiptsOpt: Option[Seq[EthereumReceipt]] = None
   //Contains the base fee to be used when forging the next block
   private[horizen] var nextBaseFeeOpt: Option[BigInteger] = None
+  // fee record of the block being applied, along with its height
+  private[horizen] var blockFeeStatsOpt: Option[(Int, BlockFeeStats)] = None
 
   // all getters same as in StateMetadataStorage, but looking first in the cached/dirty entries in memory
 
@@ -205,6 +208,66 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
     }
   }
 
+  /**
+   * Height of the first block whose logs have been indexed, None if no block has been indexed yet.
+   * Blocks applied before the log index was introduced are not indexed.
+   */
+  def getLogIndexStartHeight: Option[Int] = {
+    storage.get(logIndexStartHeightKey).asScala.map(baw => Ints.fromByteArray(baw.data))
+  }
+
+  // number of postings of the given log index term
+  def getLogIndexPostingsCount(term: ByteArrayWrapper): Int = {
+    storage.get(getLogIndexCounterKey(term)).asScala.map(baw => Ints.fromByteArray(baw.data)).getOrElse(0)
+  }
+
+  private def getLogIndexPosting(term: ByteArrayWrapper, position: Int): LogIndexPosting = {
+    storage.get(getLogIndexPostingKey(term, position)).asScala match {
+      case Some(baw) => LogIndexPosting.parseBytes(baw.data)
+      case None =>
+        log.error(s"Error while log index retrieving: posting expected to exist at position $position")
+        throw new IllegalStateException("Error while log index retrieving: posting expected to exist.")
+    }
+  }
+
+  /**
+   * Postings of the given log index term in the block range [fromBlock, toBlock], in chain order.
+   * The start of the range is found with a binary search, the postings are then read as the iterator is consumed, so
+   * the cost is proportional to the number of postings consumed.
+   */
+  def getLogIndexPostings(term: ByteArrayWrapper, fromBlock: Int, toBlock: Int): Iterator[LogIndexPosting] = {
+    val count = getLogIndexPostingsCount(term)
+    // lower bound: first position with block number >= fromBlock
+    var low = 0
+    var high = count
+    while (low < high) {
+      val mid = (low + high) >>> 1
+      if (getLogIndexPosting(term, mid).blockNumber < fromBlock) low = mid + 1 else high = mid
+    }
+    Iterator.range(low, count).map(getLogIndexPosting(term, _)).takeWhile(_.blockNumber <= toBlock)
+  }
+
+  /**
+   * Fee record of the block at the given height, None if the block was applied before fee records were introduced.
+   */
+  override def getBlockFeeStats(height: Int): Option[BlockFeeStats] = {
+    blockFeeStatsOpt match {
+      case Some((blockHeight, stats)) if blockHeight == height => Some(stats)
+      case _ => getBlockFeeStatsFromStorage(height)
+    }
+  }
+
+  private[horizen] def getBlockFeeStatsFromStorage(height: Int): Option[BlockFeeStats] = {
+    storage.get(getBlockFeeStatsKey(height)).asScala.flatMap { baw =>
+      BlockFeeStatsSerializer.parseBytesTry(baw.data) match {
+        case Success(stats) => Some(stats)
+        case Failure(exception) =>
+          log.error("Error while block fee stats parsing.", exception)
+          Option.empty
+      }
+    }
+  }
+
   // put in memory cache and mark the entry as "dirty"
   def updateWithdrawalEpochInfo(withdrawalEpochInfo: WithdrawalEpochInfo): Unit =
     withdrawalEpochInfoOpt = Some(withdrawalEpochInfo)
@@ -239,6 +302,10 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
     nextBaseFeeOpt = Some(baseFee)
   }
 
+  def updateBlockFeeStats(height: Int, stats: BlockFeeStats): Unit = {
+    blockFeeStatsOpt = Some((height, stats))
+  }
+
   def getNextBaseFeeFromStorage: Option[BigInteger] = {
     storage.get(baseFeeKey).asScala.map(wrapper => new BigInteger(wrapper.data))
   }
@@ -277,6 +344,7 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
     accountStateRootOpt = None
     receiptsOpt = None
     nextBaseFeeOpt = None
+    blockFeeStatsOpt = None
   }
 
   private[horizen] def saveToStorage(version: ByteArrayWrapper): Unit = {
@@ -382,14 +450,40 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
         val value = new ByteArrayWrapper(EthereumReceiptSerializer.toBytes(r))
         updateList.add(new JPair(key, value))
       }
+      // Append the block logs to the log index. Index entries are versioned together with the receipts,
+      // so a rollback of this storage removes them as well.
+      receipts.headOption.foreach(receipt => {
+        if (getLogIndexStartHeight.isEmpty)
+          updateList.add(new JPair(logIndexStartHeightKey, new ByteArrayWrapper(Ints.toByteArray(receipt.blockNumber))))
+      })
+      LogIndex.postingsByTerm(receipts).foreach { case (term, postings) =>
+        val firstPosition = getLogIndexPostingsCount(term)
+        postings.zipWithIndex.foreach { case (posting, i) =>
+          updateList.add(new JPair(getLogIndexPostingKey(term, firstPosition + i), new ByteArrayWrapper(posting.bytes)))
+        }
+        updateList.add(new JPair(getLogIndexCounterKey(term), new ByteArrayWrapper(Ints.toByteArray(firstPosition + postings.size))))
+      }
     })
 
     nextBaseFeeOpt.foreach(baseFee => updateList.add(new JPair(baseFeeKey, new ByteArrayWrapper(baseFee.toByteArray))))
 
+    // Fee records are versioned together with the block, so a rollback of this storage removes them as well.
+    // Only the records of the last blocks that eth_feeHistory can return are kept.
+    blockFeeStatsOpt.foreach { case (height, stats) =>
+      updateList.add(new JPair(getBlockFeeStatsKey(height), new ByteArrayWrapper(BlockFeeStatsSerializer.toBytes(stats))))
+      getOldBlockFeeStatsToBeRemoved(height).foreach(key => removeList.add(key))
+    }
+
     storage.update(version, updateList, removeList)
 
   }
 
+  private[storage] def getOldBlockFeeStatsToBeRemoved(height: Int): Option[ByteArrayWrapper] = {
+    val heightToRemove = height - BlockFeeStats.MaxFeeHistoryBlocks
+    // blocks applied before fee records were introduced have no record
+    Some(getBlockFeeStatsKey(heightToRemove)).filter(key => heightToRemove > 0 && storage.get(key).isPresent)
+  }
+
   private[storage] def getOldTopCertificatesToBeRemoved(epochInfo: WithdrawalEpochInfo): Option[ByteArrayWrapper] = {
     val certEpochNumberToRemove: Int = epochInfo.epoch - 4
     // We only clean up the storage if the certEpochNumberToRemove has already been used as previous certificate hash
@@ -477,10 +571,22 @@ class AccountStateMetadataStorageView(storage: Storage) extends AccountStateMeta
     calculateKey(Bytes.concat("blockFeeInfo".getBytes(StandardCharsets.UTF_8), Ints.toByteArray(withdrawalEpochNumber), Ints.toByteArray(counter)))
   }
 
+  private[horizen] def getBlockFeeStatsKey(height: Int): ByteArrayWrapper = {
+    calculateKey(Bytes.concat("blockFeeStats".getBytes(StandardCharsets.UTF_8), Ints.toByteArray(height)))
+  }
+
   private[horizen] def getReceiptKey(txHash : Array[Byte]): ByteArrayWrapper = {
     calculateKey(Bytes.concat("receipt".getBytes(StandardCharsets.UTF_8), txHash))
   }
 
+  private[horizen] def getLogIndexCounterKey(term: ByteArrayWrapper): ByteArrayWrapper = {
+    calculateKey(Bytes.concat("logIndexCounter".getBytes(StandardCharsets.UTF_8), term.data))
+  }
+
+  private[horizen] def getLogIndexPostingKey(term: ByteArrayWrapper, position: Int): ByteArrayWrapper = {
+    calculateKey(Bytes.concat("logIndexPosting".getBytes(StandardCharsets.UTF_8), term.data, Ints.toByteArray(position)))
+  }
+
   private[horizen] val getForgerBlockCountersKey: ByteArrayWrapper = calculateKey("forgerBlockCounters".getBytes(StandardCharsets.UTF_8))
 
   private[horizen] val getMcForgerPoolRewardsKey: ByteArrayWrapper = calculateKey("mcForgerPoolRewards".getBytes(StandardCharsets.UTF_8))
@@ -0,0 +1,70 @@
+package io.horizen.account.storage
+
+import com.google.common.primitives.{Bytes, Ints}
+import io.horizen.account.state.receipt.EthereumReceipt
+import io.horizen.evm.{Address, Hash}
+import io.horizen.utils.ByteArrayWrapper
+
+import java.nio.charset.StandardCharsets
+import scala.collection.mutable
+
+/**
+ * Single entry of the log index: points to a log by its position in the chain.
+ *
+ * @param blockNumber   height of the block containing the log
+ * @param txHash        hash of the transaction that emitted the log, used to fetch its receipt
+ * @param txLogIndex    index of the log within the logs of the transaction receipt
+ * @param blockLogIndex index of the log within all the logs of the block
+ */
+case class LogIndexPosting(blockNumber: Int, txHash: Array[Byte], txLogIndex: Int, blockLogIndex: Int) {
+  def bytes: Array[Byte] =
+    Bytes.concat(Ints.toByteArray(blockNumber), txHash, Ints.toByteArray(txLogIndex), Ints.toByteArray(blockLogIndex))
+}
+
+object LogIndexPosting {
+  val LENGTH: Int = Ints.BYTES + Hash.LENGTH + Ints.BYTES + Ints.BYTES
+
+  def parseBytes(bytes: Array[Byte]): LogIndexPosting = {
+    require(bytes.length == LENGTH, s"Invalid log index posting length ${bytes.length}, expected $LENGTH")
+    val txHashEnd = Ints.BYTES + Hash.LENGTH
+    LogIndexPosting(
+      Ints.fromByteArray(bytes.slice(0, Ints.BYTES)),
+      bytes.slice(Ints.BYTES, txHashEnd),
+      Ints.fromByteArray(bytes.slice(txHashEnd, txHashEnd + Ints.BYTES)),
+      Ints.fromByteArray(bytes.slice(txHashEnd + Ints.BYTES, LENGTH))
+    )
+  }
+}
+
+/**
+ * Inverted index of the logs emitted in the chain. Every log is indexed under one term for its emitting address and
+ * one term for each of its topics, a topic term being bound to the position of the topic within the log.
+ * For each term the storage holds a counter and the list of postings, appended in chain order, so that the postings
+ * are sorted by block number and the ones within a block range can be found with a binary search.
+ */
+object LogIndex {
+
+  def addressTerm(address: Address): ByteArrayWrapper =
+    new ByteArrayWrapper(Bytes.concat("logAddress".getBytes(StandardCharsets.UTF_8), address.toBytes))
+
+  def topicTerm(position: Int, topic: Hash): ByteArrayWrapper =
+    new ByteArrayWrapper(Bytes.concat("logTopic".getBytes(StandardCharsets.UTF_8), Ints.toByteArray(position), topic.toBytes))
+
+  /**
+   * Builds the postings of all the logs of the given block receipts, grouped by term and ordered as in the block.
+   * Receipts are expected to be ordered by transaction index.
+   */
+  def postingsByTerm(receipts: Seq[EthereumReceipt]): mutable.LinkedHashMap[ByteArrayWrapper, mutable.ArrayBuffer[LogIndexPosting]] = {
+    val postings = mutable.LinkedHashMap[ByteArrayWrapper, mutable.ArrayBuffer[LogIndexPosting]]()
+    var blockLogIndex = 0
+    for (receipt <- receipts) {
+      for ((log, txLogIndex) <- receipt.consensusDataReceipt.logs.zipWithIndex) {
+        val posting = LogIndexPosting(receipt.blockNumber, receipt.transactionHash, txLogIndex, blockLogIndex)
+        val terms = addressTerm(log.address) +: log.topics.zipWithIndex.map { case (topic, position) => topicTerm(position, topic) }.toSeq
+        terms.foreach(term => postings.getOrElseUpdate(term, mutable.ArrayBuffer[LogIndexPosting]()) += posting)
+        blockLogIndex += 1
+      }
+    }
+    postings
+  }
+}
@@ -0,0 +1,126 @@
+package io.horizen.account.utils
+
+import io.horizen.account.block.AccountBlock
+import io.horizen.account.transaction.EthereumTransaction
+import sparkz.core.serialization.{BytesSerializable, SparkzSerializer}
+import sparkz.util.serialization.{Reader, Writer}
+
+import java.math.BigInteger
+
+/**
+ * Effective gas tip paid by a transaction of a block, along with the gas it used.
+ *
+ * @param fromForger true if the transaction was sent by the forger of the block
+ */
+case class TxTipInfo(tip: BigInteger, gasUsed: Long, fromForger: Boolean)
+
+/**
+ * Fee record of a block, computed when the block is applied to the state: it holds all the data needed by
+ * eth_feeHistory and by the tip suggestion, so they don't need to load the block and its receipts.
+ *
+ * @param baseFee base fee of the block, null for blocks without one
+ * @param txTips tips of the block transactions, sorted ascending by tip and then by position in the block
+ */
+case class BlockFeeStats(baseFee: BigInteger, gasUsed: BigInteger, gasLimit: BigInteger, txTips: Seq[TxTipInfo])
+  extends BytesSerializable {
+
+  override type M = BlockFeeStats
+  override def serializer: SparkzSerializer[BlockFeeStats] = BlockFeeStatsSerializer
+
+  def gasUsedRatio: Double = gasUsed.doubleValue() / gasLimit.doubleValue()
+
+  /**
+   * Effective gas tips at the given percentiles of the gas used by the block, see
+   * https://github.com/ethereum/go-ethereum/blob/v1.10.26/eth/gasprice/feehistory.go#L88
+   */
+  def rewards(percentiles: Array[Double]): Array[BigInteger] = {
+    // return an all zero row if there are no transactions to gather data from
+    if (txTips.isEmpty) return percentiles.map(_ => BigInteger.ZERO)
+
+    val sortedRewards = txTips.iterator
+    var current = sortedRewards.next()
+    var sumGasUsed = current.gasUsed
+    val rewards = new Array[BigInteger](percentiles.length)
+    for (i <- percentiles.indices) {
+      val thresholdGasUsed = (gasUsed.doubleValue() * percentiles(i) / 100).toLong
+      // continue summation as long as the total is below the percentile threshold
+      while (sumGasUsed < thresholdGasUsed && sortedRewards.hasNext) {
+        current = sortedRewards.next()
+        sumGasUsed += current.gasUsed
+      }
+      rewards(i) = current.tip
+    }
+    rewards
+  }
+
+  /**
+   * Lowest tips of the transactions not sent by the forger, ignoring the ones under the given price.
+   */
+  def lowestTips(ignoreUnder: BigInteger, limit: Int): Seq[BigInteger] =
+    txTips
+      .filter(txTip => !txTip.fromForger)
+      .map(_.tip)
+      .filter(tip => ignoreUnder == null || tip.compareTo(ignoreUnder) >= 0)
+      .take(limit)
+}
+
+object BlockFeeStats {
+  // number of blocks eth_feeHistory can return: fee records of older blocks are pruned
+  val MaxFeeHistoryBlocks: Int = 1024
+
+  /**
+   * Builds the fee record of a block, given the gas used by each of its transactions.
+   */
+  def apply(block: AccountBlock, txGasUsed: Seq[BigInteger]): BlockFeeStats = {
+    val baseFee = block.header.baseFee
+    val txTips = block.transactions
+      .map(_.asInstanceOf[EthereumTransaction])
+      .zip(txGasUsed)
+      .map { case (tx, gasUsed) =>
+        TxTipInfo(
+          getEffectiveGasTip(tx, baseFee),
+          gasUsed.longValueExact(),
+          tx.getFrom.bytes() sameElements block.forgerPublicKey.bytes()
+        )
+      }
+      .sortBy(_.tip)
+    BlockFeeStats(baseFee, block.header.gasUsed, block.header.gasLimit, txTips)
+  }
+
+  def getEffectiveGasTip(tx: EthereumTransaction, baseFee: BigInteger): BigInteger = {
+    if (baseFee == null) tx.getMaxPriorityFeePerGas
+    // we do not need to check if MaxFeePerGas is higher than baseFee, because the tx is already included in the block
+    else tx.getMaxPriorityFeePerGas.min(tx.getMaxFeePerGas.subtract(baseFee))
+  }
+}
+
+object BlockFeeStatsSerializer extends SparkzSerializer[BlockFeeStats] {
+
+  private def putBigInteger(value: BigInteger, w: Writer): Unit = {
+    val bytes = value.toByteArray
+    w.putInt(bytes.length)
+    w.putBytes(bytes)
+  }
+
+  private def getBigInteger(r: Reader): BigInteger = new BigInteger(r.getBytes(r.getInt()))
+
+  override def serialize(obj: BlockFeeStats, w: Writer): Unit = {
+    w.putOption(Option(obj.baseFee)) { case (writer: Writer, baseFee: BigInteger) => putBigInteger(baseFee, writer) }
+    putBigInteger(obj.gasUsed, w)
+    putBigInteger(obj.gasLimit, w)
+    w.putInt(obj.txTips.size)
+    obj.txTips.foreach(txTip => {
+      putBigInteger(txTip.tip, w)
+      w.putLong(txTip.gasUsed)
+      w.put(if (txTip.fromForger) 1 else 0)
+    })
+  }
+
+  override def parse(r: Reader): BlockFeeStats = {
+    val baseFee = r.getOption(getBigInteger(r)).orNull
+    val gasUsed = getBigInteger(r)
+    val gasLimit = getBigInteger(r)
+    val txTips = (0 until r.getInt()).map(_ => TxTipInfo(getBigInteger(r), r.getLong(), r.getByte() != 0))
+    BlockFeeStats(baseFee, gasUsed, gasLimit, txTips)
+  }
+}
@@ -29,10 +29,17 @@ class Bloom(private val filter: Array[Byte]) extends BytesSerializable {
    * @param data
    *   raw data to hash and add to the filter
    */
-  def add(data: Array[Byte]): Unit = {
-    for ((value, index) <- getBloomValues(data)) {
-      filter(index) = (filter(index) | value).toByte
-    }
+  def add(data: Array[Byte]): Unit = add(Bloom.bitsOf(data))
+
+  /**
+   * Add the given precomputed bits to the bloom filter.
+   * @param bits
+   *   bits of the data to add, see [[Bloom.bitsOf]]
+   */
+  def add(bits: BloomBits): Unit = {
+    filter(bits.index1) = (filter(bits.index1) | bits.mask1).toByte
+    filter(bits.index2) = (filter(bits.index2) | bits.mask2).toByte
+    filter(bits.index3) = (filter(bits.index3) | bits.mask3).toByte
   }
 
   /**
@@ -41,8 +48,11 @@ class Bloom(private val filter: Array[Byte]) extends BytesSerializable {
    *   instance of another bloom filter.
    */
   def merge(bloom: Bloom): Unit = {
-    for ((value, index) <- bloom.filter.zipWithIndex) {
-      filter(index) = (filter(index) | value).toByte
+    val other = bloom.filter
+    var index = 0
+    while (index < BLOOM_BYTE_LENGTH) {
+      filter(index) = (filter(index) | other(index)).toByte
+      index += 1
     }
   }
 
@@ -56,29 +66,21 @@ class Bloom(private val filter: Array[Byte]) extends BytesSerializable {
    * @return
    *   false if data is not present in the filter, true if it likely is, see note
    */
-  def test(data: Array[Byte]): Boolean = {
-    getBloomValues(data)
-      .exists({ case (value, index) =>
-        (filter(index) & value) == value
-      })
-  }
+  def test(data: Array[Byte]): Boolean = test(Bloom.bitsOf(data))
 
-  private def getBloomValues(data: Array[Byte]): Array[(Int, Int)] = {
-    val hashBuffer = Keccak256.hash(data)
-
-    val values = Array(
-      1 << (hashBuffer(1) & 0x7),
-      1 << (hashBuffer(3) & 0x7),
-      1 << (hashBuffer(5) & 0x7)
-    )
-
-    val indices = Array(
-      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 0) & 0x7ff) >> 3) - 1,
-      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 2) & 0x7ff) >> 3) - 1,
-      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 4) & 0x7ff) >> 3) - 1
-    )
-
-    values.zip(indices)
+  /**
+   * Checks if the data of the given precomputed bits is present in the bloom filter, i.e. if all of its bits are set.
+   * This does not hash nor allocate anything, so the bits of the data to look for can be computed once and tested
+   * against any number of filters.
+   * @param bits
+   *   bits of the data to test for presence, see [[Bloom.bitsOf]]
+   * @return
+   *   false if data is not present in the filter, true if it likely is, see the note on testing raw data
+   */
+  def test(bits: BloomBits): Boolean = {
+    (filter(bits.index1) & bits.mask1) == bits.mask1 &&
+      (filter(bits.index2) & bits.mask2) == bits.mask2 &&
+      (filter(bits.index3) & bits.mask3) == bits.mask3
   }
 
   /**
@@ -102,10 +104,40 @@ class Bloom(private val filter: Array[Byte]) extends BytesSerializable {
   }
 }
 
+/**
+ * The three bits set in a bloom filter for some data, each one given by the index of its byte in the filter and its
+ * mask within that byte.
+ */
+final class BloomBits(
+    val index1: Int,
+    val mask1: Int,
+    val index2: Int,
+    val mask2: Int,
+    val index3: Int,
+    val mask3: Int
+)
+
 object Bloom {
   val BLOOM_BYTE_LENGTH: Int = 256
   val BLOOM_BIT_LENGTH: Int = 8 * BLOOM_BYTE_LENGTH
 
+  /**
+   * Compute the bits set in a bloom filter for the given data.
+   * @param data
+   *   raw data to hash
+   */
+  def bitsOf(data: Array[Byte]): BloomBits = {
+    val hashBuffer = Keccak256.hash(data)
+    new BloomBits(
+      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 0) & 0x7ff) >> 3) - 1,
+      1 << (hashBuffer(1) & 0x7),
+      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 2) & 0x7ff) >> 3) - 1,
+      1 << (hashBuffer(3) & 0x7),
+      BLOOM_BYTE_LENGTH - ((BytesUtils.getShort(hashBuffer, 4) & 0x7ff) >> 3) - 1,
+      1 << (hashBuffer(5) & 0x7)
+    )
+  }
+
   /**
    * Create a bloom filter from the given byte array.
    *
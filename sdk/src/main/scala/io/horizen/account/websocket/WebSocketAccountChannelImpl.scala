@@ -11,7 +11,7 @@ import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.AccountState
 import io.horizen.account.wallet.AccountWallet
 import io.horizen.account.websocket.WebSocketAccountServerRef.sidechainNodeViewHolderRef
-import io.horizen.account.websocket.data.{SubscriptionWithFilter, WebSocketEthereumBlockView}
+import io.horizen.account.websocket.data.WebSocketEthereumBlockView
 import io.horizen.evm.{Address, Hash}
 import io.horizen.utils.ClosableResourceHandler
 import sparkz.core.NodeViewHolder
@@ -53,10 +53,10 @@ class WebSocketAccountChannelImpl extends SparkzLogging with ClosableResourceHan
     }
   }
 
-  def getEthereumLogsFromBlock(block: AccountBlock, subscriptionWithFilter: SubscriptionWithFilter): Try[Seq[EthereumLogView]] = Try{
+  def getEthereumLogsFromBlock(block: AccountBlock): Try[Seq[EthereumLogView]] = Try{
     applyOnAccountView { nodeView =>
       using(nodeView.state.getView) { stateView =>
-        RpcFilter.getBlockLogs(stateView, block, subscriptionWithFilter.filter)
+        RpcFilter.getAllBlockLogs(stateView, block)
       }
     }
   }
@@ -16,7 +16,8 @@ import scala.concurrent.ExecutionContext
 class WebSocketAccountServer(wsServerSettings: WebSocketServerSettings)
   extends Actor
   with SparkzLogging {
-  val websocket = new WebSocketAccountServerImpl(wsServerSettings.wsServerPort, classOf[WebSocketAccountServerEndpoint]);
+  val websocket = new WebSocketAccountServerImpl(wsServerSettings.wsServerPort, classOf[WebSocketAccountServerEndpoint],
+    wsServerSettings.wsServerMaxPendingMessages)
 
   try {
     websocket.start()
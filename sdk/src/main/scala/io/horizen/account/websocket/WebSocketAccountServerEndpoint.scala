@@ -1,6 +1,8 @@
 package io.horizen.account.websocket
 
+import com.fasterxml.jackson.databind.util.RawValue
 import com.fasterxml.jackson.databind.{JsonNode, ObjectMapper}
+import io.horizen.WebSocketServerSettings
 import io.horizen.account.api.rpc.request.{RpcId, RpcRequest}
 import io.horizen.account.api.rpc.response.{RpcResponseError, RpcResponseSuccess}
 import io.horizen.account.api.rpc.service.{EthService, RpcFilter, RpcProcessor}
@@ -19,6 +21,7 @@ import sparkz.util.{ModifierId, SparkzLogging}
 
 import java.io.{PrintWriter, StringWriter}
 import java.math.BigInteger
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
 import scala.util.{Failure, Success}
 
@@ -172,24 +175,35 @@ private object WebSocketAccountServerEndpoint extends SparkzLogging {
 
   val webSocketAccountChannelImpl = new WebSocketAccountChannelImpl()
   private var walletAddresses: Set[Address] = webSocketAccountChannelImpl.getWalletAddresses.getOrElse(Set())
-  private var cachedBlocksReceipts: List[(ModifierId, Set[EthereumLogView])] = List[(ModifierId, Set[EthereumLogView])]()
+  // logs of the last blocks matching at least one logs subscription, marked as removed to notify a chain reorganization
+  private var cachedBlocksReceipts: List[(ModifierId, Seq[EthereumLogView])] = List[(ModifierId, Seq[EthereumLogView])]()
   private val maxCachedBlockReceipts = 100
+  private val sessionSenders = new ConcurrentHashMap[String, WebSocketSessionSender]()
+  // set by the websocket server from its settings when it is created
+  @volatile private var maxPendingMessages: Int = WebSocketServerSettings().wsServerMaxPendingMessages
+
+  private[websocket] def setMaxPendingMessages(maxPendingMessages: Int): Unit = {
+    require(maxPendingMessages > 0, s"Max number of pending websocket messages not positive: $maxPendingMessages")
+    this.maxPendingMessages = maxPendingMessages
+  }
 
   def notifySemanticallySuccessfulModifier(block: AccountBlock): Unit = {
     log.debug("Websocket received new block: "+block.toString)
 
     webSocketAccountChannelImpl.accountBlockToWebsocketJson(block) match {
       case Success(blockJson) =>
+        // the block is serialized once and embedded as it is in the event of every subscription
+        val serializedBlock = new RawValue(EthJsonMapper.serialize(blockJson))
         for(subscription <- newHeadsSubscriptions) {
-          send(new WebSocketAccountEvent(params = new WebSocketAccountEventParams(subscription.subscriptionId, blockJson)), subscription.session)
+          send(new WebSocketAccountEvent(params = new WebSocketAccountEventParams(subscription.subscriptionId, serializedBlock)), subscription.session)
         }
 
         while (cachedBlocksReceipts.nonEmpty && !cachedBlocksReceipts.head._1.equals(block.parentId)) {
           //We have a chain reorganization
-          val oldTip: (ModifierId, Set[EthereumLogView]) = cachedBlocksReceipts.head
+          val oldTip: (ModifierId, Seq[EthereumLogView]) = cachedBlocksReceipts.head
+          val removedLogs = serializeLogs(oldTip._2)
           for (subscription <- logsSubscriptions) {
-            val logsToSend = oldTip._2.filter(RpcFilter.testLog(subscription.filter.address, subscription.filter.topics))
-            sendTransactionLog(logsToSend.toSeq, subscription)
+            sendTransactionLog(removedLogs, subscription)
           }
           cachedBlocksReceipts = cachedBlocksReceipts.drop(1)
         }
@@ -233,28 +247,39 @@ private object WebSocketAccountServerEndpoint extends SparkzLogging {
   }
 
   private def processBlockReceipt(block: AccountBlock): Unit = {
-    var relevantBlockReceipt: Seq[EthereumLogView] = Seq()
-    for (subscription <- logsSubscriptions) {
-      webSocketAccountChannelImpl.getEthereumLogsFromBlock(block, subscription) match {
+    // the logs of the block are only loaded if the bloom of the block matches at least one subscription
+    val subscriptions = logsSubscriptions.filter(_.bloomQuery.matches(block.header.logsBloom))
+    val relevantBlockReceipt: Seq[EthereumLogView] = if (subscriptions.isEmpty) Seq() else {
+      webSocketAccountChannelImpl.getEthereumLogsFromBlock(block) match {
         case Success(logs) =>
-          sendTransactionLog(logs, subscription)
-          relevantBlockReceipt = logs ++: relevantBlockReceipt
+          // every log is serialized once and embedded in the events of all the subscriptions it matches
+          val blockLogs = serializeLogs(logs)
+          for (subscription <- subscriptions) {
+            sendTransactionLog(blockLogs, subscription)
+          }
+          logs.filter(log => subscriptions.exists(subscription => RpcFilter.testLog(subscription.filter.address, subscription.filter.topics)(log)))
         case Failure(exception) =>
           log.debug("Websocket failed to get transaction logs "+exception.getMessage)
+          Seq()
       }
     }
-    cachedBlocksReceipts = (block.id, relevantBlockReceipt.toSet.map((log: EthereumLogView) => {
-      log.updateRemoved(true)
-      log})) +: cachedBlocksReceipts
+    relevantBlockReceipt.foreach(_.updateRemoved(true))
+    cachedBlocksReceipts = (block.id, relevantBlockReceipt) +: cachedBlocksReceipts
     if (cachedBlocksReceipts.size > maxCachedBlockReceipts) {
       cachedBlocksReceipts = cachedBlocksReceipts.dropRight(1)
     }
   }
 
-  private def sendTransactionLog(txLogs: Seq[EthereumLogView], subscription: SubscriptionWithFilter): Unit = {
-    txLogs.foreach(txLog => {
-      send(new WebSocketAccountEvent( params =  new WebSocketAccountEventParams(subscription.subscriptionId, txLog)), subscription.session)
-    })
+  private def serializeLogs(txLogs: Seq[EthereumLogView]): Seq[(EthereumLogView, RawValue)] =
+    txLogs.map(txLog => (txLog, new RawValue(EthJsonMapper.serialize(txLog))))
+
+  // send the logs matching the filter of the subscription
+  private def sendTransactionLog(txLogs: Seq[(EthereumLogView, RawValue)], subscription: SubscriptionWithFilter): Unit = {
+    val matchesFilter = RpcFilter.testLog(subscription.filter.address, subscription.filter.topics) _
+    txLogs.foreach { case (txLog, serializedLog) =>
+      if (matchesFilter(txLog))
+        send(new WebSocketAccountEvent(params = new WebSocketAccountEventParams(subscription.subscriptionId, serializedLog)), subscription.session)
+    }
   }
 
   def onVaultChanged(): Unit = {
@@ -305,38 +330,28 @@ private object WebSocketAccountServerEndpoint extends SparkzLogging {
   }
 
   def removeSession(session: Session): Unit = {
+      sessionSenders.remove(session.getId)
       newHeadsSubscriptions = newHeadsSubscriptions.filterNot(subscription => subscription.session.getId.equals(session.getId))
       newPendingTransactionsSubscriptions = newPendingTransactionsSubscriptions.filterNot(subscription => subscription.session.getId.equals(session.getId))
       logsSubscriptions = logsSubscriptions.filterNot(subscription => subscription.session.getId.equals(session.getId))
       syncingSubscriptions = syncingSubscriptions.filterNot(subscription => subscription.session.getId.equals(session.getId))
   }
 
+  // messages are queued to the sender of the session, so a slow client does not hold up the others
+  private def sessionSender(session: Session): WebSocketSessionSender =
+    sessionSenders.computeIfAbsent(session.getId, _ => new WebSocketSessionSender(session, maxPendingMessages))
+
   def send(websocketResponse: Object, session: Session): Unit = {
     try {
-      session.getAsyncRemote.sendText(EthJsonMapper.serialize(websocketResponse), new SendHandler {
-        override def onResult(sendResult: SendResult): Unit = {
-          if (!sendResult.isOK) {
-            log.debug("Websocket send message failed. "+session.getId)
-          }
-        }
-      })
+      sessionSender(session).send(EthJsonMapper.serialize(websocketResponse))
     } catch {
       case _: Throwable => log.debug("Websocket send message error. "+session.getId)
     }
 
   }
 
-  def sendRpcResponse(rpcResponse: Object, session: Session): Unit = {
-    try {
-      session.getAsyncRemote.sendObject(rpcResponse, new SendHandler {
-        override def onResult(sendResult: SendResult): Unit = {
-          if (!sendResult.isOK) {
-            log.debug("Websocket send message failed. "+session.getId)
-          }
-        }
-      })
-    } catch {
-      case _: Throwable => log.debug("Websocket send message error. "+session.getId)
-    }
+  // the client waits for the response of its request: it is never dropped, the session is closed if the client is too slow
+  def sendRpcResponse(rpcResponse: String, session: Session): Unit = {
+    sessionSender(session).sendResponse(rpcResponse)
   }
 }
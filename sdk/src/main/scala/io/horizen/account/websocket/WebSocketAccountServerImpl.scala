@@ -7,7 +7,11 @@ import io.horizen.websocket.server.WebSocketServerBaseImpl
 import jakarta.websocket._
 
 @ClientEndpoint
-class WebSocketAccountServerImpl(bindPort: Int, configuration: Class[_]) extends WebSocketServerBaseImpl(bindPort, configuration) {
+class WebSocketAccountServerImpl(bindPort: Int, configuration: Class[_], maxPendingMessages: Int)
+  extends WebSocketServerBaseImpl(bindPort, configuration) {
+
+  // the endpoints are created by the websocket container, the sessions they share are configured here
+  WebSocketAccountServerEndpoint.setMaxPendingMessages(maxPendingMessages)
 
   def onSemanticallySuccessfulModifier(block: AccountBlock): Unit = {
     WebSocketAccountServerEndpoint.notifySemanticallySuccessfulModifier(block)
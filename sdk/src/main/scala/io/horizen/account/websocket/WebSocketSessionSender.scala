@@ -0,0 +1,117 @@
+package io.horizen.account.websocket
+
+import jakarta.websocket.CloseReason.CloseCodes
+import jakarta.websocket.{CloseReason, SendHandler, SendResult, Session}
+import sparkz.util.SparkzLogging
+
+import java.util
+import java.util.concurrent.TimeUnit
+
+/**
+ * Sends the messages of a websocket session asynchronously, one at a time and in order: the next message is sent when
+ * the previous one has been written. The queue of each session is bounded, so a slow client can't make the node
+ * buffer an unlimited number of messages: when the queue is full new notifications are dropped, while a response to a
+ * request of the client, that it waits for, closes the session instead.
+ */
+private[websocket] class WebSocketSessionSender(session: Session,
+                                                maxPendingMessages: Int,
+                                                clock: () => Long = () => System.nanoTime()) extends SparkzLogging {
+
+  private val pending = new util.ArrayDeque[String]()
+  // a message has been handed to the session and is not written yet
+  private var sending = false
+  // the queue is being drained, used to send in a loop when a send completes synchronously
+  private var draining = false
+  private var dropped = 0L
+  // drops are logged at most once per interval, with the number of drops since the last log
+  private var lastDropLog: Option[Long] = None
+  private var droppedSinceLog = 0L
+
+  private val sendHandler = new SendHandler {
+    override def onResult(sendResult: SendResult): Unit = WebSocketSessionSender.this.synchronized {
+      if (!sendResult.isOK) {
+        log.debug("Websocket send message failed. " + session.getId)
+      }
+      sending = false
+      drain()
+    }
+  }
+
+  /**
+   * Queues the given notification, returns false if it was dropped because the queue is full.
+   */
+  def send(message: String): Boolean = synchronized {
+    if (pending.size >= maxPendingMessages) {
+      dropped += 1
+      logDrop()
+      false
+    } else {
+      enqueue(message)
+      true
+    }
+  }
+
+  /**
+   * Queues the given response, returns false if the queue is full: the session is closed, since the client would wait
+   * for the response forever.
+   */
+  def sendResponse(message: String): Boolean = synchronized {
+    if (pending.size >= maxPendingMessages) {
+      log.warn(s"Websocket session ${session.getId} is too slow, closing it")
+      pending.clear()
+      try {
+        session.close(new CloseReason(CloseCodes.TRY_AGAIN_LATER, "too many pending messages"))
+      } catch {
+        case e: Throwable => log.debug(s"Websocket session ${session.getId} close error: ${e.getMessage}")
+      }
+      false
+    } else {
+      enqueue(message)
+      true
+    }
+  }
+
+  def pendingCount: Int = synchronized(pending.size)
+
+  def droppedCount: Long = synchronized(dropped)
+
+  private def enqueue(message: String): Unit = {
+    pending.add(message)
+    drain()
+  }
+
+  private def logDrop(): Unit = {
+    droppedSinceLog += 1
+    val now = clock()
+    if (lastDropLog.forall(now - _ >= WebSocketSessionSender.DropLogInterval)) {
+      log.warn(s"Websocket session ${session.getId} is too slow, dropped $droppedSinceLog messages (dropped so far: $dropped)")
+      lastDropLog = Some(now)
+      droppedSinceLog = 0
+    }
+  }
+
+  private def drain(): Unit = {
+    if (draining) return
+    draining = true
+    try {
+      while (!sending && !pending.isEmpty) {
+        val message = pending.poll()
+        sending = true
+        try {
+          session.getAsyncRemote.sendText(message, sendHandler)
+        } catch {
+          case _: Throwable =>
+            log.debug("Websocket send message error. " + session.getId)
+            sending = false
+        }
+      }
+    } finally {
+      draining = false
+    }
+  }
+}
+
+private[websocket] object WebSocketSessionSender {
+  // minimum time between two logs of dropped messages of a session, in nanoseconds
+  val DropLogInterval: Long = TimeUnit.SECONDS.toNanos(10)
+}
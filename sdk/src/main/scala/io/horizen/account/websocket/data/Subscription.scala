@@ -1,5 +1,6 @@
 package io.horizen.account.websocket.data
 
+import io.horizen.account.api.rpc.service.BloomQuery
 import io.horizen.account.api.rpc.types.FilterQuery
 import jakarta.websocket.Session
 
@@ -13,4 +14,7 @@ trait BaseSubscription {
 case class Subscription(session: Session, subscriptionId: BigInteger) extends BaseSubscription
 
 case class SubscriptionWithFilter(session: Session, subscriptionId: BigInteger,
-                                  filter: FilterQuery) extends BaseSubscription
+                                  filter: FilterQuery) extends BaseSubscription {
+  // the filter is tested against the bloom of every new block
+  lazy val bloomQuery: BloomQuery = BloomQuery(filter)
+}
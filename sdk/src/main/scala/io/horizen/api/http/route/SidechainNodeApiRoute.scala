@@ -3,13 +3,14 @@ package io.horizen.api.http.route
 import akka.actor.{ActorRef, ActorRefFactory}
 import akka.http.scaladsl.server.Route
 import com.fasterxml.jackson.annotation.JsonView
-import io.horizen.AbstractSidechainNodeViewHolder.ReceivableMessages.GetStorageVersions
-import io.horizen.account.api.rpc.service.RpcUtils
+import io.horizen.AbstractSidechainNodeViewHolder.ReceivableMessages.{GetHistoryStorageCacheStats, GetStorageVersions}
+import io.horizen.account.AccountSidechainApp
+import io.horizen.account.api.rpc.service.{EstimateGasStats, RpcBatchStats, RpcUtils, ViewAccessStats}
 import io.horizen.account.mempool.AccountMemoryPool
 import io.horizen.account.node.AccountNodeView
 import io.horizen.account.state.AccountState
 import io.horizen.api.http.JacksonSupport._
-import io.horizen.api.http.route.SidechainNodeErrorResponse.{ErrorInvalidHost, ErrorStopNodeAlreadyInProgress}
+import io.horizen.api.http.route.SidechainNodeErrorResponse.{ErrorInvalidHost, ErrorRpcMetricsNotAvailable, ErrorStopNodeAlreadyInProgress}
 import io.horizen.api.http.route.SidechainNodeRestSchema._
 import io.horizen.api.http.{ApiResponseUtil, ErrorResponse, SidechainApiError, SuccessResponse}
 import io.horizen.block.{SidechainBlockBase, SidechainBlockHeaderBase}
@@ -17,6 +18,7 @@ import io.horizen.chain.AbstractFeePaymentsInfo
 import io.horizen.json.Views
 import io.horizen.node.{NodeHistoryBase, NodeMemoryPoolBase, NodeStateBase, NodeWalletBase}
 import io.horizen.params.NetworkParams
+import io.horizen.storage.HistoryStorageCacheStats
 import io.horizen.transaction.Transaction
 import io.horizen.utils.BytesUtils
 import io.horizen.utxo.mempool.SidechainMemoryPool
@@ -58,7 +60,7 @@ case class SidechainNodeApiRoute[
 
   override val route: Route = pathPrefix("node") {
 
-    connect ~ allPeers ~ connectedPeers ~ blacklistedPeers ~ disconnect ~ stop ~ getNodeStorageVersions ~ getSidechainId ~ peerByAddress ~ addToBlacklist ~ removeFromBlacklist ~ removePeer ~ nodeInfo
+    connect ~ allPeers ~ connectedPeers ~ blacklistedPeers ~ disconnect ~ stop ~ getNodeStorageVersions ~ getHistoryCacheStats ~ getRpcMetrics ~ getSidechainId ~ peerByAddress ~ addToBlacklist ~ removeFromBlacklist ~ removePeer ~ nodeInfo
   }
 
   private val addressAndPortRegexp = "([\\w\\.]+):(\\d{1,5})".r
@@ -490,6 +492,30 @@ case class SidechainNodeApiRoute[
     }
   }
 
+  def getHistoryCacheStats: Route = (post & path("historyCacheStats")) {
+    try {
+      val result = askActor[HistoryStorageCacheStats](sidechainNodeViewHolderRef, GetHistoryStorageCacheStats)
+        .map(stats => RespGetHistoryCacheStats(stats))
+      val cacheStats = Await.result(result, settings.timeout)
+      ApiResponseUtil.toResponse(cacheStats)
+    } catch {
+      case e: Throwable => SidechainApiError(e)
+    }
+  }
+
+  def getRpcMetrics: Route = (post & path("rpcMetrics")) {
+    app match {
+      case accountApp: AccountSidechainApp =>
+        ApiResponseUtil.toResponse(RespGetRpcMetrics(
+          accountApp.rpcProcessor.batchMetrics.getStats,
+          accountApp.ethService.viewAccessMetrics.getStats,
+          accountApp.ethService.estimateGasMetrics.getStats
+        ))
+      case _ =>
+        ApiResponseUtil.toResponse(ErrorRpcMetricsNotAvailable("RPC metrics are only available on account sidechains", JOptional.empty()))
+    }
+  }
+
   def getSidechainId: Route = (post & path("sidechainId")) {
     try {
       val sidechainId = BytesUtils.toHexString(BytesUtils.reverseBytes(params.sidechainId))
@@ -583,6 +609,12 @@ object SidechainNodeRestSchema {
   @JsonView(Array(classOf[Views.Default]))
    private[horizen] case class RespGetNodeStorageVersions(listOfVersions: Map[String, String]) extends SuccessResponse
 
+  @JsonView(Array(classOf[Views.Default]))
+   private[horizen] case class RespGetHistoryCacheStats(cacheStats: HistoryStorageCacheStats) extends SuccessResponse
+
+  @JsonView(Array(classOf[Views.Default]))
+   private[horizen] case class RespGetRpcMetrics(batch: RpcBatchStats, viewAccess: ViewAccessStats, estimateGas: EstimateGasStats) extends SuccessResponse
+
   @JsonView(Array(classOf[Views.Default]))
    private[horizen] case class RespStop() extends SuccessResponse
 
@@ -601,4 +633,8 @@ object SidechainNodeErrorResponse {
     override val code: String = "0402"
   }
 
+  case class ErrorRpcMetricsNotAvailable(description: String, exception: JOptional[Throwable]) extends ErrorResponse {
+    override val code: String = "0403"
+  }
+
 }
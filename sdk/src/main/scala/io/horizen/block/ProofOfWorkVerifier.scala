@@ -43,6 +43,67 @@ object ProofOfWorkVerifier {
 
     // Collect information of time and bits for last "params.nPowAveragingWindow + params.nMedianTimeSpan" MainchainBlockReferences
     // already presented in a current chain of SidechainBlocks.
+    val timeBitsData: List[Tuple2[Int, Int]] = collectTimeBitsDataFromIndex[H, PMOD, FPI, HSTOR](block, historyStorage, params)
+      .orElse(collectTimeBitsDataFromBlocks[H, PMOD, FPI, HSTOR](block, historyStorage, params)) match {
+        case Some(data) => data
+        case None => return false
+      }
+
+    // check that we have enough data for next pow verification
+    if(timeBitsData.size != params.nPowAveragingWindow + params.nMedianTimeSpan)
+      return false
+
+    // calculate totalBits for last params.nPowAveragingWindow blocks
+    var bitsTotal: BigInteger = BigInteger.ZERO
+    for(i <- timeBitsData.size - params.nPowAveragingWindow until timeBitsData.size) {
+      bitsTotal = bitsTotal.add(Utils.decodeCompactBits(UnsignedInts.toLong(timeBitsData(i)._2)))
+    }
+
+    // verify next work for each MainchainHeader in the requested block
+    if(!checkOmmersContainerNextWorkRequired(block, timeBitsData, bitsTotal, params).isValid)
+      return false
+
+    true
+  }
+
+  // Collect time and bits of the last MainchainHeaders of the active chain from the history storage index, without reading the blocks.
+  // Returns None if the parent block is not in the active chain or block MainchainHeaders don't follow the active chain ones:
+  // the data is then collected from the blocks.
+  private def collectTimeBitsDataFromIndex[
+    H <: SidechainBlockHeaderBase,
+    PMOD <: SidechainBlockBase[_ <: Transaction, H],
+    FPI <: AbstractFeePaymentsInfo,
+    HSTOR <: AbstractHistoryStorage[PMOD, FPI, HSTOR]](block: PMOD,
+                                                  historyStorage: HSTOR,
+                                                  params: NetworkParams): Option[List[Tuple2[Int, Int]]] = {
+    val timeBitsDataSize = params.nPowAveragingWindow + params.nMedianTimeSpan
+    val firstHeader = block.mainchainHeaders.head
+    if (firstHeader.hash.sameElements(params.genesisMainchainBlockHash))
+      return None
+
+    historyStorage.activeChainMainchainHeadersPowData(block.parentId, timeBitsDataSize).flatMap(powDataSeq => {
+      val genesisIndex = powDataSeq.indexWhere(_.hash.data.sameElements(params.genesisMainchainBlockHash))
+      if (!powDataSeq.lastOption.exists(_.hash.data.sameElements(firstHeader.hashPrevBlock)))
+        None
+      else if (genesisIndex > 0 || (powDataSeq.size < timeBitsDataSize && genesisIndex != 0))
+        None
+      else {
+        // the active chain starts with the genesis MC block reference: take the rest of (time, bits) pairs from genesis pow data.
+        val genesisPowData = if (genesisIndex == 0) params.genesisPoWData.takeRight(timeBitsDataSize - powDataSeq.size) else Seq()
+        Some(genesisPowData.toList ++ powDataSeq.map(powData => Tuple2[Int, Int](powData.time, powData.bits)))
+      }
+    })
+  }
+
+  // Collect time and bits of the last MainchainHeaders walking back the sidechain blocks from the block parent.
+  // Returns None if the blocks are not found or their MainchainHeaders are not consistent.
+  private def collectTimeBitsDataFromBlocks[
+    H <: SidechainBlockHeaderBase,
+    PMOD <: SidechainBlockBase[_ <: Transaction, H],
+    FPI <: AbstractFeePaymentsInfo,
+    HSTOR <: AbstractHistoryStorage[PMOD, FPI, HSTOR]](block: PMOD,
+                                                  historyStorage: HSTOR,
+                                                  params: NetworkParams): Option[List[Tuple2[Int, Int]]] = {
     var timeBitsData = List[Tuple2[Int, Int]]()
     // Take firt MC Ref header if exists, else get first nextMCHeader
     var currentHeader = block.mainchainHeaders.head
@@ -62,14 +123,14 @@ object ProofOfWorkVerifier {
         // get previous block
         currentBlock = historyStorage.blockById(currentBlock.parentId) match {
           case b: Some[PMOD] => b.get
-          case _ => return false
+          case _ => return None
         }
 
         // check for mainchain headers and their order, and collect data from them.
         if(currentBlock.mainchainHeaders.nonEmpty) {
           for(header <- currentBlock.mainchainHeaders.reverse) {
             if(!header.hash.sameElements(currentHeader.hashPrevBlock))
-              return false
+              return None
             timeBitsData = Tuple2[Int, Int](header.time, header.bits) :: timeBitsData
             currentHeader = header
             if(timeBitsData.size == params.nPowAveragingWindow + params.nMedianTimeSpan)
@@ -79,21 +140,7 @@ object ProofOfWorkVerifier {
       }
     }
 
-    // check that we have enough data for next pow verification
-    if(timeBitsData.size != params.nPowAveragingWindow + params.nMedianTimeSpan)
-      return false
-
-    // calculate totalBits for last params.nPowAveragingWindow blocks
-    var bitsTotal: BigInteger = BigInteger.ZERO
-    for(i <- timeBitsData.size - params.nPowAveragingWindow until timeBitsData.size) {
-      bitsTotal = bitsTotal.add(Utils.decodeCompactBits(UnsignedInts.toLong(timeBitsData(i)._2)))
-    }
-
-    // verify next work for each MainchainHeader in the requested block
-    if(!checkOmmersContainerNextWorkRequired(block, timeBitsData, bitsTotal, params).isValid)
-      return false
-
-    true
+    Some(timeBitsData)
   }
 
   private def checkOmmersContainerNextWorkRequired[H <: SidechainBlockHeaderBase](ommersContainer: OmmersContainer[H],
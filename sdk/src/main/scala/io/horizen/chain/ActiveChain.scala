@@ -52,6 +52,9 @@ final class ActiveChain private(sidechainCache: ElementsChain[ModifierId, Sidech
 
   def bestMainchainHeaderHash: Option[MainchainHeaderHash] = mainchainHeadersCache.bestId
 
+  // Last mainchain header included in the active chain up to the given sidechain block
+  def lastMcHeaderHashTill(id: ModifierId): Option[MainchainHeaderHash] = heightById(id).flatMap(getLastMainchainHeaderHashTillHeight)
+
   // Mixed data retrieval
   def heightByMcHeader(mainchainHeaderHash: MainchainHeaderHash): Option[Int] = {
     mainchainHeadersCache.dataById(mainchainHeaderHash).map(_.sidechainHeight)
@@ -0,0 +1,134 @@
+package io.horizen.chain
+
+import sparkz.util.{ModifierId, SparkzLogging, bytesToId, idToBytes}
+
+import java.io._
+import java.nio.channels.Channels
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Try
+
+/**
+ * Snapshot of the sidechain blocks of the ActiveChain persisted to a file, used to rebuild the ActiveChain at startup
+ * without walking the whole chain in the history storage.
+ * The checkpoint is only a hint: the history storage replays the blocks applied after it and ignores the ones that
+ * were reverted since it was written.
+ *
+ * The file is an append log: a write only appends the blocks applied since the previous one, after truncating the
+ * blocks reverted since then, so its cost doesn't grow with the length of the chain. A record left incomplete by a
+ * crash is ignored when the file is read, and overwritten by the next write.
+ *
+ * File format: version, then for each block in height order its id, block info length and block info.
+ *
+ * @param file     checkpoint file
+ * @param interval number of blocks applied between two periodic writes, 0 to write only on demand (e.g. on shutdown)
+ */
+class ActiveChainCheckpoint(val file: File, val interval: Int) extends SparkzLogging {
+  require(interval >= 0, "Active chain checkpoint interval must be non-negative.")
+
+  private val FORMAT_VERSION: Int = 2
+  private val HEADER_SIZE: Long = Integer.BYTES
+  private val ID_SIZE: Int = 32
+
+  // file offset of the record of each written block, the one of height h at index h - 1
+  private val recordOffsets = new ArrayBuffer[Long]()
+  // end of the last complete record, 0 if the file has to be written from scratch
+  private var writtenLength: Long = 0
+
+  private def lastWrittenHeight: Int = recordOffsets.size
+
+  def read(): Try[ArrayBuffer[(ModifierId, SidechainBlockInfo)]] = {
+    recordOffsets.clear()
+    writtenLength = 0
+    val blocksInfoData = Try {
+      val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+      try {
+        val version = in.readInt()
+        if (version != FORMAT_VERSION)
+          throw new IllegalStateException(s"Unsupported active chain checkpoint version $version")
+
+        val blocksInfoData = new ArrayBuffer[(ModifierId, SidechainBlockInfo)]()
+        val idBytes = new Array[Byte](ID_SIZE)
+        var offset = HEADER_SIZE
+        var complete = true
+        while (complete) {
+          try {
+            in.readFully(idBytes)
+            val infoBytes = new Array[Byte](in.readInt())
+            in.readFully(infoBytes)
+            blocksInfoData.append((bytesToId(idBytes), SidechainBlockInfoSerializer.parseBytes(infoBytes)))
+            recordOffsets.append(offset)
+            offset += ID_SIZE + Integer.BYTES + infoBytes.length
+          } catch {
+            // end of the file, possibly in the middle of a record not completely written
+            case _: EOFException => complete = false
+          }
+        }
+        writtenLength = offset
+        blocksInfoData
+      } finally {
+        in.close()
+      }
+    }
+    // an unreadable file is rewritten from scratch
+    if (blocksInfoData.isFailure) {
+      recordOffsets.clear()
+      writtenLength = 0
+    }
+    blocksInfoData
+  }
+
+  def isWriteDue(height: Int): Boolean = interval > 0 && Math.abs(height - lastWrittenHeight) >= interval
+
+  def write(activeChain: ActiveChain): Try[Unit] = {
+    val result = Try {
+      val raf = new RandomAccessFile(file, "rw")
+      try {
+        if (writtenLength == 0) {
+          recordOffsets.clear()
+          raf.setLength(0)
+          raf.writeInt(FORMAT_VERSION)
+          writtenLength = HEADER_SIZE
+        }
+
+        // the written blocks above the last one still in the active chain were reverted
+        val idBytes = new Array[Byte](ID_SIZE)
+        var keptHeight = Math.min(lastWrittenHeight, activeChain.height)
+        while (keptHeight > 0 && {
+          raf.seek(recordOffsets(keptHeight - 1))
+          raf.readFully(idBytes)
+          !activeChain.idByHeight(keptHeight).contains(bytesToId(idBytes))
+        }) keptHeight -= 1
+
+        var offset = if (keptHeight < lastWrittenHeight) recordOffsets(keptHeight) else writtenLength
+        recordOffsets.remove(keptHeight, lastWrittenHeight - keptHeight)
+        raf.setLength(offset)
+
+        val channel = raf.getChannel
+        channel.position(offset)
+        val out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))
+        for (height <- keptHeight + 1 to activeChain.height) {
+          val id = activeChain.idByHeight(height).get
+          val infoBytes = activeChain.blockInfoByHeight(height).get.bytes
+          out.write(idToBytes(id))
+          out.writeInt(infoBytes.length)
+          out.write(infoBytes)
+          recordOffsets.append(offset)
+          offset += ID_SIZE + Integer.BYTES + infoBytes.length
+        }
+        out.flush()
+        channel.force(false)
+        writtenLength = offset
+        log.info(s"Active chain checkpoint written at height $lastWrittenHeight, " +
+          s"${activeChain.height - keptHeight} blocks appended after height $keptHeight")
+      } finally {
+        raf.close()
+      }
+    }
+    // the content of the file is unknown after a failure: it is rewritten from scratch
+    if (result.isFailure) {
+      recordOffsets.clear()
+      writtenLength = 0
+    }
+    result
+  }
+}
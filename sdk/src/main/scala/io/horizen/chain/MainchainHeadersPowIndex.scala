@@ -0,0 +1,35 @@
+package io.horizen.chain
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import io.horizen.block.MainchainHeader
+
+/**
+ * Data of a mainchain header needed to verify the PoW target of the following mainchain headers.
+ */
+case class MainchainHeaderPowData(hash: MainchainHeaderHash, time: Int, bits: Int)
+
+object MainchainHeaderPowData {
+  def apply(header: MainchainHeader): MainchainHeaderPowData =
+    MainchainHeaderPowData(byteArrayToMainchainHeaderHash(header.hash), header.time, header.bits)
+}
+
+/**
+ * Bounded index of the PoW data of the most recently added mainchain headers, by mainchain header hash.
+ * The data of a mainchain header never changes, so the entries stay valid after a rollback of the active chain:
+ * the mainchain headers of a chain and their heights are given by the ActiveChain.
+ */
+class MainchainHeadersPowIndex(maxSize: Int) {
+  require(maxSize > 0, "Mainchain headers PoW index size must be positive.")
+
+  private val powDataByHash: Cache[MainchainHeaderHash, MainchainHeaderPowData] =
+    CacheBuilder.newBuilder().maximumSize(maxSize).build[MainchainHeaderHash, MainchainHeaderPowData]()
+
+  def add(header: MainchainHeader): Unit = {
+    val powData = MainchainHeaderPowData(header)
+    powDataByHash.put(powData.hash, powData)
+  }
+
+  def get(hash: MainchainHeaderHash): Option[MainchainHeaderPowData] = Option(powDataByHash.getIfPresent(hash))
+
+  def size: Long = powDataByHash.size()
+}
@@ -295,26 +295,28 @@ abstract class AbstractForgeMessageBuilder[
     val mainchainReferenceData: ArrayBuffer[MainchainBlockReferenceData] = ArrayBuffer()
     // Collect MainchainRefData considering the actor message processing timeout
     // Note: We may do a lot of websocket `getMainchainBlockReference` operations that are a bit slow,
-    // because they are processed one by one, so we limit requests in time.
+    // even if a window of them is requested in advance and parsed in parallel, so we limit requests in time.
     val startTime: Long = System.currentTimeMillis()
-    mainchainBlockReferenceDataToRetrieve.takeWhile(hash => {
-      mainchainSynchronizer.getMainchainBlockReference(hash) match {
+    val mainchainBlockReferences = mainchainSynchronizer.getMainchainBlockReferencesInOrder(mainchainBlockReferenceDataToRetrieve)
+    var collectData: Boolean = true
+    while (collectData && mainchainBlockReferences.hasNext) {
+      mainchainBlockReferences.next() match {
         case Success(ref) =>
           val refDataSize = ref.data.bytes.length + 4 // placeholder for MainchainReferenceData length
           if (blockSize + refDataSize > getMaxBlockOverheadSize) {
             log.info(s"Block size would exceed limit, stopping mc ref data collection. Block size $blockSize, Data collected so far: ${mainchainReferenceData.length}, refData skipped size: $refDataSize")
-            false // stop data collection
+            collectData = false // stop data collection
           } else {
             mainchainReferenceData.append(ref.data)
             blockSize += refDataSize
             // Note: temporary solution because of the delays on MC Websocket server part.
             // Can be after MC Websocket performance optimization.
             val isTimeout: Boolean = System.currentTimeMillis() - startTime >= mcRefDataRetrievalTimeout.duration.toMillis
-            !isTimeout // continue data collection
+            collectData = !isTimeout // continue data collection
           }
         case Failure(ex) => return ForgeFailed(ex)
       }
-    })
+    }
 
     // if we have no mc block ref, we must ensure we are not creating too long a chain without mc ref blocks
     val consensusEpochNumber = TimeToEpochUtils.timeStampToEpochNumber(params.sidechainGenesisBlockTimestamp, timestamp)
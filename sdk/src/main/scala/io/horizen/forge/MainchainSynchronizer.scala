@@ -8,10 +8,33 @@ import io.horizen.utils.BytesUtils
 import io.horizen.utils._
 import io.horizen.websocket.client.MainchainNodeChannel
 
+import java.util.concurrent.{Executors, RejectedExecutionException}
+import java.util.concurrent.atomic.AtomicInteger
+import scala.collection.mutable
 import scala.collection.mutable.ListBuffer
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, ExecutionContext, ExecutionContextExecutorService, Future, Promise}
 import scala.util.{Failure, Success, Try}
 
-class MainchainSynchronizer(mainchainNodeChannel: MainchainNodeChannel) {
+class MainchainSynchronizer(mainchainNodeChannel: MainchainNodeChannel,
+                            maxBlocksInFlight: Int = MainchainSynchronizer.DEFAULT_MAX_BLOCKS_IN_FLIGHT) extends AutoCloseable {
+  require(maxBlocksInFlight > 0, "Max number of mainchain blocks in flight must be positive")
+
+  // pool requesting and parsing the mainchain block references, its threads are created on first use:
+  // each worker waits for the response of its request, so the pool size bounds the requests in flight
+  private val blockFetchContext: ExecutionContextExecutorService = {
+    val threadCounter = new AtomicInteger()
+    ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(maxBlocksInFlight, (runnable: Runnable) => {
+      val thread = new Thread(runnable, s"mc-block-fetch-${threadCounter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }))
+  }
+
+  // Stops the fetch workers once the requests in flight are completed,
+  // the following references are requested one by one on the calling thread
+  override def close(): Unit = blockFetchContext.shutdown()
+
   // Get divergent mainchain suffix between SC Node and MC Node
   // Return last common header with height + divergent suffix
   def getMainchainDivergentSuffix(history: AbstractHistory[_, _, _, _, _, _], limit: Int): Try[(Int, Seq[MainchainHeaderHash])] = Try {
@@ -59,8 +82,9 @@ class MainchainSynchronizer(mainchainNodeChannel: MainchainNodeChannel) {
 
   def getMainchainBlockReferences(hashes: Seq[MainchainHeaderHash]): Try[Seq[MainchainBlockReference]] = Try {
     val references = ListBuffer[MainchainBlockReference]()
-    for(hash <- hashes) {
-      mainchainNodeChannel.getBlockByHash(BytesUtils.toHexString(hash.data)) match {
+    val requestedReferences = requestInOrder(hashes, hash => mainchainNodeChannel.getBlockByHash(BytesUtils.toHexString(hash.data)))
+    for((hash, reference) <- hashes.iterator.zip(requestedReferences)) {
+      reference match {
         case Success(ref) =>
           references.append(ref)
         case Failure(ex) =>
@@ -70,6 +94,50 @@ class MainchainSynchronizer(mainchainNodeChannel: MainchainNodeChannel) {
     references
   }
 
+  /**
+   * Returns the references of the given hashes in the same order, as they are consumed. Up to maxBlocksInFlight
+   * references following the consumed one are requested in advance and parsed in parallel, so the consumer waits for
+   * the slowest of the round trips instead of their sum. Blocks after the window are requested only when the consumer
+   * moves on, so stopping the iteration early costs at most a window of requests.
+   */
+  def getMainchainBlockReferencesInOrder(hashes: Seq[MainchainHeaderHash]): Iterator[Try[MainchainBlockReference]] =
+    requestInOrder(hashes, getMainchainBlockReference)
+
+  private def requestInOrder(hashes: Seq[MainchainHeaderHash],
+                             request: MainchainHeaderHash => Try[MainchainBlockReference]): Iterator[Try[MainchainBlockReference]] = {
+    if (hashes.size <= 1)
+      hashes.iterator.map(request)
+    else
+      new Iterator[Try[MainchainBlockReference]] {
+        private val hashesToRequest = hashes.iterator
+        private val inFlight = mutable.Queue[Future[Try[MainchainBlockReference]]]()
+        requestNext()
+
+        // every request is bounded by the channel timeout, so waiting for its result can't hang
+        private def requestNext(): Unit =
+          while (inFlight.size < maxBlocksInFlight && hashesToRequest.hasNext) {
+            val hash = hashesToRequest.next()
+            val reference = Promise[Try[MainchainBlockReference]]()
+            try {
+              blockFetchContext.execute(() => reference.complete(Try(request(hash))))
+            } catch {
+              case _: RejectedExecutionException =>
+                // closed meanwhile
+                reference.complete(Try(request(hash)))
+            }
+            inFlight.enqueue(reference.future)
+          }
+
+        override def hasNext: Boolean = inFlight.nonEmpty
+
+        override def next(): Try[MainchainBlockReference] = {
+          val reference = inFlight.dequeue()
+          requestNext()
+          Await.result(reference, Duration.Inf)
+        }
+      }
+  }
+
   def getMainchainBlockHeaders(hashes: Seq[MainchainHeaderHash]): Try[Seq[MainchainHeader]] = Try {
     val strHashes: Seq[String] = hashes.map(hash => BytesUtils.toHexString(hash.data))
     var headers : Seq[MainchainHeader] = ListBuffer()
@@ -86,6 +154,7 @@ class MainchainSynchronizer(mainchainNodeChannel: MainchainNodeChannel) {
 }
 
 object MainchainSynchronizer {
+  val DEFAULT_MAX_BLOCKS_IN_FLIGHT: Int = 8
   val MAX_BLOCKS_REQUEST: Int = 50
   val HEADERS_REQUEST_LIMIT:Int = 25 // TODO Change this value to 50(as described in doc and implemented in MC) when forger be able to request more than 50 blocks.
                                      // HEADERS_REQUEST_LIMIT was reduced to 25 in order to keep track of correctness of multiple header requests.
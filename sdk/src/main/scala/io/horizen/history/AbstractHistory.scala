@@ -579,6 +579,9 @@ abstract class AbstractHistory[
 
   def getStorageBlockById(blockId: ModifierId): Option[PM] = storage.blockById(blockId)
   def getStorageBlockInfoById(blockId: ModifierId): Option[SidechainBlockInfo] = storage.blockInfoOptionById(blockId)
+  // thread safe counterparts of blockIdByHeight and getStorageBlockInfoById, for the readers outside of the node view holder
+  def activeChainIds: IndexedSeq[ModifierId] = storage.activeChainIds
+  def getStoredBlockInfoById(blockId: ModifierId): Option[SidechainBlockInfo] = storage.storedBlockInfoOptionById(blockId)
 
   def modifierById(blockId: ModifierId): Option[PM] = getStorageBlockById(blockId)
 
@@ -0,0 +1,99 @@
+package io.horizen.history.validation
+
+import sparkz.core.PersistentNodeViewModifier
+import sparkz.util.{ModifierId, SparkzLogging}
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, Executors, TimeoutException}
+import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.{Await, ExecutionContext, ExecutionContextExecutorService, Future}
+import scala.util.Try
+
+/**
+ * Runs the context-free semantic validation of blocks waiting to be applied on a pool of workers, ahead of their
+ * application: when the block is appended to the history, its validation result is ready or already in progress.
+ *
+ * At most maxPending blocks are validated ahead at the same time, the following ones are validated as usual on append.
+ * A finished validation frees its slot at once, while its result is kept until the block is appended or discarded,
+ * so blocks waiting in the modifiers cache for a missing parent don't prevent the validation of the next ones.
+ * The validation of a block is pure, so its result is reused only for the very same block object that was submitted.
+ * A validation still in progress after the validation timeout is not waited for, the block is validated on append.
+ */
+class SemanticValidationPipeline[PMOD <: PersistentNodeViewModifier](
+    validators: Seq[SemanticBlockValidator[PMOD]],
+    threads: Int,
+    maxPending: Int,
+    validationTimeout: FiniteDuration
+) extends SemanticBlockValidator[PMOD] with SparkzLogging {
+
+  require(threads > 0, "Number of semantic validation threads must be positive.")
+  require(maxPending > 0, "Number of pending semantic validations must be positive.")
+  require(validationTimeout.toMillis > 0, "Semantic validation timeout must be positive.")
+
+  private case class PendingValidation(block: PMOD, result: Future[Try[Unit]])
+
+  private val pending = new ConcurrentHashMap[ModifierId, PendingValidation]()
+  // validations queued or running on the workers
+  private val inProgress = new AtomicInteger()
+
+  private lazy val validationContext: ExecutionContextExecutorService = {
+    val threadCounter = new AtomicInteger()
+    ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(threads, (runnable: Runnable) => {
+      val thread = new Thread(runnable, s"block-semantic-validation-${threadCounter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }))
+  }
+
+  private def validateAll(block: PMOD): Try[Unit] = Try {
+    for (validator <- validators)
+      validator.validate(block).get
+  }
+
+  /**
+   * Starts the validation of the given block on the workers, unless too many validations are already in progress.
+   */
+  def submit(block: PMOD): Unit = {
+    if (inProgress.get < maxPending && !pending.containsKey(block.id)) {
+      inProgress.incrementAndGet()
+      val result = Future {
+        try validateAll(block)
+        finally inProgress.decrementAndGet()
+      }(validationContext)
+      pending.put(block.id, PendingValidation(block, result))
+    }
+  }
+
+  /**
+   * Forgets the validation of blocks that won't be appended, e.g. removed from the modifiers cache.
+   */
+  def discard(blockIds: Seq[ModifierId]): Unit = blockIds.foreach(pending.remove)
+
+  def pendingCount: Int = pending.size
+
+  def inProgressCount: Int = inProgress.get
+
+  /**
+   * Returns the result of the validation submitted for the block, waiting for it up to the validation timeout if
+   * still in progress, or validates the block on the calling thread if it was not submitted or the timeout expired.
+   */
+  override def validate(block: PMOD): Try[Unit] = {
+    Option(pending.remove(block.id)) match {
+      case Some(PendingValidation(submittedBlock, result)) if submittedBlock eq block =>
+        try {
+          Await.result(result, validationTimeout)
+        } catch {
+          case _: TimeoutException =>
+            log.warn(s"Semantic validation of block ${block.id} not completed in $validationTimeout, validating it on append")
+            validateAll(block)
+        }
+      case _ =>
+        validateAll(block)
+    }
+  }
+
+  def shutdown(): Unit = {
+    pending.clear()
+    validationContext.shutdownNow()
+  }
+}
@@ -1,7 +1,8 @@
 package io.horizen.storage
 
+import com.google.common.cache.{Cache, CacheBuilder, CacheStats, Weigher}
 import io.horizen.block.{MainchainBlockReference, MainchainBlockReferenceData, MainchainHeader, SidechainBlockBase, SidechainBlockHeaderBase}
-import io.horizen.chain.{AbstractFeePaymentsInfo, ActiveChain, MainchainBlockReferenceDataInfo, MainchainBlockReferenceInfo, MainchainHeaderBaseInfo, MainchainHeaderHash, MainchainHeaderInfo, MainchainHeaderMetadata, SidechainBlockInfo, SidechainBlockInfoSerializer, byteArrayToMainchainHeaderHash}
+import io.horizen.chain.{AbstractFeePaymentsInfo, ActiveChain, ActiveChainCheckpoint, MainchainBlockReferenceDataInfo, MainchainBlockReferenceInfo, MainchainHeaderBaseInfo, MainchainHeaderHash, MainchainHeaderInfo, MainchainHeaderMetadata, MainchainHeaderPowData, MainchainHeadersPowIndex, SidechainBlockInfo, SidechainBlockInfoSerializer, byteArrayToMainchainHeaderHash}
 import io.horizen.params.NetworkParams
 import io.horizen.utils.ByteArrayWrapper
 import sparkz.core.consensus.ModifierSemanticValidity
@@ -22,6 +23,26 @@ trait SidechainBlockInfoProvider {
   def blockInfoById(blockId: ModifierId): SidechainBlockInfo
 }
 
+/**
+ * Counters of the decoded blocks and block infos caches of the history storage.
+ */
+case class HistoryStorageCacheStats(
+    blockCacheEntries: Long,
+    blockCacheHits: Long,
+    blockCacheMisses: Long,
+    blockCacheEvictions: Long,
+    blockInfoCacheEntries: Long,
+    blockInfoCacheHits: Long,
+    blockInfoCacheMisses: Long,
+    blockInfoCacheEvictions: Long
+)
+
+object AbstractHistoryStorage {
+  val DEFAULT_BLOCK_CACHE_MAX_BYTES: Long = 64L * 1024 * 1024
+  val DEFAULT_BLOCK_INFO_CACHE_MAX_BYTES: Long = 8L * 1024 * 1024
+  val MAINCHAIN_HEADERS_POW_INDEX_SIZE: Int = 1024
+}
+
 abstract class AbstractHistoryStorage[
   PM <: SidechainBlockBase[_ <: Transaction, _ <: SidechainBlockHeaderBase],
   FPI <: AbstractFeePaymentsInfo,
@@ -30,7 +51,10 @@ abstract class AbstractHistoryStorage[
     storage: Storage,
     blockSerializer: SparkzSerializer[PM],
     feePaymentsInfoSerializer: SparkzSerializer[FPI],
-    params: NetworkParams
+    params: NetworkParams,
+    blockCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_CACHE_MAX_BYTES,
+    blockInfoCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_INFO_CACHE_MAX_BYTES,
+    activeChainCheckpoint: Option[ActiveChainCheckpoint] = None
   )
   extends SidechainBlockInfoProvider
     with SidechainStorageInfo
@@ -41,25 +65,73 @@ abstract class AbstractHistoryStorage[
   require(storage != null, "Storage must be NOT NULL.")
   require(blockSerializer != null, "Block serializer must be NOT NULL.")
   require(params != null, "params must be NOT NULL.")
+  require(blockCacheMaxBytes >= 0, "Block cache size must be non-negative.")
+  require(blockInfoCacheMaxBytes >= 0, "Block info cache size must be non-negative.")
+
+  // Decoded blocks and block infos read from the storage, bounded by the size of their serialized form.
+  // Blocks never change once stored; block infos are invalidated whenever they are rewritten.
+  private val blockCache: Cache[ModifierId, (PM, Int)] = buildCache(blockCacheMaxBytes)
+  private val blockInfoCache: Cache[ModifierId, (SidechainBlockInfo, Int)] = buildCache(blockInfoCacheMaxBytes)
+
+  private def buildCache[V <: AnyRef](maxBytes: Long): Cache[ModifierId, (V, Int)] = {
+    CacheBuilder.newBuilder()
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher[ModifierId, (V, Int)] {
+        override def weigh(key: ModifierId, value: (V, Int)): Int = value._2
+      })
+      .recordStats()
+      .build[ModifierId, (V, Int)]()
+  }
+
+  // PoW data of the recent mainchain headers, to verify the PoW target of new mainchain headers without reading blocks
+  private val mainchainHeadersPowIndex = new MainchainHeadersPowIndex(AbstractHistoryStorage.MAINCHAIN_HEADERS_POW_INDEX_SIZE)
 
   private val bestBlockIdKey: ByteArrayWrapper = new ByteArrayWrapper(Array.fill(32)(-1: Byte))
 
   private val activeChain: ActiveChain = loadActiveChain()
 
+  // Immutable copy of the active chain ids by height, replaced on each best block change. Unlike the active chain,
+  // that is mutated in place, it can be read from any thread.
+  @volatile private var activeChainIdsView: Vector[ModifierId] =
+    (1 to activeChain.height).map(height => activeChain.idByHeight(height).get).toVector
+
   private def loadActiveChain(): ActiveChain = {
     if (storage.isEmpty) {
       return ActiveChain(params.mainchainCreationBlockHeight)
     }
 
-    val activeChainBlocksInfo: ArrayBuffer[(ModifierId, SidechainBlockInfo)] = new ArrayBuffer()
-
-    activeChainBlocksInfo.append((bestBlockId, blockInfoByIdFromStorage(bestBlockId)))
-    while (activeChainBlocksInfo.last._2.height > 1) {
-      val id = activeChainBlocksInfo.last._2.parentId
-      activeChainBlocksInfo.append((id, blockInfoByIdFromStorage(id)))
+    val startTime = System.currentTimeMillis()
+    val checkpointBlocksInfo: ArrayBuffer[(ModifierId, SidechainBlockInfo)] = activeChainCheckpoint.flatMap(checkpoint =>
+      checkpoint.read() match {
+        case Success(blocksInfo) => Some(blocksInfo)
+        case Failure(exception) =>
+          if (checkpoint.file.exists())
+            log.warn(s"Could not read active chain checkpoint ${checkpoint.file}, the active chain will be fully rebuilt", exception)
+          None
+      }).getOrElse(new ArrayBuffer())
+
+    // Walk back from the best block until a block of the checkpoint is reached: the blocks of the checkpoint above it
+    // were reverted after the checkpoint was written, the walked ones were applied after it.
+    // Without a usable checkpoint the walk reaches the first block of the chain.
+    val tailBlocksInfo: ArrayBuffer[(ModifierId, SidechainBlockInfo)] = new ArrayBuffer()
+    var id = bestBlockId
+    var info = blockInfoByIdFromStorage(id)
+    var checkpointHeight = 0
+    while (checkpointHeight == 0) {
+      if (info.height <= checkpointBlocksInfo.size && checkpointBlocksInfo(info.height - 1)._1 == id) {
+        checkpointHeight = info.height
+      } else {
+        tailBlocksInfo.append((id, info))
+        if (info.height > 1) {
+          id = info.parentId
+          info = blockInfoByIdFromStorage(id)
+        } else {
+          checkpointHeight = -1
+        }
+      }
     }
 
-    val orderedChainBlocks = activeChainBlocksInfo.reverse
+    val orderedChainBlocks = checkpointBlocksInfo.take(Math.max(checkpointHeight, 0)) ++ tailBlocksInfo.reverse
 
     val mainchainBlockParent = for {
       firstSidechainBlockInfo <- orderedChainBlocks.headOption
@@ -67,7 +139,23 @@ abstract class AbstractHistoryStorage[
       firstMainchainHeader <- firstSidechainBlock.mainchainHeaders.headOption
     } yield byteArrayToMainchainHeaderHash(firstMainchainHeader.hashPrevBlock)
 
-    ActiveChain(orderedChainBlocks, mainchainBlockParent.getOrElse(throw new IllegalStateException("Loaded active chain miss mainchain parent")), params.mainchainCreationBlockHeight)
+    val chain = ActiveChain(orderedChainBlocks, mainchainBlockParent.getOrElse(throw new IllegalStateException("Loaded active chain miss mainchain parent")), params.mainchainCreationBlockHeight)
+    if (checkpointHeight > 0)
+      log.info(s"Active chain of height ${chain.height} loaded from checkpoint at height $checkpointHeight " +
+        s"with ${tailBlocksInfo.size} blocks replayed in ${System.currentTimeMillis() - startTime} ms")
+    else
+      log.info(s"Active chain of height ${chain.height} rebuilt from history storage in ${System.currentTimeMillis() - startTime} ms")
+    chain
+  }
+
+  /**
+   * Persists the current active chain to the checkpoint file, if any. Failures are only logged: the checkpoint
+   * is an optimization of the startup, the history storage stays the source of truth.
+   */
+  def writeActiveChainCheckpoint(): Unit = {
+    activeChainCheckpoint.foreach(checkpoint =>
+      checkpoint.write(activeChain).failed.foreach(exception =>
+        log.warn(s"Could not write active chain checkpoint ${checkpoint.file}", exception)))
   }
 
   private def blockInfoKey(blockId: ModifierId): ByteArrayWrapper = new ByteArrayWrapper(Blake2b256(s"blockInfo$blockId"))
@@ -93,12 +181,18 @@ abstract class AbstractHistoryStorage[
   }
 
   def blockById(blockId: ModifierId): Option[PM] = {
+    val cached = blockCache.getIfPresent(blockId)
+    if (cached != null)
+      return Some(cached._1)
+
     val blockIdBytes = new ByteArrayWrapper(idToBytes(blockId))
     val baw = storage.get(blockIdBytes).asScala
     baw match {
       case Some(value) =>
         blockSerializer.parseBytesTry(value.data()) match {
-          case Success(block) => Option(block)
+          case Success(block) =>
+            blockCache.put(blockId, (block, value.data().length))
+            Option(block)
           case Failure(exception) =>
             log.error("Error while sidechain block parsing.", exception)
             Option.empty
@@ -122,8 +216,29 @@ abstract class AbstractHistoryStorage[
     isInActiveChain(blockId) || blockInfoOptionByIdFromStorage(blockId).nonEmpty
   }
 
+  /**
+   * Block info read from the storage only, without looking at the active chain: safe to be called from any thread.
+   */
+  def storedBlockInfoOptionById(blockId: ModifierId): Option[SidechainBlockInfo] = blockInfoOptionByIdFromStorage(blockId)
+
   private def blockInfoOptionByIdFromStorage(blockId: ModifierId): Option[SidechainBlockInfo] = {
-    storage.get(blockInfoKey(blockId)).asScala.flatMap(baw => SidechainBlockInfoSerializer.parseBytesTry(baw.data).toOption)
+    val cached = blockInfoCache.getIfPresent(blockId)
+    if (cached != null)
+      return Some(cached._1)
+
+    val blockInfoOpt = storage.get(blockInfoKey(blockId)).asScala.flatMap(baw =>
+      SidechainBlockInfoSerializer.parseBytesTry(baw.data).toOption.map(info => (info, baw.data.length)))
+    blockInfoOpt.foreach { case (info, size) => blockInfoCache.put(blockId, (info, size)) }
+    blockInfoOpt.map(_._1)
+  }
+
+  def cacheStats: HistoryStorageCacheStats = {
+    val blockStats: CacheStats = blockCache.stats()
+    val blockInfoStats: CacheStats = blockInfoCache.stats()
+    HistoryStorageCacheStats(
+      blockCache.size(), blockStats.hitCount(), blockStats.missCount(), blockStats.evictionCount(),
+      blockInfoCache.size(), blockInfoStats.hitCount(), blockInfoStats.missCount(), blockInfoStats.evictionCount()
+    )
   }
 
   private def blockInfoByIdFromStorage(blockId: ModifierId): SidechainBlockInfo = {
@@ -177,6 +292,12 @@ abstract class AbstractHistoryStorage[
 
   def activeChainBlockId(height: Int): Option[ModifierId] = activeChain.idByHeight(height)
 
+  /**
+   * Ids of the active chain blocks, the block at height h at index h - 1.
+   * The returned sequence is immutable and safe to be read from any thread, it is not updated by the next best blocks.
+   */
+  def activeChainIds: IndexedSeq[ModifierId] = activeChainIdsView
+
   def activeChainSince(blockId: ModifierId, limit: Option[Int]): Seq[ModifierId] = activeChain.chainSince(blockId, limit)
 
   def activeChainAfter(blockId: ModifierId, limit: Option[Int]): Seq[ModifierId] = activeChain.chainAfter(blockId, limit)
@@ -236,6 +357,31 @@ abstract class AbstractHistoryStorage[
     mainchainHeights.flatMap(mainchainHeight => activeChain.mcHashByMcHeight(mainchainHeight))
   }
 
+  /**
+   * PoW data of the last `count` mainchain headers included in the active chain up to the given block, oldest first.
+   * Fewer headers are returned if the active chain contains fewer mainchain headers.
+   * The headers are taken from the active chain and their data from the mainchain headers PoW index: only the blocks
+   * containing headers missing from the index, e.g. after a restart, are read and their headers added to the index.
+   * Returns None if the block is not in the active chain.
+   */
+  def activeChainMainchainHeadersPowData(blockId: ModifierId, count: Int): Option[Seq[MainchainHeaderPowData]] = {
+    activeChain.lastMcHeaderHashTill(blockId).flatMap(activeChain.mcHeadersHeightByMcHash).map { lastMcHeight =>
+      val mcHashes = (lastMcHeight until lastMcHeight - count by -1).toStream
+        .map(activeChain.mcHashByMcHeight)
+        .takeWhile(_.isDefined)
+        .map(_.get)
+      mcHashes.map(mcHash => mainchainHeadersPowIndex.get(mcHash).getOrElse(indexMainchainHeadersPowData(mcHash))).reverse.toList
+    }
+  }
+
+  private def indexMainchainHeadersPowData(mcHash: MainchainHeaderHash): MainchainHeaderPowData = {
+    val block = activeChain.idByMcHeader(mcHash).flatMap(blockById)
+      .getOrElse(throw new IllegalStateException(s"Active chain inconsistency: no block for mainchain header ${BytesUtils.toHexString(mcHash.data)}"))
+    block.mainchainHeaders.foreach(mainchainHeadersPowIndex.add)
+    mainchainHeadersPowIndex.get(mcHash)
+      .getOrElse(throw new IllegalStateException(s"Active chain inconsistency: mainchain header ${BytesUtils.toHexString(mcHash.data)} is not in its block"))
+  }
+
   def getBestMainchainHeaderInfo: Option[MainchainHeaderInfo] = {
     getMainchainHeaderInfoByHeight(activeChain.heightOfMcHeaders)
   }
@@ -291,6 +437,7 @@ abstract class AbstractHistoryStorage[
       new ByteArrayWrapper(Utils.nextVersion),
       toUpdate,
       new JArrayList[ByteArrayWrapper]())
+    blockInfoCache.invalidate(block.id)
 
     this
   }
@@ -324,6 +471,7 @@ abstract class AbstractHistoryStorage[
       java.util.Arrays.asList(new JPair(new ByteArrayWrapper(blockInfoKey(block.id)), new ByteArrayWrapper(blockInfo.bytes))),
       new JArrayList()
     )
+    blockInfoCache.invalidate(block.id)
     this
   }
 
@@ -333,9 +481,15 @@ abstract class AbstractHistoryStorage[
       java.util.Arrays.asList(new JPair(bestBlockIdKey, new ByteArrayWrapper(idToBytes(block.id)))),
       new JArrayList()
     )
+    // the new best block info is served by the active chain from now on
+    blockInfoCache.invalidate(block.id)
 
     val mainchainParent: Option[MainchainHeaderHash] = block.mainchainHeaders.headOption.map(header => byteArrayToMainchainHeaderHash(header.hashPrevBlock))
     activeChain.setBestBlock(block.id, blockInfo, mainchainParent)
+    activeChainIdsView = activeChainIdsView.take(blockInfo.height - 1) :+ block.id
+    block.mainchainHeaders.foreach(mainchainHeadersPowIndex.add)
+    if (activeChainCheckpoint.exists(_.isWriteDue(activeChain.height)))
+      writeActiveChainCheckpoint()
     this
   }
 
@@ -0,0 +1,34 @@
+package io.horizen.storage
+
+import io.horizen.storage.leveldb.NamespacedLevelDbStorageAdapter
+
+/**
+ * Groups the updates of several storages into a single atomic write.
+ */
+trait StorageBatching {
+  /**
+   * Executes f so that all the storage updates done by it are written at once when it completes,
+   * and discarded if it throws. Nested calls join the outermost batch.
+   */
+  def withBatch[T](f: => T): T
+}
+
+object StorageBatching {
+
+  object NoBatching extends StorageBatching {
+    override def withBatch[T](f: => T): T = f
+  }
+
+  /**
+   * Batching of the database hosting the given storages, if they all are namespaces of the same shared database.
+   */
+  def of(storages: Storage*): StorageBatching = {
+    storages.map {
+      case namespace: NamespacedLevelDbStorageAdapter => Some(namespace.database)
+      case _ => None
+    }.distinct match {
+      case Seq(Some(database)) => database
+      case _ => NoBatching
+    }
+  }
+}
@@ -3,6 +3,8 @@ package io.horizen.storage.leveldb
 import sparkz.core.serialization.SparkzSerializer
 import sparkz.util.serialization.{Reader, Writer}
 
+import scala.collection.mutable.ArrayBuffer
+
 /**
   * That source code had been copied/modified from ErgoPlatform Project
   *
@@ -43,26 +45,30 @@ object ChangeSetSerializer extends SparkzSerializer[ChangeSet] {
   }
 
   override def parse(r: Reader): ChangeSet = {
+    // built with array buffers: appending to the default immutable Seq is linear in its size
     val insertedQty = r.getUInt().toInt
-    val insertedKeys = (0 until insertedQty).foldLeft(Seq.empty[Array[Byte]]) { case (acc, _) =>
+    val insertedKeys = new ArrayBuffer[Array[Byte]](insertedQty)
+    (0 until insertedQty).foreach { _ =>
       val len = r.getUByte()
-      acc :+ r.getBytes(len)
+      insertedKeys += r.getBytes(len)
     }
     val removedQty = r.getUInt().toInt
-    val removed = (0 until removedQty).foldLeft(Seq.empty[(Array[Byte], Array[Byte])]) { case (acc, _) =>
+    val removed = new ArrayBuffer[(Array[Byte], Array[Byte])](removedQty)
+    (0 until removedQty).foreach { _ =>
       val kLen = r.getUByte()
       val k = r.getBytes(kLen)
       val vLen = r.getUInt().toInt
       val v = r.getBytes(vLen)
-      acc :+ (k -> v)
+      removed += (k -> v)
     }
     val alteredQty = r.getUInt().toInt
-    val altered = (0 until alteredQty).foldLeft(Seq.empty[(Array[Byte], Array[Byte])]) { case (acc, _) =>
+    val altered = new ArrayBuffer[(Array[Byte], Array[Byte])](alteredQty)
+    (0 until alteredQty).foreach { _ =>
       val kLen = r.getUByte()
       val k = r.getBytes(kLen)
       val oldVLen = r.getUInt().toInt
       val oldV = r.getBytes(oldVLen)
-      acc :+ (k -> oldV)
+      altered += (k -> oldV)
     }
     ChangeSet(insertedKeys, removed, altered)
   }
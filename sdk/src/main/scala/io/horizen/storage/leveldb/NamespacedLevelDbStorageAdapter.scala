@@ -0,0 +1,288 @@
+package io.horizen.storage.leveldb
+
+import com.google.common.primitives.{Bytes, Longs, UnsignedBytes}
+import io.horizen.storage.{Storage, StorageIterator}
+import io.horizen.utils.{Pair => JPair, _}
+import org.iq80.leveldb.DBIterator
+
+import java.nio.charset.StandardCharsets
+import java.util.{AbstractMap, Optional, List => JList, Map => JMap}
+import scala.collection.JavaConverters._
+import scala.collection.immutable.TreeMap
+import scala.collection.mutable
+import scala.compat.java8.OptionConverters._
+
+
+/**
+ * Versioned storage living in a namespace of a SharedLevelDbDatabase.
+ *
+ * All the keys of the namespace start with its name followed by a zero byte; data keys and undo log keys are then
+ * separated by one more byte, so that the data of the namespace can be iterated on its own.
+ * Versioning follows UndoLogLDBKVStore: every version is a numbered undo log entry, indexed in memory.
+ * Reads and writes go through the shared database, so an update done inside a batch of the database is visible to the
+ * following reads of the same thread (and to a rollback) before the batch is written. The versions added or removed
+ * inside a batch are kept in a version index of the batch, published to the other threads once the batch is written.
+ * The updates of a namespace are expected from one thread at a time, e.g. the node view holder actor.
+ */
+class NamespacedLevelDbStorageAdapter private[leveldb](val database: SharedLevelDbDatabase, val name: String, versionsToKeep: Int) extends Storage {
+
+  require(versionsToKeep > 0, "Number of versions to keep must be positive")
+
+  private val namespacePrefix: Array[Byte] = Bytes.concat(name.getBytes(StandardCharsets.UTF_8), Array[Byte](0))
+  private val dataPrefix: Array[Byte] = Bytes.concat(namespacePrefix, Array[Byte](0))
+  private val metaPrefix: Array[Byte] = Bytes.concat(namespacePrefix, Array[Byte](1))
+
+  private val boundsKey: Array[Byte] = metaKey("bounds".getBytes(StandardCharsets.UTF_8))
+
+  private val keyOrdering: Ordering[Array[Byte]] = Ordering.comparatorToOrdering(UnsignedBytes.lexicographicalComparator())
+
+  // version index of the written data, read by any thread
+  @volatile private var writtenVersions: VersionIndex = loadVersions()
+  // version index with the updates of the open batch, only accessed by the batch owner thread
+  private var batchVersions: Option[VersionIndex] = None
+
+  private def dataKey(key: Array[Byte]): Array[Byte] = Bytes.concat(dataPrefix, key)
+
+  private def metaKey(key: Array[Byte]): Array[Byte] = Bytes.concat(metaPrefix, key)
+
+  private def versionIdKey(seq: Long): Array[Byte] = metaKey(Bytes.concat(Array[Byte]('v'), Longs.toByteArray(seq)))
+
+  private def changeSetKey(seq: Long): Array[Byte] = metaKey(Bytes.concat(Array[Byte]('c'), Longs.toByteArray(seq)))
+
+  private def boundsValue(first: Long, last: Long): Array[Byte] = Bytes.concat(Longs.toByteArray(first), Longs.toByteArray(last))
+
+  private def loadVersions(): VersionIndex = {
+    database.get(boundsKey).map { bounds =>
+      val first = Longs.fromByteArray(bounds.slice(0, Longs.BYTES))
+      val last = Longs.fromByteArray(bounds.slice(Longs.BYTES, 2 * Longs.BYTES))
+      val ids = (first to last).map(seq => new ByteArrayWrapper(database.get(versionIdKey(seq))
+        .getOrElse(throw new IllegalStateException(s"Inconsistent state of storage $name: missing version $seq"))))
+      VersionIndex(first, ids.toVector)
+    }.getOrElse(VersionIndex.empty)
+  }
+
+  // versions as seen by the calling thread: the batch owner sees the updates of its batch
+  private def versions: VersionIndex =
+    if (database.isBatchOwner) batchVersions.getOrElse(writtenVersions) else writtenVersions
+
+  private def setVersions(index: VersionIndex): Unit = {
+    if (database.isBatchOwner) {
+      batchVersions = Some(index)
+      database.joinBatch(this)
+    } else {
+      writtenVersions = index
+    }
+  }
+
+  /**
+   * Publishes the version index of the batch, called by the batch owner once the batch is written.
+   */
+  private[leveldb] def batchWritten(): Unit = {
+    batchVersions.foreach(writtenVersions = _)
+    batchVersions = None
+  }
+
+  /**
+   * Drops the version index of the batch, called by the batch owner when the batch is discarded.
+   */
+  private[leveldb] def batchDiscarded(): Unit = {
+    batchVersions = None
+  }
+
+  /**
+   * Reads the given data keys in key order, to benefit from the locality of the table blocks.
+   * Results are returned in the order of the requested keys.
+   */
+  private def multiGet(keys: IndexedSeq[Array[Byte]]): IndexedSeq[Option[Array[Byte]]] = {
+    val values = new Array[Option[Array[Byte]]](keys.size)
+    keys.indices.sortBy(keys(_))(keyOrdering).foreach(i => values(i) = database.get(dataKey(keys(i))))
+    values
+  }
+
+  override def get(key: ByteArrayWrapper): Optional[ByteArrayWrapper] =
+    database.get(dataKey(key.data)).map(byteArrayToWrapper).asJava
+
+  override def getOrElse(key: ByteArrayWrapper, defaultValue: ByteArrayWrapper): ByteArrayWrapper =
+    database.get(dataKey(key.data)).map(byteArrayToWrapper).getOrElse(defaultValue)
+
+  override def get(keys: JList[ByteArrayWrapper]): JList[JPair[ByteArrayWrapper, Optional[ByteArrayWrapper]]] = {
+    val keysAsScala = keys.asScala.toIndexedSeq
+    keysAsScala.zip(multiGet(keysAsScala.map(_.data)))
+      .map { case (key, value) => new JPair(key, value.map(byteArrayToWrapper).asJava) }
+      .asJava
+  }
+
+  override def getAll: JList[JPair[ByteArrayWrapper, ByteArrayWrapper]] = {
+    val iterator = getIterator()
+    try {
+      iterator.asScala
+        .map(entry => new JPair(byteArrayToWrapper(entry.getKey), byteArrayToWrapper(entry.getValue)))
+        .toList
+        .asJava
+    } finally {
+      iterator.close()
+    }
+  }
+
+  override def lastVersionID(): Optional[ByteArrayWrapper] = versions.ids.lastOption.asJava
+
+  override def update(version: ByteArrayWrapper, toUpdate: JList[JPair[ByteArrayWrapper, ByteArrayWrapper]], toRemove: JList[ByteArrayWrapper]): Unit = synchronized {
+    val toUpdateAsScala = toUpdate.asScala.toIndexedSeq
+    val toRemoveAsScala = toRemove.asScala.toIndexedSeq
+
+    require(toUpdateAsScala.map(_.getKey).toSet.size == toUpdateAsScala.size, "duplicate key in `toUpdate`")
+    require(toRemoveAsScala.toSet.size == toRemoveAsScala.size, "duplicate key in `toRemove`")
+    require(version.data.length == Constants.HashLength, "Illegal version id size")
+    val current = versions
+    require(!current.seqs.contains(version), "Version is already exist in storage")
+
+    val insertedKeys = mutable.ArrayBuffer.empty[Array[Byte]]
+    val altered = mutable.ArrayBuffer.empty[(Array[Byte], Array[Byte])]
+    toUpdateAsScala.zip(multiGet(toUpdateAsScala.map(_.getKey.data))).foreach {
+      case (pair, Some(oldValue)) => altered += (pair.getKey.data -> oldValue)
+      case (pair, None) => insertedKeys += pair.getKey.data
+    }
+    val removed = toRemoveAsScala.zip(multiGet(toRemoveAsScala.map(_.data))).collect { case (key, Some(oldValue)) => key.data -> oldValue }
+
+    val seq = current.lastSeq + 1
+    val prunedCount = Math.max(0, current.ids.size + 1 - versionsToKeep)
+
+    val writes = mutable.ArrayBuffer.empty[(Array[Byte], Option[Array[Byte]])]
+    (current.firstSeq until current.firstSeq + prunedCount).foreach { prunedSeq =>
+      writes += (versionIdKey(prunedSeq) -> None)
+      writes += (changeSetKey(prunedSeq) -> None)
+    }
+    writes += (versionIdKey(seq) -> Some(version.data))
+    writes += (changeSetKey(seq) -> Some(ChangeSetSerializer.toBytes(ChangeSet(insertedKeys, removed, altered))))
+    writes += (boundsKey -> Some(boundsValue(current.firstSeq + prunedCount, seq)))
+    toUpdateAsScala.foreach(pair => writes += (dataKey(pair.getKey.data) -> Some(pair.getValue.data)))
+    toRemoveAsScala.foreach(key => writes += (dataKey(key.data) -> None))
+    database.write(writes)
+
+    setVersions(current.pruned(prunedCount).appended(version))
+  }
+
+  override def rollback(versionID: ByteArrayWrapper): Unit = synchronized {
+    val current = versions
+    val targetSeq = current.seqs.getOrElse(versionID, throw new IllegalArgumentException("Rollback to non exist version"))
+
+    val writes = mutable.ArrayBuffer.empty[(Array[Byte], Option[Array[Byte]])]
+    // from the newest version to the targeted one: the pre-images of older versions overwrite the newer ones
+    for (seq <- current.lastSeq until targetSeq by -1) {
+      val changeSet = database.get(changeSetKey(seq)).flatMap(changeSetBytes =>
+        ChangeSetSerializer.parseBytesTry(changeSetBytes).toOption)
+        .getOrElse(throw new IllegalStateException(s"Inconsistent state of storage $name"))
+
+      changeSet.insertedKeys.foreach(k => writes += (dataKey(k) -> None))
+      changeSet.removed.foreach { case (k, v) => writes += (dataKey(k) -> Some(v)) }
+      changeSet.altered.foreach { case (k, oldV) => writes += (dataKey(k) -> Some(oldV)) }
+      writes += (versionIdKey(seq) -> None)
+      writes += (changeSetKey(seq) -> None)
+    }
+    writes += (boundsKey -> Some(boundsValue(current.firstSeq, targetSeq)))
+    database.write(writes)
+
+    setVersions(current.rolledBackTo(targetSeq))
+  }
+
+  override def rollbackVersions(): JList[ByteArrayWrapper] = versions.ids.reverse.asJava
+
+  override def rollbackVersions(maxNumberOfItems: Int): JList[ByteArrayWrapper] =
+    versions.ids.reverseIterator.take(maxNumberOfItems).toList.asJava
+
+  override def isEmpty: Boolean = numberOfVersions == 0
+
+  override def numberOfVersions: Int = versions.ids.size
+
+  override def close(): Unit = database.releaseNamespace(name)
+
+  /**
+   * Iterates over the data of the namespace only, with the namespace prefix stripped from the keys.
+   * Inside a batch the pending writes of the namespace, as they are when the iterator is created, are merged with the
+   * written data: the batch is not written before its end.
+   */
+  override def getIterator(): StorageIterator = {
+    val pendingWrites = TreeMap(database.pendingWritesWithPrefix(dataPrefix): _*)(keyOrdering)
+    new NamespaceIterator(database.db.iterator(), pendingWrites)
+  }
+
+  private class NamespaceIterator(iterator: DBIterator, pendingWrites: TreeMap[Array[Byte], Option[Array[Byte]]]) extends StorageIterator {
+    private var pendingIterator: BufferedIterator[(Array[Byte], Option[Array[Byte]])] = _
+    // next entry to return, with the full key
+    private var nextEntry: Option[(Array[Byte], Array[Byte])] = None
+
+    seekToFirst()
+
+    override def seek(key: Array[Byte]): Unit = seekFullKey(dataKey(key))
+
+    override def seekToFirst(): Unit = seekFullKey(dataPrefix)
+
+    private def seekFullKey(fullKey: Array[Byte]): Unit = {
+      iterator.seek(fullKey)
+      pendingIterator = pendingWrites.iteratorFrom(fullKey).buffered
+      nextEntry = None
+    }
+
+    private def hasNextWritten: Boolean = iterator.hasNext && iterator.peekNext().getKey.startsWith(dataPrefix)
+
+    // merges the written entries with the pending ones: a pending write replaces the written value of its key, and a
+    // pending removal hides it
+    private def advance(): Unit = {
+      while (nextEntry.isEmpty && (hasNextWritten || pendingIterator.hasNext)) {
+        val order =
+          if (!pendingIterator.hasNext) -1
+          else if (!hasNextWritten) 1
+          else keyOrdering.compare(iterator.peekNext().getKey, pendingIterator.head._1)
+        if (order < 0) {
+          val entry = iterator.next()
+          nextEntry = Some(entry.getKey -> entry.getValue)
+        } else {
+          if (order == 0)
+            iterator.next()
+          val (key, value) = pendingIterator.next()
+          nextEntry = value.map(key -> _)
+        }
+      }
+    }
+
+    override def hasNext: Boolean = {
+      advance()
+      nextEntry.isDefined
+    }
+
+    override def next(): JMap.Entry[Array[Byte], Array[Byte]] = {
+      if (!hasNext)
+        throw new NoSuchElementException()
+      val (key, value) = nextEntry.get
+      nextEntry = None
+      new AbstractMap.SimpleEntry(key.drop(dataPrefix.length), value)
+    }
+
+    override def close(): Unit = iterator.close()
+  }
+}
+
+/**
+ * Immutable index of the kept versions of a namespace, oldest first: the oldest one has sequence number firstSeq.
+ */
+private[leveldb] case class VersionIndex(firstSeq: Long, ids: Vector[ByteArrayWrapper], seqs: Map[ByteArrayWrapper, Long]) {
+  def lastSeq: Long = firstSeq + ids.size - 1
+
+  def appended(versionId: ByteArrayWrapper): VersionIndex =
+    VersionIndex(firstSeq, ids :+ versionId, seqs + (versionId -> (lastSeq + 1)))
+
+  def pruned(count: Int): VersionIndex =
+    VersionIndex(firstSeq + count, ids.drop(count), seqs -- ids.take(count))
+
+  def rolledBackTo(seq: Long): VersionIndex = {
+    val kept = (seq - firstSeq + 1).toInt
+    VersionIndex(firstSeq, ids.take(kept), seqs -- ids.drop(kept))
+  }
+}
+
+private[leveldb] object VersionIndex {
+  val empty: VersionIndex = VersionIndex(0, Vector.empty, Map.empty)
+
+  def apply(firstSeq: Long, ids: Vector[ByteArrayWrapper]): VersionIndex =
+    VersionIndex(firstSeq, ids, ids.zipWithIndex.map { case (id, i) => id -> (firstSeq + i) }.toMap)
+}
@@ -0,0 +1,150 @@
+package io.horizen.storage.leveldb
+
+import io.horizen.storage.StorageBatching
+import io.horizen.storage.leveldb.LDBFactory.factory
+import io.horizen.utils.ByteArrayWrapper
+import org.iq80.leveldb.{DB, Options, WriteBatch}
+import sparkz.util.SparkzLogging
+
+import java.io.File
+import scala.collection.mutable
+
+/**
+ * A single LevelDB hosting several storages as key-prefixed namespaces.
+ *
+ * Outside of a batch every namespace update is written on its own, as with separate databases.
+ * Inside withBatch the updates of all the namespaces are collected in one WriteBatch, written once at the end:
+ * the thread that opened the batch reads its own pending writes and versions, the other threads read the last written
+ * state. One batch is open at a time: a thread opening a batch waits for the batch of another thread to end.
+ *
+ * The database is closed when it is closed explicitly or when all its namespaces are closed.
+ */
+class SharedLevelDbDatabase(path: File) extends StorageBatching with AutoCloseable with SparkzLogging {
+
+  private[leveldb] val db: DB = {
+    path.mkdirs()
+    val options = new Options()
+    options.createIfMissing(true)
+    factory.open(path, options)
+  }
+
+  private val openNamespaces = mutable.LinkedHashMap[String, NamespacedLevelDbStorageAdapter]()
+  private var closed = false
+
+  // pending batch, only accessed by its owner thread
+  @volatile private var batchOwner: Thread = _
+  private var batch: WriteBatch = _
+  private val pendingWrites = mutable.HashMap[ByteArrayWrapper, Option[Array[Byte]]]()
+  // namespaces with versions added or removed in the pending batch
+  private val batchNamespaces = mutable.LinkedHashSet[NamespacedLevelDbStorageAdapter]()
+
+  def namespace(name: String, versionsToKeep: Int): NamespacedLevelDbStorageAdapter = synchronized {
+    require(!closed, "Database is closed")
+    require(name.nonEmpty && !name.contains('\u0000'), s"Invalid namespace name '$name'")
+    require(!openNamespaces.contains(name), s"Namespace $name is already open")
+    val storage = new NamespacedLevelDbStorageAdapter(this, name, versionsToKeep)
+    openNamespaces.put(name, storage)
+    storage
+  }
+
+  override def withBatch[T](f: => T): T = {
+    if (isBatchOwner)
+      return f
+
+    synchronized {
+      while (batchOwner != null)
+        wait()
+      batch = db.createWriteBatch()
+      batchOwner = Thread.currentThread()
+    }
+    try {
+      val result = f
+      db.write(batch)
+      // the versions of the batch are visible to the other threads only once its data is written
+      batchNamespaces.foreach(_.batchWritten())
+      result
+    } catch {
+      case e: Throwable =>
+        log.warn("Discarding storages batch after failure", e)
+        batchNamespaces.foreach(_.batchDiscarded())
+        throw e
+    } finally {
+      closeBatch()
+    }
+  }
+
+  private[leveldb] def isBatchOwner: Boolean = batchOwner eq Thread.currentThread()
+
+  /**
+   * Registers a namespace whose versions were changed in the pending batch, called by the batch owner.
+   */
+  private[leveldb] def joinBatch(namespace: NamespacedLevelDbStorageAdapter): Unit = batchNamespaces.add(namespace)
+
+  private def closeBatch(): Unit = synchronized {
+    if (batch != null) {
+      batch.close()
+      batch = null
+    }
+    pendingWrites.clear()
+    batchNamespaces.clear()
+    batchOwner = null
+    notifyAll()
+  }
+
+  private[leveldb] def get(key: Array[Byte]): Option[Array[Byte]] = {
+    if (isBatchOwner)
+      pendingWrites.getOrElse(new ByteArrayWrapper(key), Option(db.get(key)))
+    else
+      Option(db.get(key))
+  }
+
+  /**
+   * Applies the given writes in order: a None value deletes the key.
+   */
+  private[leveldb] def write(writes: Seq[(Array[Byte], Option[Array[Byte]])]): Unit = {
+    if (isBatchOwner) {
+      writes.foreach { case (key, value) =>
+        value match {
+          case Some(v) => batch.put(key, v)
+          case None => batch.delete(key)
+        }
+        pendingWrites.put(new ByteArrayWrapper(key), value)
+      }
+    } else {
+      val ownBatch = db.createWriteBatch()
+      try {
+        writes.foreach {
+          case (key, Some(v)) => ownBatch.put(key, v)
+          case (key, None) => ownBatch.delete(key)
+        }
+        db.write(ownBatch)
+      } finally {
+        ownBatch.close()
+      }
+    }
+  }
+
+  /**
+   * Copy of the pending writes of the batch with a key starting with the given prefix, empty if the calling thread is
+   * not the batch owner. The iterators merge them with the written state: the batch is written only at its end.
+   */
+  private[leveldb] def pendingWritesWithPrefix(prefix: Array[Byte]): Seq[(Array[Byte], Option[Array[Byte]])] = {
+    if (isBatchOwner)
+      pendingWrites.iterator.collect { case (key, value) if key.data.startsWith(prefix) => key.data -> value }.toList
+    else
+      Seq.empty
+  }
+
+  private[leveldb] def releaseNamespace(name: String): Unit = synchronized {
+    openNamespaces.remove(name)
+    if (openNamespaces.isEmpty)
+      close()
+  }
+
+  override def close(): Unit = synchronized {
+    if (!closed) {
+      closed = true
+      db.close()
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package io.horizen.storage.leveldb
+
+import com.google.common.primitives.{Bytes, Longs, UnsignedBytes}
+import io.horizen.storage.StorageIterator
+import io.horizen.utils.ByteArrayWrapper
+import org.iq80.leveldb.{DB, ReadOptions}
+
+import java.nio.charset.StandardCharsets
+import java.util.{ArrayDeque => JArrayDeque}
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.{Failure, Try}
+
+
+/**
+  * A LevelDB wrapper providing a versioning layer based on an undo log.
+  *
+  * Every version is stored as a numbered undo log entry: the version id and the change set needed to revert it, each
+  * under its own key. The kept versions are indexed in memory, so checking a version or finding the rollback point
+  * doesn't read the database, and a commit writes only the new entry and the log bounds instead of the whole list of
+  * versions. Pre-images of the updated keys are read under a single snapshot in key order.
+  * A rollback reads and reverts the change sets one at a time, from the newest to the targeted version.
+  */
+final class UndoLogLDBKVStore(protected val db: DB, val keepVersions: Int) extends KVStore {
+
+  import io.horizen.storage.leveldb.VersionedLDBKVStore.VersionId
+
+  require(keepVersions > 0, "Number of versions to keep must be positive")
+
+  val BoundsKey: Array[Byte] = Algos.hash("undoLogBounds")
+
+  private val keyOrdering: Ordering[Array[Byte]] = Ordering.comparatorToOrdering(UnsignedBytes.lexicographicalComparator())
+
+  // kept versions, oldest first; the oldest one has sequence number firstSeq
+  private val versionIds = new JArrayDeque[ByteArrayWrapper]()
+  private val versionSeqs = mutable.HashMap[ByteArrayWrapper, Long]()
+  private var firstSeq: Long = 0
+
+  loadVersions()
+
+  private def loadVersions(): Unit = {
+    Option(db.get(BoundsKey)).foreach { bounds =>
+      firstSeq = Longs.fromByteArray(bounds.slice(0, Longs.BYTES))
+      val lastSeq = Longs.fromByteArray(bounds.slice(Longs.BYTES, 2 * Longs.BYTES))
+      for (seq <- firstSeq to lastSeq) {
+        val versionId = Option(db.get(versionIdKey(seq)))
+          .getOrElse(throw new IllegalStateException(s"Inconsistent versioned storage state: missing version $seq"))
+        appendVersion(new ByteArrayWrapper(versionId), seq)
+      }
+    }
+  }
+
+  private def versionIdKey(seq: Long): Array[Byte] =
+    Algos.hash(Bytes.concat("undoLogVersion".getBytes(StandardCharsets.UTF_8), Longs.toByteArray(seq)))
+
+  private def changeSetKey(seq: Long): Array[Byte] =
+    Algos.hash(Bytes.concat("undoLogChangeSet".getBytes(StandardCharsets.UTF_8), Longs.toByteArray(seq)))
+
+  private def boundsValue(first: Long, last: Long): Array[Byte] = Bytes.concat(Longs.toByteArray(first), Longs.toByteArray(last))
+
+  private def lastSeq: Long = firstSeq + versionIds.size - 1
+
+  private def appendVersion(versionId: ByteArrayWrapper, seq: Long): Unit = {
+    versionIds.addLast(versionId)
+    versionSeqs.put(versionId, seq)
+  }
+
+  /**
+    * Reads the given keys under the given snapshot, in key order to benefit from the locality of the table blocks.
+    * Results are returned in the order of the requested keys.
+    */
+  private def multiGet(keys: Seq[K], ro: ReadOptions): IndexedSeq[Option[V]] = {
+    val indexedKeys = keys.toIndexedSeq
+    val values = new Array[Option[V]](indexedKeys.size)
+    indexedKeys.indices.sortBy(indexedKeys(_))(keyOrdering).foreach(i => values(i) = Option(db.get(indexedKeys(i), ro)))
+    values
+  }
+
+  override def get(keys: Seq[K]): Seq[(K, Option[V])] = {
+    val ro = new ReadOptions()
+    ro.snapshot(db.getSnapshot)
+    try {
+      keys.zip(multiGet(keys, ro))
+    } finally {
+      ro.snapshot().close()
+    }
+  }
+
+  /**
+    * Performs versioned update.
+    * @param toInsert - key, value pairs to be inserted/updated
+    * @param toRemove - keys to be removed
+    */
+  def update(toInsert: Seq[(K, V)], toRemove: Seq[K])(version: VersionId): Unit = synchronized {
+    require(version.length == Constants.HashLength, "Illegal version id size")
+    val wrappedVersion = new ByteArrayWrapper(version)
+    require(!versionSeqs.contains(wrappedVersion), "Version id is already used")
+
+    val ro = new ReadOptions()
+    ro.snapshot(db.getSnapshot)
+    try {
+      val insertedKeys = mutable.ArrayBuffer.empty[K]
+      val altered = mutable.ArrayBuffer.empty[(K, V)]
+      toInsert.zip(multiGet(toInsert.map(_._1), ro)).foreach {
+        case ((key, _), Some(oldValue)) => altered += (key -> oldValue)
+        case ((key, _), None) => insertedKeys += key
+      }
+      val removed = toRemove.zip(multiGet(toRemove, ro)).collect { case (key, Some(oldValue)) => key -> oldValue }
+
+      val seq = lastSeq + 1
+      val prunedCount = Math.max(0, versionIds.size + 1 - keepVersions)
+
+      val batch = db.createWriteBatch()
+      try {
+        (firstSeq until firstSeq + prunedCount).foreach { prunedSeq =>
+          batch.delete(versionIdKey(prunedSeq))
+          batch.delete(changeSetKey(prunedSeq))
+        }
+        batch.put(versionIdKey(seq), version)
+        batch.put(changeSetKey(seq), ChangeSetSerializer.toBytes(ChangeSet(insertedKeys, removed, altered)))
+        batch.put(BoundsKey, boundsValue(firstSeq + prunedCount, seq))
+        toInsert.foreach { case (k, v) => batch.put(k, v) }
+        toRemove.foreach(batch.delete)
+        db.write(batch)
+      } finally {
+        batch.close()
+      }
+
+      // the in-memory index follows the database only once the batch is written
+      (0 until prunedCount).foreach(_ => versionSeqs.remove(versionIds.pollFirst()))
+      firstSeq += prunedCount
+      appendVersion(wrappedVersion, seq)
+    } finally {
+      ro.snapshot().close()
+    }
+  }
+
+  def insert(toInsert: Seq[(K, V)])(version: VersionId): Unit = update(toInsert, Seq.empty)(version)
+
+  def remove(toRemove: Seq[K])(version: VersionId): Unit = update(Seq.empty, toRemove)(version)
+
+  /**
+    * Rolls storage state back to the specified checkpoint.
+    * @param versionId - version id to roll back to
+    */
+  def rollbackTo(versionId: VersionId): Try[Unit] = synchronized {
+    versionSeqs.get(new ByteArrayWrapper(versionId)) match {
+      case Some(targetSeq) => Try {
+        val ro = new ReadOptions()
+        ro.snapshot(db.getSnapshot)
+        val batch = db.createWriteBatch()
+        try {
+          // from the newest version to the targeted one: the pre-images of older versions overwrite the newer ones
+          for (seq <- lastSeq until targetSeq by -1) {
+            val changeSet = Option(db.get(changeSetKey(seq), ro)).flatMap(changeSetBytes =>
+              ChangeSetSerializer.parseBytesTry(changeSetBytes).toOption)
+              .getOrElse(throw new IllegalStateException("Inconsistent versioned storage state"))
+
+            changeSet.insertedKeys.foreach(k => batch.delete(k))
+            changeSet.removed.foreach { case (k, v) => batch.put(k, v) }
+            changeSet.altered.foreach { case (k, oldV) => batch.put(k, oldV) }
+            batch.delete(versionIdKey(seq))
+            batch.delete(changeSetKey(seq))
+          }
+          batch.put(BoundsKey, boundsValue(firstSeq, targetSeq))
+          db.write(batch)
+        } finally {
+          batch.close()
+          ro.snapshot().close()
+        }
+
+        (lastSeq until targetSeq by -1).foreach(_ => versionSeqs.remove(versionIds.pollLast()))
+      }
+      case None =>
+        Failure(new Exception(s"Version ${Algos.encode(versionId)} not found"))
+    }
+  }
+
+  /**
+    * Kept versions, newest first.
+    */
+  def versions: Seq[VersionId] = synchronized {
+    versionIds.descendingIterator().asScala.map(_.data).toList
+  }
+
+  def lastVersion: Option[VersionId] = synchronized {
+    Option(versionIds.peekLast()).map(_.data)
+  }
+
+  def numberOfVersions: Int = synchronized {
+    versionIds.size
+  }
+
+  def versionIdExists(versionId: VersionId): Boolean = synchronized {
+    versionSeqs.contains(new ByteArrayWrapper(versionId))
+  }
+
+  /**
+    * Keys of the undo log entries, which are stored along with the data.
+    */
+  def undoLogKeys: Set[ByteArrayWrapper] = synchronized {
+    val keys = (firstSeq to lastSeq).flatMap(seq => Seq(versionIdKey(seq), changeSetKey(seq)))
+    (BoundsKey +: keys).map(new ByteArrayWrapper(_)).toSet
+  }
+
+  def getIterator: StorageIterator = {
+    new DatabaseIterator(db.iterator())
+  }
+
+}
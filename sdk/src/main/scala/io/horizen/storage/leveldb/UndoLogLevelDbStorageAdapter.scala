@@ -0,0 +1,98 @@
+package io.horizen.storage.leveldb
+
+import io.horizen.storage.leveldb.LDBFactory.factory
+import io.horizen.storage.{Storage, StorageIterator}
+import io.horizen.utils.{Pair => JPair, _}
+import org.iq80.leveldb.Options
+
+import java.io.File
+import java.util.{Optional, List => JList}
+import scala.collection.JavaConverters._
+import scala.compat.java8.OptionConverters._
+
+
+/**
+ * Storage backed by the undo log based UndoLogLDBKVStore.
+ * Same behaviour as VersionedLevelDbStorageAdapter, but the version checks are done on an in-memory index and a commit
+ * doesn't rewrite the list of kept versions. The on-disk layouts of the two storages are not compatible.
+ */
+class UndoLogLevelDbStorageAdapter(pathToDB: File, versionsToKeep: Int) extends Storage {
+
+  def this(pathToDB: File) {
+    this(pathToDB, 720 * 2 + 1)
+  }
+
+  private val dataBase: UndoLogLDBKVStore = createDb(pathToDB)
+
+  override def get(key: ByteArrayWrapper): Optional[ByteArrayWrapper] = dataBase.get(key).map(byteArrayToWrapper).asJava
+
+  override def getOrElse(key: ByteArrayWrapper, defaultValue: ByteArrayWrapper): ByteArrayWrapper = dataBase.getOrElse(key, defaultValue)
+
+  override def get(keys: JList[ByteArrayWrapper]): JList[JPair[ByteArrayWrapper, Optional[ByteArrayWrapper]]] = {
+    dataBase.get(keys.asScala.map(_.data))
+      .map{case (key, value) =>
+        new JPair(byteArrayToWrapper(key), value.map(v => byteArrayToWrapper(v)).asJava)}
+      .asJava
+  }
+
+  override def getAll: JList[JPair[ByteArrayWrapper, ByteArrayWrapper]] = {
+    val excludedKeys: Set[ByteArrayWrapper] = dataBase.undoLogKeys
+
+    dataBase.getAll
+        .view
+        .map{case (key, value) => (byteArrayToWrapper(key), byteArrayToWrapper(value))}
+        .filterNot{case (key, _) => excludedKeys.contains(key)}
+        .map{case (key, value) => new JPair(key, value)}
+        .asJava
+  }
+
+  override def lastVersionID(): Optional[ByteArrayWrapper] = dataBase.lastVersion.map(byteArrayToWrapper).asJava
+
+  override def update(version: ByteArrayWrapper, toUpdate: JList[JPair[ByteArrayWrapper, ByteArrayWrapper]], toRemove: JList[ByteArrayWrapper]): Unit = {
+
+    val toUpdateAsScala = toUpdate.asScala.toList
+    val toRemoveAsScala = toRemove.asScala.toList
+
+    require(toUpdateAsScala.map(_.getKey).toSet.size == toUpdateAsScala.size, "duplicate key in `toUpdate`")
+    require(toRemoveAsScala.toSet.size == toRemoveAsScala.size, "duplicate key in `toRemove`")
+
+    require(!dataBase.versionIdExists(version.data), "Version is already exist in storage")
+
+    val convertedToUpdate = toUpdateAsScala.map(pair => (pair.getKey.data, pair.getValue.data))
+    val convertedToRemove = toRemoveAsScala.map(_.data)
+    dataBase.update(convertedToUpdate, convertedToRemove)(version)
+  }
+
+  override def rollback(versionID: ByteArrayWrapper): Unit = {
+    if (dataBase.versionIdExists(versionID.data)) {
+      dataBase.rollbackTo(versionID).get
+    }
+    else {
+      throw new IllegalArgumentException("Rollback to non exist version")
+    }
+  }
+
+  override def rollbackVersions(): JList[ByteArrayWrapper] = dataBase.versions.map(byteArrayToWrapper).asJava
+
+  override def rollbackVersions(maxNumberOfItems: Int): JList[ByteArrayWrapper] = {
+    dataBase.versions.slice(0, maxNumberOfItems).map(byteArrayToWrapper).asJava
+  }
+
+  override def close(): Unit = dataBase.close()
+
+  private def createDb(path: File): UndoLogLDBKVStore = {
+    path.mkdirs()
+    val options = new Options()
+    options.createIfMissing(true)
+    val db = factory.open(path, options)
+    new UndoLogLDBKVStore(db, versionsToKeep)
+  }
+
+  override def isEmpty: Boolean = dataBase.numberOfVersions == 0
+  override def numberOfVersions: Int = dataBase.numberOfVersions
+
+  override def getIterator(): StorageIterator = {
+    dataBase.getIterator
+  }
+
+}
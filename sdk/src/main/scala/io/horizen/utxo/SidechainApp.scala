@@ -152,7 +152,10 @@ class SidechainApp @Inject()
   protected val sidechainHistoryStorage = new SidechainHistoryStorage(
     //openStorage(new JFile(s"${sidechainSettings.sparkzSettings.dataDir.getAbsolutePath}/history")),
     registerClosableResource(historyStorage),
-    sidechainTransactionsCompanion, params)
+    sidechainTransactionsCompanion, params,
+    sidechainSettings.history.blockCacheMaxBytes,
+    sidechainSettings.history.blockInfoCacheMaxBytes,
+    activeChainCheckpoint)
   protected val consensusDataStorage = new ConsensusDataStorage(
     //openStorage(new JFile(s"${sidechainSettings.sparkzSettings.dataDir.getAbsolutePath}/consensusData")),
     registerClosableResource(consensusStorage))
@@ -187,7 +190,10 @@ class SidechainApp @Inject()
     timeProvider,
     applicationWallet,
     applicationState,
-    genesisBlock
+    genesisBlock,
+    // storages provided as namespaces of a single database are committed with one write per block
+    StorageBatching.of(secretStorage, walletBoxStorage, walletTransactionStorage, stateStorage, forgerBoxStorage,
+      utxoMerkleTreeStorage, historyStorage, walletForgingBoxesInfoStorage, walletCswDataStorage, consensusStorage, backUpStorage)
     ) // TO DO: why not to put genesisBlock as a part of params? REVIEW Params structure
 
   def modifierSerializers: Map[ModifierTypeId, SparkzSerializer[_ <: NodeViewModifier]] =
@@ -38,7 +38,8 @@ class SidechainNodeViewHolder(sidechainSettings: SidechainSettings,
                               timeProvider: NetworkTimeProvider,
                               applicationWallet: ApplicationWallet,
                               applicationState: ApplicationState,
-                              genesisBlock: SidechainBlock)
+                              genesisBlock: SidechainBlock,
+                              override protected val storageBatching: StorageBatching = StorageBatching.NoBatching)
 
   extends AbstractSidechainNodeViewHolder[SidechainTypes#SCBT, SidechainBlockHeader, SidechainBlock](sidechainSettings, timeProvider, params) {
   override type HSTOR = SidechainHistoryStorage
@@ -172,7 +173,7 @@ class SidechainNodeViewHolder(sidechainSettings: SidechainSettings,
   override def restoreState(): Option[(HIS, MS, VL, MP)] = {
     log.info("Restoring persistent state from storage...")
     val restoredData = for {
-      history <- SidechainHistory.restoreHistory(historyStorage, consensusDataStorage, params, semanticBlockValidators(params), historyBlockValidators(params))
+      history <- SidechainHistory.restoreHistory(historyStorage, consensusDataStorage, params, historySemanticBlockValidators(params), historyBlockValidators(params))
       state <- SidechainState.restoreState(stateStorage, forgerBoxStorage, utxoMerkleTreeProvider, params, applicationState)
       wallet <- SidechainWallet.restoreWallet(sidechainSettings.wallet.seed.getBytes(StandardCharsets.UTF_8), walletBoxStorage, secretStorage,
         walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, params, applicationWallet)
@@ -205,7 +206,7 @@ class SidechainNodeViewHolder(sidechainSettings: SidechainSettings,
         walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, applicationWallet,
         genesisBlock, withdrawalEpochNumber, consensusEpochInfo)
 
-      history <- SidechainHistory.createGenesisHistory(historyStorage, consensusDataStorage, params, genesisBlock, semanticBlockValidators(params),
+      history <- SidechainHistory.createGenesisHistory(historyStorage, consensusDataStorage, params, genesisBlock, historySemanticBlockValidators(params),
         historyBlockValidators(params), StakeConsensusEpochInfo(consensusEpochInfo.forgingStakeInfoTree.rootHash(), consensusEpochInfo.forgersStake))
 
       pool <- Success(SidechainMemoryPool.createEmptyMempool(sidechainSettings.mempool))
@@ -248,7 +249,8 @@ class SidechainNodeViewHolderForSeederNode(sidechainSettings: SidechainSettings,
                               timeProvider: NetworkTimeProvider,
                               applicationWallet: ApplicationWallet,
                               applicationState: ApplicationState,
-                              genesisBlock: SidechainBlock)
+                              genesisBlock: SidechainBlock,
+                              storageBatching: StorageBatching)
 
   extends SidechainNodeViewHolder(sidechainSettings,
     historyStorage,
@@ -266,7 +268,8 @@ class SidechainNodeViewHolderForSeederNode(sidechainSettings: SidechainSettings,
     timeProvider,
     applicationWallet,
     applicationState,
-    genesisBlock) with NodeViewHolderForSeederNode[SidechainTypes#SCBT, SidechainBlockHeader, SidechainBlock]
+    genesisBlock,
+    storageBatching) with NodeViewHolderForSeederNode[SidechainTypes#SCBT, SidechainBlockHeader, SidechainBlock]
 
 
 object SidechainNodeViewHolderRef {
@@ -287,10 +290,11 @@ object SidechainNodeViewHolderRef {
             timeProvider: NetworkTimeProvider,
             applicationWallet: ApplicationWallet,
             applicationState: ApplicationState,
-            genesisBlock: SidechainBlock): Props =
+            genesisBlock: SidechainBlock,
+            storageBatching: StorageBatching): Props =
     Props(createNodeViewHolder(sidechainSettings, historyStorage, consensusDataStorage, stateStorage, forgerBoxStorage,
       utxoMerkleTreeProvider, walletBoxStorage, secretStorage, walletTransactionStorage, forgingBoxesInfoStorage,
-      cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock)).withMailbox("akka.actor.deployment.prio-mailbox")
+      cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock, storageBatching)).withMailbox("akka.actor.deployment.prio-mailbox")
 
   private def createNodeViewHolder(sidechainSettings: SidechainSettings, historyStorage: SidechainHistoryStorage,
                                    consensusDataStorage: ConsensusDataStorage, stateStorage: SidechainStateStorage,
@@ -302,13 +306,13 @@ object SidechainNodeViewHolderRef {
                                    cswDataProvider: SidechainWalletCswDataProvider, backupStorage: BackupStorage,
                                    params: NetworkParams, timeProvider: NetworkTimeProvider,
                                    applicationWallet: ApplicationWallet, applicationState: ApplicationState,
-                                   genesisBlock: SidechainBlock) = {
+                                   genesisBlock: SidechainBlock, storageBatching: StorageBatching) = {
     if (isASeederNode(params))
       new SidechainNodeViewHolderForSeederNode(sidechainSettings, historyStorage, consensusDataStorage, stateStorage, forgerBoxStorage, utxoMerkleTreeProvider, walletBoxStorage, secretStorage,
-        walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock)
+        walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock, storageBatching)
     else
       new SidechainNodeViewHolder(sidechainSettings, historyStorage, consensusDataStorage, stateStorage, forgerBoxStorage, utxoMerkleTreeProvider, walletBoxStorage, secretStorage,
-        walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock)
+        walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock, storageBatching)
 
   }
 
@@ -330,10 +334,11 @@ object SidechainNodeViewHolderRef {
             timeProvider: NetworkTimeProvider,
             applicationWallet: ApplicationWallet,
             applicationState: ApplicationState,
-            genesisBlock: SidechainBlock)
+            genesisBlock: SidechainBlock,
+            storageBatching: StorageBatching)
            (implicit system: ActorSystem): ActorRef =
     system.actorOf(props(sidechainSettings, historyStorage, consensusDataStorage, stateStorage, forgerBoxStorage, utxoMerkleTreeProvider, walletBoxStorage, secretStorage,
-      walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock))
+      walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock, storageBatching))
 
   def apply(name: String,
             sidechainSettings: SidechainSettings,
@@ -352,8 +357,9 @@ object SidechainNodeViewHolderRef {
             timeProvider: NetworkTimeProvider,
             applicationWallet: ApplicationWallet,
             applicationState: ApplicationState,
-            genesisBlock: SidechainBlock)
+            genesisBlock: SidechainBlock,
+            storageBatching: StorageBatching)
            (implicit system: ActorSystem): ActorRef =
     system.actorOf(props(sidechainSettings, historyStorage, consensusDataStorage, stateStorage, forgerBoxStorage, utxoMerkleTreeProvider, walletBoxStorage, secretStorage,
-      walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock), name)
+      walletTransactionStorage, forgingBoxesInfoStorage, cswDataProvider, backupStorage, params, timeProvider, applicationWallet, applicationState, genesisBlock, storageBatching), name)
 }
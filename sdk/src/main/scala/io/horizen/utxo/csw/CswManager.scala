@@ -5,7 +5,7 @@ import akka.pattern.ask
 import akka.util.Timeout
 import com.fasterxml.jackson.annotation.JsonView
 import com.fasterxml.jackson.databind.annotation.JsonSerialize
-import io.horizen.cryptolibprovider.CryptoLibProvider
+import io.horizen.cryptolibprovider.{CryptoLibProvider, CswCircuit}
 import CswManager.ReceivableMessages._
 import CswManager.Responses._
 import CswManager.{ProofInProcess, ProofInQueue}
@@ -26,16 +26,19 @@ import sparkz.core.NodeViewHolder.ReceivableMessages.GetDataFromCurrentView
 import sparkz.core.network.NodeViewSynchronizer.ReceivableMessages.ChangedState
 import sparkz.util.SparkzLogging
 
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 import scala.collection.JavaConverters._
 import scala.collection.mutable
 import scala.compat.java8.OptionConverters._
 import scala.concurrent.duration.FiniteDuration
-import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.{ExecutionContext, ExecutionContextExecutorService, Future}
 import scala.util.{Failure, Success, Try}
 
 class CswManager(settings: SidechainSettings,
                  params: NetworkParams,
-                 sidechainNodeViewHolderRef: ActorRef) (implicit ec: ExecutionContext)
+                 sidechainNodeViewHolderRef: ActorRef,
+                 cswCircuit: CswCircuit = CryptoLibProvider.cswCircuitFunctions) (implicit ec: ExecutionContext)
   extends Actor with SparkzLogging {
 
   import CswManager.InternalReceivableMessages.{CswProofFailed, CswProofSuccessfullyGenerated, TryToScheduleProofGeneration}
@@ -47,8 +50,23 @@ class CswManager(settings: SidechainSettings,
   var hasSidechainCeased: Boolean = false
   var cswWitnessHolderOpt: Option[CswWitnessHolder] = None
 
+  // max number of proofs generated at the same time, within the configured threads and memory budget
+  val maxProofsInProcess: Int = settings.csw.maxParallelProofs
+
+  // pool generating the proofs, its threads are created on first use: no more than maxProofsInProcess proofs are started
+  // at once, so the queued requests wait in proofsInQueue, where they can still be cancelled or rescheduled
+  private val proofGenerationContext: ExecutionContextExecutorService = {
+    val threadCounter = new AtomicInteger()
+    ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(maxProofsInProcess, (runnable: Runnable) => {
+      val thread = new Thread(runnable, s"csw-proof-generation-${threadCounter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }))
+  }
+
   val proofsInQueue: mutable.ListBuffer[ProofInQueue] = mutable.ListBuffer()
-  var proofInProcessOpt: Option[ProofInProcess] = None
+  // key - box id
+  val proofsInProcess: mutable.Map[ByteArrayWrapper, ProofInProcess] = mutable.Map()
   val generatedProofsMap: mutable.Map[ByteArrayWrapper, CswProofInfo] = mutable.Map()
 
   override def preStart(): Unit = {
@@ -58,6 +76,7 @@ class CswManager(settings: SidechainSettings,
 
   override def postStop(): Unit = {
     log.debug("CSW Manager actor is stopping...")
+    proofGenerationContext.shutdownNow()
     super.postStop()
   }
 
@@ -119,9 +138,7 @@ class CswManager(settings: SidechainSettings,
           cswWitnessHolderOpt = None
           proofsInQueue.clear()
           generatedProofsMap.clear()
-          proofInProcessOpt.foreach(inProcess => {
-            proofInProcessOpt = Some(ProofInProcess(inProcess.boxId, inProcess.receiverAddress, isCancelled = true))
-          })
+          proofsInProcess.transform((_, inProcess) => inProcess.copy(isCancelled = true))
         }
       }
   }
@@ -172,6 +189,12 @@ class CswManager(settings: SidechainSettings,
             } else {
               sender() ! NoProofData
             }
+          case Failed =>
+            // Retry the failed proof generation, e.g. the owner secret may have been imported to the wallet since then.
+            removeProofInfo(boxId)
+            addProofToQueue(boxId, receiverAddress)
+            self ! TryToScheduleProofGeneration
+            sender() ! ProofGenerationStarted
           case InQueue | InProcess =>
             if (isSameReceiver)
               sender() ! ProofGenerationInProcess
@@ -214,7 +237,7 @@ class CswManager(settings: SidechainSettings,
                     BytesUtils.reverseBytes(params.sidechainId),
                     data.getNullifier,
                     getProofInfo(boxId),
-                    cswWitnessHolder.lastActiveCertOpt.map(cert => CryptoLibProvider.cswCircuitFunctions.getCertDataHash(cert, params.sidechainCreationVersion)),
+                    cswWitnessHolder.lastActiveCertOpt.map(cert => cswCircuit.getCertDataHash(cert, params.sidechainCreationVersion)),
                     cswWitnessHolder.mcbScTxsCumComEnd)
                 }
                 sender() ! infoTry
@@ -230,74 +253,99 @@ class CswManager(settings: SidechainSettings,
 
   private def tryScheduleProofGeneration: Receive = {
     case TryToScheduleProofGeneration =>
-      // Emit next proof generation only in case no other one in process
-      if(cswWitnessHolderOpt.nonEmpty && proofInProcessOpt.isEmpty && proofsInQueue.nonEmpty) {
-        val cswWitnessHolder = cswWitnessHolderOpt.get
-        val inQueue = proofsInQueue.remove(0)
-        findCswData(inQueue.boxId.data) match {
-          case Some(data) =>
-            val pkOpt = getCswOwner(data)
-            pkOpt.foreach(pk => {
-              proofInProcessOpt = Some(ProofInProcess(inQueue.boxId, inQueue.receiverAddress))
-              val receiverPubKeyHash = BytesUtils.fromHorizenMcTransparentAddress(inQueue.receiverAddress, params)
-              // Run the time consuming part of proof generation in a background
-              // to unlock the Actor message queue for another requests.
-              new Thread(new Runnable() {
-                override def run(): Unit = {
-                  Try {
-                    log.debug(s"CSW proof generation started for $data")
-                    data match {
-                      case ft: ForwardTransferCswData =>
-                        CryptoLibProvider.cswCircuitFunctions.ftCreateProof(ft, cswWitnessHolder.lastActiveCertOpt.asJava,
-                          cswWitnessHolder.mcbScTxsCumComStart, cswWitnessHolder.scTxsComHashes.asJava,
-                          cswWitnessHolder.mcbScTxsCumComEnd, receiverPubKeyHash, pk, params.withdrawalEpochLength,
-                          params.calculatedSysDataConstant, params.sidechainId, params.cswProvingKeyFilePath, true, true,
-                          params.sidechainCreationVersion);
-                      case utxo: UtxoCswData =>
-                        CryptoLibProvider.cswCircuitFunctions.utxoCreateProof(utxo, cswWitnessHolder.lastActiveCertOpt.get,
-                          cswWitnessHolder.mcbScTxsCumComEnd, receiverPubKeyHash, pk, params.withdrawalEpochLength,
-                          params.calculatedSysDataConstant, params.sidechainId, params.cswProvingKeyFilePath, true, true,
-                          params.sidechainCreationVersion);
-                    }
-                  } match {
-                    case Success(proof) =>
-                      if(proof != null) { // Note: proof creation may return null in case of error
-                        log.debug(s"CSW proof generation finished successfully for $data")
-                        self ! CswProofSuccessfullyGenerated(proof)
-                      }
-                      else {
-                        log.error(s"CSW proof generation failed for CSW $data, because of null proof.")
-                        self ! CswProofFailed
-                      }
-                    case Failure(ex) =>
-                      log.error(s"Csw proof generation failed for CSW $data, due to: $ex")
-                      self ! CswProofFailed
-                  }
+      // Start the queued proofs in request order while there are free workers.
+      // A box with a cancelled proof still in process waits for it, so that each box has at most one proof in process.
+      cswWitnessHolderOpt.foreach(cswWitnessHolder => {
+        var idx = 0
+        while (proofsInProcess.size < maxProofsInProcess && idx < proofsInQueue.size) {
+          if (proofsInProcess.contains(proofsInQueue(idx).boxId))
+            idx += 1
+          else
+            startProofGeneration(cswWitnessHolder, proofsInQueue.remove(idx))
+        }
+      })
+  }
 
-                }
-              }).start()
-            })
-          case None =>
-            log.error("CswManager: Can't find CSW witness for proof generation.")
-            self ! TryToScheduleProofGeneration
+  private def startProofGeneration(cswWitnessHolder: CswWitnessHolder, inQueue: ProofInQueue): Unit = {
+    findCswData(inQueue.boxId.data) match {
+      case Some(data) =>
+        proofsInProcess(inQueue.boxId) = ProofInProcess(inQueue.boxId, inQueue.receiverAddress)
+        // Get the owner secret from the wallet at generation time, so it is kept only while the proof is generated.
+        def getOwner(sidechainNodeView: View): Option[PrivateKey25519] = getCswOwner(data, sidechainNodeView.vault)
+
+        val ownerAsFuture = (sidechainNodeViewHolderRef ? GetDataFromCurrentView(getOwner)).asInstanceOf[Future[Option[PrivateKey25519]]]
+        ownerAsFuture.onComplete {
+          case Success(Some(pk)) =>
+            generateProof(cswWitnessHolder, data, inQueue, pk)
+          case Success(None) =>
+            log.error(s"CswManager: Can't find the owner secret for proof generation of CSW $data.")
+            self ! CswProofFailed(inQueue.boxId)
+          case Failure(ex) =>
+            log.error(s"CswManager: Failed to get the owner secret for proof generation of CSW $data: $ex")
+            self ! CswProofFailed(inQueue.boxId)
+        }
+      case None =>
+        log.error("CswManager: Can't find CSW witness for proof generation.")
+    }
+  }
+
+  private def generateProof(cswWitnessHolder: CswWitnessHolder, data: CswData, inQueue: ProofInQueue, pk: PrivateKey25519): Unit = {
+    val receiverPubKeyHash = BytesUtils.fromHorizenMcTransparentAddress(inQueue.receiverAddress, params)
+    // Run the time consuming part of proof generation in a background
+    // to unlock the Actor message queue for another requests.
+    proofGenerationContext.execute(() => {
+      val startTime = System.currentTimeMillis()
+      Try {
+        log.debug(s"CSW proof generation started for $data")
+        data match {
+          case ft: ForwardTransferCswData =>
+            cswCircuit.ftCreateProof(ft, cswWitnessHolder.lastActiveCertOpt.asJava,
+              cswWitnessHolder.mcbScTxsCumComStart, cswWitnessHolder.scTxsComHashes.asJava,
+              cswWitnessHolder.mcbScTxsCumComEnd, receiverPubKeyHash, pk, params.withdrawalEpochLength,
+              params.calculatedSysDataConstant, params.sidechainId, params.cswProvingKeyFilePath, true, true,
+              params.sidechainCreationVersion);
+          case utxo: UtxoCswData =>
+            cswCircuit.utxoCreateProof(utxo, cswWitnessHolder.lastActiveCertOpt.get,
+              cswWitnessHolder.mcbScTxsCumComEnd, receiverPubKeyHash, pk, params.withdrawalEpochLength,
+              params.calculatedSysDataConstant, params.sidechainId, params.cswProvingKeyFilePath, true, true,
+              params.sidechainCreationVersion);
         }
+      } match {
+        case Success(proof) =>
+          if(proof != null) { // Note: proof creation may return null in case of error
+            log.debug(s"CSW proof generation finished successfully for $data in ${System.currentTimeMillis() - startTime} ms")
+            self ! CswProofSuccessfullyGenerated(inQueue.boxId, proof)
+          }
+          else {
+            log.error(s"CSW proof generation failed for CSW $data, because of null proof.")
+            self ! CswProofFailed(inQueue.boxId)
+          }
+        case Failure(ex) =>
+          log.error(s"Csw proof generation failed for CSW $data, due to: $ex")
+          self ! CswProofFailed(inQueue.boxId)
       }
+    })
   }
 
   private def processProofGenerationResults: Receive = {
-    case CswProofSuccessfullyGenerated(proof: Array[Byte]) =>
-      proofInProcessOpt match {
+    case CswProofSuccessfullyGenerated(boxId: ByteArrayWrapper, proof: Array[Byte]) =>
+      proofsInProcess.remove(boxId) match {
         case Some(proofInProcess) =>
           if (!proofInProcess.isCancelled)
-            generatedProofsMap(new ByteArrayWrapper(proofInProcess.boxId)) = CswProofInfo(Generated, Some(proof), Some(proofInProcess.receiverAddress))
-          proofInProcessOpt = None
+            generatedProofsMap(boxId) = CswProofInfo(Generated, Some(proof), Some(proofInProcess.receiverAddress))
         case None =>
           log.error("CswManager: inconsistent proof in process state.")
       }
       self ! TryToScheduleProofGeneration
 
-    case CswProofFailed =>
-      proofInProcessOpt = None
+    case CswProofFailed(boxId: ByteArrayWrapper) =>
+      proofsInProcess.remove(boxId) match {
+        case Some(proofInProcess) =>
+          if (!proofInProcess.isCancelled)
+            generatedProofsMap(boxId) = CswProofInfo(Failed, None, Some(proofInProcess.receiverAddress))
+        case None =>
+          log.error("CswManager: inconsistent proof in process state.")
+      }
       self ! TryToScheduleProofGeneration
   }
 
@@ -317,9 +365,8 @@ class CswManager(settings: SidechainSettings,
       return CswProofInfo(InQueue, None, Some(entry.receiverAddress))
     })
 
-    proofInProcessOpt.foreach(inProcess => {
-      if (id.equals(inProcess.boxId))
-        return CswProofInfo(InProcess, None, Some(inProcess.receiverAddress))
+    proofsInProcess.get(id).foreach(inProcess => {
+      return CswProofInfo(InProcess, None, Some(inProcess.receiverAddress))
     })
 
     CswProofInfo(Absent, None, None)
@@ -334,9 +381,8 @@ class CswManager(settings: SidechainSettings,
       proofsInQueue.remove(idxToRemove)
 
     // Mark proof generation cancelled if boxId has matched.
-    proofInProcessOpt.foreach(inProcess => {
-      if(id.equals(inProcess.boxId))
-        proofInProcessOpt = Some(ProofInProcess(inProcess.boxId, inProcess.receiverAddress, isCancelled = true))
+    proofsInProcess.get(id).foreach(inProcess => {
+      proofsInProcess(id) = inProcess.copy(isCancelled = true)
     })
   }
 
@@ -395,7 +441,7 @@ class CswManager(settings: SidechainSettings,
 
     val endBlockHeight = WithdrawalEpochUtils.ceasedAtMcBlockHeight(withdrawalEpochNumber, params)
     // Last MC block of the epoch to with last active cert was referenced (if exists).
-    val startBlockHeight: Int = endBlockHeight - CryptoLibProvider.cswCircuitFunctions.rangeSize(params.withdrawalEpochLength)
+    val startBlockHeight: Int = endBlockHeight - cswCircuit.rangeSize(params.withdrawalEpochLength)
 
     log.debug(s"CswManager: withdrawalEpochNumber = $withdrawalEpochNumber, endBlockHeight = $endBlockHeight, startBlockHeight = $startBlockHeight")
 
@@ -443,7 +489,7 @@ class CswManager(settings: SidechainSettings,
     }
   }
 
-  private def getCswOwner(cswData: CswData): Option[PrivateKey25519] = {
+  private def getCswOwner(cswData: CswData, wallet: SidechainWallet): Option[PrivateKey25519] = {
     val pubKeyBytes: Array[Byte] = cswData match {
       case ft: ForwardTransferCswData => BytesUtils.reverseBytes(ft.receiverPubKeyReversed)
       case utxo: UtxoCswData => utxo.spendingPubKey
@@ -458,11 +504,7 @@ class CswManager(settings: SidechainSettings,
         return None
     }
 
-    def getOwner(sidechainNodeView: View): Option[PrivateKey25519] = {
-      sidechainNodeView.vault.secretByPublicKey25519Proposition(publicKey25519Proposition).asScala
-    }
-
-    Await.result(sidechainNodeViewHolderRef ? GetDataFromCurrentView(getOwner), timeoutDuration).asInstanceOf[Option[PrivateKey25519]]
+    wallet.secretByPublicKey25519Proposition(publicKey25519Proposition).asScala
   }
 }
 
@@ -483,8 +525,8 @@ object CswManager {
   // Private interface
   private object InternalReceivableMessages {
     case object TryToScheduleProofGeneration
-    case class CswProofSuccessfullyGenerated(proof: Array[Byte])
-    case object CswProofFailed
+    case class CswProofSuccessfullyGenerated(boxId: ByteArrayWrapper, proof: Array[Byte])
+    case class CswProofFailed(boxId: ByteArrayWrapper)
   }
 
   // Responses interface
@@ -496,6 +538,7 @@ object CswManager {
     case object InQueue extends ProofStatus
     case object InProcess extends ProofStatus
     case object Generated extends ProofStatus
+    case object Failed extends ProofStatus
 
 
     @JsonView(Array(classOf[Views.Default]))
@@ -1,22 +1,54 @@
 package io.horizen.utxo.mempool
 
+import io.horizen.SidechainTypes
+import io.horizen.utils.ByteArrayWrapper
+import io.horizen.utxo.transaction.MemoryPoolConflictIndex
+
+import java.util.{Optional, List => JList}
+import scala.collection.JavaConverters._
 import scala.collection.concurrent.TrieMap
+import scala.collection.mutable
+import scala.compat.java8.OptionConverters._
 
 
 /**
  * Map of SidechainMemoryPoolEntry, with additional data structures to keep the order by feeRate and the total bytes
  * of all the transactions contained.
+ * It also indexes the boxes spent by the transactions and their conflict keys, so that the compatibility of a new
+ * transaction is checked on its own inputs instead of on all the transactions.
  */
-class MempoolMap(initialValues: Iterable[SidechainMemoryPoolEntry])  {
+class MempoolMap(initialValues: Iterable[SidechainMemoryPoolEntry]) extends MemoryPoolConflictIndex[SidechainTypes#SCBT] {
 
   private val map = new TrieMap[String, SidechainMemoryPoolEntry]()
   private var usedPoolSizeBytes = 0L
   private var idsSortedByFeeRate =  scala.collection.SortedSet[MempoolMapKey]()
+  private val spendingTxIds = mutable.HashMap[ByteArrayWrapper, String]()
+  private val conflictKeyHolderIds = mutable.HashMap[ByteArrayWrapper, String]()
 
   for (ele <- initialValues) {
     idsSortedByFeeRate = idsSortedByFeeRate + MempoolMapKey(ele.getUnconfirmedTx().id(), ele.feeRate.getFeeRate())
     usedPoolSizeBytes += ele.feeRate.getSize()
     map.put(ele.getUnconfirmedTx().id(), ele)
+    addToIndexes(ele)
+  }
+
+  private def conflictKeys(entry: SidechainMemoryPoolEntry): Iterable[ByteArrayWrapper] = {
+    val tx = entry.getUnconfirmedTx()
+    tx.incompatibilityChecker().conflictKeys(tx).asScala
+  }
+
+  private def addToIndexes(entry: SidechainMemoryPoolEntry): Unit = {
+    val id = entry.getUnconfirmedTx().id()
+    entry.getUnconfirmedTx().boxIdsToOpen().asScala.foreach(boxId => spendingTxIds.put(boxId, id))
+    conflictKeys(entry).foreach(key => conflictKeyHolderIds.put(key, id))
+  }
+
+  private def removeFromIndexes(entry: SidechainMemoryPoolEntry): Unit = {
+    val id = entry.getUnconfirmedTx().id()
+    entry.getUnconfirmedTx().boxIdsToOpen().asScala.foreach(boxId =>
+      if (spendingTxIds.get(boxId).contains(id)) spendingTxIds.remove(boxId))
+    conflictKeys(entry).foreach(key =>
+      if (conflictKeyHolderIds.get(key).contains(id)) conflictKeyHolderIds.remove(key))
   }
 
 
@@ -26,6 +58,7 @@ class MempoolMap(initialValues: Iterable[SidechainMemoryPoolEntry])  {
       case None => {
         idsSortedByFeeRate = idsSortedByFeeRate + MempoolMapKey(entry.getUnconfirmedTx().id(), entry.feeRate.getFeeRate())
         usedPoolSizeBytes += entry.feeRate.getSize()
+        addToIndexes(entry)
         None
       }
     }
@@ -34,8 +67,9 @@ class MempoolMap(initialValues: Iterable[SidechainMemoryPoolEntry])  {
   def remove(id: String) : Option[SidechainMemoryPoolEntry]  = {
     map.remove(id) match  {
       case Some(entry) => {
-        idsSortedByFeeRate = idsSortedByFeeRate.filter(_.txid != id)
+        idsSortedByFeeRate = idsSortedByFeeRate - MempoolMapKey(id, entry.feeRate.getFeeRate())
         usedPoolSizeBytes -= entry.feeRate.getSize()
+        removeFromIndexes(entry)
         Some(entry)
       }
       case None => None
@@ -73,6 +107,19 @@ class MempoolMap(initialValues: Iterable[SidechainMemoryPoolEntry])  {
     }
   }
 
+  override def getSpendingTransactionId(boxId: ByteArrayWrapper): Optional[String] = spendingTxIds.get(boxId).asJava
+
+  override def getConflictKeyHolderId(conflictKey: ByteArrayWrapper): Optional[String] = conflictKeyHolderIds.get(conflictKey).asJava
+
+  override def getTransactions: JList[SidechainTypes#SCBT] = map.values.map(_.getUnconfirmedTx()).toList.asJava
+
+  /**
+   * Entries sorted by feeRate (ascending), lazily fetched
+   */
+  def lowestIterator: Iterator[SidechainMemoryPoolEntry] = {
+    idsSortedByFeeRate.iterator.map(item => map(item.txid))
+  }
+
   /**
    * Take n lowest entries sorted by feeRate (ascending)
    */
@@ -103,7 +103,7 @@ class SidechainMemoryPool private(unconfirmed: MempoolMap, mempoolSettings: Memp
     if (entry.feeRate.getFeeRate() < minFeeRate) {
        Failure(new IllegalArgumentException("Transaction fee is less than mempool.minFeeRate - " + tx))
     } else if (tx.incompatibilityChecker().isMemoryPoolCompatible &&
-        tx.incompatibilityChecker().isTransactionCompatible(tx, unconfirmed.values.toList.map(t => t.getUnconfirmedTx()).asJava)) {
+        tx.incompatibilityChecker().isTransactionCompatible(tx, unconfirmed)) {
       if (addWithSizeCheck(entry))
         Success[SidechainMemoryPool](this)
       else
@@ -124,9 +124,8 @@ class SidechainMemoryPool private(unconfirmed: MempoolMap, mempoolSettings: Memp
         return Failure(new IllegalArgumentException("There is incompatible transaction - " + t.head))
     }
 
-    val currentUnconfimed = unconfirmed.values.toList.map(t => t.getUnconfirmedTx()).asJava
     for (t <- txs) {
-      if (!t.incompatibilityChecker().isTransactionCompatible(t, currentUnconfimed))
+      if (!t.incompatibilityChecker().isTransactionCompatible(t, unconfirmed))
         return Failure(new IllegalArgumentException("There is incompatible transaction - " + t))
     }
 
@@ -146,27 +145,28 @@ class SidechainMemoryPool private(unconfirmed: MempoolMap, mempoolSettings: Memp
    */
   def addWithSizeCheck(entry: SidechainMemoryPoolEntry): Boolean = {
     var removingEntriesSize: Long = 0
-    var removingEntriesNum = 0
-    val mempoolEntries = unconfirmed.takeLowest(unconfirmed.size)
+    // lowest fee-rate entries are fetched only when the mempool is full
+    val lowestEntries = unconfirmed.lowestIterator
+    val removingEntries = ListBuffer[SidechainMemoryPoolEntry]()
 
     while (unconfirmed.usedSizeBytes - removingEntriesSize + entry.feeRate.getSize() > maxPoolSizeBytes) {
-      removingEntriesNum += 1
-
-      if (removingEntriesNum > unconfirmed.size) {
+      if (!lowestEntries.hasNext) {
         // all entries were processed and there is still not enough space in the mempool
         return false
       }
 
-      if (mempoolEntries(removingEntriesNum - 1).feeRate.getFeeRate() > entry.feeRate.getFeeRate()) {
+      val lowestEntry = lowestEntries.next()
+      if (lowestEntry.feeRate.getFeeRate() > entry.feeRate.getFeeRate()) {
         //the pool is full, and the entry we are trying to add has feerate lower than the miminum in pool
         //insert will fail
         return false
       }
 
-      removingEntriesSize += mempoolEntries(removingEntriesNum - 1).getUnconfirmedTx().size()
+      removingEntries += lowestEntry
+      removingEntriesSize += lowestEntry.getUnconfirmedTx().size()
     }
 
-    mempoolEntries.take(removingEntriesNum).foreach(lsEntry => unconfirmed.remove(lsEntry.getUnconfirmedTx().id()))
+    removingEntries.foreach(lsEntry => unconfirmed.remove(lsEntry.getUnconfirmedTx().id()))
     unconfirmed.add(entry)
     true
   }
@@ -187,7 +187,7 @@ class SidechainMemoryPool private(unconfirmed: MempoolMap, mempoolSettings: Memp
     txToRemove.clear()
 
     for (t <- compatibleTxs) {
-      if (!t.incompatibilityChecker().isTransactionCompatible(t, unconfirmed.values.toList.map(t => t.getUnconfirmedTx()).asJava))
+      if (!t.incompatibilityChecker().isTransactionCompatible(t, unconfirmed))
         txToRemove += t
     }
 
@@ -1,5 +1,6 @@
 package io.horizen.utxo.storage
 
+import io.horizen.chain.ActiveChainCheckpoint
 import io.horizen.params.NetworkParams
 import io.horizen.storage.{AbstractHistoryStorage, Storage}
 import io.horizen.utxo.block.{SidechainBlock, SidechainBlockSerializer}
@@ -9,10 +10,16 @@ import io.horizen.utxo.companion.SidechainTransactionsCompanion
 class SidechainHistoryStorage(
                     storage: Storage,
                     sidechainTransactionsCompanion: SidechainTransactionsCompanion,
-                    params: NetworkParams)
+                    params: NetworkParams,
+                    blockCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_CACHE_MAX_BYTES,
+                    blockInfoCacheMaxBytes: Long = AbstractHistoryStorage.DEFAULT_BLOCK_INFO_CACHE_MAX_BYTES,
+                    activeChainCheckpoint: Option[ActiveChainCheckpoint] = None)
   extends AbstractHistoryStorage[SidechainBlock, SidechainFeePaymentsInfo, SidechainHistoryStorage] (
                     storage,
                     new SidechainBlockSerializer(sidechainTransactionsCompanion),
                     FeePaymentsInfoSerializer,
-                    params)
+                    params,
+                    blockCacheMaxBytes,
+                    blockInfoCacheMaxBytes,
+                    activeChainCheckpoint)
 
@@ -57,7 +57,8 @@ case object GET_SIDECHAIN_VERSIONS_TYPE extends RequestType(6)
 
 class MainchainNodeChannelImpl(client: CommunicationClient, params: NetworkParams) extends MainchainNodeChannel with SidechainsVersionsManager { // to do: define EC inside?
   // key - sidechain id, value - version
-  var sidechainsVersionsCache: Map[ByteArrayWrapper, SidechainCreationVersion] = Map()
+  // the block references may be parsed concurrently, see MainchainSynchronizer
+  @volatile var sidechainsVersionsCache: Map[ByteArrayWrapper, SidechainCreationVersion] = Map()
 
   override def getBlockByHeight(height: Int): Try[MainchainBlockReference] = Try {
     val future: Future[BlockResponsePayload] =
@@ -187,7 +188,9 @@ class MainchainNodeChannelImpl(client: CommunicationClient, params: NetworkParam
         case Success(res) =>
           for(info: SidechainVersionsInfo <- res) {
             // Convert sidechain ids back to LittleEndian bytes
-            sidechainsVersionsCache += new ByteArrayWrapper(BytesUtils.reverseBytes(BytesUtils.fromHexString(info.scId))) -> SidechainCreationVersions.getVersion(info.version)
+            synchronized {
+              sidechainsVersionsCache += new ByteArrayWrapper(BytesUtils.reverseBytes(BytesUtils.fromHexString(info.scId))) -> SidechainCreationVersions.getVersion(info.version)
+            }
           }
         case Failure(exception) =>
           throw new RuntimeException("Can't retrieve sidechain versions.", exception)
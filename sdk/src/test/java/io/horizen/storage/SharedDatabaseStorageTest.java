@@ -0,0 +1,254 @@
+package io.horizen.storage;
+
+import io.horizen.fixtures.StoreFixtureClass;
+import io.horizen.storage.leveldb.NamespacedLevelDbStorageAdapter;
+import io.horizen.storage.leveldb.SharedLevelDbDatabase;
+import io.horizen.utils.ByteArrayWrapper;
+import io.horizen.utils.Pair;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SharedDatabaseStorageTest {
+
+    StoreFixtureClass storageFixture = new StoreFixtureClass();
+
+    @Test
+    public void testNamespacesIsolation() {
+        SharedLevelDbDatabase database = new SharedLevelDbDatabase(storageFixture.tempFile());
+        NamespacedLevelDbStorageAdapter first = database.namespace("first", 10);
+        NamespacedLevelDbStorageAdapter second = database.namespace("second", 10);
+
+        ByteArrayWrapper version1 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u1 = storageFixture.getKeyValueList(3);
+        first.update(version1, u1, new ArrayList<>());
+
+        assertEquals("First namespace must contain 3 items.", 3, first.getAll().size());
+        assertTrue("First namespace must contain same elements as sample.", u1.containsAll(first.getAll()));
+        assertTrue("Second namespace expected to be empty.", second.isEmpty());
+        assertTrue("Second namespace expected to have no data.", second.getAll().isEmpty());
+        assertFalse("Second namespace must not see the keys of the first one.", second.get(u1.get(0).getKey()).isPresent());
+
+        // same keys in different namespaces
+        ByteArrayWrapper version2 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u2 = new ArrayList<>();
+        for (Pair<ByteArrayWrapper, ByteArrayWrapper> i : u1)
+            u2.add(new Pair<>(i.getKey(), storageFixture.getValue()));
+        second.update(version2, u2, new ArrayList<>());
+        assertTrue("First namespace must keep its elements.", u1.containsAll(first.getAll()));
+        assertTrue("Second namespace must contain same elements as sample.", u2.containsAll(second.getAll()));
+
+        second.rollback(version2);
+        first.update(version2, u2, new ArrayList<>());
+        first.rollback(version1);
+        assertTrue("First namespace must contain same elements as sample.", u1.containsAll(first.getAll()));
+        assertEquals("Second namespace must have specified version.", version2, second.lastVersionID().get());
+
+        try {
+            database.namespace("first", 10);
+            fail("A namespace can't be opened twice.");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testBatch() {
+        File path = storageFixture.tempFile();
+        SharedLevelDbDatabase database = new SharedLevelDbDatabase(path);
+        NamespacedLevelDbStorageAdapter first = database.namespace("first", 10);
+        NamespacedLevelDbStorageAdapter second = database.namespace("second", 10);
+
+        ByteArrayWrapper version1 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u1 = storageFixture.getKeyValueList(3);
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u2 = storageFixture.getKeyValueList(2);
+
+        // read-your-writes within the batch, rollback of a pending version
+        database.withBatch(() -> {
+            first.update(version1, u1, new ArrayList<>());
+            second.update(version1, u2, new ArrayList<>());
+            assertEquals("Pending value must be visible in the batch.", u1.get(0).getValue(), first.get(u1.get(0).getKey()).get());
+
+            ByteArrayWrapper pendingVersion = storageFixture.getVersion();
+            second.update(pendingVersion, new ArrayList<>(), Collections.singletonList(u2.get(0).getKey()));
+            assertFalse("Pending removal must be visible in the batch.", second.get(u2.get(0).getKey()).isPresent());
+            second.rollback(version1);
+            assertEquals("Rolled back value must be visible in the batch.", u2.get(0).getValue(), second.get(u2.get(0).getKey()).get());
+            return null;
+        });
+        assertTrue("First namespace must contain same elements as sample.", u1.containsAll(first.getAll()));
+        assertTrue("Second namespace must contain same elements as sample.", u2.containsAll(second.getAll()));
+
+        // a failed batch is discarded as a whole
+        ByteArrayWrapper version2 = storageFixture.getVersion();
+        try {
+            database.withBatch(() -> {
+                first.update(version2, storageFixture.getKeyValueList(2), new ArrayList<>());
+                second.update(version2, new ArrayList<>(), Collections.singletonList(u2.get(1).getKey()));
+                throw new IllegalStateException("failure");
+            });
+            fail("Batch failure expected to be rethrown.");
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals("First namespace must have the last committed version.", version1, first.lastVersionID().get());
+        assertEquals("Second namespace must have the last committed version.", version1, second.lastVersionID().get());
+        assertEquals("First namespace must contain 3 items.", 3, first.getAll().size());
+        assertTrue("Second namespace must keep its elements.", second.get(u2.get(1).getKey()).isPresent());
+
+        // closing the last namespace closes the database, the content survives a reopen
+        first.close();
+        second.close();
+
+        SharedLevelDbDatabase reopened = new SharedLevelDbDatabase(path);
+        NamespacedLevelDbStorageAdapter reopenedFirst = reopened.namespace("first", 10);
+        NamespacedLevelDbStorageAdapter reopenedSecond = reopened.namespace("second", 10);
+        assertEquals("Versions must survive a reopen.", Collections.singletonList(version1), reopenedFirst.rollbackVersions());
+        assertTrue("First namespace must contain same elements as sample.", u1.containsAll(reopenedFirst.getAll()));
+        assertTrue("Second namespace must contain same elements as sample.", u2.containsAll(reopenedSecond.getAll()));
+        reopened.close();
+    }
+
+    @Test
+    public void testIteratorInBatch() {
+        SharedLevelDbDatabase database = new SharedLevelDbDatabase(storageFixture.tempFile());
+        NamespacedLevelDbStorageAdapter first = database.namespace("first", 10);
+        NamespacedLevelDbStorageAdapter second = database.namespace("second", 10);
+
+        ByteArrayWrapper version1 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u1 = storageFixture.getKeyValueList(3);
+        first.update(version1, u1, new ArrayList<>());
+
+        // the iterators see the pending writes, merged with the written data, without writing the batch
+        ByteArrayWrapper version2 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u2 = storageFixture.getKeyValueList(2);
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> changed = Collections.singletonList(new Pair<>(u1.get(1).getKey(), storageFixture.getValue()));
+        try {
+            database.withBatch(() -> {
+                first.update(version2, u2, Collections.singletonList(u1.get(0).getKey()));
+                ByteArrayWrapper version3 = storageFixture.getVersion();
+                first.update(version3, changed, new ArrayList<>());
+                second.update(version2, storageFixture.getKeyValueList(1), new ArrayList<>());
+
+                List<Pair<ByteArrayWrapper, ByteArrayWrapper>> expected = new ArrayList<>(u2);
+                expected.add(changed.get(0));
+                expected.add(u1.get(2));
+                List<Pair<ByteArrayWrapper, ByteArrayWrapper>> all = first.getAll();
+                assertEquals("First namespace must contain 4 items in the batch.", 4, all.size());
+                assertTrue("First namespace must contain the pending elements.", all.containsAll(expected));
+                for (int i = 1; i < all.size(); i++)
+                    assertTrue("Items must be in key order.", all.get(i - 1).getKey().compareTo(all.get(i).getKey()) < 0);
+                assertEquals("Second namespace must contain 1 item in the batch.", 1, second.getAll().size());
+                throw new IllegalStateException("failure");
+            });
+            fail("Batch failure expected to be rethrown.");
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+
+        // nothing of the discarded batch was written by the iteration
+        assertEquals("First namespace must have the last committed version.", version1, first.lastVersionID().get());
+        assertEquals("First namespace must contain 3 items.", 3, first.getAll().size());
+        assertTrue("First namespace must contain same elements as sample.", u1.containsAll(first.getAll()));
+        assertTrue("Second namespace expected to have no data.", second.getAll().isEmpty());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testBatchVersionsVisibility() throws Exception {
+        SharedLevelDbDatabase database = new SharedLevelDbDatabase(storageFixture.tempFile());
+        NamespacedLevelDbStorageAdapter first = database.namespace("first", 10);
+
+        ByteArrayWrapper version1 = storageFixture.getVersion();
+        first.update(version1, storageFixture.getKeyValueList(1), new ArrayList<>());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByteArrayWrapper version2 = storageFixture.getVersion();
+            database.withBatch(() -> {
+                first.update(version2, storageFixture.getKeyValueList(1), new ArrayList<>());
+                assertEquals("Pending version must be visible in the batch.", version2, first.lastVersionID().get());
+                try {
+                    // the other threads see the versions of the written data only
+                    assertEquals("Pending version must not be visible outside of the batch.",
+                            version1, executor.submit(() -> first.lastVersionID().get()).get());
+                    assertEquals("Pending version must not be visible outside of the batch.",
+                            1, (int) executor.submit(first::numberOfVersions).get());
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            });
+            assertEquals("Written version must be visible to the other threads.",
+                    version2, executor.submit(() -> first.lastVersionID().get()).get());
+        } finally {
+            executor.shutdownNow();
+        }
+        first.close();
+    }
+
+    @Test
+    public void testConcurrentBatchWaits() throws Exception {
+        SharedLevelDbDatabase database = new SharedLevelDbDatabase(storageFixture.tempFile());
+        NamespacedLevelDbStorageAdapter first = database.namespace("first", 10);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch otherBatchOpened = new CountDownLatch(1);
+            CountDownLatch releaseOtherBatch = new CountDownLatch(1);
+            ByteArrayWrapper otherVersion = storageFixture.getVersion();
+            Future<?> otherBatch = executor.submit(() -> database.withBatch(() -> {
+                first.update(otherVersion, storageFixture.getKeyValueList(1), new ArrayList<>());
+                otherBatchOpened.countDown();
+                try {
+                    releaseOtherBatch.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }));
+            assertTrue(otherBatchOpened.await(10, TimeUnit.SECONDS));
+
+            // a second batch waits for the first one to end instead of failing
+            AtomicBoolean batchStarted = new AtomicBoolean(false);
+            AtomicBoolean startedBeforeRelease = new AtomicBoolean(false);
+            ByteArrayWrapper version = storageFixture.getVersion();
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // released anyway
+                }
+                startedBeforeRelease.set(batchStarted.get());
+                releaseOtherBatch.countDown();
+            });
+            releaser.start();
+            database.withBatch(() -> {
+                batchStarted.set(true);
+                assertEquals("Second batch must see the written version of the first one.", otherVersion, first.lastVersionID().get());
+                first.update(version, storageFixture.getKeyValueList(1), new ArrayList<>());
+                return null;
+            });
+            releaser.join();
+            otherBatch.get(10, TimeUnit.SECONDS);
+            assertFalse("Second batch must wait for the first one.", startedBeforeRelease.get());
+            assertEquals("Versions of both batches expected.", Arrays.asList(version, otherVersion), first.rollbackVersions());
+        } finally {
+            executor.shutdownNow();
+        }
+        first.close();
+    }
+}
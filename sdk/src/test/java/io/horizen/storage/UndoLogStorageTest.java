@@ -0,0 +1,120 @@
+package io.horizen.storage;
+
+import io.horizen.fixtures.StoreFixtureClass;
+import io.horizen.storage.leveldb.UndoLogLevelDbStorageAdapter;
+import io.horizen.utils.ByteArrayWrapper;
+import io.horizen.utils.Pair;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UndoLogStorageTest {
+
+    StoreFixtureClass storageFixture = new StoreFixtureClass();
+
+    @Test
+    public void testUpdateAndRollback() {
+        UndoLogLevelDbStorageAdapter s = storageFixture.getUndoLogStorage(storageFixture.tempFile(), 10);
+
+        assertTrue("Storage expected to be empty.", s.isEmpty());
+        assertFalse("Version of empty storage shall be none", s.lastVersionID().isPresent());
+
+        // insert
+        ByteArrayWrapper version1 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u1 = storageFixture.getKeyValueList(3);
+        s.update(version1, u1, new ArrayList<>());
+        assertEquals("Storage must contain 3 items.", 3, s.getAll().size());
+        assertTrue("Storage must contain same elements as sample.", u1.containsAll(s.getAll()));
+
+        // alter
+        ByteArrayWrapper version2 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u2 = new ArrayList<>();
+        for (Pair<ByteArrayWrapper, ByteArrayWrapper> i : u1)
+            u2.add(new Pair<>(i.getKey(), storageFixture.getValue()));
+        s.update(version2, u2, new ArrayList<>());
+        assertTrue("Storage must contain same elements as sample.", u2.containsAll(s.getAll()));
+
+        // remove and insert
+        ByteArrayWrapper version3 = storageFixture.getVersion();
+        List<Pair<ByteArrayWrapper, ByteArrayWrapper>> u3 = storageFixture.getKeyValueList(2);
+        s.update(version3, u3, Arrays.asList(u2.get(0).getKey(), u2.get(1).getKey()));
+        assertEquals("Storage must contain 3 items.", 3, s.getAll().size());
+        assertFalse("Storage must not contain removed elements.", s.get(u2.get(0).getKey()).isPresent());
+        assertEquals("Storage must have specified version.", version3, s.lastVersionID().get());
+        assertEquals("Storage must have three versions", Arrays.asList(version3, version2, version1), s.rollbackVersions());
+
+        // batched get keeps the order of the requested keys
+        List<ByteArrayWrapper> keys = Arrays.asList(u3.get(1).getKey(), u2.get(0).getKey(), u2.get(2).getKey());
+        List<Pair<ByteArrayWrapper, Optional<ByteArrayWrapper>>> values = s.get(keys);
+        assertEquals("Unexpected key order", keys.get(0), values.get(0).getKey());
+        assertEquals("Unexpected value", u3.get(1).getValue(), values.get(0).getValue().get());
+        assertFalse("Removed key expected to have no value", values.get(1).getValue().isPresent());
+        assertEquals("Unexpected value", u2.get(2).getValue(), values.get(2).getValue().get());
+
+        // rollback over several versions restores the oldest pre-images
+        s.rollback(version1);
+        assertEquals("Storage must contain 3 items.", 3, s.getAll().size());
+        assertTrue("Storage must contain same elements as sample.", u1.containsAll(s.getAll()));
+        assertEquals("Storage must have specified version.", version1, s.lastVersionID().get());
+        assertEquals("Storage must have one version", 1, s.numberOfVersions());
+
+        // rolled back versions can be used again
+        s.update(version2, u2, new ArrayList<>());
+        assertEquals("Storage must have specified version.", version2, s.lastVersionID().get());
+
+        try {
+            s.update(version2, u2, new ArrayList<>());
+            fail("already exist version in update shall thrown exception");
+        }
+        catch (Exception ex) {
+            assertEquals("Storage must have specified version.", version2, s.lastVersionID().get());
+        }
+
+        try {
+            s.rollback(storageFixture.getVersion());
+            fail("Non exist version in rollback shall thrown exception");
+        }
+        catch (Exception ex) {
+            assertEquals("Storage must have specified version.", version2, s.lastVersionID().get());
+        }
+    }
+
+    @Test
+    public void testVersionsPruningAndReopen() {
+        File storagePath = storageFixture.tempFile();
+        int versionsToKeep = 5;
+        UndoLogLevelDbStorageAdapter s = storageFixture.getUndoLogStorage(storagePath, versionsToKeep);
+
+        List<ByteArrayWrapper> versions = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ByteArrayWrapper version = storageFixture.getVersion();
+            s.update(version, storageFixture.getKeyValueList(2), new ArrayList<>());
+            versions.add(0, version);
+        }
+
+        assertEquals("Storage must keep only the last versions", versions.subList(0, versionsToKeep), s.rollbackVersions());
+        assertEquals("Undo log entries must not be returned as data", 16, s.getAll().size());
+        try {
+            s.rollback(versions.get(versionsToKeep));
+            fail("Pruned version in rollback shall thrown exception");
+        }
+        catch (Exception ex) {
+            assertEquals("Storage must have specified version.", versions.get(0), s.lastVersionID().get());
+        }
+
+        s.rollback(versions.get(2));
+        assertEquals("Storage must contain the data of the kept versions", 12, s.getAll().size());
+        s.close();
+
+        UndoLogLevelDbStorageAdapter s2 = storageFixture.getUndoLogStorage(storagePath, versionsToKeep);
+        assertEquals("Reopened storage must have the same versions", versions.subList(2, versionsToKeep), s2.rollbackVersions());
+        assertEquals("Reopened storage must contain the same data", 12, s2.getAll().size());
+
+        s2.rollback(versions.get(versionsToKeep - 1));
+        assertEquals("Storage must contain the data of the oldest kept version", 8, s2.getAll().size());
+        assertEquals("Storage must have specified version.", versions.get(versionsToKeep - 1), s2.lastVersionID().get());
+    }
+}
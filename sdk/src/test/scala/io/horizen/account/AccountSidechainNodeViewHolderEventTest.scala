@@ -7,8 +7,10 @@ import io.horizen.account.block.AccountBlock
 import io.horizen.account.fixtures.EthereumTransactionFixture
 import io.horizen.account.history.AccountHistory
 import io.horizen.account.mempool.AccountMemoryPool
+import io.horizen.account.node.AccountNodeViewSnapshotProvider
 import io.horizen.account.state._
 import io.horizen.account.storage.{AccountHistoryStorage, AccountStateMetadataStorage}
+import io.horizen.account.transaction.SenderRecoveryService
 import io.horizen.account.utils.ZenWeiConverter
 import io.horizen.account.wallet.AccountWallet
 import io.horizen.consensus.ConsensusDataStorage
@@ -142,7 +144,9 @@ class AccountSidechainNodeViewHolderEventTest
         stateDbStorage,
         customMessageProcessors,
         secretStorage,
-        genesisBlock
+        genesisBlock,
+        new AccountNodeViewSnapshotProvider,
+        new SenderRecoveryService(1, 0)
       ) {
     override def txModify(tx: SidechainTypes#SCAT): Unit = super.txModify(tx)
 
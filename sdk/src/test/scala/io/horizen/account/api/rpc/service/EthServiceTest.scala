@@ -3,8 +3,9 @@ package io.horizen.account.api.rpc.service
 import akka.actor.{ActorRef, ActorSystem}
 import akka.testkit.{TestActor, TestProbe}
 import com.fasterxml.jackson.databind.ObjectMapper
-import io.horizen.account.api.rpc.handler.RpcException
+import io.horizen.account.api.rpc.handler.{RpcException, RpcHandler}
 import io.horizen.account.api.rpc.request.RpcRequest
+import io.horizen.account.api.rpc.utils.RpcCode
 import io.horizen.account.block.AccountBlock
 import io.horizen.account.fork.GasFeeFork.DefaultGasFeeFork
 import io.horizen.account.history.AccountHistory
@@ -19,7 +20,7 @@ import io.horizen.account.transaction.EthereumTransaction
 import io.horizen.account.transaction.EthereumTransaction.EthereumTransactionType
 import io.horizen.account.utils.{AccountMockDataHelper, EthereumTransactionEncoder, FeeUtils}
 import io.horizen.account.wallet.AccountWallet
-import io.horizen.api.http.{SidechainApiMockConfiguration, SidechainTransactionActorRef}
+import io.horizen.api.http.{ApiResponse, SidechainApiMockConfiguration, SidechainTransactionActorRef}
 import io.horizen.consensus.ConsensusParamsUtil
 import io.horizen.evm.Address
 import io.horizen.fixtures.FieldElementFixture
@@ -30,6 +31,7 @@ import io.horizen.network.SyncStatusActor.ReceivableMessages.GetSyncStatus
 import io.horizen.params.RegTestParams
 import io.horizen.utils.{BytesUtils, TimeToEpochUtils}
 import io.horizen.{EthServiceSettings, SidechainTypes}
+import org.junit.Assert.{assertEquals, assertTrue}
 import org.junit.{Before, Test}
 import org.mockito.Mockito
 import org.scalatest.prop.TableDrivenPropertyChecks
@@ -47,9 +49,10 @@ import sparkz.util.serialization.VLQByteBufferWriter
 
 import java.math.BigInteger
 import java.util.Optional
+import java.util.concurrent.CountDownLatch
 import scala.collection.mutable.ListBuffer
 import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.duration.{FiniteDuration, SECONDS}
+import scala.concurrent.duration.{DurationInt, FiniteDuration, SECONDS}
 import scala.util.Failure
 
 class EthServiceTest extends JUnitSuite with MockitoSugar with ReceiptFixture with TableDrivenPropertyChecks {
@@ -499,6 +502,62 @@ class EthServiceTest extends JUnitSuite with MockitoSugar with ReceiptFixture wi
     assertJsonEquals("true", rpc("net_listening"))
   }
 
+  @Test
+  def rpcBatch(): Unit = {
+    val rpcProcessor = RpcProcessor(new RpcHandler(ethService), EthServiceSettings(rpcBatchSizeLimit = 3))
+    def request(id: Int, method: String) = s"""{"jsonrpc":"2.0","id":"$id","method":"$method","params":[]}"""
+
+    // the responses keep the order of the requests
+    val batch = Seq(request(1, "net_version"), request(2, "eth_blockNumber"), request(3, "eth_chainId"))
+    assertJsonEquals(
+      """[{"jsonrpc":"2.0","id":"1","result":"1111111"},{"jsonrpc":"2.0","id":"2","result":"0x2"},{"jsonrpc":"2.0","id":"3","result":"0x10f447"}]""",
+      mapper.readTree(rpcProcessor.processEthRpc(mapper.readTree(batch.mkString("[", ",", "]"))))
+    )
+    assertEquals(1L, rpcProcessor.batchMetrics.duration.getCount)
+    assertEquals(3L, rpcProcessor.batchMetrics.requests.sum())
+
+    // batch over the size limit
+    val tooLargeBatch = batch :+ request(4, "net_listening")
+    val response = mapper.readTree(rpcProcessor.processEthRpc(mapper.readTree(tooLargeBatch.mkString("[", ",", "]"))))
+    assertEquals(RpcCode.InvalidRequest.code, response.get("error").get("code").asInt())
+    assertEquals(1L, rpcProcessor.batchMetrics.rejected.sum())
+    assertEquals(1L, rpcProcessor.batchMetrics.duration.getCount)
+  }
+
+  @Test
+  def rpcBatchTimeoutAndQueueBound(): Unit = {
+    val release = new CountDownLatch(1)
+    val blockedHandler = new RpcHandler(ethService) {
+      override def apply(request: RpcRequest): ApiResponse = {
+        release.await()
+        super.apply(request)
+      }
+    }
+    // one request executing, one waiting in the queue, the third one is rejected
+    val rpcProcessor = RpcProcessor(blockedHandler, EthServiceSettings(rpcBatchThreads = 1, rpcBatchQueueSize = 1), 200.millis)
+    def request(id: Int) = s"""{"jsonrpc":"2.0","id":"$id","method":"net_version","params":[]}"""
+
+    try {
+      val responses = mapper.readTree(rpcProcessor.processEthRpc(mapper.readTree((1 to 3).map(request).mkString("[", ",", "]"))))
+      assertEquals(3, responses.size())
+      (0 until 3).foreach(i => assertEquals(RpcCode.InternalError.code, responses.get(i).get("error").get("code").asInt()))
+      assertEquals("batch request timed out", responses.get(0).get("error").get("message").asText())
+      assertEquals("batch request timed out", responses.get(1).get("error").get("message").asText())
+      assertEquals("RPC batch queue full", responses.get(2).get("error").get("message").asText())
+      // the errors carry the id of their request
+      (0 until 3).foreach(i => assertEquals(s"${i + 1}", responses.get(i).get("id").asText()))
+      assertEquals(2L, rpcProcessor.batchMetrics.timedOut.sum())
+      assertEquals(1L, rpcProcessor.batchMetrics.rejectedRequests.sum())
+      val stats = rpcProcessor.batchMetrics.getStats
+      assertEquals(2L, stats.timedOut)
+      assertEquals(1L, stats.rejectedRequests)
+      assertEquals(1L, stats.duration.count)
+      assertEquals(stats.duration.bucketBoundsMillis.size + 1, stats.duration.bucketCounts.size)
+    } finally {
+      release.countDown()
+    }
+  }
+
   @Test
   def net_peerCount(): Unit = {
     assertJsonEquals("\"0x0\"", rpc("net_peerCount"))
@@ -1232,6 +1291,12 @@ class EthServiceTest extends JUnitSuite with MockitoSugar with ReceiptFixture wi
     forAll(validCases) { (transactionArgs, expectedOutput) =>
       assertJsonEquals(expectedOutput, rpc("eth_estimateGas", transactionArgs))
     }
+    // every estimate is recorded, with at least the probe at the highest allowance
+    assertEquals(validCases.size.toLong, ethService.estimateGasMetrics.duration.getCount)
+    assertTrue(ethService.estimateGasMetrics.getAverageProbes >= 1)
+    val stats = ethService.estimateGasMetrics.getStats
+    assertEquals(validCases.size.toLong, stats.duration.count)
+    assertEquals(validCases.size.toLong, stats.probeBucketCounts.sum)
 
     val invalidCases = Table(
       "Transaction args",
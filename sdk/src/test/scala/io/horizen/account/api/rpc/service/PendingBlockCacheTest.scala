@@ -0,0 +1,111 @@
+package io.horizen.account.api.rpc.service
+
+import org.junit.Assert._
+import org.junit.Test
+import org.scalatestplus.junit.JUnitSuite
+import sparkz.util.bytesToId
+
+import scala.collection.mutable.ListBuffer
+
+class PendingBlockCacheTest extends JUnitSuite {
+
+  private val tip1 = bytesToId(Array.fill(32)(1.toByte))
+  private val tip2 = bytesToId(Array.fill(32)(2.toByte))
+
+  private class State(val name: String)
+
+  private class Fixture {
+    val released: ListBuffer[(String, Option[String])] = ListBuffer()
+    var builds: Int = 0
+    val cache = new PendingBlockCache[State]((replaced, updated) => released += (replaced.name -> updated.map(_.name)))
+
+    // builds a new state named after the build count, or extends the previous one if asked to
+    def get(tip: sparkz.util.ModifierId, version: Long, extend: Boolean = false): (Option[State], Option[State]) = {
+      var previousSeen: Option[State] = None
+      val state = cache.use(tip, version) { previous =>
+        builds += 1
+        previousSeen = previous
+        if (extend && previous.isDefined) previous else Some(new State(s"state$builds"))
+      }(identity)
+      (state, previousSeen)
+    }
+  }
+
+  @Test
+  def testReuse(): Unit = {
+    val f = new Fixture
+    val (first, _) = f.get(tip1, 1)
+    assertEquals(1, f.builds)
+
+    // same tip and mempool version
+    val (second, _) = f.get(tip1, 1)
+    assertSame("Pending state should be reused", first.get, second.get)
+    assertEquals(1, f.builds)
+    assertTrue("No state should be released", f.released.isEmpty)
+  }
+
+  @Test
+  def testRebuildOnMempoolChange(): Unit = {
+    val f = new Fixture
+    val (first, _) = f.get(tip1, 1)
+
+    // the mempool changed: the state is rebuilt at once, on top of the previous one
+    val (second, previous) = f.get(tip1, 2)
+    assertEquals(2, f.builds)
+    assertSame("Previous state on the same tip should be given to the builder", first.get, previous.get)
+    assertEquals("state2", second.get.name)
+    assertEquals(Seq("state1" -> Some("state2")), f.released)
+  }
+
+  @Test
+  def testInvalidationOnNewTip(): Unit = {
+    val f = new Fixture
+    f.get(tip1, 1)
+
+    // a new best block rebuilds the state at once, without reusing the previous one
+    val (state, previous) = f.get(tip2, 1)
+    assertEquals(2, f.builds)
+    assertTrue("Previous state on another tip should not be given to the builder", previous.isEmpty)
+    assertEquals(Seq("state1" -> Some("state2")), f.released)
+    assertEquals("state2", state.get.name)
+  }
+
+  @Test
+  def testExtendedState(): Unit = {
+    val f = new Fixture
+    val (first, _) = f.get(tip1, 1)
+    val (extended, _) = f.get(tip1, 2, extend = true)
+    assertSame(first.get, extended.get)
+    // the replaced state is released along with the state extending it, so the owner can keep it open
+    assertEquals(Seq("state1" -> Some("state1")), f.released)
+  }
+
+  @Test
+  def testBuildFailure(): Unit = {
+    val f = new Fixture
+    f.get(tip1, 1)
+    try {
+      f.cache.use(tip1, 2)(_ => throw new IllegalStateException("failure"))(identity)
+      fail("Build failure expected to be rethrown")
+    } catch {
+      case _: IllegalStateException => // expected
+    }
+    assertEquals("Replaced state should be released after a failed build", Seq("state1" -> None), f.released)
+
+    // nothing is cached after the failure
+    f.get(tip1, 2)
+    assertEquals(2, f.builds)
+  }
+
+  @Test
+  def testDiscard(): Unit = {
+    val f = new Fixture
+    f.get(tip1, 1)
+    f.cache.discard()
+    assertEquals(Seq("state1" -> None), f.released)
+
+    f.get(tip1, 1)
+    assertEquals("Discarded state should be rebuilt", 2, f.builds)
+    assertEquals(1, f.released.size)
+  }
+}
@@ -5,12 +5,16 @@ import com.fasterxml.jackson.module.scala.DefaultScalaModule
 import io.horizen.account.api.rpc.types.{EthereumLogView, FilterQuery}
 import io.horizen.account.serialization.EthJsonMapper
 import io.horizen.account.state.receipt.{EthereumConsensusDataLog, EthereumReceipt}
-import io.horizen.evm.Hash
+import io.horizen.account.storage.{LogIndex, LogIndexPosting}
+import io.horizen.account.utils.Bloom
+import io.horizen.evm.{Address, Hash}
 import io.horizen.json.SerializationUtil
-import org.junit.Assert.assertEquals
+import org.junit.Assert.{assertEquals, assertFalse, assertTrue}
 import org.junit.Test
+import org.mockito.{ArgumentMatchers, Mockito}
 
 import java.math.BigInteger
+import scala.util.Random
 
 class RpcFilterTest {
 
@@ -416,6 +420,93 @@ class RpcFilterTest {
     assertEquals(f"Expected to receive ${expectedLogs.length} logs", expectedLogs.length, result.size)
   }
 
+  @Test
+  def testBloomQuery(): Unit = {
+    val bloom = dataMocks.blockBloom
+    val address = dataMocks.transactionAddress
+    val unusedAddress = dataMocks.unusedTransactionAddress
+    val topic0 = dataMocks.transactionTopic0
+    val unusedTopic = new Hash("0x0000000000000000000000000000000000000000000000000000000000000099")
+
+    assertTrue("Empty query expected to match", BloomQuery(Array.empty[Address], Array.empty[Array[Hash]]).matches(bloom))
+    assertTrue("Any of the addresses expected to match", BloomQuery(Array(unusedAddress, address), Array.empty[Array[Hash]]).matches(bloom))
+    assertFalse("Unused address expected not to match", BloomQuery(Array(unusedAddress), Array.empty[Array[Hash]]).matches(bloom))
+    assertTrue("Empty topic expected to be a wildcard", BloomQuery(Array(address), Array(Array.empty[Hash], Array(unusedTopic, topic0))).matches(bloom))
+    assertFalse("Every topic position expected to match", BloomQuery(Array(address), Array(Array(topic0), Array(unusedTopic))).matches(bloom))
+  }
+
+  @Test
+  def testBloomQueryMatchesHashedFilter(): Unit = {
+    val random = new Random(1234)
+    def randomBytes(length: Int): Array[Byte] = {
+      val bytes = new Array[Byte](length)
+      random.nextBytes(bytes)
+      bytes
+    }
+    val addresses = (1 to 3).map(_ => new Address(randomBytes(Address.LENGTH))).toArray
+    val topics = Array(
+      (1 to 2).map(_ => new Hash(randomBytes(Hash.LENGTH))).toArray,
+      Array.empty[Hash],
+      (1 to 3).map(_ => new Hash(randomBytes(Hash.LENGTH))).toArray
+    )
+    // blooms with random logs, some with the logs of one address and one topic per position, some with part of them
+    val blooms = (0 until 500).map { i =>
+      val bloom = new Bloom()
+      (0 until 10).foreach { _ =>
+        bloom.add(randomBytes(Address.LENGTH))
+        (0 until 3).foreach(_ => bloom.add(randomBytes(Hash.LENGTH)))
+      }
+      if (i % 5 == 0) bloom.add(addresses(i % addresses.length).toBytes)
+      if (i % 3 == 0) bloom.add(topics(0)(i % topics(0).length).toBytes)
+      if (i % 2 == 0) bloom.add(topics(2)(i % topics(2).length).toBytes)
+      bloom
+    }
+
+    // the filter compiled to the bits it sets matches the blooms the filter hashed for every test matches
+    val bloomQuery = BloomQuery(addresses, topics)
+    val matches = blooms.count { bloom =>
+      val hashedMatch = addresses.map(_.toBytes).exists(bloom.test) &&
+        topics.forall(sub => sub.length == 0 || sub.map(_.toBytes).exists(bloom.test))
+      assertEquals("Compiled filter expected to match as the hashed filter", hashedMatch, bloomQuery.matches(bloom))
+      hashedMatch
+    }
+    assertTrue("Some blooms expected to match", matches > 0)
+  }
+
+  @Test
+  def testIndexedLogs(): Unit = {
+    val stateView = dataMocks.getNodeStateMock
+    val receipt = dataMocks.transactionReceipt
+    val term1 = LogIndex.addressTerm(dataMocks.transactionAddress)
+    val term2 = LogIndex.addressTerm(dataMocks.transactionAddress2)
+    // postings of the logs 0, 1, 2 of transactionAddress and of the log 3 of transactionAddress2
+    val postings1 = (0 to 2).map(i => LogIndexPosting(receipt.blockNumber, receipt.transactionHash, i, i))
+    val postings2 = Seq(LogIndexPosting(receipt.blockNumber, receipt.transactionHash, 3, 3))
+    var postingsRead = 0
+    Mockito.when(stateView.getLogIndexPostingsCount(ArgumentMatchers.any())).thenAnswer(_ => 1)
+    Mockito.when(stateView.getLogIndexPostings(ArgumentMatchers.eq(term1), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+      .thenAnswer(_ => postings1.iterator.map { posting => postingsRead += 1; posting })
+    Mockito.when(stateView.getLogIndexPostings(ArgumentMatchers.eq(term2), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+      .thenAnswer(_ => postings2.iterator.map { posting => postingsRead += 1; posting })
+
+    // Filter:
+    //  -address: [transactionAddress2, transactionAddress]
+    // Expected result: log0, log1, log2, log3, merged in chain order
+    val filterQuery = createFilterQuery(Option.apply(Array(dataMocks.transactionAddress2.toString, dataMocks.transactionAddress.toString)), Option.empty)
+    var result = RpcFilter.getIndexedLogs(stateView, filterQuery, 1, 10)
+    val expectedLogs = Array(dataMocks.transactionLog0, dataMocks.transactionLog1, dataMocks.transactionLog2, dataMocks.transactionLog3)
+    assertEquals(f"Expected to receive ${expectedLogs.length} logs", expectedLogs.length, result.size)
+    expectedLogs.indices.foreach(i => checkLogs(result(i), expectedLogs(i), receipt, new BigInteger(String.valueOf(i))))
+    assertEquals("All postings expected to be read", 4, postingsRead)
+
+    // the reading stops at the maximum number of logs
+    postingsRead = 0
+    result = RpcFilter.getIndexedLogs(stateView, filterQuery, 1, 10, maxLogs = 2)
+    assertEquals("Expected to receive 2 logs", 2, result.size)
+    expectedLogs.indices.take(2).foreach(i => checkLogs(result(i), expectedLogs(i), receipt, new BigInteger(String.valueOf(i))))
+    assertTrue(s"Postings after the maximum number of logs expected not to be read: $postingsRead read", postingsRead <= 3)
+  }
+
   private def createFilterQuery(addresses: Option[Array[String]], topics: Option[Array[Array[Hash]]]): FilterQuery = {
     val jsonFilterQuery = mapper.createObjectNode()
     if (addresses.isDefined)
@@ -5,7 +5,9 @@ import io.horizen._
 import io.horizen.account.AccountSidechainNodeViewHolder
 import io.horizen.account.history.AccountHistory
 import io.horizen.account.mempool.AccountMemoryPool
+import io.horizen.account.node.AccountNodeViewSnapshotProvider
 import io.horizen.account.state.AccountState
+import io.horizen.account.transaction.SenderRecoveryService
 import io.horizen.account.wallet.AccountWallet
 import org.mockito.Mockito
 import org.scalatestplus.mockito.MockitoSugar
@@ -27,7 +29,9 @@ class MockedAccountSidechainNodeViewHolder(sidechainSettings: SidechainSettings,
     null,
     null,
     null,
-    null ) {
+    null,
+    new AccountNodeViewSnapshotProvider,
+    new SenderRecoveryService(1, 0)) {
 
   override def dumpStorages(): Unit = {}
 
@@ -1,6 +1,6 @@
 package io.horizen.account.forger
 
-import io.horizen.account.block.AccountBlockHeader
+import io.horizen.account.block.{AccountBlock, AccountBlockHeader}
 import io.horizen.account.fixtures.EthereumTransactionFixture
 import io.horizen.account.history.AccountHistory
 import io.horizen.account.mempool.{AccountMemoryPool, TransactionsByPriceAndNonceIter}
@@ -14,7 +14,7 @@ import io.horizen.account.transaction.EthereumTransaction.EthereumTransactionTyp
 import io.horizen.account.utils.{AccountMockDataHelper, EthereumTransactionEncoder, FeeUtils, WellKnownAddresses, ZenWeiConverter}
 import io.horizen.block.{MainchainBlockReference, MainchainBlockReferenceData, MainchainHeader, Ommer}
 import io.horizen.chain.SidechainBlockInfo
-import io.horizen.consensus.{ConsensusParamsUtil, ForgingStakeInfo}
+import io.horizen.consensus.{ConsensusParamsUtil, ForgingStakeInfo, intToConsensusEpochNumber}
 import io.horizen.evm.{Address, Hash}
 import io.horizen.fixtures.{CompanionsFixture, SecretFixture, SidechainRelatedMainchainOutputFixture, VrfGenerator}
 import io.horizen.fork.{ConsensusParamsFork, ConsensusParamsForkInfo, CustomForkConfiguratorWithConsensusParamsFork, ForkManagerUtil}
@@ -24,7 +24,7 @@ import io.horizen.proposition.VrfPublicKey
 import io.horizen.secret.{PrivateKey25519, PrivateKey25519Creator}
 import io.horizen.state.BaseStateReader
 import io.horizen.transaction.{MC2SCAggregatedTransaction, TransactionSerializer}
-import io.horizen.utils.{BytesUtils, DynamicTypedSerializer, MerklePath, Pair, TestSidechainsVersionsManager, TimeToEpochUtils, WithdrawalEpochInfo}
+import io.horizen.utils.{BytesUtils, DynamicTypedSerializer, MerklePath, MerkleTree, Pair, TestSidechainsVersionsManager, TimeToEpochUtils, WithdrawalEpochInfo}
 import io.horizen.vrf.VrfOutput
 import io.horizen.{AccountMempoolSettings, SidechainTypes}
 import org.junit.Assert.{assertArrayEquals, assertEquals, assertTrue}
@@ -399,6 +399,57 @@ class AccountForgeMessageBuilderTest
     assertTrue("Could not forge block", block.isSuccess)
   }
 
+  @Test
+  def testForgingStakeMerklePathInfoCachedPerEpoch(): Unit = {
+    val forger = new AccountForgeMessageBuilder(null, null, null, false)
+
+    val ownBlockSignKey = getPrivateKey25519("own".getBytes(StandardCharsets.UTF_8))
+    val ownVrfKey = getVrfKey("own".getBytes(StandardCharsets.UTF_8))
+    val ownStake = ForgingStakeInfo(ownBlockSignKey.publicImage(), ownVrfKey.publicImage(), 1000)
+    val otherStakes = (1 to 10).map(i =>
+      ForgingStakeInfo(getPrivateKey25519.publicImage(), getVrfKey.publicImage(), 100 * i))
+    val stakes = (otherStakes.take(5) :+ ownStake) ++ otherStakes.drop(5)
+
+    val stateRoot = new Array[Byte](32)
+    val blockHeader = mock[AccountBlockHeader]
+    Mockito.when(blockHeader.stateRoot).thenReturn(stateRoot)
+    val block = mock[AccountBlock]
+    Mockito.when(block.header).thenReturn(blockHeader)
+    val history = mock[AccountHistory]
+    Mockito.when(history.getLastBlockIdOfPrePreviousEpochs(any(), any())).thenReturn(bytesToId(new Array[Byte](32)))
+    Mockito.when(history.getBlockById(any())).thenReturn(Optional.of(block))
+
+    val stateView = mock[StateDbAccountStateView]
+    Mockito.when(stateView.getOrderedForgingStakesInfoSeq(any())).thenReturn(stakes)
+    val state = mock[AccountState]
+    Mockito.when(state.getStateDbViewFromRoot(any())).thenReturn(stateView)
+
+    val wallet = mock[forger.VL]
+    Mockito.when(wallet.allSecrets()).thenReturn(util.Arrays.asList[io.horizen.secret.Secret](ownBlockSignKey, ownVrfKey))
+
+    val branchPointInfo = forger.BranchPointInfo(bytesToId(new Array[Byte](32)), Seq(), Seq())
+    val epoch = intToConsensusEpochNumber(10)
+
+    val merklePathInfo = forger.getForgingStakeMerklePathInfo(epoch, wallet, history, state, branchPointInfo, 0)
+    assertEquals("Own forging stake expected", Seq(ownStake), merklePathInfo.map(_.forgingStakeInfo))
+    val expectedPath = MerkleTree.createMerkleTree(stakes.map(_.hash).asJava).getMerklePathForLeaf(5)
+    assertArrayEquals("Wrong merkle path", expectedPath.bytes(), merklePathInfo.head.merklePath.bytes())
+
+    // same epoch and state root: the forging stakes are not read again
+    assertEquals(merklePathInfo, forger.getForgingStakeMerklePathInfo(epoch, wallet, history, state, branchPointInfo, 1))
+    Mockito.verify(state, Mockito.times(1)).getStateDbViewFromRoot(any())
+
+    // wallet keys changed: merkle paths are recalculated on the same tree
+    Mockito.when(wallet.allSecrets()).thenReturn(util.Arrays.asList[io.horizen.secret.Secret](ownBlockSignKey))
+    assertTrue(forger.getForgingStakeMerklePathInfo(epoch, wallet, history, state, branchPointInfo, 1).isEmpty)
+    Mockito.verify(state, Mockito.times(1)).getStateDbViewFromRoot(any())
+
+    // next epoch: the forging stakes are read again
+    Mockito.when(wallet.allSecrets()).thenReturn(util.Arrays.asList[io.horizen.secret.Secret](ownBlockSignKey, ownVrfKey))
+    forger.getForgingStakeMerklePathInfo(intToConsensusEpochNumber(11), wallet, history, state, branchPointInfo, 2)
+    Mockito.verify(state, Mockito.times(2)).getStateDbViewFromRoot(any())
+  }
+
   private def setupMockMessageProcessor = {
     val mockMsgProcessor = mock[MessageProcessor]
     Mockito
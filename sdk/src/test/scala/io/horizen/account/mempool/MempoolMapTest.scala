@@ -1,9 +1,9 @@
 package io.horizen.account.mempool
 
 import io.horizen.account.fixtures.EthereumTransactionFixture
-import io.horizen.account.mempool.exception.{AccountMemPoolOutOfBoundException, NonceGapTooWideException, TransactionReplaceUnderpricedException, TxOversizedException}
+import io.horizen.account.mempool.exception.{AccountMemPoolOutOfBoundException, NonceGapTooWideException, StateChangedException, TransactionReplaceUnderpricedException, TxOversizedException, TxUnderpricedException}
 import io.horizen.account.secret.{PrivateKeySecp256k1, PrivateKeySecp256k1Creator}
-import io.horizen.account.state.{AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider}
+import io.horizen.account.state.{AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider, NonceTooLowException}
 import io.horizen.account.transaction.EthereumTransaction
 import io.horizen.evm.Address
 import io.horizen.state.BaseStateReader
@@ -18,6 +18,7 @@ import sparkz.util.ModifierId
 
 import java.math.BigInteger
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, Executors, TimeUnit}
 import scala.util.{Failure, Random, Success}
 
 class MempoolMapTest
@@ -1171,6 +1172,92 @@ class MempoolMapTest
 
   }
 
+  @Test
+  def testTakeExecutableTxsAfterUpdates(): Unit = {
+    // Verifies that the price ordered index of executable txs, built by the first takeExecutableTxs, is kept up to
+    // date by the following modifications of the mempool and rebuilt when the base fee changes
+    Mockito.when(baseStateViewMock.getNextBaseFee).thenReturn(BigInteger.TEN)
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, AccountMempoolSettings())
+
+    val value = BigInteger.TEN
+    val account1ExecTransaction0 = createEIP1559Transaction(value, BigInteger.ZERO, account1KeyOpt,
+      gasFee = BigInteger.valueOf(100), priorityGasFee = BigInteger.valueOf(8))
+    val account2ExecTransaction0 = createEIP1559Transaction(value, BigInteger.ZERO, account2KeyOpt,
+      gasFee = BigInteger.valueOf(14), priorityGasFee = BigInteger.valueOf(10))
+    assertTrue(mempoolMap.add(account1ExecTransaction0).isSuccess)
+    assertTrue(mempoolMap.add(account2ExecTransaction0).isSuccess)
+
+    var listOfExecTxs = mempoolMap.takeExecutableTxs()
+    assertEquals("Wrong tx list", Seq(account1ExecTransaction0.id, account2ExecTransaction0.id), listOfExecTxs.map(_.id).toSeq)
+
+    // Replacing the executable tx of account 2 with a tx with a higher tip
+    val account2ExecTransaction0Replacement = createEIP1559Transaction(value, BigInteger.ZERO, account2KeyOpt,
+      gasFee = BigInteger.valueOf(30), priorityGasFee = BigInteger.valueOf(20))
+    assertTrue(mempoolMap.add(account2ExecTransaction0Replacement).isSuccess)
+    val account2ExecTransaction1 = createEIP1559Transaction(value, BigInteger.ONE, account2KeyOpt,
+      gasFee = BigInteger.valueOf(100), priorityGasFee = BigInteger.ONE)
+    assertTrue(mempoolMap.add(account2ExecTransaction1).isSuccess)
+
+    listOfExecTxs = mempoolMap.takeExecutableTxs()
+    assertEquals("Wrong tx list after replacement",
+      Seq(account2ExecTransaction0Replacement.id, account1ExecTransaction0.id, account2ExecTransaction1.id),
+      listOfExecTxs.map(_.id).toSeq)
+
+    // With a higher base fee the effective tip of account 2 head becomes lower than the account 1 one
+    Mockito.when(baseStateViewMock.getNextBaseFee).thenReturn(BigInteger.valueOf(25))
+    listOfExecTxs = mempoolMap.takeExecutableTxs()
+    assertEquals("Wrong tx list after base fee change",
+      Seq(account1ExecTransaction0.id, account2ExecTransaction0Replacement.id, account2ExecTransaction1.id),
+      listOfExecTxs.map(_.id).toSeq)
+
+    // Removing the head of account 2 demotes the following tx, so only account 1 is left
+    assertTrue(mempoolMap.removeFromMempool(account2ExecTransaction0Replacement).isSuccess)
+    listOfExecTxs = mempoolMap.takeExecutableTxs()
+    assertEquals("Wrong tx list after removal", Seq(account1ExecTransaction0.id), listOfExecTxs.map(_.id).toSeq)
+  }
+
+  @Test
+  def testTakeExecutableTxsWithManyAccounts(): Unit = {
+    // Verifies the order of the executable txs taken from the price ordered index against the order computed from
+    // scratch: at every step the executable tx with the highest tip among the next txs of all the accounts
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, AccountMempoolSettings())
+    val random = new Random(4321)
+    val numOfAccounts = 40
+    val numOfTxsPerAccount = 3
+    // distinct tips, so that the order doesn't depend on the tie breaks
+    val tips = random.shuffle((1 to numOfAccounts * numOfTxsPerAccount).toList).iterator
+    val txsByAccount = (1 to numOfAccounts).map { account =>
+      val keyOpt = Some(PrivateKeySecp256k1Creator.getInstance().generateSecret(s"mempoolmaptestmany$account".getBytes(StandardCharsets.UTF_8)))
+      (0 until numOfTxsPerAccount).map(nonce => createEIP1559Transaction(BigInteger.TEN, BigInteger.valueOf(nonce), keyOpt,
+        gasFee = BigInteger.valueOf(1000), priorityGasFee = BigInteger.valueOf(tips.next())).asInstanceOf[SidechainTypes#SCAT])
+    }
+    random.shuffle(txsByAccount.flatten).foreach(tx => assertTrue(mempoolMap.add(tx).isSuccess))
+
+    def expectedOrder(accounts: Seq[Seq[SidechainTypes#SCAT]]): Seq[ModifierId] = {
+      val queues = accounts.map(txs => scala.collection.mutable.Queue(txs: _*))
+      Iterator.continually(queues.filter(_.nonEmpty))
+        .takeWhile(_.nonEmpty)
+        .map(_.maxBy(_.head.getMaxPriorityFeePerGas).dequeue().id)
+        .toList
+    }
+
+    assertEquals("Wrong order of the executable txs", expectedOrder(txsByAccount), mempoolMap.takeExecutableTxs().map(_.id).toSeq)
+
+    // the index follows the removal of txs
+    val remainingTxsByAccount = txsByAccount.zipWithIndex.map { case (txs, account) =>
+      if (account % 3 == 0) {
+        assertTrue(mempoolMap.removeFromMempool(txs.last).isSuccess)
+        txs.init
+      } else txs
+    }
+    assertEquals("Wrong order of the executable txs after removals",
+      expectedOrder(remainingTxsByAccount), mempoolMap.takeExecutableTxs().map(_.id).toSeq)
+
+    // a partial iteration returns the first txs of the order
+    assertEquals("Wrong first executable txs", expectedOrder(remainingTxsByAccount).take(10),
+      mempoolMap.takeExecutableTxs().iterator.take(10).map(_.id).toList)
+  }
+
   @Test
   def testTxSizeInSlot(): Unit = {
 
@@ -1374,7 +1461,7 @@ class MempoolMapTest
     assertEquals("Wrong mempool size in slots", 0, mempoolMap.getMempoolSizeInSlots)
 
     //Test 1: fill an account with exec txs of 1 slot each from 2 accounts. Verify that adding an additional exec tx
-    // will evict the oldest already present
+    // will evict the cheapest account tail. All the txs have the same price, so it is the oldest tail: the last tx of account 1
     val totalNumOfTxs = MaxMempoolSlots
     val listOfTxsAccount1 = (0 until 5).map(nonce => createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.valueOf(nonce), keyOpt = account1KeyOpt))
     listOfTxsAccount1.foreach(tx => mempoolMap.add(tx).get)
@@ -1389,7 +1476,7 @@ class MempoolMapTest
     assertEquals("Wrong number of exec txs", totalNumOfTxs, mempoolMap.mempoolTransactions(true).size)
     assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
 
-    var oldestTx = listOfTxsAccount1.head
+    var oldestTx = listOfTxsAccount1.last
     var exceedingTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ZERO, keyOpt = account2KeyOpt)
 
     mempoolMap = mempoolMap.add(exceedingTx) match {
@@ -1400,13 +1487,13 @@ class MempoolMapTest
     assertEquals("Wrong number of txs in mempool", totalNumOfTxs, mempoolMap.size)
     assertEquals("Wrong mempool size in slots", mempoolSettings.maxMemPoolSlots, mempoolMap.getMempoolSizeInSlots)
     assertTrue("Exceeding tx wasn't added to the mempool", mempoolMap.contains(ModifierId @@ exceedingTx.id))
-    assertFalse("Oldest tx wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ oldestTx.id))
-    //Check that after having evicted the oldest tx, all the remaining ones of account 1 have become non executable
-    assertEquals("Wrong number of exec txs", listOfTxsAccount3.size + 1, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Wrong number of non exec txs", listOfTxsAccount1.size - 1, mempoolMap.mempoolTransactions(false).size)
+    assertFalse("Oldest tail wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ oldestTx.id))
+    //Check that evicting a tail didn't make any tx non executable
+    assertEquals("Wrong number of exec txs", totalNumOfTxs, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
 
     //Test 2: same as test 1 but with exceeding tx with a size corresponding to 4 slots =>
-    // 4 txs will be evicted
+    // 4 txs will be evicted, the remaining ones of account 1 that has the oldest tail
     exceedingTx = setupMockSizeInSlotsToTx(
       createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.TWO, keyOpt = account2KeyOpt),
       4
@@ -1420,13 +1507,13 @@ class MempoolMapTest
     assertEquals("Wrong number of txs in mempool", totalNumOfTxs - 3, mempoolMap.size)
     assertEquals("Wrong mempool size in slots", mempoolSettings.maxMemPoolSlots, mempoolMap.getMempoolSizeInSlots)
     assertTrue("Rejected tx wasn't added to the mempool", mempoolMap.contains(ModifierId @@ exceedingTx.id))
-    listOfTxsAccount1.slice(1, 5).foreach(tx =>
+    listOfTxsAccount1.foreach(tx =>
       assertFalse("Oldest tx wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ tx.id))
     )
 
 
     //Test 3: Create 2 txs of 4 slots each and 2 txs of 1 slot. Verify that adding an additional tx of 1 slot will
-    //evict the first 4 slots tx.
+    //evict the first 4 slots tx, that is the oldest tail.
     //Reset mempool
     mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, mempoolSettings)
     oldestTx = setupMockSizeInSlotsToTx(
@@ -1468,6 +1555,45 @@ class MempoolMapTest
 
   }
 
+  @Test
+  def testAddMempoolFullPriceCheck(): Unit = {
+    val mempoolSettings = AccountMempoolSettings(maxAccountSlots = 10, maxMemPoolSlots = 4, maxNonExecMemPoolSlots = 3)
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, mempoolSettings)
+
+    // Fill the mempool: the account 2 tx is the cheapest, even if it is not the oldest
+    val highPrice = BigInteger.valueOf(20000)
+    val account1Txs = (0 to 1).map(nonce => createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.valueOf(nonce),
+      keyOpt = account1KeyOpt, gasFee = highPrice, priorityGasFee = highPrice))
+    account1Txs.foreach(tx => assertTrue("Adding transaction failed", mempoolMap.add(tx).isSuccess))
+    val cheapTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ZERO, keyOpt = account2KeyOpt,
+      gasFee = BigInteger.valueOf(5000), priorityGasFee = BigInteger.valueOf(5000))
+    assertTrue("Adding transaction failed", mempoolMap.add(cheapTx).isSuccess)
+    val account3Tx0 = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ZERO, keyOpt = account3KeyOpt,
+      gasFee = highPrice, priorityGasFee = highPrice)
+    assertTrue("Adding transaction failed", mempoolMap.add(account3Tx0).isSuccess)
+    assertEquals("Wrong mempool size in slots", mempoolSettings.maxMemPoolSlots, mempoolMap.getMempoolSizeInSlots)
+
+    // A tx cheaper than all the account tails is rejected up front
+    val underpricedTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ONE, keyOpt = account3KeyOpt,
+      gasFee = BigInteger.valueOf(1000), priorityGasFee = BigInteger.valueOf(1000))
+    mempoolMap.add(underpricedTx) match {
+      case Success(_) => fail("Adding an underpriced transaction to a full mempool should have failed")
+      case Failure(e) => assertTrue(s"Wrong exception type: ${e.getClass}", e.isInstanceOf[TxUnderpricedException])
+    }
+    assertEquals("Wrong number of txs in mempool", mempoolSettings.maxMemPoolSlots, mempoolMap.size)
+    assertTrue("Cheap tx was removed from the mempool", mempoolMap.contains(ModifierId @@ cheapTx.id))
+
+    // A more expensive tx evicts the cheapest tail, instead of the oldest tx
+    val expensiveTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ONE, keyOpt = account3KeyOpt,
+      gasFee = BigInteger.valueOf(30000), priorityGasFee = BigInteger.valueOf(30000))
+    assertTrue("Adding transaction failed", mempoolMap.add(expensiveTx).isSuccess)
+    assertEquals("Wrong number of txs in mempool", mempoolSettings.maxMemPoolSlots, mempoolMap.size)
+    assertTrue("Expensive tx was not added to the mempool", mempoolMap.contains(ModifierId @@ expensiveTx.id))
+    assertFalse("Cheap tx was not evicted from the mempool", mempoolMap.contains(ModifierId @@ cheapTx.id))
+    account1Txs.foreach(tx => assertTrue("Oldest txs were evicted from the mempool", mempoolMap.contains(ModifierId @@ tx.id)))
+    assertEquals("Wrong number of exec txs", mempoolSettings.maxMemPoolSlots, mempoolMap.mempoolTransactions(true).size)
+  }
+
   @Test
   def testReplaceTxMempoolSizeCheck(): Unit = {
 
@@ -1579,9 +1705,9 @@ class MempoolMapTest
 
 
     //Corner case: try to replace an existing tx with another one with bigger size and mempool full. The existing tx
-    // is the oldest so it is a candidate to be evicted. Actually, for the current implementation this is not a problem,
-    // because first the tx is replaced (so the old one is no more in the mempool) then the mempool is freed. This test
-    // is kept as a safe guard in case the implementation is changed in the future
+    // is the oldest one. Actually, for the current implementation this is not a problem, because first the tx is
+    // replaced (so the old one is no more in the mempool) then the mempool is freed. This test is kept as a safe guard
+    // in case the implementation is changed in the future
 
     // Reset mempool
     mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, mempoolSettings)
@@ -1604,7 +1730,7 @@ class MempoolMapTest
       gasFee = txToReplace.getMaxFeePerGas.add(BigInteger.TEN),
       priorityGasFee = txToReplace.getMaxPriorityFeePerGas.add(BigInteger.TEN),
       keyOpt = account1KeyOpt),
-      2 //2 slots => 2 txs to be removed
+      2 //2 slots => 1 additional tx to be removed
     )
 
     mempoolMap = mempoolMap.add(replacingTx) match {
@@ -1616,11 +1742,13 @@ class MempoolMapTest
     assertEquals("Wrong mempool size in slots", MaxMempoolSlots, mempoolMap.getMempoolSizeInSlots)
     assertTrue("Replacing tx wasn't added to the mempool", mempoolMap.contains(ModifierId @@ replacingTx.id))
     assertFalse("Tx to be replaced wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ txToReplace.id))
-    assertFalse("Second oldest tx wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ listOfTxs(1).id))
+    assertTrue("Second oldest tx was removed from the mempool", mempoolMap.contains(ModifierId @@ listOfTxs(1).id))
+    //The tail of account 1 is older than the account 2 one and it has the same price, so it is evicted
+    assertFalse("Oldest tail wasn't removed from the mempool", mempoolMap.contains(ModifierId @@ listOfTxs.last.id))
 
-    //Check that after having evicted the oldest 2 txs, all the remaining ones have become non executable
-    assertEquals("Replacing tx should be executable", 2, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Remaining txs should be non executable", MaxMempoolSlots - 3, mempoolMap.mempoolTransactions(false).size)
+    //Check that the remaining txs are all still executable
+    assertEquals("Remaining txs should be executable", MaxMempoolSlots - 1, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("No tx should be non executable", 0, mempoolMap.mempoolTransactions(false).size)
 
   }
 
@@ -1659,6 +1787,7 @@ class MempoolMapTest
     assertFalse("nonExecTx2 was not removed from the mempool", mempoolMap.contains(ModifierId @@ nonExecTx2.id))
     assertEquals("Wrong number of exec txs", 1, mempoolMap.mempoolTransactions(true).size)
     assertEquals("Wrong number of non exec txs", 2, mempoolMap.mempoolTransactions(false).size)
+    val account2Tail = additionalTx
 
     //Test 2: Add one additional exec tx to the mempool => no tx should be evicted
     additionalTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ZERO, keyOpt = account3KeyOpt)
@@ -1676,7 +1805,7 @@ class MempoolMapTest
 
     // Test 3: fill both non exec subpool and whole mempool.
     // a) Add 1 non exec tx => verify that the oldest non exec tx is evicted
-    // b) Add 1 exec tx => verify that the oldest tx is evicted
+    // b) Add 1 exec tx => verify that the cheapest account tail is evicted
     additionalTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.TEN, keyOpt = account3KeyOpt)
     assertTrue("Adding non exec transaction failed", mempoolMap.add(additionalTx).isSuccess)
 
@@ -1703,20 +1832,22 @@ class MempoolMapTest
     assertEquals("Wrong number of exec txs", 6, mempoolMap.mempoolTransactions(true).size)
     assertEquals("Wrong number of non exec txs", 3, mempoolMap.mempoolTransactions(false).size)
 
-    // b) Add 1 exec tx => verify that execTx0 (the oldest tx) is evicted
+    // b) Add 1 exec tx => verify that the tail of account 2 (all the txs have the same price and it is the oldest tail) is
+    // evicted, while execTx0 (the oldest tx) is kept
     additionalTx = setupMockSizeInSlotsToTx(createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.valueOf(5), keyOpt = account3KeyOpt), 2)
     mempoolMap = mempoolMap.add(additionalTx) match {
       case Success(m) =>assertEquals("Wrong number of promoted txs",1, m._2.size)
         m._1
       case Failure(e) => fail(s"Adding exec transaction failed with exception $e", e)
     }
-    assertFalse("execTx0 was not removed from the mempool", mempoolMap.contains(ModifierId @@ execTx0.id))
+    assertTrue("execTx0 was removed from the mempool", mempoolMap.contains(ModifierId @@ execTx0.id))
+    assertFalse("Account 2 tail was not removed from the mempool", mempoolMap.contains(ModifierId @@ account2Tail.id))
     assertEquals("Wrong mempool size in slots", 10, mempoolMap.getMempoolSizeInSlots)
-    assertEquals("Wrong non exec mempool size in slots", 3, mempoolMap.getNonExecSubpoolSizeInSlots)
-    assertEquals("Wrong number of exec txs", 6, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Wrong number of non exec txs", 3, mempoolMap.mempoolTransactions(false).size)
+    assertEquals("Wrong non exec mempool size in slots", 2, mempoolMap.getNonExecSubpoolSizeInSlots)
+    assertEquals("Wrong number of exec txs", 7, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("Wrong number of non exec txs", 2, mempoolMap.mempoolTransactions(false).size)
 
-    //Test 4: transform exec txs in non-exec ones and evict oldest non exec, including some of the txs that caused the eviction.
+    //Test 4: verify that evicting txs from a full mempool doesn't transform exec txs in non-exec ones.
     //Reset mempool
     mempoolSettings = AccountMempoolSettings(maxAccountSlots = 10, maxMemPoolSlots = 10, maxNonExecMemPoolSlots = 5)
     mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, mempoolSettings)
@@ -1732,14 +1863,12 @@ class MempoolMapTest
     assertEquals("Wrong mempool size in slots", mempoolSettings.maxMemPoolSlots, mempoolMap.getMempoolSizeInSlots)
     assertEquals("Wrong non exec mempool size in slots", 0, mempoolMap.getNonExecSubpoolSizeInSlots)
 
-    //Now a new exec tx from the same account will be added to the mempool. This will evict the first exec tx and so
-    // all the remaining txs will become non exec. The number of non exec txs will in turn be bigger than the maximum allowed
-    // so an additional number of txs will be evicted. To summarize:
+    //Now a new non exec tx from the same account will be added to the mempool. The mempool size exceeds its maximum
+    // and the cheapest account tail is evicted. All the txs have the same price, so it is the oldest tail, i.e. the
+    // account 2 tx. The account 1 txs are all kept and none of them becomes non exec. To summarize:
     //1) Add in the mempool enough txs to use all the mempool slots (total num of txs = 10)
-    //2) Add another tx. The mempool size exceeds its maximum and the first exec tx is evicted (total num of txs = 10)
-    //3) The remaining txs become all non exec (total num of non exec txs = 9)
-    //4) the maximum allowed number of non exec txs is 5 => 4 txs will be evicted
-    //5) Resulting mempool size = 6, resulting non exec size = 5, resulting exec size = 1
+    //2) Add another tx. The mempool size exceeds its maximum and the account 2 tx is evicted (total num of txs = 10)
+    //3) Resulting mempool size = 10, resulting non exec size = 1, resulting exec size = 9
     additionalTx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.valueOf(mempoolSettings.maxMemPoolSlots), keyOpt = account1KeyOpt)
 
     mempoolMap = mempoolMap.add(additionalTx) match {
@@ -1747,11 +1876,12 @@ class MempoolMapTest
         m._1
       case Failure(e) => fail(s"Adding exec transaction to a full mempool failed with exception $e", e)
     }
-    assertEquals("Wrong number of txs in mempool", 6, mempoolMap.size)
-    assertEquals("Wrong mempool size in slots", 6, mempoolMap.getMempoolSizeInSlots)
-    assertEquals("Wrong non exec mempool size in slots", mempoolSettings.maxNonExecMemPoolSlots, mempoolMap.getNonExecSubpoolSizeInSlots)
-    assertEquals(1, mempoolMap.mempoolTransactions(true).size)
-    assertEquals(mempoolSettings.maxNonExecMemPoolSlots, mempoolMap.mempoolTransactions(false).size)
+    assertEquals("Wrong number of txs in mempool", mempoolSettings.maxMemPoolSlots, mempoolMap.size)
+    assertEquals("Wrong mempool size in slots", mempoolSettings.maxMemPoolSlots, mempoolMap.getMempoolSizeInSlots)
+    assertEquals("Wrong non exec mempool size in slots", 1, mempoolMap.getNonExecSubpoolSizeInSlots)
+    assertEquals(mempoolSettings.maxMemPoolSlots - 1, mempoolMap.mempoolTransactions(true).size)
+    assertEquals(1, mempoolMap.mempoolTransactions(false).size)
+    listOfExecTxs.foreach(tx => assertTrue("Exec tx was removed from the mempool", mempoolMap.contains(ModifierId @@ tx.id)))
 
   }
 
@@ -1873,12 +2003,11 @@ class MempoolMapTest
     assertEquals("Wrong number of exec txs", 0, mempoolMap.mempoolTransactions(true).size)
     assertEquals("Wrong number of non exec txs", 2, mempoolMap.mempoolTransactions(false).size)
 
-    //Corner case: cascade deletion. The mempool has nonexec max size = 4 and max size 5. In it there will be 1 non exec
+    //Corner case: no cascade deletion. The mempool has nonexec max size = 4 and max size 5. In it there will be 1 non exec
     // tx and 4 exec txs, each of 1 slot => the mempool is full but the subpool is not. The non exec tx is replaced by 1
-    // tx of 2 slots => the subpool is still under the max size but the mempool is not, so the oldest tx will be evicted.
-    // In this case the oldest is the first exec, its eviction causes the other exec txs to become non exec. So in the end
-    // there will be 4 non exec txs, the 3 former exec and the replacing one. Now the subpool is too big (2 + 3*1 = 5 > 4)
-    // 1 additional tx needs to be evicted=> in the end there will be 3 non exec txs of 4 slots in total
+    // tx of 2 slots => the subpool is still under the max size but the mempool is not, so the cheapest account tail will
+    // be evicted. In this case it is the last exec tx, whose eviction doesn't make other exec txs non exec. So in the end
+    // there will be 3 exec txs and the replacing one, for 5 slots in total
 
     //Reset mempool
 
@@ -1914,13 +2043,14 @@ class MempoolMapTest
       case Failure(e) => fail(s"Adding non exec transaction failed with exception $e", e)
     }
 
-    assertEquals("Wrong number of txs in mempool", 3, mempoolMap.size)
-    assertEquals("Wrong mempool size in slots", 4, mempoolMap.getMempoolSizeInSlots)
-    assertEquals("Wrong non exec mempool size in slots", 4, mempoolMap.getNonExecSubpoolSizeInSlots)
+    assertEquals("Wrong number of txs in mempool", 4, mempoolMap.size)
+    assertEquals("Wrong mempool size in slots", 5, mempoolMap.getMempoolSizeInSlots)
+    assertEquals("Wrong non exec mempool size in slots", 2, mempoolMap.getNonExecSubpoolSizeInSlots)
     assertTrue("replacingTx was not added to the mempool", mempoolMap.contains(ModifierId @@ replacingTx.id))
     assertFalse("txToReplace was not removed from the mempool", mempoolMap.contains(ModifierId @@ txToReplace.id))
-    assertEquals("Wrong number of exec txs", 0, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Wrong number of non exec txs", 3, mempoolMap.mempoolTransactions(false).size)
+    assertFalse("Cheapest tail was not removed from the mempool", mempoolMap.contains(ModifierId @@ listOfExecTxs.last.id))
+    assertEquals("Wrong number of exec txs", 3, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("Wrong number of non exec txs", 1, mempoolMap.mempoolTransactions(false).size)
   }
 
   @Test
@@ -1964,6 +2094,82 @@ class MempoolMapTest
     assertEquals("Wrong number of non exec txs", 4, mempoolMap.mempoolTransactions(false).size)
   }
 
+  @Test
+  def testConcurrentAdd(): Unit = {
+    val numOfAccounts = 20
+    val numOfTxsPerAccount = 5
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider,
+      AccountMempoolSettings(maxNonceGap = numOfTxsPerAccount, maxAccountSlots = numOfTxsPerAccount))
+
+    // The submissions are shuffled, so many txs arrive before the ones with lower nonce and are promoted later.
+    // Every tx is submitted twice.
+    val listOfTxs = createTransactions(numOfAccounts, numOfTxsPerAccount)
+    val submissions = Random.shuffle(listOfTxs ++ listOfTxs).toList
+    val executor = Executors.newFixedThreadPool(8)
+    try {
+      val results = submissions.map(tx => executor.submit(new Callable[Boolean] {
+        override def call(): Boolean = mempoolMap.add(tx).isSuccess
+      }))
+      results.foreach(result => assertTrue("Adding transaction failed", result.get(10, TimeUnit.SECONDS)))
+    } finally {
+      executor.shutdown()
+    }
+
+    assertEquals("Wrong number of txs in mempool", numOfAccounts * numOfTxsPerAccount, mempoolMap.size)
+    assertEquals("Wrong number of exec txs", numOfAccounts * numOfTxsPerAccount, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
+    assertEquals("Wrong non exec mempool size in slots", 0, mempoolMap.getNonExecSubpoolSizeInSlots)
+    listOfTxs.map(_.getFrom).distinct.foreach(account =>
+      assertEquals("Wrong account nonce", BigInteger.valueOf(numOfTxsPerAccount), mempoolMap.getAccountNonce(account).get))
+
+    // The txs of each account come out ordered by nonce
+    val takenTxs = mempoolMap.takeExecutableTxs().toList
+    assertEquals("Wrong number of executable txs", numOfAccounts * numOfTxsPerAccount, takenTxs.size)
+    takenTxs.groupBy(_.getFrom).values.foreach(txsOfAccount =>
+      assertEquals("Wrong nonce order", (0 until numOfTxsPerAccount).map(BigInteger.valueOf(_)), txsOfAccount.map(_.getNonce)))
+  }
+
+  @Test
+  def testAddWithStaleNonce(): Unit = {
+    Mockito.when(accountStateViewMock.getBalance(ArgumentMatchers.any[Address])).thenReturn(BigInteger.TEN.pow(30))
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, AccountMempoolSettings())
+
+    val listOfTxs = (0 to 2).map(nonce => createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.valueOf(nonce), keyOpt = account1KeyOpt))
+    listOfTxs.foreach(tx => assertTrue("Adding transaction failed", mempoolMap.add(tx).isSuccess))
+
+    // A block applies the txs with nonce 0 and 1, then a tx checked against the state before the block arrives
+    mempoolMap.updateAccount(listOfTxs.head.getFrom, BigInteger.ONE)
+    assertEquals("Wrong number of txs in mempool", 1, mempoolMap.size)
+
+    val staleTx = createEIP1559Transaction(value = BigInteger.TWO, nonce = BigInteger.ONE, keyOpt = account1KeyOpt)
+    mempoolMap.add(staleTx) match {
+      case Success(_) => fail("Adding a tx with a nonce already used should have failed")
+      case Failure(e) => assertTrue(s"Wrong exception type: ${e.getClass}", e.isInstanceOf[NonceTooLowException])
+    }
+    assertEquals("Wrong number of txs in mempool", 1, mempoolMap.size)
+    assertEquals("Wrong account nonce", BigInteger.valueOf(3), mempoolMap.getAccountNonce(listOfTxs.head.getFrom).get)
+  }
+
+  @Test
+  def testAddWithStateChanged(): Unit = {
+    Mockito.when(accountStateViewMock.getBalance(ArgumentMatchers.any[Address])).thenReturn(BigInteger.TEN.pow(30))
+    val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider, AccountMempoolSettings())
+
+    // The sender has no tx in the mempool, so its nonce is only known by the state: if a block was applied after the
+    // state reader was taken, the tx cannot be checked and it must not be added
+    val tx = createEIP1559Transaction(value = BigInteger.ONE, nonce = BigInteger.ZERO, keyOpt = account1KeyOpt)
+    mempoolMap.add(tx, accountStateViewMock, () => false) match {
+      case Success(_) => fail("Adding a tx checked against an old state should have failed")
+      case Failure(e) => assertTrue(s"Wrong exception type: ${e.getClass}", e.isInstanceOf[StateChangedException])
+    }
+    assertEquals("Wrong number of txs in mempool", 0, mempoolMap.size)
+    assertTrue("Account should not be in the mempool", mempoolMap.getAccountNonce(tx.getFrom).isEmpty)
+    assertFalse("Tx should not be in the mempool", mempoolMap.contains(tx.id))
+
+    assertTrue("Adding transaction failed", mempoolMap.add(tx, accountStateViewMock, () => true).isSuccess)
+    assertEquals("Wrong number of txs in mempool", 1, mempoolMap.size)
+    assertEquals("Wrong account nonce", BigInteger.ONE, mempoolMap.getAccountNonce(tx.getFrom).get)
+  }
 
 private def createMockTxWithSize(size: Long): EthereumTransaction = {
   val dummyTx = createEIP1559Transaction(value = BigInteger.ONE)
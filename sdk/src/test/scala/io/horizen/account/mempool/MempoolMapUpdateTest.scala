@@ -807,7 +807,7 @@ class MempoolMapUpdateTest extends JUnitSuite with EthereumTransactionFixture wi
     val txB4 = createEIP1559Transaction(value = BigInteger.TEN, nonce = BigInteger.valueOf(4), keyOpt = accountKeyBOpt)
     val txB5 = createEIP1559Transaction(value = BigInteger.TEN, nonce = BigInteger.valueOf(5), keyOpt = accountKeyBOpt)
 
-    // Test 1: Txs from reverted blocks exceed mempool size. Verify that oldest txs are evicted
+    // Test 1: Txs from reverted blocks exceed mempool size. Verify that the oldest account tails are evicted
 
     //Initialize mempool
     val mempoolMap = new MempoolMap(accountStateProvider,
@@ -832,7 +832,8 @@ class MempoolMapUpdateTest extends JUnitSuite with EthereumTransactionFixture wi
 
 
     //Prepare blocks. The rejected txs occupy 4 slots, there are already 6 slots occupied => total size 10 > maxMemPoolSlots (8)
-    // txA3, that occupies 4 slots and it is the oldest, should be evicted.
+    // All the txs have the same price, so the oldest account tails are evicted: txA4 first and then txA3, that becomes
+    // the tail of account A and is older than txB5.
     val listOfTxsToReAdd = Seq[SidechainTypes#SCAT](txB1, txB2, txB3, txB4)
     val listOfTxsToRemove = Seq.empty[SidechainTypes#SCAT]
     Mockito.when(rejectedBlock.transactions).thenReturn(listOfTxsToReAdd)
@@ -843,34 +844,36 @@ class MempoolMapUpdateTest extends JUnitSuite with EthereumTransactionFixture wi
       .when(accountStateViewMock.getNonce(addressB))
       .thenReturn(BigInteger.valueOf(1))
 
-    //After the update txA4, txB1, txB2, txB3, txB4 and txB5 will be in the mempool
+    //After the update txB1, txB2, txB3, txB4 and txB5 will be in the mempool
 
     val newExecTxs = mempoolMap.updateMemPool(listOfRejectedBlocks, listOfAppliedBlocks)
 
-    assertEquals("Wrong mempool size in slots", 6, mempoolMap.getMempoolSizeInSlots)
-    assertEquals("Wrong non exec mempool size in slots", 1, mempoolMap.getNonExecSubpoolSizeInSlots)
+    assertEquals("Wrong mempool size in slots", 5, mempoolMap.getMempoolSizeInSlots)
+    assertEquals("Wrong non exec mempool size in slots", 0, mempoolMap.getNonExecSubpoolSizeInSlots)
     assertEquals("Wrong number of exec txs", 5, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Wrong number of non exec txs", 1, mempoolMap.mempoolTransactions(false).size)
-    assertEquals("Wrong number of txs in the mempool", 6, mempoolMap.size)
+    assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
+    assertEquals("Wrong number of txs in the mempool", 5, mempoolMap.size)
     assertEquals("Wrong number of new exec txs", 4, newExecTxs.size)
     assertTrue(mempoolMap.contains(ModifierId @@ txB1.id))
     assertTrue(mempoolMap.contains(ModifierId @@ txB2.id))
-    assertTrue(mempoolMap.contains(ModifierId @@ txA4.id))
     assertTrue(mempoolMap.contains(ModifierId @@ txB3.id))
     assertTrue(mempoolMap.contains(ModifierId @@ txB4.id))
     assertTrue(mempoolMap.contains(ModifierId @@ txB5.id))
 
     //Verify that the rejected txs are "younger" than the txs that were already in the mempool.
-    //Fill again the mempool and check that the eviction order is the same as the expected age order.
-    //First will be evicted the txs that were in the mempool, then the txs reinjected, in reverse order respect the nonce order
+    //Fill again the mempool and check that the eviction order is the same as the expected age order of the account B
+    //tails: first txB5, that was already in the mempool, then the txs reinjected, in reverse order respect the nonce order.
+    //txA5 is added after the reinjected txs, so it is younger than all of them.
     mempoolMap.add(txA5).get //Add 2 slots
-    val orderedTxs: Array[ModifierId] = Array(ModifierId @@ txA4.id, ModifierId @@ txB5.id, ModifierId @@ txB4.id, ModifierId @@ txB3.id, ModifierId @@ txB2.id, ModifierId @@ txB1.id)
     val accountKeyCOpt: Option[PrivateKeySecp256k1] = Some(PrivateKeySecp256k1Creator.getInstance().generateSecret("mempoolmaptest3".getBytes()))
-    (0 to 5).foreach { idx =>
+    mempoolMap.add(createEIP1559Transaction(value = BigInteger.TEN, nonce = BigInteger.ZERO, keyOpt = accountKeyCOpt)).get //Mempool full
+    val orderedTxs: Array[ModifierId] = Array(ModifierId @@ txB5.id, ModifierId @@ txB4.id, ModifierId @@ txB3.id, ModifierId @@ txB2.id, ModifierId @@ txB1.id)
+    (0 to 4).foreach { idx =>
       assertTrue(mempoolMap.contains(ModifierId @@ orderedTxs(idx)))
-      mempoolMap.add(createEIP1559Transaction(value = BigInteger.TEN, nonce = BigInteger.valueOf(idx), keyOpt = accountKeyCOpt))
+      mempoolMap.add(createEIP1559Transaction(value = BigInteger.TEN, nonce = BigInteger.valueOf(idx + 1), keyOpt = accountKeyCOpt))
       assertFalse(s"Transaction $idx is still in mempool", mempoolMap.contains(ModifierId @@ orderedTxs(idx)))
     }
+    assertTrue("txA5 was removed from the mempool", mempoolMap.contains(ModifierId @@ txA5.id))
   }
 
 
@@ -1011,8 +1014,8 @@ class MempoolMapUpdateTest extends JUnitSuite with EthereumTransactionFixture wi
     assertEquals("Wrong number of exec txs", 9, mempoolMap.mempoolTransactions(true).size)
     assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
 
-    //Now 2 additional exec txs are reinjected. The total number of txs will be 11, so the oldest tx will be evicted.
-    // This eviction will created 8 non exec txs => 4 non exec txs will be removed as well
+    //Now 2 additional exec txs are reinjected. The total number of txs will be 11, so the cheapest account tail will be
+    // evicted: the reinjected tx with the highest nonce, that has a lower max fee than the other txs. No tx becomes non exec.
 
     listOfTxsToReAdd = Seq(listOfTxsAccountC(0), listOfTxsAccountC(1))
     listOfTxsToRemove = Seq.empty[SidechainTypes#SCAT]
@@ -1020,11 +1023,12 @@ class MempoolMapUpdateTest extends JUnitSuite with EthereumTransactionFixture wi
     Mockito.when(appliedBlock.transactions).thenReturn(listOfTxsToRemove)
 
     newExecTxs = mempoolMap.updateMemPool(listOfRejectedBlocks, listOfAppliedBlocks)
-    assertEquals("Wrong number of txs in the mempool", 6, mempoolMap.size)
-    assertEquals("Wrong mempool size in slots", 6, mempoolMap.getMempoolSizeInSlots)
-    assertEquals("Wrong non exec mempool size in slots", 4, mempoolMap.getNonExecSubpoolSizeInSlots)
-    assertEquals("Wrong number of exec txs", 2, mempoolMap.mempoolTransactions(true).size)
-    assertEquals("Wrong number of non exec txs", 4, mempoolMap.mempoolTransactions(false).size)
+    assertEquals("Wrong number of txs in the mempool", 10, mempoolMap.size)
+    assertEquals("Wrong mempool size in slots", 10, mempoolMap.getMempoolSizeInSlots)
+    assertEquals("Wrong non exec mempool size in slots", 0, mempoolMap.getNonExecSubpoolSizeInSlots)
+    assertEquals("Wrong number of exec txs", 10, mempoolMap.mempoolTransactions(true).size)
+    assertEquals("Wrong number of non exec txs", 0, mempoolMap.mempoolTransactions(false).size)
+    assertFalse("Cheapest tail was not removed from the mempool", mempoolMap.contains(ModifierId @@ listOfTxsAccountC(1).id))
     assertEquals("Wrong number of new exec txs", 2, newExecTxs.size)
 
   }
@@ -0,0 +1,73 @@
+package io.horizen.account.node
+
+import io.horizen.account.block.AccountBlock
+import io.horizen.account.history.AccountHistory
+import io.horizen.account.mempool.AccountMemoryPool
+import io.horizen.account.state.AccountState
+import io.horizen.account.wallet.AccountWallet
+import org.junit.Assert._
+import org.junit.Test
+import org.mockito.Mockito
+import org.scalatestplus.junit.JUnitSuite
+import org.scalatestplus.mockito.MockitoSugar
+import sparkz.core.NodeViewHolder.CurrentView
+import sparkz.util.bytesToId
+
+class AccountNodeViewSnapshotProviderTest extends JUnitSuite with MockitoSugar {
+
+  private def nodeView(bestBlockId: Array[Byte], height: Int, stateRoot: Array[Byte]): CurrentView[AccountHistory, AccountState, AccountWallet, AccountMemoryPool] = {
+    val history = mock[AccountHistory]
+    Mockito.when(history.bestBlockId).thenReturn(bytesToId(bestBlockId))
+    Mockito.when(history.bestBlock).thenReturn(mock[AccountBlock])
+    Mockito.when(history.getCurrentHeight).thenReturn(height)
+    Mockito.when(history.activeChainIds).thenReturn((1 to height).map(h => bytesToId(Array.fill(32)(h.toByte))).toVector)
+    val state = mock[AccountState]
+    Mockito.when(state.getAccountStateRoot).thenReturn(stateRoot)
+    Mockito.when(state.stateMetadataVersion).thenReturn("version")
+    CurrentView(history, state, mock[AccountWallet], mock[AccountMemoryPool])
+  }
+
+  @Test
+  def testPublish(): Unit = {
+    val provider = new AccountNodeViewSnapshotProvider
+    assertTrue("No snapshot expected before the first publication", provider.snapshot.isEmpty)
+
+    val firstView = nodeView(Array.fill(32)(1.toByte), 10, Array.fill(32)(2.toByte))
+    val first = provider.publish(firstView)
+    assertEquals(0L, first.sequenceNumber)
+    assertEquals(bytesToId(Array.fill(32)(1.toByte)), first.bestBlockId)
+    assertEquals(10, first.bestBlockHeight)
+    assertSame(firstView.history.bestBlock, first.bestBlock)
+    assertArrayEquals(Array.fill(32)(2.toByte), first.stateRoot)
+    assertEquals("version", first.stateMetadataVersion)
+    assertSame(first, provider.snapshot.get)
+
+    val secondView = nodeView(Array.fill(32)(3.toByte), 11, Array.fill(32)(4.toByte))
+    val second = provider.publish(secondView)
+    assertEquals(1L, second.sequenceNumber)
+    assertSame(secondView, provider.snapshot.get.nodeView)
+    // a published snapshot is never modified by the following publications
+    assertSame(firstView, first.nodeView)
+    assertEquals(bytesToId(Array.fill(32)(1.toByte)), first.bestBlockId)
+    assertEquals(10, first.bestBlockHeight)
+  }
+
+  @Test
+  def testTipNotChangedByHistory(): Unit = {
+    val provider = new AccountNodeViewSnapshotProvider
+    val view = nodeView(Array.fill(32)(1.toByte), 10, Array.fill(32)(2.toByte))
+    val snapshot = provider.publish(view)
+
+    // the history referenced by the snapshot moves on with the next blocks, the tip of the snapshot does not
+    Mockito.when(view.history.bestBlockId).thenReturn(bytesToId(Array.fill(32)(5.toByte)))
+    Mockito.when(view.history.getCurrentHeight).thenReturn(11)
+    Mockito.when(view.state.getAccountStateRoot).thenReturn(Array.fill(32)(6.toByte))
+    Mockito.when(view.history.activeChainIds).thenReturn((1 to 11).map(h => bytesToId(Array.fill(32)((h + 100).toByte))).toVector)
+    assertEquals(bytesToId(Array.fill(32)(1.toByte)), snapshot.bestBlockId)
+    assertEquals(10, snapshot.bestBlockHeight)
+    assertArrayEquals(Array.fill(32)(2.toByte), snapshot.stateRoot)
+    assertEquals(Some(bytesToId(Array.fill(32)(10.toByte))), snapshot.blockIdByHeight(10))
+    assertEquals(None, snapshot.blockIdByHeight(11))
+    assertEquals(None, snapshot.blockIdByHeight(0))
+  }
+}
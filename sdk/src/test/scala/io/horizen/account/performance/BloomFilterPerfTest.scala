@@ -0,0 +1,92 @@
+package io.horizen.account.performance
+
+import io.horizen.account.api.rpc.service.BloomQuery
+import io.horizen.account.utils.Bloom
+import io.horizen.evm.{Address, Hash}
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+
+import java.io.{BufferedWriter, FileWriter}
+import java.util.Calendar
+import scala.util.Random
+
+class BloomFilterPerfTest {
+
+  private def randomBytes(length: Int): Array[Byte] = {
+    val bytes = new Array[Byte](length)
+    Random.nextBytes(bytes)
+    bytes
+  }
+
+  /*
+  This method compares the bloom tests of a multi-topic log filter over the blooms of many blocks, done by hashing
+  the filter addresses and topics for every block, as RpcFilter used to do, with the tests done with the filter
+  compiled once to the bits it sets in a bloom.
+   */
+  @Test
+  @Ignore
+  def testMultiTopicFilter(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/bloomFilterTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Bloom filter matching performance test                     *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfBlocks = 100000
+      val numOfLogsPerBlock = 10
+      val numOfTopicsPerLog = 3
+
+      val addresses = (1 to 3).map(_ => new Address(randomBytes(Address.LENGTH))).toArray
+      val topics = Array(
+        (1 to 2).map(_ => new Hash(randomBytes(Hash.LENGTH))).toArray,
+        Array.empty[Hash],
+        (1 to 3).map(_ => new Hash(randomBytes(Hash.LENGTH))).toArray
+      )
+
+      println(s"Creating the blooms of $numOfBlocks blocks...")
+      val blooms = (0 until numOfBlocks).map { i =>
+        val bloom = new Bloom()
+        (0 until numOfLogsPerBlock).foreach { _ =>
+          bloom.add(randomBytes(Address.LENGTH))
+          (0 until numOfTopicsPerLog).foreach(_ => bloom.add(randomBytes(Hash.LENGTH)))
+        }
+        // one block out of 100 contains logs matching the filter
+        if (i % 100 == 0) {
+          bloom.add(addresses(i % addresses.length).toBytes)
+          bloom.add(topics(0)(i % topics(0).length).toBytes)
+          bloom.add(topics(2)(i % topics(2).length).toBytes)
+        }
+        bloom
+      }
+
+      // bloom test with the filter hashed for every block
+      var startTime = System.nanoTime()
+      val hashedMatches = blooms.count(bloom =>
+        addresses.map(_.toBytes).exists(bloom.test) &&
+          topics.forall(sub => sub.length == 0 || sub.map(_.toBytes).exists(bloom.test)))
+      val hashedTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      // bloom test with the filter compiled once
+      startTime = System.nanoTime()
+      val bloomQuery = BloomQuery(addresses, topics)
+      val compiledMatches = blooms.count(bloomQuery.matches)
+      val compiledTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      // Sanity check
+      assertEquals(hashedMatches, compiledMatches)
+
+      println(s"$numOfBlocks blocks, $compiledMatches matches: hashed $hashedTimeMs ms, compiled $compiledTimeMs ms")
+      out.write(s"Number of blocks:                          $numOfBlocks\n")
+      out.write(s"Number of logs per block:                  $numOfLogsPerBlock\n")
+      out.write(s"Number of matching blocks:                 $compiledMatches\n")
+      out.write(s"Duration with the filter hashed per block: $hashedTimeMs ms\n")
+      out.write(s"Duration with the compiled filter:         $compiledTimeMs ms\n\n")
+    } finally {
+      out.close()
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package io.horizen.account.performance
+
+import io.horizen.account.fixtures.EthereumTransactionFixture
+import io.horizen.account.mempool.MempoolMap
+import io.horizen.account.state.{AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider}
+import io.horizen.account.transaction.EthereumTransaction
+import io.horizen.evm.Address
+import io.horizen.state.BaseStateReader
+import io.horizen.{AccountMempoolSettings, SidechainTypes}
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+import org.mockito.{ArgumentMatchers, Mockito}
+import org.scalatestplus.mockito.MockitoSugar
+
+import java.io.{BufferedWriter, FileWriter}
+import java.math.BigInteger
+import java.util.Calendar
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.{Callable, Executors, TimeUnit}
+import scala.collection.JavaConverters._
+
+class MempoolAdmissionPerfTest extends MockitoSugar with EthereumTransactionFixture {
+
+  private val numOfAccounts = 2000
+  private val numOfTxsPerAccount = 5
+  private val numOfTxs = numOfAccounts * numOfTxsPerAccount
+  private val numOfSubmitters = 8
+  // duration of the state nonce lookup of each tx
+  private val stateLookupNanos = 20000L
+
+  private def createMempool(): MempoolMap = {
+    val accountStateViewMock = mock[AccountStateReader](Mockito.withSettings().stubOnly())
+    Mockito.when(accountStateViewMock.getNonce(ArgumentMatchers.any[Address])).thenAnswer(_ => {
+      LockSupport.parkNanos(stateLookupNanos)
+      BigInteger.ZERO
+    })
+    val accountStateProvider: AccountStateReaderProvider = () => accountStateViewMock
+    val baseStateViewMock = mock[BaseStateReader]
+    Mockito.when(baseStateViewMock.getNextBaseFee).thenReturn(BigInteger.ZERO)
+    val baseStateProvider: BaseStateReaderProvider = () => baseStateViewMock
+
+    new MempoolMap(accountStateProvider, baseStateProvider,
+      AccountMempoolSettings(maxNonceGap = numOfTxsPerAccount, maxAccountSlots = numOfTxsPerAccount, maxMemPoolSlots = numOfTxs))
+  }
+
+  /**
+   * Submits the txs from numOfSubmitters threads and returns the elapsed time in ms. The txs of an account are all
+   * submitted in nonce order by the same thread, as a client would do.
+   */
+  private def submit(listOfTxs: Seq[EthereumTransaction], add: SidechainTypes#SCAT => Unit): Long = {
+    // the txs are ordered by nonce and then by account, the sender is not looked up here to not recover it in advance
+    val txsBySubmitter = listOfTxs.zipWithIndex.groupBy { case (_, idx) => (idx % numOfAccounts) % numOfSubmitters }
+      .values.map(_.sortBy(_._2).map(_._1))
+    val executor = Executors.newFixedThreadPool(numOfSubmitters)
+    try {
+      val tasks = txsBySubmitter.map(txs => new Callable[Unit] {
+        override def call(): Unit = txs.foreach(tx => add(tx.asInstanceOf[SidechainTypes#SCAT]))
+      })
+      val startTime = System.nanoTime()
+      executor.invokeAll(tasks.toSeq.asJava).asScala.foreach(_.get())
+      (System.nanoTime() - startTime) / 1000000
+    } finally {
+      executor.shutdown()
+      executor.awaitTermination(1, TimeUnit.MINUTES)
+    }
+  }
+
+  /*
+  This method measures the accepted txs per second with many threads submitting txs of different accounts. It compares
+  the additions serialized one at a time, as they are when they all go through the node view holder actor, with the
+  concurrent additions of the txs of different accounts. Each addition includes the sender recovery and a state
+  lookup of stateLookupNanos.
+   */
+  @Test
+  @Ignore
+  def testConcurrentSubmitters(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/mempoolAdmissionTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Mempool admission with concurrent submitters test          *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      // different accounts for the two runs, otherwise the second one would find the senders already recovered
+      println("Creating transactions...")
+      val serializedTxs = createTransactions(numOfAccounts, numOfTxsPerAccount)
+      val concurrentTxs = createTransactions(numOfAccounts, numOfTxsPerAccount, seed = numOfAccounts)
+
+      println("Starting test with serialized additions")
+      val serializedMempool = createMempool()
+      val actorLock = new Object
+      val serializedTimeMs = submit(serializedTxs, tx => actorLock.synchronized(serializedMempool.add(tx).get))
+
+      println("Starting test with concurrent additions")
+      val concurrentMempool = createMempool()
+      val concurrentTimeMs = submit(concurrentTxs, tx => concurrentMempool.add(tx).get)
+
+      // Sanity check
+      assertEquals(numOfTxs, serializedMempool.size)
+      assertEquals(numOfTxs, concurrentMempool.mempoolTransactions(true).size)
+
+      val serializedTxsPerSec = numOfTxs * 1000L / math.max(serializedTimeMs, 1)
+      val concurrentTxsPerSec = numOfTxs * 1000L / math.max(concurrentTimeMs, 1)
+      println(s"$numOfTxs txs from $numOfSubmitters submitters: serialized $serializedTxsPerSec tx/s, " +
+        s"concurrent $concurrentTxsPerSec tx/s")
+      out.write(s"Number of accounts:                        $numOfAccounts\n")
+      out.write(s"Number of transactions for each account:   $numOfTxsPerAccount\n")
+      out.write(s"Number of submitting threads:              $numOfSubmitters\n")
+      out.write(s"State lookup duration:                     ${stateLookupNanos / 1000} us\n")
+      out.write(s"Duration with serialized additions:        $serializedTimeMs ms ($serializedTxsPerSec tx/s)\n")
+      out.write(s"Duration with concurrent additions:        $concurrentTimeMs ms ($concurrentTxsPerSec tx/s)\n\n")
+    } finally {
+      out.close()
+    }
+  }
+}
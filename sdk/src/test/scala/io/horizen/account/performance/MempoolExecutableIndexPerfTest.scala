@@ -0,0 +1,104 @@
+package io.horizen.account.performance
+
+import io.horizen.account.fixtures.EthereumTransactionFixture
+import io.horizen.account.mempool.MempoolMap
+import io.horizen.account.state.{AccountStateReader, AccountStateReaderProvider, BaseStateReaderProvider}
+import io.horizen.evm.Address
+import io.horizen.state.BaseStateReader
+import io.horizen.{AccountMempoolSettings, SidechainTypes}
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+import org.mockito.{ArgumentMatchers, Mockito}
+import org.scalatestplus.mockito.MockitoSugar
+
+import java.io.{BufferedWriter, FileWriter}
+import java.math.BigInteger
+import java.util.Calendar
+import scala.collection.mutable
+
+class MempoolExecutableIndexPerfTest extends MockitoSugar with EthereumTransactionFixture {
+
+  /*
+  This method measures the time needed to get the first transactions of a block from a mempool with many accounts.
+  It compares the ordering of the executable heads of all the accounts done from scratch for every request, as
+  MempoolMap.takeExecutableTxs used to do, with the iteration over the price ordered index kept by the mempool.
+   */
+  @Test
+  @Ignore
+  def testTakeExecutableTxs(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/mempoolExecutableIndexTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Mempool executable txs index performance test              *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfAccounts = 50000
+      val numOfTxsPerAccount = 2
+      val numOfTxs = numOfAccounts * numOfTxsPerAccount
+      val numOfRequests = 100
+      val numOfTxsPerRequest = 1000
+      val baseFee = BigInteger.ZERO
+
+      val accountStateViewMock = mock[AccountStateReader]
+      Mockito.when(accountStateViewMock.getNonce(ArgumentMatchers.any[Address])).thenReturn(BigInteger.ZERO)
+      val accountStateProvider: AccountStateReaderProvider = () => accountStateViewMock
+      val baseStateViewMock = mock[BaseStateReader]
+      Mockito.when(baseStateViewMock.getNextBaseFee).thenReturn(baseFee)
+      val baseStateProvider: BaseStateReaderProvider = () => baseStateViewMock
+
+      val mempoolMap = new MempoolMap(accountStateProvider, baseStateProvider,
+        AccountMempoolSettings(maxNonceGap = numOfTxsPerAccount, maxAccountSlots = numOfTxsPerAccount, maxMemPoolSlots = numOfTxs))
+
+      println("Creating transactions...")
+      val listOfTxs = createTransactions(numOfAccounts, numOfTxsPerAccount)
+
+      println("Adding transactions to mempool...")
+      listOfTxs.foreach(tx => mempoolMap.add(tx.asInstanceOf[SidechainTypes#SCAT]).get)
+
+      // Sanity check
+      assertEquals(numOfTxs, mempoolMap.size)
+
+      def txOrder(tx: SidechainTypes#SCAT): BigInteger = tx.getMaxFeePerGas.subtract(baseFee).min(tx.getMaxPriorityFeePerGas)
+
+      val heads = listOfTxs.filter(_.getNonce.signum() == 0).map(_.asInstanceOf[SidechainTypes#SCAT])
+
+      // heads of all the accounts ordered from scratch for every request
+      println("Starting test with the heads ordered for every request")
+      var startTime = System.nanoTime()
+      (1 to numOfRequests).foreach { _ =>
+        val orderedQueue = new mutable.PriorityQueue[SidechainTypes#SCAT]()(Ordering.by(txOrder))
+        heads.foreach(orderedQueue.enqueue(_))
+        (1 to numOfTxsPerRequest).foreach(_ => orderedQueue.dequeue())
+      }
+      val rebuiltTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      // heads of all the accounts from the index, the first request builds it
+      println("Starting test with the index")
+      startTime = System.nanoTime()
+      val firstRequest = mempoolMap.takeExecutableTxs().iterator.take(numOfTxsPerRequest).size
+      val firstRequestTimeMs = (System.nanoTime() - startTime) / 1000000
+      startTime = System.nanoTime()
+      (2 to numOfRequests).foreach(_ => mempoolMap.takeExecutableTxs().iterator.take(numOfTxsPerRequest).size)
+      val indexedTimeMs = firstRequestTimeMs + (System.nanoTime() - startTime) / 1000000
+
+      // Sanity check
+      assertEquals(numOfTxsPerRequest, firstRequest)
+
+      println(s"$numOfRequests requests: ordered per request $rebuiltTimeMs ms, index $indexedTimeMs ms " +
+        s"(index build $firstRequestTimeMs ms)")
+      out.write(s"Number of accounts:                        $numOfAccounts\n")
+      out.write(s"Number of transactions for each account:   $numOfTxsPerAccount\n")
+      out.write(s"Number of requests:                        $numOfRequests\n")
+      out.write(s"Number of transactions per request:        $numOfTxsPerRequest\n")
+      out.write(s"Duration with heads ordered per request:   $rebuiltTimeMs ms\n")
+      out.write(s"Duration with the index:                   $indexedTimeMs ms\n")
+      out.write(s"Duration of the first request (build):     $firstRequestTimeMs ms\n\n")
+    } finally {
+      out.close()
+    }
+  }
+}
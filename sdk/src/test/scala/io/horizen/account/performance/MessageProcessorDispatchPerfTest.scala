@@ -0,0 +1,74 @@
+package io.horizen.account.performance
+
+import io.horizen.account.state._
+import io.horizen.account.utils.ZenWeiConverter
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+
+import java.io.{BufferedWriter, FileWriter}
+import java.math.BigInteger
+import java.util.Calendar
+
+class MessageProcessorDispatchPerfTest extends MessageProcessorFixture {
+
+  /*
+  This method measures the throughput of plain transfers applied to a state view, and compares the selection of the
+  message processor of an invocation done by MessageProcessorDispatcher with the linear scan calling canProcess on
+  every processor.
+   */
+  @Test
+  @Ignore
+  def testPlainTransfersThroughput(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/messageProcessorDispatchTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Message processor dispatch performance test                *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val processors = Seq(EoaMessageProcessor, WithdrawalMsgProcessor, new EvmMessageProcessor())
+      val numOfTransfers = 100000
+      val recipients = (1 to 1000).map(_ => randomAddress)
+
+      usingView(processors) { view =>
+        processors.foreach(_.init(view, 0))
+        view.addBalance(origin, ZenWeiConverter.MAX_MONEY_IN_WEI)
+        val blockGasPool = new GasPool(BigInteger.valueOf(Long.MaxValue))
+
+        val messages = (0 until numOfTransfers).map(i =>
+          getMessage(recipients(i % recipients.size), BigInteger.ONE, nonce = BigInteger.valueOf(i)))
+
+        var startTime = System.nanoTime()
+        messages.foreach(msg => view.applyMessage(msg, blockGasPool, defaultBlockContext))
+        val transfersTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        // Sanity check
+        assertEquals(BigInteger.valueOf(numOfTransfers), view.getNonce(origin))
+
+        val invocations = messages.take(10000).map(msg => Invocation.fromMessage(msg, new GasPool(BigInteger.ONE)))
+        val dispatcher = MessageProcessorDispatcher(processors)
+
+        startTime = System.nanoTime()
+        invocations.foreach(invocation => processors.find(_.canProcess(invocation, view, 0)))
+        val scanTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        startTime = System.nanoTime()
+        invocations.foreach(invocation => dispatcher.find(invocation, view, 0))
+        val dispatchTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        val throughput = if (transfersTimeMs > 0) numOfTransfers * 1000L / transfersTimeMs else numOfTransfers * 1000L
+        println(s"$numOfTransfers transfers in $transfersTimeMs ms, linear scan $scanTimeMs ms, dispatch $dispatchTimeMs ms")
+        out.write(s"Number of transfers:                       $numOfTransfers\n")
+        out.write(s"Duration of transfers:                     $transfersTimeMs ms\n")
+        out.write(s"Throughput:                                $throughput transfers/s\n")
+        out.write(s"Duration of ${invocations.size} linear scan selections:  $scanTimeMs ms\n")
+        out.write(s"Duration of ${invocations.size} dispatcher selections:   $dispatchTimeMs ms\n\n")
+      }
+    } finally {
+      out.close()
+    }
+  }
+}
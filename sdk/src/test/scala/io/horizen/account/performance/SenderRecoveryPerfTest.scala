@@ -0,0 +1,79 @@
+package io.horizen.account.performance
+
+import io.horizen.account.fixtures.EthereumTransactionFixture
+import io.horizen.account.secret.PrivateKeySecp256k1Creator
+import io.horizen.account.transaction.{EthereumTransaction, SenderRecoveryService}
+import io.horizen.account.utils.ZenWeiConverter
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+
+import java.io.{BufferedWriter, FileWriter}
+import java.math.BigInteger
+import java.util.Calendar
+import scala.collection.JavaConverters._
+
+class SenderRecoveryPerfTest extends EthereumTransactionFixture {
+
+  /*
+  This method compares the time needed for recovering the senders of 10k transactions one by one, as the first
+  getFrom call on each transaction does, with the parallel recovery of SenderRecoveryService. Every measurement uses
+  different transactions, so that the senders are not already in the cache.
+   */
+  @Test
+  @Ignore
+  def testRecoverSenders(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/senderRecoveryTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    val senderRecoveryService = new SenderRecoveryService(0, SenderRecoveryService.DEFAULT_SENDER_CACHE_SIZE)
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*              Sender recovery performance test                    *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfTxs = 10000
+      val numOfAccounts = 100
+      val keys = (1 to numOfAccounts).map(i => PrivateKeySecp256k1Creator.getInstance().generateSecret(BigInteger.valueOf(i).toByteArray))
+
+      def createTxs(firstNonce: Int): Seq[EthereumTransaction] = {
+        println(s"Creating $numOfTxs transactions...")
+        (0 until numOfTxs).map(i => createEIP1559Transaction(
+          value = ZenWeiConverter.convertZenniesToWei(1),
+          nonce = BigInteger.valueOf(firstNonce + i / numOfAccounts),
+          keyOpt = Some(keys(i % numOfAccounts))))
+      }
+
+      val sequentialTxs = createTxs(0)
+      val parallelTxs = createTxs(numOfTxs)
+
+      var startTime = System.nanoTime()
+      sequentialTxs.foreach(_.getFrom)
+      val sequentialTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      startTime = System.nanoTime()
+      senderRecoveryService.recoverSenders(parallelTxs.asJava)
+      val parallelTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      // Sanity check
+      parallelTxs.zipWithIndex.foreach { case (tx, i) => assertEquals(keys(i % numOfAccounts).publicImage(), tx.getFrom) }
+
+      // the senders of copies of the same transactions come from the cache
+      val copies = parallelTxs.map(tx => new EthereumTransaction(tx, tx.getSignature))
+      startTime = System.nanoTime()
+      senderRecoveryService.recoverSenders(copies.asJava)
+      val cachedTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      println(s"Sequential recovery: $sequentialTimeMs ms, parallel recovery: $parallelTimeMs ms, cached: $cachedTimeMs ms")
+      out.write(s"Number of transactions:                    $numOfTxs\n")
+      out.write(s"Number of cores:                           ${Runtime.getRuntime.availableProcessors()}\n")
+      out.write(s"Duration of sequential recovery:           $sequentialTimeMs ms\n")
+      out.write(s"Duration of parallel recovery:             $parallelTimeMs ms\n")
+      out.write(s"Duration of recovery of cached senders:    $cachedTimeMs ms\n\n")
+    } finally {
+      senderRecoveryService.close()
+      out.close()
+    }
+  }
+}
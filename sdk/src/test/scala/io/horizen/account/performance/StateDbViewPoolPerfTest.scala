@@ -0,0 +1,74 @@
+package io.horizen.account.performance
+
+import io.horizen.account.AccountFixture
+import io.horizen.account.state.{MessageProcessor, MessageProcessorDispatcher, StateDbAccountStateView, StateDbViewPool}
+import io.horizen.evm.{Hash, MemoryDatabase, StateDB}
+import io.horizen.utils.ClosableResourceHandler
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+
+import java.io.{BufferedWriter, FileWriter}
+import java.math.BigInteger
+import java.util.Calendar
+
+class StateDbViewPoolPerfTest extends AccountFixture with ClosableResourceHandler {
+
+  /*
+  This method compares the lookups of account nonces done by opening a StateDB view for every lookup, as the
+  AccountState getters used to do, with the lookups done through the pool of read-only views.
+   */
+  @Test
+  @Ignore
+  def testNonceLookups(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/stateDbViewPoolTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        StateDB view pool performance test                         *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfAccounts = 10000
+      val numOfLookups = 100000
+      val messageProcessors = Seq.empty[MessageProcessor]
+
+      using(new MemoryDatabase()) { db =>
+        println(s"Creating $numOfAccounts accounts...")
+        val addresses = (1 to numOfAccounts).map(_ => randomAddress)
+        val stateRoot = using(new StateDB(db, Hash.ZERO)) { stateDb =>
+          addresses.foreach(address => stateDb.setNonce(address, BigInteger.TEN))
+          stateDb.commit().toBytes
+        }
+
+        var startTime = System.nanoTime()
+        (0 until numOfLookups).foreach(i =>
+          using(new StateDbAccountStateView(new StateDB(db, new Hash(stateRoot)), messageProcessors))(
+            _.getNonce(addresses(i % numOfAccounts))))
+        val openPerCallTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        val pooledTimeMs = using(new StateDbViewPool(db, messageProcessors, MessageProcessorDispatcher(messageProcessors))) { pool =>
+          // the views are pooled at the current state root only
+          pool.setStateRoot(stateRoot)
+          startTime = System.nanoTime()
+          (0 until numOfLookups).foreach(i =>
+            pool.withView(stateRoot)(_.getNonce(addresses(i % numOfAccounts))))
+          val timeMs = (System.nanoTime() - startTime) / 1000000
+
+          // Sanity check
+          assertEquals(BigInteger.TEN, pool.withView(stateRoot)(_.getNonce(addresses.head)))
+          timeMs
+        }
+
+        println(s"$numOfLookups lookups: open per call $openPerCallTimeMs ms, pooled $pooledTimeMs ms")
+        out.write(s"Number of accounts:                        $numOfAccounts\n")
+        out.write(s"Number of lookups:                         $numOfLookups\n")
+        out.write(s"Duration with a view opened per lookup:    $openPerCallTimeMs ms\n")
+        out.write(s"Duration with pooled views:                $pooledTimeMs ms\n\n")
+      }
+    } finally {
+      out.close()
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package io.horizen.account.state
+
+import io.horizen.evm.Address
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mockito.{ArgumentMatchers, Mockito}
+import org.scalatestplus.junit.JUnitSuite
+import org.scalatestplus.mockito.MockitoSugar
+
+import java.math.BigInteger
+
+class MessageProcessorDispatcherTest extends JUnitSuite with MockitoSugar with MessageProcessorFixture {
+
+  private def invocation(to: Option[Address]): Invocation =
+    Invocation(randomAddress, to, BigInteger.ZERO, Array.emptyByteArray, new GasPool(BigInteger.ONE), readOnly = false)
+
+  @Test
+  def testDispatch(): Unit = {
+    val customProcessor = mock[MessageProcessor]
+    val evmProcessor = new EvmMessageProcessor()
+    val processors = Seq(EoaMessageProcessor, WithdrawalMsgProcessor, customProcessor, evmProcessor)
+    val dispatcher = MessageProcessorDispatcher(processors)
+
+    val eoaAddress = randomAddress
+    val contractAddress = randomAddress
+    val customAddress = randomAddress
+    val view = mock[BaseAccountStateView]
+    Mockito.when(view.isEoaAccount(ArgumentMatchers.any[Address])).thenAnswer(args => args.getArgument(0) == eoaAddress)
+    Mockito.when(view.isSmartContractAccount(ArgumentMatchers.any[Address])).thenAnswer(args => args.getArgument(0) != eoaAddress)
+    Mockito.when(customProcessor.canProcess(ArgumentMatchers.any[Invocation], ArgumentMatchers.any[BaseAccountStateView], ArgumentMatchers.anyInt()))
+      .thenAnswer(args => args.getArgument(0).asInstanceOf[Invocation].callee.contains(customAddress))
+
+    assertEquals(Some(EoaMessageProcessor), dispatcher.find(invocation(Some(eoaAddress)), view, 0))
+    assertEquals(Some(WithdrawalMsgProcessor), dispatcher.find(invocation(Some(WithdrawalMsgProcessor.contractAddress)), view, 0))
+    assertEquals(Some(customProcessor), dispatcher.find(invocation(Some(customAddress)), view, 0))
+    assertEquals(Some(evmProcessor), dispatcher.find(invocation(Some(contractAddress)), view, 0))
+    assertEquals(Some(evmProcessor), dispatcher.find(invocation(None), view, 0))
+
+    // the native processor of an address is the only candidate for its invocations, with the unbound processors
+    Mockito.verify(customProcessor, Mockito.never())
+      .canProcess(ArgumentMatchers.argThat[Invocation](_.callee.contains(WithdrawalMsgProcessor.contractAddress)), ArgumentMatchers.any[BaseAccountStateView], ArgumentMatchers.anyInt())
+
+    // same selection as the linear scan
+    for (to <- Seq(Some(eoaAddress), Some(WithdrawalMsgProcessor.contractAddress), Some(customAddress), Some(contractAddress), None)) {
+      val inv = invocation(to)
+      assertEquals(processors.find(_.canProcess(inv, view, 0)), dispatcher.find(inv, view, 0))
+    }
+  }
+
+  @Test
+  def testDispatchOnStateDb(): Unit = {
+    val evmProcessor = new EvmMessageProcessor()
+    val processors = Seq(EoaMessageProcessor, WithdrawalMsgProcessor, evmProcessor)
+    val dispatcher = MessageProcessorDispatcher(processors)
+
+    usingView(processors) { view =>
+      val emptyAddress = randomAddress
+      val eoaAddress = randomAddress
+      val contractAddress = randomAddress
+      view.addBalance(eoaAddress, BigInteger.TEN)
+      view.addAccount(contractAddress, Array[Byte](0x60, 0x00))
+
+      assertEquals(Some(EoaMessageProcessor), dispatcher.find(invocation(Some(eoaAddress)), view, 0))
+      assertEquals(Some(evmProcessor), dispatcher.find(invocation(Some(contractAddress)), view, 0))
+
+      // same selection as the linear scan, on the account kinds read from the state db
+      for (to <- Seq(Some(emptyAddress), Some(eoaAddress), Some(contractAddress), Some(WithdrawalMsgProcessor.contractAddress), None)) {
+        val inv = invocation(to)
+        assertEquals(s"Wrong processor for callee $to", processors.find(_.canProcess(inv, view, 0)), dispatcher.find(inv, view, 0))
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package io.horizen.account.state
+
+import io.horizen.evm.Hash
+import org.junit.Assert.assertArrayEquals
+import org.junit.Test
+import org.scalatestplus.junit.JUnitSuite
+
+import java.math.BigInteger
+
+class NativeContractStorageCacheTest extends JUnitSuite with MessageProcessorFixture {
+
+  private val contractAddress = WithdrawalMsgProcessor.contractAddress
+
+  private def slotValue(value: Int): Array[Byte] = BigInteger.valueOf(value).toByteArray.reverse.padTo(Hash.LENGTH, 0.toByte).reverse
+
+  @Test
+  def testCachedStorageFollowsStateDb(): Unit = {
+    usingView(WithdrawalMsgProcessor) { view =>
+      val key = randomHash
+      val otherKey = randomHash
+
+      view.updateAccountStorage(contractAddress, key, slotValue(1))
+      assertArrayEquals(slotValue(1), view.getAccountStorage(contractAddress, key))
+
+      // reverting discards the cached writes done after the snapshot
+      val revision = view.snapshot
+      view.updateAccountStorage(contractAddress, key, slotValue(2))
+      view.updateAccountStorage(contractAddress, otherKey, slotValue(3))
+      assertArrayEquals(slotValue(2), view.getAccountStorage(contractAddress, key))
+      view.revertToSnapshot(revision)
+      assertArrayEquals(slotValue(1), view.getAccountStorage(contractAddress, key))
+      assertArrayEquals(Hash.ZERO.toBytes, view.getAccountStorage(contractAddress, otherKey))
+
+      // gas tracked views share the cache of their view
+      withGas { gas =>
+        view.getGasTrackedView(gas).updateAccountStorage(contractAddress, key, slotValue(4))
+      }
+      assertArrayEquals(slotValue(4), view.getAccountStorage(contractAddress, key))
+
+      // returned values can't alter the cache
+      view.getAccountStorage(contractAddress, key)(0) = 1
+      assertArrayEquals(slotValue(4), view.getAccountStorage(contractAddress, key))
+
+      // chunked values are read back from the cached chunks
+      val data = (1 to 100).map(_.toByte).toArray
+      view.updateAccountStorageBytes(contractAddress, otherKey, data)
+      assertArrayEquals(data, view.getAccountStorageBytes(contractAddress, otherKey))
+
+      // while suspended the cache is bypassed and discarded
+      view.nativeContractStorageCache.suspend()
+      view.updateAccountStorage(contractAddress, key, slotValue(5))
+      view.nativeContractStorageCache.resume()
+      assertArrayEquals(slotValue(5), view.getAccountStorage(contractAddress, key))
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package io.horizen.account.state
+
+import io.horizen.account.AccountFixture
+import io.horizen.evm.{Address, Database, Hash, MemoryDatabase, StateDB}
+import io.horizen.utils.ClosableResourceHandler
+import org.junit.Assert.{assertEquals, assertFalse, assertNotSame, assertSame, assertTrue, fail}
+import org.junit.Test
+import org.scalatestplus.junit.JUnitSuite
+
+import java.math.BigInteger
+import scala.collection.mutable.ListBuffer
+
+class StateDbViewPoolTest extends JUnitSuite with AccountFixture with ClosableResourceHandler {
+
+  private class TrackedView(stateDb: StateDB, val stateRoot: Array[Byte])
+    extends StateDbAccountStateView(stateDb, Seq.empty, readOnly = true) {
+    var closed = false
+
+    override def close(): Unit = {
+      closed = true
+      super.close()
+    }
+  }
+
+  // pool keeping track of the views it opened
+  private class TrackedPool(db: Database, maxIdleViews: Int)
+    extends StateDbViewPool(db, Seq.empty, MessageProcessorDispatcher(Seq.empty), maxIdleViews) {
+    val opened: ListBuffer[TrackedView] = ListBuffer()
+
+    override protected def openView(stateRoot: Array[Byte]): StateDbAccountStateView = {
+      val view = new TrackedView(new StateDB(db, new Hash(stateRoot)), stateRoot)
+      opened += view
+      view
+    }
+  }
+
+  private def commitNonce(db: Database, parentRoot: Hash, address: Address, nonce: Long): Array[Byte] =
+    using(new StateDB(db, parentRoot)) { stateDb =>
+      stateDb.setNonce(address, BigInteger.valueOf(nonce))
+      stateDb.commit().toBytes
+    }
+
+  @Test
+  def testRootSwitching(): Unit = {
+    using(new MemoryDatabase()) { db =>
+      val address = randomAddress
+      val root1 = commitNonce(db, Hash.ZERO, address, 1)
+      val root2 = commitNonce(db, new Hash(root1), address, 2)
+      val pool = new TrackedPool(db, 4)
+      pool.setStateRoot(root1)
+
+      assertEquals(BigInteger.ONE, pool.withView(root1)(_.getNonce(address)))
+      assertEquals("View at the current root expected to be pooled", 1, pool.idleCount)
+      assertEquals(BigInteger.ONE, pool.withView(root1)(_.getNonce(address)))
+      assertEquals("Pooled view expected to be reused", 1, pool.opened.size)
+
+      // a lookup at another root doesn't move the current one
+      assertEquals(BigInteger.valueOf(2), pool.withView(root2)(_.getNonce(address)))
+      assertTrue("View at another root expected to be closed after use", pool.opened.last.closed)
+      assertEquals("Idle views of the current root expected to be kept", 1, pool.idleCount)
+      assertFalse(pool.opened.head.closed)
+      assertEquals(BigInteger.ONE, pool.withView(root1)(_.getNonce(address)))
+      assertEquals(2, pool.opened.size)
+
+      // the owner moves the root: the idle views of the previous one are closed
+      pool.setStateRoot(root2)
+      assertTrue("Idle view of the previous root expected to be closed", pool.opened.head.closed)
+      assertEquals(0, pool.idleCount)
+      assertEquals(BigInteger.valueOf(2), pool.withView(root2)(_.getNonce(address)))
+      assertEquals(1, pool.idleCount)
+
+      pool.close()
+    }
+  }
+
+  @Test
+  def testViewClosedAfterFailure(): Unit = {
+    using(new MemoryDatabase()) { db =>
+      val root = commitNonce(db, Hash.ZERO, randomAddress, 1)
+      val pool = new TrackedPool(db, 4)
+      pool.setStateRoot(root)
+
+      try {
+        pool.withView(root)(_ => throw new IllegalStateException("failure"))
+        fail("Failure expected to be rethrown")
+      } catch {
+        case _: IllegalStateException => // expected
+      }
+      assertTrue("View expected to be closed after a failure", pool.opened.head.closed)
+      assertEquals("View expected not to be pooled after a failure", 0, pool.idleCount)
+
+      // the next lookup opens a new view
+      pool.withView(root)(_.getNonce(randomAddress))
+      assertEquals(2, pool.opened.size)
+      pool.close()
+    }
+  }
+
+  @Test
+  def testPoolBound(): Unit = {
+    using(new MemoryDatabase()) { db =>
+      val root = commitNonce(db, Hash.ZERO, randomAddress, 1)
+      val pool = new TrackedPool(db, 2)
+      pool.setStateRoot(root)
+
+      // three concurrent lookups: only two views are kept idle
+      pool.withView(root)(view1 =>
+        pool.withView(root)(view2 =>
+          pool.withView(root)(view3 => {
+            assertNotSame(view1, view2)
+            assertNotSame(view2, view3)
+          })))
+      assertEquals(3, pool.opened.size)
+      assertEquals("Idle views expected to be bounded", 2, pool.idleCount)
+      assertEquals("Views above the bound expected to be closed", 1, pool.opened.count(_.closed))
+      assertTrue("Last view released expected to be closed", pool.opened.head.closed)
+
+      pool.withView(root)(view => assertSame("Idle view expected to be reused", pool.opened(1), view))
+      assertEquals(3, pool.opened.size)
+      pool.close()
+    }
+  }
+
+  @Test
+  def testClose(): Unit = {
+    using(new MemoryDatabase()) { db =>
+      val root = commitNonce(db, Hash.ZERO, randomAddress, 1)
+      val pool = new TrackedPool(db, 4)
+      pool.setStateRoot(root)
+
+      pool.withView(root)(_ => pool.withView(root)(_ => ()))
+      assertEquals(2, pool.idleCount)
+
+      pool.withView(root) { _ =>
+        pool.close()
+        assertEquals("Idle views expected to be closed", 0, pool.idleCount)
+        assertEquals(1, pool.opened.count(_.closed))
+      }
+      assertTrue("View in use expected to be closed on release", pool.opened.forall(_.closed))
+      assertEquals(0, pool.idleCount)
+    }
+  }
+}
@@ -5,9 +5,10 @@ import io.horizen.SidechainTypes
 import io.horizen.account.proposition.AddressProposition
 import io.horizen.account.state.receipt.{EthereumReceipt, ReceiptFixture}
 import io.horizen.account.storage.AccountStateMetadataStorageView.DEFAULT_ACCOUNT_STATE_ROOT
-import io.horizen.account.utils.AccountBlockFeeInfo
+import io.horizen.account.utils.{AccountBlockFeeInfo, BlockFeeStats, TxTipInfo}
 import io.horizen.block.{WithdrawalEpochCertificate, WithdrawalEpochCertificateFixture}
 import io.horizen.consensus.{ConsensusEpochNumber, intToConsensusEpochNumber}
+import io.horizen.evm.{Address, Hash}
 import io.horizen.fixtures.{SecretFixture, StoreFixture, TransactionFixture}
 import io.horizen.storage.Storage
 import io.horizen.utils.{ByteArrayWrapper, BytesUtils, WithdrawalEpochInfo}
@@ -206,6 +207,114 @@ class AccountStateMetadataStorageViewTest
     assertTrue(oldCertToBeRemoved.nonEmpty)
   }
 
+  @Test
+  def testLogIndex(): Unit = {
+    val metadataStorage = new AccountStateMetadataStorage(getStorage())
+    val address1 = new Address("0x1111111111111111111111111111111111111111")
+    val address2 = new Address("0x2222222222222222222222222222222222222222")
+    val topic1 = new Hash("0x1111111111111111111111111111111111111111111111111111111111111111")
+
+    assertTrue("Log index should not be started", metadataStorage.getView.getLogIndexStartHeight.isEmpty)
+
+    // block 1: 2 logs of address1, block 2: 2 logs of address2, block 3: 2 logs of address1
+    val versions = Seq((1, address1), (2, address2), (3, address1)).map { case (blockNumber, address) =>
+      val view = metadataStorage.getView
+      view.updateTransactionReceipts(Seq(createTestEthereumReceipt(0, address = address, blockNumber = blockNumber, transactionIndex = 0)))
+      view.updateAccountStateRoot(getRandomAccountStateRoot)
+      val version = getVersion
+      view.commit(bytesToVersion(version.data()))
+      version
+    }
+
+    val view = metadataStorage.getView
+    assertEquals("Wrong log index start height", Some(1), view.getLogIndexStartHeight)
+    assertEquals("Wrong number of postings for address1", 4, view.getLogIndexPostingsCount(LogIndex.addressTerm(address1)))
+    assertEquals("Wrong postings for address1 in the whole range",
+      Seq((1, 0), (1, 1), (3, 0), (3, 1)),
+      view.getLogIndexPostings(LogIndex.addressTerm(address1), 1, 3).map(p => (p.blockNumber, p.blockLogIndex)).toList)
+    assertEquals("Wrong postings for address1 in a sub range",
+      Seq(3, 3), view.getLogIndexPostings(LogIndex.addressTerm(address1), 2, 5).map(_.blockNumber).toList)
+    assertTrue("No postings expected for address2 out of its range",
+      view.getLogIndexPostings(LogIndex.addressTerm(address2), 3, 3).isEmpty)
+    // topics are indexed by position: topic1 is the second topic of every test log
+    assertEquals("Wrong number of postings for topic1 at position 1", 6, view.getLogIndexPostingsCount(LogIndex.topicTerm(1, topic1)))
+    assertEquals("No postings expected for topic1 at position 0", 0, view.getLogIndexPostingsCount(LogIndex.topicTerm(0, topic1)))
+
+    // rollback of the last block removes its postings
+    metadataStorage.rollback(versions(1))
+    val rolledBackView = metadataStorage.getView
+    assertEquals("Wrong number of postings for address1 after rollback", 2, rolledBackView.getLogIndexPostingsCount(LogIndex.addressTerm(address1)))
+    assertTrue("No postings expected for block 3 after rollback",
+      rolledBackView.getLogIndexPostings(LogIndex.addressTerm(address1), 3, 3).isEmpty)
+  }
+
+  @Test
+  def testLogIndexPostingSerialization(): Unit = {
+    // a transaction can emit more logs than a short can index
+    val posting = LogIndexPosting(123456, getRandomAccountStateRoot, Short.MaxValue + 10, Int.MaxValue)
+    val parsed = LogIndexPosting.parseBytes(posting.bytes)
+    assertEquals("Wrong block number", posting.blockNumber, parsed.blockNumber)
+    assertArrayEquals("Wrong transaction hash", posting.txHash, parsed.txHash)
+    assertEquals("Wrong transaction log index", posting.txLogIndex, parsed.txLogIndex)
+    assertEquals("Wrong block log index", posting.blockLogIndex, parsed.blockLogIndex)
+  }
+
+  @Test
+  def testBlockFeeStats(): Unit = {
+    val metadataStorage = new AccountStateMetadataStorage(getStorage())
+    val statsByHeight = (1 to 3).map(height => height -> BlockFeeStats(
+      BigInteger.valueOf(height), BigInteger.valueOf(21000), BigInteger.valueOf(30000000),
+      Seq(TxTipInfo(BigInteger.valueOf(height * 10), 21000, fromForger = false)))).toMap
+
+    val versions = (1 to 3).map { height =>
+      val view = metadataStorage.getView
+      view.updateBlockFeeStats(height, statsByHeight(height))
+      // the record of the block being applied is visible before commit
+      assertEquals("Wrong uncommitted fee stats", Some(statsByHeight(height)), view.getBlockFeeStats(height))
+      view.updateAccountStateRoot(getRandomAccountStateRoot)
+      val version = getVersion
+      view.commit(bytesToVersion(version.data()))
+      version
+    }
+
+    (1 to 3).foreach(height =>
+      assertEquals(s"Wrong fee stats at height $height", Some(statsByHeight(height)), metadataStorage.getBlockFeeStats(height)))
+    assertTrue("No fee stats expected for a missing block", metadataStorage.getBlockFeeStats(4).isEmpty)
+
+    // rollback of the last block removes its record
+    metadataStorage.rollback(versions(1))
+    assertEquals("Wrong fee stats after rollback", Some(statsByHeight(2)), metadataStorage.getBlockFeeStats(2))
+    assertTrue("No fee stats expected for block 3 after rollback", metadataStorage.getBlockFeeStats(3).isEmpty)
+  }
+
+  @Test
+  def testBlockFeeStatsPruning(): Unit = {
+    val metadataStorage = new AccountStateMetadataStorage(getStorage())
+    def commitStats(height: Int): ByteArrayWrapper = {
+      val view = metadataStorage.getView
+      view.updateBlockFeeStats(height, BlockFeeStats(null, BigInteger.ZERO, BigInteger.valueOf(30000000), Seq()))
+      view.updateAccountStateRoot(getRandomAccountStateRoot)
+      val version = getVersion
+      view.commit(bytesToVersion(version.data()))
+      version
+    }
+
+    commitStats(1)
+    val version = commitStats(2)
+    assertTrue("No fee stats expected to be pruned within the window", metadataStorage.getView.getOldBlockFeeStatsToBeRemoved(3).isEmpty)
+
+    // the record of the block leaving the fee history window is pruned
+    commitStats(1 + BlockFeeStats.MaxFeeHistoryBlocks)
+    assertTrue("Fee stats out of the window expected to be pruned", metadataStorage.getBlockFeeStats(1).isEmpty)
+    assertTrue(metadataStorage.getBlockFeeStats(2).isDefined)
+    assertTrue("Fee stats with no base fee expected to be stored", metadataStorage.getBlockFeeStats(1 + BlockFeeStats.MaxFeeHistoryBlocks).isDefined)
+    assertNull(metadataStorage.getBlockFeeStats(2).get.baseFee)
+
+    // a rollback restores the pruned record
+    metadataStorage.rollback(version)
+    assertTrue("Pruned fee stats expected to be restored by a rollback", metadataStorage.getBlockFeeStats(1).isDefined)
+  }
+
   def generateCertificateWithEpochNumber(epochNum: Int): WithdrawalEpochCertificate = {
     val sourceCertHex: String = Source.fromResource("cert_no_bts").getLines().next()
     val newCertBytes: ArrayBuffer[Byte] = ArrayBuffer[Byte]()
@@ -0,0 +1,131 @@
+package io.horizen.account.transaction
+
+import io.horizen.account.fixtures.EthereumTransactionFixture
+import io.horizen.account.proof.SignatureSecp256k1
+import io.horizen.account.secret.{PrivateKeySecp256k1, PrivateKeySecp256k1Creator}
+import io.horizen.account.utils.ZenWeiConverter
+import org.junit.Assert.{assertEquals, assertFalse, assertNull, assertSame, assertTrue}
+import org.junit.{After, Before, Test}
+import org.scalatestplus.junit.JUnitSuite
+
+import java.math.BigInteger
+import scala.collection.JavaConverters._
+
+class SenderRecoveryServiceTest extends JUnitSuite with EthereumTransactionFixture {
+
+  private val keys: Seq[PrivateKeySecp256k1] =
+    (1 to 3).map(i => PrivateKeySecp256k1Creator.getInstance().generateSecret(BigInteger.valueOf(i).toByteArray))
+
+  private var service: SenderRecoveryService = _
+
+  @Before
+  def setUp(): Unit = service = new SenderRecoveryService(2, 100)
+
+  @After
+  def tearDown(): Unit = service.close()
+
+  private def createTxs(count: Int, firstNonce: Int = 0): Seq[EthereumTransaction] =
+    (0 until count).map(i => createEIP1559Transaction(
+      value = ZenWeiConverter.convertZenniesToWei(1),
+      nonce = BigInteger.valueOf(firstNonce + i),
+      keyOpt = Some(keys(i % keys.size))))
+
+  // same transaction parsed again: the sender is not known yet
+  private def copyOf(tx: EthereumTransaction): EthereumTransaction = new EthereumTransaction(tx, tx.getSignature)
+
+  // x coordinate of no point of the curve, so that no public key can be recovered from a signature with this r
+  private def notOnCurve: BigInteger = {
+    val p = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16)
+    Iterator.iterate(BigInteger.ONE)(_.add(BigInteger.ONE)).find { x =>
+      val y2 = x.pow(3).add(BigInteger.valueOf(7)).mod(p)
+      y2.modPow(p.subtract(BigInteger.ONE).shiftRight(1), p) == p.subtract(BigInteger.ONE)
+    }.get
+  }
+
+  private def withInvalidSignature(tx: EthereumTransaction): EthereumTransaction = {
+    val signature = tx.getSignature
+    new EthereumTransaction(tx, new SignatureSecp256k1(signature.getV, notOnCurve, signature.getS))
+  }
+
+  @Test
+  def testRecoverSenders(): Unit = {
+    // enough txs to be recovered by the workers, and a batch recovered on the calling thread
+    for (txs <- Seq(createTxs(10).map(copyOf), createTxs(2, 100).map(copyOf))) {
+      assertFalse(txs.exists(_.isSenderKnown))
+      service.recoverSenders(txs.asJava)
+      assertTrue("All senders expected to be recovered", txs.forall(_.isSenderKnown))
+      txs.zipWithIndex.foreach { case (tx, i) =>
+        assertEquals("Wrong sender recovered", keys(i % keys.size).publicImage(), tx.getFrom)
+      }
+    }
+  }
+
+  @Test
+  def testCacheHits(): Unit = {
+    val txs = createTxs(5).map(copyOf)
+    service.recoverSenders(txs.asJava)
+
+    // another copy of the same txs takes its sender from the cache
+    val copies = txs.map(copyOf)
+    service.recoverSenders(copies.asJava)
+    copies.zip(txs).foreach { case (copy, tx) =>
+      assertTrue(copy.isSenderKnown)
+      assertSame("Sender expected to be taken from the cache", service.cachedSender(tx.id), copy.getFrom)
+      assertSame(tx.getFrom, copy.getFrom)
+    }
+
+    // the cache is bounded
+    val boundedService = new SenderRecoveryService(2, 2)
+    try {
+      val boundedTxs = createTxs(5, 10).map(copyOf)
+      boundedService.recoverSenders(boundedTxs.asJava)
+      assertTrue("Cache expected to be bounded", boundedTxs.count(tx => boundedService.cachedSender(tx.id) != null) <= 2)
+    } finally {
+      boundedService.close()
+    }
+
+    // disabled cache
+    val uncachedService = new SenderRecoveryService(2, 0)
+    try {
+      val uncachedTx = copyOf(createTxs(1, 20).head)
+      uncachedService.recoverSenders(Seq(uncachedTx).asJava)
+      assertEquals(keys.head.publicImage(), uncachedTx.getFrom)
+      assertNull("No sender expected to be cached", uncachedService.cachedSender(uncachedTx.id))
+    } finally {
+      uncachedService.close()
+    }
+  }
+
+  @Test
+  def testInvalidSignatures(): Unit = {
+    val validTxs = createTxs(4).map(copyOf)
+    val invalidTxs = createTxs(2, 10).map(withInvalidSignature)
+    service.recoverSenders((validTxs ++ invalidTxs).asJava)
+
+    assertTrue("Valid senders expected to be recovered", validTxs.forall(_.isSenderKnown))
+    invalidTxs.foreach { tx =>
+      assertFalse("Sender of an invalid signature expected not to be set", tx.isSenderKnown)
+      assertNull(tx.getFrom)
+      assertNull("Sender of an invalid signature expected not to be cached", service.cachedSender(tx.id))
+    }
+  }
+
+  @Test
+  def testClose(): Unit = {
+    // a tx not recovered by the service recovers its sender itself, without caching it
+    val tx = copyOf(createTxs(1).head)
+    assertEquals(keys.head.publicImage(), tx.getFrom)
+    assertNull(service.cachedSender(tx.id))
+
+    service.recoverSenders(Seq(copyOf(tx)).asJava)
+    assertEquals(tx.getFrom, service.cachedSender(tx.id))
+
+    // after the close the workers are stopped and the senders are recovered on the calling thread
+    service.close()
+    assertNull("Cache expected to be dropped on close", service.cachedSender(tx.id))
+    val txs = createTxs(10, 30).map(copyOf)
+    service.recoverSenders(txs.asJava)
+    assertTrue("Senders expected to be recovered after the close", txs.forall(_.isSenderKnown))
+    assertTrue("No sender expected to be cached after the close", txs.forall(tx => service.cachedSender(tx.id) == null))
+  }
+}
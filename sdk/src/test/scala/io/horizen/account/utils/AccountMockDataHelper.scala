@@ -372,6 +372,7 @@ case class AccountMockDataHelper(genesis: Boolean)
     val metadataStorageView: AccountStateMetadataStorageView = {
       mock[AccountStateMetadataStorageView]
     }
+    Mockito.when(metadataStorageView.getLogIndexStartHeight).thenReturn(None)
 
     val mockMsgProcessor: MessageProcessor = setupMockMessageProcessor
     val msgProcessors = Seq(mockMsgProcessor)
@@ -397,6 +398,7 @@ case class AccountMockDataHelper(genesis: Boolean)
     }
     Mockito.when(state.params).thenReturn(RegTestParams())
     Mockito.when(state.getView).thenReturn(stateView)
+    Mockito.when(state.getBlockFeeStats(ArgumentMatchers.anyInt())).thenReturn(None)
     Mockito.when(state.getView.getTransactionReceipt(any())).thenReturn(None)
     Mockito.when(state.getView.getTransactionReceipt(txHash)).thenReturn(Some(receipt))
     if (state.getView != null) {
@@ -0,0 +1,55 @@
+package io.horizen.account.utils
+
+import org.junit.Assert.{assertArrayEquals, assertEquals}
+import org.junit.Test
+
+import java.math.BigInteger
+
+class BlockFeeStatsTest {
+
+  private def tip(value: Long, gasUsed: Long, fromForger: Boolean = false): TxTipInfo =
+    TxTipInfo(BigInteger.valueOf(value), gasUsed, fromForger)
+
+  private val stats = BlockFeeStats(
+    BigInteger.valueOf(1000),
+    BigInteger.valueOf(100000),
+    BigInteger.valueOf(200000),
+    Seq(tip(1, 10000), tip(5, 20000, fromForger = true), tip(10, 30000), tip(20, 40000))
+  )
+
+  @Test
+  def testSerialization(): Unit = {
+    val bytes = BlockFeeStatsSerializer.toBytes(stats)
+    assertEquals(stats, BlockFeeStatsSerializer.parseBytes(bytes))
+
+    val emptyBlockStats = BlockFeeStats(BigInteger.ONE, BigInteger.ZERO, BigInteger.TEN, Seq())
+    assertEquals(emptyBlockStats, BlockFeeStatsSerializer.parseBytes(BlockFeeStatsSerializer.toBytes(emptyBlockStats)))
+
+    // blocks without a base fee
+    val noBaseFeeStats = stats.copy(baseFee = null)
+    assertEquals(noBaseFeeStats, BlockFeeStatsSerializer.parseBytes(BlockFeeStatsSerializer.toBytes(noBaseFeeStats)))
+  }
+
+  @Test
+  def testRewards(): Unit = {
+    assertEquals(0.5, stats.gasUsedRatio, 0.0)
+    // rewards are weighted by the gas used: the sorted tips reach 10%, 30%, 60% and 100% of the block gas
+    assertArrayEquals(
+      Array[Object](BigInteger.valueOf(1), BigInteger.valueOf(5), BigInteger.valueOf(10), BigInteger.valueOf(20), BigInteger.valueOf(20)),
+      stats.rewards(Array(0.0, 25.0, 50.0, 75.0, 100.0)).asInstanceOf[Array[Object]]
+    )
+    // all zero rewards for an empty block
+    assertArrayEquals(
+      Array[Object](BigInteger.ZERO, BigInteger.ZERO),
+      BlockFeeStats(BigInteger.ONE, BigInteger.ZERO, BigInteger.TEN, Seq()).rewards(Array(10.0, 90.0)).asInstanceOf[Array[Object]]
+    )
+  }
+
+  @Test
+  def testLowestTips(): Unit = {
+    // forger transactions are ignored
+    assertEquals(Seq(1, 10, 20).map(BigInteger.valueOf(_)), stats.lowestTips(null, 3))
+    assertEquals(Seq(10, 20).map(BigInteger.valueOf(_)), stats.lowestTips(BigInteger.TWO, 3))
+    assertEquals(Seq(1, 10).map(BigInteger.valueOf(_)), stats.lowestTips(BigInteger.ONE, 2))
+  }
+}
@@ -106,4 +106,27 @@ class BloomTest
 
     assertArrayEquals(data, bloomLogs.getBytes)
   }
+
+  @Test
+  def bloomFilterPrecomputedBitsTest(): Unit = {
+    val data = "test".getBytes(StandardCharsets.UTF_8)
+    val bits = Bloom.bitsOf(data)
+
+    val bloomLog = new Bloom()
+    bloomLog.add(bits)
+    assertEquals("adding the bits should be the same as adding the data", bloomLog, {
+      val other = new Bloom()
+      other.add(data)
+      other
+    })
+    assertTrue(bloomLog.test(bits))
+    assertTrue(bloomLog.test(data))
+
+    // all the bits of the data must be set, not just one of them
+    val partialFilter = Array.fill[Byte](Bloom.BLOOM_BYTE_LENGTH)(0)
+    partialFilter(bits.index1) = bits.mask1.toByte
+    val partialBloom = new Bloom(partialFilter)
+    assertFalse(partialBloom.test(bits))
+    assertFalse(partialBloom.test(data))
+  }
 }
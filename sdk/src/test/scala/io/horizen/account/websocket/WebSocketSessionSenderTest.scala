@@ -0,0 +1,85 @@
+package io.horizen.account.websocket
+
+import jakarta.websocket.{CloseReason, RemoteEndpoint, SendHandler, SendResult, Session}
+import org.junit.Assert.{assertEquals, assertFalse, assertTrue}
+import org.junit.Test
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.{ArgumentMatchers, Mockito}
+import org.scalatestplus.junit.JUnitSuite
+import org.scalatestplus.mockito.MockitoSugar
+
+import scala.collection.mutable.ListBuffer
+
+class WebSocketSessionSenderTest extends JUnitSuite with MockitoSugar {
+
+  // session whose sends complete only when the test completes them
+  private class Fixture(maxPendingMessages: Int) {
+    val sent: ListBuffer[String] = ListBuffer()
+    val handlers: ListBuffer[SendHandler] = ListBuffer()
+    val session: Session = mock[Session]
+    val remote: RemoteEndpoint.Async = mock[RemoteEndpoint.Async]
+    Mockito.when(session.getId).thenReturn("session")
+    Mockito.when(session.getAsyncRemote).thenReturn(remote)
+    Mockito.doAnswer { (args: InvocationOnMock) =>
+      sent += args.getArgument[String](0)
+      handlers += args.getArgument[SendHandler](1)
+      null
+    }.when(remote).sendText(ArgumentMatchers.anyString(), ArgumentMatchers.any[SendHandler])
+    val sender = new WebSocketSessionSender(session, maxPendingMessages)
+
+    def completeNext(): Unit = handlers.remove(0).onResult(new SendResult())
+  }
+
+  @Test
+  def testSendInOrder(): Unit = {
+    val f = new Fixture(10)
+    (1 to 3).foreach(i => assertTrue(f.sender.send(s"message$i")))
+
+    // one message at a time: the next one is sent when the previous one is written
+    assertEquals(Seq("message1"), f.sent)
+    assertEquals(2, f.sender.pendingCount)
+    f.completeNext()
+    assertEquals(Seq("message1", "message2"), f.sent)
+    f.completeNext()
+    f.completeNext()
+    assertEquals(Seq("message1", "message2", "message3"), f.sent)
+    assertEquals(0, f.sender.pendingCount)
+  }
+
+  @Test
+  def testNotificationsDroppedWhenFull(): Unit = {
+    val f = new Fixture(2)
+    // the first message is being sent, the next two are queued
+    (1 to 3).foreach(i => assertTrue(f.sender.send(s"message$i")))
+    assertFalse("Notification should be dropped when the queue is full", f.sender.send("message4"))
+    assertFalse(f.sender.send("message5"))
+    assertEquals(2L, f.sender.droppedCount)
+
+    (1 to 3).foreach(_ => f.completeNext())
+    assertEquals(Seq("message1", "message2", "message3"), f.sent)
+    Mockito.verify(f.session, Mockito.never()).close(ArgumentMatchers.any[CloseReason])
+  }
+
+  @Test
+  def testResponseClosesSessionWhenFull(): Unit = {
+    val f = new Fixture(2)
+    assertTrue(f.sender.sendResponse("response1"))
+    (1 to 2).foreach(i => assertTrue(f.sender.send(s"message$i")))
+
+    // a response is never dropped silently: the client would wait for it forever
+    assertFalse(f.sender.sendResponse("response2"))
+    Mockito.verify(f.session).close(ArgumentMatchers.any[CloseReason])
+    assertEquals(0, f.sender.pendingCount)
+    assertEquals(0L, f.sender.droppedCount)
+  }
+
+  @Test
+  def testResponseQueuedWhenNotFull(): Unit = {
+    val f = new Fixture(2)
+    assertTrue(f.sender.send("message1"))
+    assertTrue(f.sender.sendResponse("response1"))
+    f.completeNext()
+    assertEquals(Seq("message1", "response1"), f.sent)
+    Mockito.verify(f.session, Mockito.never()).close(ArgumentMatchers.any[CloseReason])
+  }
+}
@@ -21,7 +21,7 @@ import io.horizen.json.serializer.ApplicationJsonSerializer
 import io.horizen.params.MainNetParams
 import io.horizen.proposition.Proposition
 import io.horizen.secret.SecretSerializer
-import io.horizen.storage.StorageIterator
+import io.horizen.storage.{HistoryStorageCacheStats, StorageIterator}
 import io.horizen.utils.{ByteArrayWrapper, BytesUtils, TimeToEpochUtils}
 import io.horizen.utxo.SidechainApp
 import io.horizen.utxo.api.http
@@ -124,6 +124,7 @@ abstract class SidechainApiRouteTest extends AnyWordSpec with Matchers with Scal
   val genesisBlock = utilMocks.genesisBlock
   val genesisBlockInfo = utilMocks.genesisBlockInfo
   val listOfStorageVersions = utilMocks.listOfNodeStorageVersion
+  val historyStorageCacheStats = HistoryStorageCacheStats(10, 30, 12, 2, 5, 40, 6, 1)
   val sidechainId = utilMocks.sidechainId
   val mainchainBlockReferenceInfoRef = utilMocks.mainchainBlockReferenceInfoRef
   val keyRotationProof = utilMocks.keyRotationProof
@@ -206,6 +207,8 @@ abstract class SidechainApiRouteTest extends AnyWordSpec with Matchers with Scal
         case GetStorageVersions =>
           if (sidechainApiMockConfiguration.getShould_nodeViewHolder_GetStorageVersions_reply())
             sender ! listOfStorageVersions
+        case GetHistoryStorageCacheStats =>
+          sender ! historyStorageCacheStats
       }
       TestActor.KeepRunning
     }
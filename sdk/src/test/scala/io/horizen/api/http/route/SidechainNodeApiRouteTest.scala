@@ -312,6 +312,31 @@ class SidechainNodeApiRouteTest extends SidechainApiRouteTest {
       }
     }
 
+    "reply at /historyCacheStats" in {
+      Post(basePath + "historyCacheStats") ~> sidechainNodeApiRoute ~> check {
+        status.intValue shouldBe StatusCodes.OK.intValue
+        responseEntity.getContentType() shouldEqual ContentTypes.`application/json`
+        val result = mapper.readTree(entityAs[String]).get("result")
+
+        if (result == null)
+          fail("Serialization failed for object SidechainApiResponseBody")
+
+        val cacheStats = result.get("cacheStats")
+        assertEquals(historyStorageCacheStats.blockCacheHits, cacheStats.get("blockCacheHits").asLong)
+        assertEquals(historyStorageCacheStats.blockCacheMisses, cacheStats.get("blockCacheMisses").asLong)
+        assertEquals(historyStorageCacheStats.blockInfoCacheEvictions, cacheStats.get("blockInfoCacheEvictions").asLong)
+      }
+    }
+
+    "reply at /rpcMetrics" in {
+      // the RPC metrics are served by the account sidechains only
+      Post(basePath + "rpcMetrics") ~> sidechainNodeApiRoute ~> check {
+        status.intValue shouldBe StatusCodes.OK.intValue
+        responseEntity.getContentType() shouldEqual ContentTypes.`application/json`
+        assertsOnSidechainErrorResponseSchema(entityAs[String], "0403")
+      }
+    }
+
     "reply at /sidechainId" in {
       Post(basePath + "sidechainId") ~> sidechainNodeApiRoute ~> check {
         status.intValue shouldBe StatusCodes.OK.intValue
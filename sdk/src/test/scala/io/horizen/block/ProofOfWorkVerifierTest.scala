@@ -1,6 +1,7 @@
 package io.horizen.block
 
 import com.google.common.primitives.UnsignedInts
+import io.horizen.chain.{MainchainHeaderPowData, byteArrayToMainchainHeaderHash}
 import io.horizen.fixtures.{MainchainHeaderFixture, MainchainHeaderForPoWTest}
 import io.horizen.params.MainNetParams
 import io.horizen.proposition.SchnorrProposition
@@ -185,6 +186,9 @@ class ProofOfWorkVerifierTest extends JUnitSuite with MainchainHeaderFixture wit
       .thenAnswer(answer => {
         Some(scblocks.filter(block => block.id.equals(answer.getArgument(0))).head)
       })
+    // mainchain headers PoW data is collected from the blocks
+    Mockito.when(storage.activeChainMainchainHeadersPowData(ArgumentMatchers.any[ModifierId](), ArgumentMatchers.anyInt()))
+      .thenReturn(None)
 
     // MainNetParams with Test genesis data
     class PowtestParams extends MainNetParams {
@@ -349,6 +353,30 @@ class ProofOfWorkVerifierTest extends JUnitSuite with MainchainHeaderFixture wit
     block = createSCBlockForPowTest(scblocks.last.id, powRelatedDataList(27).mcblockhash, Seq(powRelatedDataList(28), powRelatedDataList(29), powRelatedDataList(30)), ommers)
     assertFalse("SC block with invalid Ommers expected to have valid PoW Target.",
       ProofOfWorkVerifier.checkNextWorkRequired[SidechainBlockHeader, SidechainBlock, SidechainFeePaymentsInfo, SidechainHistoryStorage](block, storage, params))
+
+
+    // Test 9: Check SCBlocks with mainchain headers PoW data taken from the history storage index, without reading the blocks
+    val indexedStorage = mock[SidechainHistoryStorage]
+    Mockito.when(indexedStorage.blockById(ArgumentMatchers.any[ModifierId]()))
+      .thenThrow(new IllegalStateException("Blocks are not expected to be read"))
+    Mockito.when(indexedStorage.activeChainMainchainHeadersPowData(ArgumentMatchers.any[ModifierId](), ArgumentMatchers.anyInt()))
+      .thenReturn(Some(powRelatedDataList.slice(21, 28).map(powData =>
+        MainchainHeaderPowData(byteArrayToMainchainHeaderHash(BytesUtils.fromHexString(powData.mcblockhash)), powData.time, powData.bits))))
+
+    block = createSCBlockForPowTest(scblocks.last.id, powRelatedDataList(27).mcblockhash, Seq(powRelatedDataList(28), powRelatedDataList(29)))
+    assertTrue("SC block with 2 valid MainchainHeaders expected to have valid PoW Target.",
+      ProofOfWorkVerifier.checkNextWorkRequired[SidechainBlockHeader, SidechainBlock, SidechainFeePaymentsInfo, SidechainHistoryStorage](block, indexedStorage, params))
+
+    block = createSCBlockForPowTest(scblocks.last.id, powRelatedDataList(27).mcblockhash, Seq(
+      powRelatedDataList(28).copy(bits = 0x1c111ca1) // 0x1c111cab is valid one
+    ))
+    assertFalse("SC block, that contains 1 MainchainHeader with invalid target(bits), expected to have invalid PoW Target.",
+      ProofOfWorkVerifier.checkNextWorkRequired[SidechainBlockHeader, SidechainBlock, SidechainFeePaymentsInfo, SidechainHistoryStorage](block, indexedStorage, params))
+
+    // MainchainHeader that doesn't follow the last indexed one: the blocks are read
+    block = createSCBlockForPowTest(scblocks.last.id, powRelatedDataList(20).mcblockhash, Seq(powRelatedDataList(28)))
+    assertThrows[IllegalStateException](
+      ProofOfWorkVerifier.checkNextWorkRequired[SidechainBlockHeader, SidechainBlock, SidechainFeePaymentsInfo, SidechainHistoryStorage](block, indexedStorage, params))
   }
 
   private def createSCBlockForPowTest(prevSCBlockId: String,
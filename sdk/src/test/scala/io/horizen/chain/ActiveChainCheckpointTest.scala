@@ -0,0 +1,143 @@
+package io.horizen.chain
+
+import io.horizen.fixtures.SidechainBlockInfoFixture
+import org.junit.Assert.{assertEquals, assertTrue}
+import org.junit.rules.TemporaryFolder
+import org.junit.{Rule, Test}
+import org.scalatestplus.junit.JUnitSuite
+import sparkz.util.ModifierId
+
+import java.io.{File, RandomAccessFile}
+import scala.collection.breakOut
+
+class ActiveChainCheckpointTest extends JUnitSuite with SidechainBlockInfoFixture {
+  val genesisBlockMainchainHeight = 42
+
+  val _temporaryFolder = new TemporaryFolder()
+  @Rule def temporaryFolder = _temporaryFolder
+
+  private def createChain(length: Int): ActiveChain = {
+    val generatedData = generateDataSequenceWithGenesisBlock(length)
+    val initialParent = generatedData.flatMap(_._3).head
+    ActiveChain(generatedData.map { case (id, info, _) => (id, info) }(breakOut), initialParent, genesisBlockMainchainHeight)
+  }
+
+  private def addBlock(chain: ActiveChain, parent: ModifierId): ModifierId = {
+    val (id, info, mainchainParent) = getNewDataForParent(parent)
+    chain.setBestBlock(id, info, mainchainParent)
+    id
+  }
+
+  private def assertCheckpointContent(chain: ActiveChain, file: File): Unit = {
+    val blocksInfoData = new ActiveChainCheckpoint(file, 0).read().get
+    assertEquals("Checkpoint expected to contain the whole active chain", chain.height, blocksInfoData.size)
+    blocksInfoData.zipWithIndex.foreach { case ((id, info), index) =>
+      assertEquals(s"Different block id at height ${index + 1}", chain.idByHeight(index + 1).get, id)
+      assertEquals(s"Different block info at height ${index + 1}", chain.blockInfoByHeight(index + 1).get, info)
+    }
+  }
+
+  @Test
+  def writeAndRead(): Unit = {
+    setSeed(9347522L)
+    val file = temporaryFolder.newFile("checkpoint")
+    val chain = createChain(10)
+    val checkpoint = new ActiveChainCheckpoint(file, 5)
+
+    assertTrue(checkpoint.write(chain).isSuccess)
+    assertCheckpointContent(chain, file)
+
+    assertTrue("Write expected not to be due before the interval", !checkpoint.isWriteDue(14))
+    assertTrue("Write expected to be due after the interval", checkpoint.isWriteDue(15))
+  }
+
+  @Test
+  def appendNewBlocks(): Unit = {
+    setSeed(1234987L)
+    val file = temporaryFolder.newFile("checkpoint")
+    val chain = createChain(10)
+    val checkpoint = new ActiveChainCheckpoint(file, 0)
+    assertTrue(checkpoint.write(chain).isSuccess)
+
+    // tamper with the first record: an append is expected to leave the blocks already written untouched
+    val raf = new RandomAccessFile(file, "rw")
+    val tamperedOffset = Integer.BYTES + 32 + Integer.BYTES
+    val originalByte = { raf.seek(tamperedOffset); raf.readByte() }
+    raf.seek(tamperedOffset)
+    raf.writeByte(originalByte ^ 0xff)
+    raf.close()
+    val lengthBefore = file.length()
+
+    (1 to 3).foldLeft(chain.bestId.get)((parent, _) => addBlock(chain, parent))
+    assertTrue(checkpoint.write(chain).isSuccess)
+    assertTrue("New blocks expected to be appended", file.length() > lengthBefore)
+
+    // restore the first record and check the whole content
+    val restore = new RandomAccessFile(file, "rw")
+    restore.seek(tamperedOffset)
+    restore.writeByte(originalByte)
+    restore.close()
+    assertCheckpointContent(chain, file)
+  }
+
+  @Test
+  def truncateRevertedBlocks(): Unit = {
+    setSeed(5555111L)
+    val file = temporaryFolder.newFile("checkpoint")
+    val chain = createChain(10)
+    val checkpoint = new ActiveChainCheckpoint(file, 0)
+    assertTrue(checkpoint.write(chain).isSuccess)
+
+    // fork from height 7: the blocks 8 to 10 are reverted and replaced by a longer branch
+    val forkParent = chain.idByHeight(7).get
+    (1 to 5).foldLeft(forkParent)((parent, _) => addBlock(chain, parent))
+    assertEquals(12, chain.height)
+
+    assertTrue(checkpoint.write(chain).isSuccess)
+    assertCheckpointContent(chain, file)
+
+    // a shorter active chain, e.g. after a rollback
+    val shorterChain = createChain(4)
+    assertTrue(checkpoint.write(shorterChain).isSuccess)
+    assertCheckpointContent(shorterChain, file)
+  }
+
+  @Test
+  def readIncompleteRecord(): Unit = {
+    setSeed(86420L)
+    val file = temporaryFolder.newFile("checkpoint")
+    val chain = createChain(6)
+    assertTrue(new ActiveChainCheckpoint(file, 0).write(chain).isSuccess)
+
+    // a crash in the middle of the last record
+    val raf = new RandomAccessFile(file, "rw")
+    raf.setLength(file.length() - 3)
+    raf.close()
+
+    val checkpoint = new ActiveChainCheckpoint(file, 0)
+    val blocksInfoData = checkpoint.read().get
+    assertEquals("Incomplete record expected to be ignored", chain.height - 1, blocksInfoData.size)
+    assertEquals(chain.idByHeight(chain.height - 1).get, blocksInfoData.last._1)
+
+    // the next write overwrites the incomplete record
+    assertTrue(checkpoint.write(chain).isSuccess)
+    assertCheckpointContent(chain, file)
+  }
+
+  @Test
+  def rewriteUnreadableFile(): Unit = {
+    setSeed(13579L)
+    val file = temporaryFolder.newFile("checkpoint")
+    val raf = new RandomAccessFile(file, "rw")
+    raf.writeInt(1)
+    raf.writeInt(100)
+    raf.close()
+
+    val checkpoint = new ActiveChainCheckpoint(file, 0)
+    assertTrue("Checkpoint of an unsupported version expected not to be read", checkpoint.read().isFailure)
+
+    val chain = createChain(5)
+    assertTrue(checkpoint.write(chain).isSuccess)
+    assertCheckpointContent(chain, file)
+  }
+}
@@ -1,7 +1,7 @@
 package io.horizen.fixtures
 
 import io.horizen.storage.Storage
-import io.horizen.storage.leveldb.VersionedLevelDbStorageAdapter
+import io.horizen.storage.leveldb.{UndoLogLevelDbStorageAdapter, VersionedLevelDbStorageAdapter}
 import io.horizen.utils.{ByteArrayWrapper, Pair}
 
 import java.io.File
@@ -55,6 +55,12 @@ trait StoreFixture {
     storage
   }
 
+  def getUndoLogStorage(pathToDB: File, versionsToKeep: Int): UndoLogLevelDbStorageAdapter = {
+    val storage = new UndoLogLevelDbStorageAdapter(pathToDB, versionsToKeep)
+    storages.append(storage)
+    storage
+  }
+
   def getValue : ByteArrayWrapper = {
     val value = new Array[Byte](valueSize)
     Random.nextBytes(value)
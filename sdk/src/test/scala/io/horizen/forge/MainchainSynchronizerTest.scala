@@ -0,0 +1,114 @@
+package io.horizen.forge
+
+import io.horizen.block.MainchainBlockReference
+import io.horizen.chain.{MainchainHeaderHash, byteArrayToMainchainHeaderHash}
+import io.horizen.utils.BytesUtils
+import io.horizen.websocket.client.MainchainNodeChannel
+import org.junit.Assert._
+import org.junit.Test
+import org.mockito.{ArgumentMatchers, Mockito}
+import org.scalatestplus.junit.JUnitSuite
+import org.scalatestplus.mockito.MockitoSugar
+
+import java.util.concurrent.atomic.AtomicInteger
+import scala.util.{Failure, Success, Try}
+
+class MainchainSynchronizerTest extends JUnitSuite with MockitoSugar {
+
+  private val latencyMs = 50L
+
+  private def hashes(count: Int): Seq[MainchainHeaderHash] =
+    (1 to count).map(i => byteArrayToMainchainHeaderHash(Array.fill[Byte](32)(i.toByte)))
+
+  // Channel answering the block requests after latencyMs, counting the requests in flight
+  private class StubChannel(hashes: Seq[MainchainHeaderHash], failingHash: Option[MainchainHeaderHash] = None) {
+    val references: Map[String, MainchainBlockReference] =
+      hashes.map(hash => BytesUtils.toHexString(hash.data) -> mock[MainchainBlockReference]).toMap
+    val requests = new AtomicInteger()
+    val inFlight = new AtomicInteger()
+    val maxInFlight = new AtomicInteger()
+
+    val channel: MainchainNodeChannel = mock[MainchainNodeChannel]
+    Mockito.when(channel.getBlockByHash(ArgumentMatchers.any[String])).thenAnswer(answer => {
+      val hashHex = answer.getArgument(0).asInstanceOf[String]
+      requests.incrementAndGet()
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), (a, b) => Math.max(a, b))
+      try {
+        Thread.sleep(latencyMs)
+        if (failingHash.map(hash => BytesUtils.toHexString(hash.data)).contains(hashHex))
+          Failure(new RuntimeException("Connection lost"))
+        else
+          Success(references(hashHex))
+      } finally {
+        inFlight.decrementAndGet()
+      }
+    })
+
+    def expectedReferences: Seq[MainchainBlockReference] = hashes.map(hash => references(BytesUtils.toHexString(hash.data)))
+  }
+
+  @Test
+  def getReferencesInOrder(): Unit = {
+    val blockHashes = hashes(20)
+    val stub = new StubChannel(blockHashes)
+    val synchronizer = new MainchainSynchronizer(stub.channel, 4)
+
+    val startTime = System.currentTimeMillis()
+    val result = synchronizer.getMainchainBlockReferences(blockHashes)
+    val elapsedMs = System.currentTimeMillis() - startTime
+
+    assertTrue("References retrieval expected to succeed.", result.isSuccess)
+    assertEquals("References expected to be in the order of the hashes.", stub.expectedReferences, result.get)
+    assertEquals("Every reference expected to be requested once.", blockHashes.size, stub.requests.get())
+    assertEquals("Requests in flight expected to fill the window.", 4, stub.maxInFlight.get())
+    assertTrue(s"Requests expected to overlap, elapsed $elapsedMs ms.", elapsedMs < blockHashes.size * latencyMs)
+  }
+
+  @Test
+  def stopIterationEarly(): Unit = {
+    val blockHashes = hashes(20)
+    val stub = new StubChannel(blockHashes)
+    val synchronizer = new MainchainSynchronizer(stub.channel, 3)
+
+    val references = synchronizer.getMainchainBlockReferencesInOrder(blockHashes)
+    assertEquals(stub.expectedReferences.head, references.next().get)
+    assertEquals(stub.expectedReferences(1), references.next().get)
+
+    // let the requests of the window complete
+    Thread.sleep(3 * latencyMs)
+    assertTrue("Requests in flight expected to stay within the window.", stub.maxInFlight.get() <= 3)
+    assertEquals("Only the consumed references and the window expected to be requested.", 2 + 3, stub.requests.get())
+  }
+
+  @Test
+  def failedReference(): Unit = {
+    val blockHashes = hashes(10)
+    val stub = new StubChannel(blockHashes, failingHash = Some(blockHashes(5)))
+    val synchronizer = new MainchainSynchronizer(stub.channel, 4)
+
+    val references: Seq[Try[MainchainBlockReference]] = synchronizer.getMainchainBlockReferencesInOrder(blockHashes).toList
+    assertEquals("References before the failed one expected to be retrieved.", stub.expectedReferences.take(5), references.take(5).map(_.get))
+    assertTrue("Failed reference expected.", references(5).isFailure)
+    assertTrue("References after the failed one expected to be retrieved.", references.drop(6).forall(_.isSuccess))
+
+    synchronizer.getMainchainBlockReferences(blockHashes) match {
+      case Success(_) => fail("References retrieval expected to fail.")
+      case Failure(ex) =>
+        assertTrue("Different exception type expected.", ex.isInstanceOf[IllegalStateException])
+        assertEquals("Connection error expected as the cause.", "Connection lost", ex.getCause.getMessage)
+    }
+  }
+
+  @Test
+  def closedSynchronizer(): Unit = {
+    val blockHashes = hashes(5)
+    val stub = new StubChannel(blockHashes)
+    val synchronizer = new MainchainSynchronizer(stub.channel, 4)
+    synchronizer.close()
+
+    val result = synchronizer.getMainchainBlockReferences(blockHashes)
+    assertTrue("References retrieval expected to succeed.", result.isSuccess)
+    assertEquals("References expected to be in the order of the hashes.", stub.expectedReferences, result.get)
+    assertEquals("References expected to be requested one by one.", 1, stub.maxInFlight.get())
+  }
+}
@@ -0,0 +1,133 @@
+package io.horizen.history.validation
+
+import io.horizen.utxo.block.SidechainBlock
+import org.junit.Assert.{assertEquals, assertTrue}
+import org.junit.Test
+import org.mockito.Mockito
+import org.scalatestplus.junit.JUnitSuite
+import org.scalatestplus.mockito.MockitoSugar
+import sparkz.util.bytesToId
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+import scala.concurrent.duration.DurationInt
+import scala.util.{Failure, Success, Try}
+
+class SemanticValidationPipelineTest extends JUnitSuite with MockitoSugar {
+
+  private def mockedBlock(idByte: Int): SidechainBlock = {
+    val block = mock[SidechainBlock]
+    Mockito.when(block.id).thenReturn(bytesToId(Array.fill(32)(idByte.toByte)))
+    block
+  }
+
+  // validator whose validations on the workers don't complete until released
+  private class CountingValidator(invalidBlock: Option[SidechainBlock], blocking: Boolean = false) extends SemanticBlockValidator[SidechainBlock] {
+    val calls = new AtomicInteger()
+    val release = new CountDownLatch(if (blocking) 1 else 0)
+
+    override def validate(block: SidechainBlock): Try[Unit] = {
+      calls.incrementAndGet()
+      if (Thread.currentThread().getName.startsWith("block-semantic-validation"))
+        release.await(10, TimeUnit.SECONDS)
+      if (invalidBlock.exists(_ eq block)) Failure(new IllegalArgumentException("invalid block")) else Success(Unit)
+    }
+  }
+
+  @Test
+  def validationResultsReused(): Unit = {
+    val validBlock = mockedBlock(1)
+    val invalidBlock = mockedBlock(2)
+    val validator = new CountingValidator(Some(invalidBlock))
+    val pipeline = new SemanticValidationPipeline[SidechainBlock](Seq(validator), threads = 2, maxPending = 10, validationTimeout = 10.seconds)
+
+    try {
+      pipeline.submit(validBlock)
+      pipeline.submit(invalidBlock)
+      pipeline.submit(validBlock)
+      assertEquals("Both blocks expected to be pending.", 2, pipeline.pendingCount)
+
+      assertTrue("Valid block expected to pass.", pipeline.validate(validBlock).isSuccess)
+      assertTrue("Invalid block expected to fail.", pipeline.validate(invalidBlock).isFailure)
+      assertEquals("Each block expected to be validated once.", 2, validator.calls.get())
+      assertEquals("No pending validation expected.", 0, pipeline.pendingCount)
+
+      // not submitted anymore: validated on the calling thread
+      assertTrue("Invalid block expected to fail.", pipeline.validate(invalidBlock).isFailure)
+      assertEquals("Block expected to be validated again.", 3, validator.calls.get())
+    } finally {
+      pipeline.shutdown()
+    }
+  }
+
+  private def waitForCompletion(pipeline: SemanticValidationPipeline[SidechainBlock]): Unit = {
+    val deadline = 10.seconds.fromNow
+    while (pipeline.inProgressCount > 0 && deadline.hasTimeLeft())
+      Thread.sleep(10)
+    assertEquals("Validations expected to be completed.", 0, pipeline.inProgressCount)
+  }
+
+  @Test
+  def pendingValidationsBounded(): Unit = {
+    val validator = new CountingValidator(None, blocking = true)
+    val pipeline = new SemanticValidationPipeline[SidechainBlock](Seq(validator), threads = 1, maxPending = 2, validationTimeout = 10.seconds)
+
+    try {
+      val blocks = (1 to 3).map(mockedBlock)
+      blocks.foreach(pipeline.submit)
+      assertEquals("Validations in progress expected to be bounded.", 2, pipeline.inProgressCount)
+      assertEquals("Pending validations expected to be bounded.", 2, pipeline.pendingCount)
+      validator.release.countDown()
+      waitForCompletion(pipeline)
+
+      pipeline.discard(Seq(blocks.head.id))
+      assertEquals("Discarded validation expected to be removed.", 1, pipeline.pendingCount)
+
+      // a different object with the same id is validated on its own
+      val sameIdBlock = mockedBlock(2)
+      assertTrue(pipeline.validate(sameIdBlock).isSuccess)
+      assertEquals("No pending validation expected.", 0, pipeline.pendingCount)
+    } finally {
+      pipeline.shutdown()
+    }
+  }
+
+  @Test
+  def completedValidationsFreeSlots(): Unit = {
+    val validator = new CountingValidator(None)
+    val pipeline = new SemanticValidationPipeline[SidechainBlock](Seq(validator), threads = 1, maxPending = 2, validationTimeout = 10.seconds)
+
+    try {
+      // e.g. blocks waiting in the modifiers cache for a missing parent
+      val orphans = (1 to 2).map(mockedBlock)
+      orphans.foreach(pipeline.submit)
+      waitForCompletion(pipeline)
+
+      val next = mockedBlock(3)
+      pipeline.submit(next)
+      assertEquals("Completed validations expected not to hold slots.", 3, pipeline.pendingCount)
+      assertTrue(pipeline.validate(next).isSuccess)
+      assertEquals("Submitted block expected to be validated once.", 3, validator.calls.get())
+    } finally {
+      pipeline.shutdown()
+    }
+  }
+
+  @Test
+  def validationTimeoutFallsBackToInline(): Unit = {
+    val block = mockedBlock(1)
+    val validator = new CountingValidator(None, blocking = true)
+    val pipeline = new SemanticValidationPipeline[SidechainBlock](Seq(validator), threads = 1, maxPending = 2, validationTimeout = 100.millis)
+
+    try {
+      pipeline.submit(block)
+      // the validation on the worker is stuck: the block is validated on the calling thread
+      assertTrue("Block expected to be validated inline after the timeout.", pipeline.validate(block).isSuccess)
+      assertEquals("No pending validation expected.", 0, pipeline.pendingCount)
+      assertEquals("Block expected to be validated on the worker and inline.", 2, validator.calls.get())
+    } finally {
+      validator.release.countDown()
+      pipeline.shutdown()
+    }
+  }
+}
@@ -38,14 +38,16 @@ case class StorageData(storage: Storage,
 }
 
 
-class StoragePerformanceRunner(config: StoragePerformanceTestConfig, debug: Boolean = true) {
+class StoragePerformanceRunner(config: StoragePerformanceTestConfig,
+                               debug: Boolean = true,
+                               storageFactory: java.io.File => Storage = path => new VersionedLevelDbStorageAdapter(path)) {
 
   def measurePerformance(): Stream[(String, Seq[TimeMeasure])] = {
     config.storageGenerationSettings.toStream.map{
       case (size, dataGenerator) =>
         val allMeasures = mutable.Buffer[TimeMeasure]()
         val storagePath = System.getProperty("java.io.tmpdir") + "StorageTest_" + System.currentTimeMillis()
-        val storage: Storage = new VersionedLevelDbStorageAdapter(new java.io.File(storagePath))
+        val storage: Storage = storageFactory(new java.io.File(storagePath))
         var storageDescription: String = ""
 
         try {
@@ -1,5 +1,6 @@
 package io.horizen.storage.performance
 
+import io.horizen.storage.leveldb.UndoLogLevelDbStorageAdapter
 import org.junit.Ignore
 import org.scalatestplus.junit.JUnitSuite
 
@@ -37,6 +38,8 @@ class StoragePerformanceTest extends JUnitSuite {
 
   val runner = new StoragePerformanceRunner(performanceConfig)
 
+  val undoLogRunner = new StoragePerformanceRunner(performanceConfig, storageFactory = path => new UndoLogLevelDbStorageAdapter(path))
+
   def printHeader(): Unit = {
     TimeMeasure.header.foreach(column => print(s"$column\t"))
     println()
@@ -44,6 +47,16 @@ class StoragePerformanceTest extends JUnitSuite {
 
   @Ignore
   def runMeasures(): Unit = {
+    printMeasures(runner)
+  }
+
+  // same measures on the undo log based storage, to be compared with the ones of runMeasures
+  @Ignore
+  def runUndoLogMeasures(): Unit = {
+    printMeasures(undoLogRunner)
+  }
+
+  private def printMeasures(runner: StoragePerformanceRunner): Unit = {
     runner.measurePerformance().foreach{
       case(storageDescription, results) =>
         println(storageDescription)
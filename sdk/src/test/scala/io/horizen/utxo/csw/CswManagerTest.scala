@@ -5,20 +5,22 @@ import akka.pattern.ask
 import akka.testkit.{TestActor, TestActorRef, TestProbe}
 import akka.util.Timeout
 import com.google.common.primitives.Longs
+import com.horizen.librustsidechains.FieldElement
 import io.horizen.block.SidechainCreationVersions.SidechainCreationVersion1
 import io.horizen.block.{MainchainHeader, WithdrawalEpochCertificate}
 import io.horizen.chain.MainchainHeaderInfo
-import io.horizen.cryptolibprovider.CryptoLibProvider
+import io.horizen.cryptolibprovider.{CryptoLibProvider, CswCircuit}
 import io.horizen.cryptolibprovider.utils.FieldElementUtils
 import io.horizen.utxo.csw.CswManager.ReceivableMessages._
 import io.horizen.utxo.csw.CswManager.Responses._
 import io.horizen.utxo.csw.CswManager.{ProofInProcess, ProofInQueue}
 import io.horizen.fixtures.{MainchainBlockReferenceFixture, SidechainBlockFixture}
 import io.horizen.params.{MainNetParams, NetworkParams}
-import io.horizen.proposition.PublicKey25519Proposition
-import io.horizen.secret.{PrivateKey25519Creator, Secret}
+import io.horizen.proposition.{Proposition, PublicKey25519Proposition}
+import io.horizen.secret.{PrivateKey25519, PrivateKey25519Creator, Secret}
 import io.horizen.utils.{ByteArrayWrapper, WithdrawalEpochInfo}
 import io.horizen._
+import io.horizen.utxo.box.Box
 import io.horizen.utxo.fixtures.CswDataFixture
 import io.horizen.utxo.history.SidechainHistory
 import io.horizen.utxo.mempool.SidechainMemoryPool
@@ -36,6 +38,9 @@ import sparkz.core.network.NodeViewSynchronizer.ReceivableMessages.ChangedState
 import sparkz.core.settings.{RESTApiSettings, SparkzSettings}
 
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import scala.collection.JavaConverters._
 import scala.concurrent.duration._
 import scala.concurrent.{Await, ExecutionContext}
 import scala.util.{Failure, Success, Try}
@@ -64,7 +69,7 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
     new ByteArrayWrapper(ftData2.boxId) -> ftData2
   )
 
-  private def getMockedSettings(timeoutDuration: FiniteDuration): SidechainSettings = {
+  private def getMockedSettings(timeoutDuration: FiniteDuration, proofGenerationThreads: Int = 1): SidechainSettings = {
     val mockedRESTSettings: RESTApiSettings = mock[RESTApiSettings]
     Mockito.when(mockedRESTSettings.timeout).thenReturn(timeoutDuration)
 
@@ -74,6 +79,8 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
       Mockito.when(mockedSparkzSettings.restApi).thenAnswer(_ => mockedRESTSettings)
       mockedSparkzSettings
     })
+    Mockito.when(mockedSidechainSettings.csw).thenReturn(
+      CeasedSidechainWithdrawalSettings("", "", proofGenerationThreads = proofGenerationThreads))
 
     mockedSidechainSettings
   }
@@ -464,7 +471,7 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
 
     // Test 6: Add proof info to in process
     cswManager.proofsInQueue.clear()
-    cswManager.proofInProcessOpt = Some(ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), receiverAddress))
+    cswManager.proofsInProcess(new ByteArrayWrapper(utxoData1.boxId)) = ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), receiverAddress)
 
     cswInfoTry = Await.result(cswManagerRef ? GetCswInfo(utxoData1.boxId), timeout.duration).asInstanceOf[Try[CswInfo]]
     cswInfoTry match {
@@ -476,7 +483,7 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
 
 
     // Test 7: Add generated proof
-    cswManager.proofInProcessOpt = None
+    cswManager.proofsInProcess.clear()
     val expectedProofInfo = CswProofInfo(Generated, Some(new Array[Byte](100)), Some(receiverAddress))
     cswManager.generatedProofsMap(new ByteArrayWrapper(utxoData1.boxId)) = expectedProofInfo
 
@@ -534,14 +541,14 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
 
     // Test 5: proof in process
     cswManager.proofsInQueue.clear()
-    cswManager.proofInProcessOpt = Some(ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), receiverAddress))
+    cswManager.proofsInProcess(new ByteArrayWrapper(utxoData1.boxId)) = ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), receiverAddress)
 
     status = Await.result(cswManagerRef ? GenerateCswProof(utxoData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
     assertEquals("Different status expected.", ProofGenerationInProcess, status)
 
 
     // Test 6: generated proof
-    cswManager.proofInProcessOpt = None
+    cswManager.proofsInProcess.clear()
     cswManager.generatedProofsMap(new ByteArrayWrapper(utxoData1.boxId)) = CswProofInfo(Generated, Some(new Array[Byte](100)), Some(receiverAddress))
 
     status = Await.result(cswManagerRef ? GenerateCswProof(utxoData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
@@ -551,7 +558,7 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
     // Test 7: start add new proof to queue:
     cswManager.generatedProofsMap.clear()
     // set something in process to prevent new proof generation attempt
-    cswManager.proofInProcessOpt = Some(ProofInProcess(new ByteArrayWrapper(utxoData2.boxId), receiverAddress))
+    cswManager.proofsInProcess(new ByteArrayWrapper(utxoData2.boxId)) = ProofInProcess(new ByteArrayWrapper(utxoData2.boxId), receiverAddress)
 
     status = Await.result(cswManagerRef ? GenerateCswProof(utxoData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
     assertEquals("Different status expected.", ProofGenerationStarted, status)
@@ -584,13 +591,28 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
     // Test 10: proof was in process with different receiverAddress
     cswManager.proofsInQueue.clear()
     cswManager.generatedProofsMap.clear()
-    cswManager.proofInProcessOpt = Some(ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), otherReceiverAddress))
+    cswManager.proofsInProcess.clear()
+    cswManager.proofsInProcess(new ByteArrayWrapper(utxoData1.boxId)) = ProofInProcess(new ByteArrayWrapper(utxoData1.boxId), otherReceiverAddress)
 
     status = Await.result(cswManagerRef ? GenerateCswProof(utxoData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
     assertEquals("Different status expected.", ProofGenerationStarted, status)
     assertEquals("Different proof queue size.", 1, cswManager.proofsInQueue.size)
     assertEquals("Different proof in queue entry found.", ProofInQueue(new ByteArrayWrapper(utxoData1.boxId), receiverAddress), cswManager.proofsInQueue.head)
-    assertTrue("Previous proof should be marked as cancelled.", cswManager.proofInProcessOpt.get.isCancelled)
+    assertTrue("Previous proof should be marked as cancelled.", cswManager.proofsInProcess(new ByteArrayWrapper(utxoData1.boxId)).isCancelled)
+
+
+    // Test 11: failed proof is generated again
+    cswManager.proofsInQueue.clear()
+    cswManager.proofsInProcess.clear()
+    cswManager.generatedProofsMap(new ByteArrayWrapper(utxoData1.boxId)) = CswProofInfo(Failed, None, Some(receiverAddress))
+    // set something in process to prevent new proof generation attempt
+    cswManager.proofsInProcess(new ByteArrayWrapper(utxoData2.boxId)) = ProofInProcess(new ByteArrayWrapper(utxoData2.boxId), receiverAddress)
+
+    status = Await.result(cswManagerRef ? GenerateCswProof(utxoData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
+    assertEquals("Different status expected.", ProofGenerationStarted, status)
+    assertEquals("Different proof queue size.", 1, cswManager.proofsInQueue.size)
+    assertEquals("Different proof in queue entry found.", ProofInQueue(new ByteArrayWrapper(utxoData1.boxId), receiverAddress), cswManager.proofsInQueue.head)
+    assertTrue("No generated proofs expected to be found.", cswManager.generatedProofsMap.isEmpty)
   }
 
 
@@ -641,7 +663,168 @@ class CswManagerTest extends JUnitSuite with MockitoSugar with CswDataFixture
     // Check that proof is not in the queue anymore
     assertEquals("Different proof queue size.", 0, cswManager.proofsInQueue.size)
     // Proof expected to be failed because of the invalid data.
-    assertFalse("No proof is process expected.", cswManager.proofInProcessOpt.isDefined)
-    assertTrue("No generated proofs expected.", cswManager.generatedProofsMap.isEmpty)
+    assertTrue("No proof is process expected.", cswManager.proofsInProcess.isEmpty)
+    assertEquals("Failed proof expected.", CswProofInfo(Failed, None, Some(receiverAddress)),
+      cswManager.generatedProofsMap(new ByteArrayWrapper(ftData1.boxId)))
+  }
+
+  @Test
+  def generateCswProofMissingOwner(): Unit = {
+    val mockedSettings: SidechainSettings = getMockedSettings(timeout.duration)
+    val params: MainNetParams = MainNetParams()
+
+    val wallet: SidechainWallet = mock[SidechainWallet]
+
+    val mockedSidechainNodeViewHolder = TestProbe()
+    mockedSidechainNodeViewHolder.setAutoPilot((sender: ActorRef, msg: Any) => {
+      msg match {
+        case GetDataFromCurrentView(f) =>
+          sender ! f(CurrentView(mock[SidechainHistory], mock[SidechainState], wallet, mock[SidechainMemoryPool]))
+      }
+      TestActor.KeepRunning
+    })
+    val mockedSidechainNodeViewHolderRef: ActorRef = mockedSidechainNodeViewHolder.ref
+
+    // The wallet has no owner secret yet
+    Mockito.when(wallet.secretByPublicKey25519Proposition(ArgumentMatchers.any[PublicKey25519Proposition]())).thenAnswer(_ => {
+      java.util.Optional.empty()
+    })
+
+    val cswManagerRef: TestActorRef[CswManager] = TestActorRef(
+      Props(new CswManager(mockedSettings, params, mockedSidechainNodeViewHolderRef, new DelayedCswCircuit(0))))
+    val cswManager: CswManager = cswManagerRef.underlyingActor
+
+    // skip initialization
+    cswManager.context.become(cswManager.workingCycle)
+
+    // Make sidechain ceased and define witnesses
+    cswManager.hasSidechainCeased = true
+    cswManager.cswWitnessHolderOpt = Some(CswWitnessHolder(utxoMap, ftMap, None, new Array[Byte](32), Seq(), new Array[Byte](32)))
+
+    // Test 1: proof generation fails without the owner secret
+    var status = Await.result(cswManagerRef ? GenerateCswProof(ftData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
+    assertEquals("Different status expected.", ProofGenerationStarted, status)
+
+    val watch = TestProbe()
+    watch.watch(cswManagerRef)
+    watch.expectNoMessage(timeout.duration)
+
+    assertTrue("No proof is process expected.", cswManager.proofsInProcess.isEmpty)
+    assertEquals("Failed proof expected.", CswProofInfo(Failed, None, Some(receiverAddress)),
+      cswManager.generatedProofsMap(new ByteArrayWrapper(ftData1.boxId)))
+
+    // Test 2: the owner secret is imported to the wallet, the failed proof is generated on a new request
+    Mockito.when(wallet.secretByPublicKey25519Proposition(ArgumentMatchers.any[PublicKey25519Proposition]())).thenAnswer(_ => {
+      java.util.Optional.of(PrivateKey25519Creator.getInstance().generateSecret("secret".getBytes(StandardCharsets.UTF_8)).asInstanceOf[Secret])
+    })
+
+    status = Await.result(cswManagerRef ? GenerateCswProof(ftData1.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
+    assertEquals("Different status expected.", ProofGenerationStarted, status)
+
+    watch.expectNoMessage(timeout.duration)
+
+    assertTrue("No proof is process expected.", cswManager.proofsInProcess.isEmpty)
+    assertEquals("Generated proof expected.", Generated, cswManager.generatedProofsMap(new ByteArrayWrapper(ftData1.boxId)).status)
+    assertArrayEquals("Different proof expected.", ftData1.boxId, cswManager.generatedProofsMap(new ByteArrayWrapper(ftData1.boxId)).scProof.get)
+  }
+
+  // CSW circuit generating the FT proofs after a delay, the proof is the box id
+  private class DelayedCswCircuit(delayMs: Long) extends CswCircuit {
+    val startedBoxIds = new ConcurrentLinkedQueue[ByteArrayWrapper]()
+    val inProcess = new AtomicInteger()
+    val maxInProcess = new AtomicInteger()
+
+    override def ftCreateProof(ft: ForwardTransferCswData, lastActiveCertOpt: java.util.Optional[WithdrawalEpochCertificate],
+                               mcbScTxsCumComStart: Array[Byte], scTxsComHashes: java.util.List[Array[Byte]],
+                               mcbScTxsCumComEnd: Array[Byte], receiverPubKeyHash: Array[Byte], pk: PrivateKey25519,
+                               withdrawalEpochLength: Int, constant: Array[Byte], sidechainId: Array[Byte],
+                               provingKeyPath: String, checkProvingKey: Boolean, zk: Boolean,
+                               sidechainCreationVersion: Enumeration#Value): Array[Byte] = {
+      startedBoxIds.add(new ByteArrayWrapper(ft.boxId))
+      maxInProcess.accumulateAndGet(inProcess.incrementAndGet(), (a, b) => Math.max(a, b))
+      try {
+        Thread.sleep(delayMs)
+        ft.boxId
+      } finally {
+        inProcess.decrementAndGet()
+      }
+    }
+
+    override def utxoMerkleTreeHeight(): Int = ???
+    override def getUtxoMerkleTreeLeaf(box: Box[Proposition]): FieldElement = ???
+    override def getCertDataHash(cert: WithdrawalEpochCertificate, sidechainCreationVersion: Enumeration#Value): Array[Byte] = ???
+    override def rangeSize(withdrawalEpochLength: Int): Int = ???
+    override def generateCoboundaryMarlinSnarkKeys(withdrawalEpochLen: Int, provingKeyPath: String, verificationKeyPath: String): Boolean = ???
+    override def privateKey25519ToScalar(pk: PrivateKey25519): Array[Byte] = ???
+    override def utxoCreateProof(utxo: UtxoCswData, lastActiveCert: WithdrawalEpochCertificate, mcbScTxsCumComEnd: Array[Byte],
+                                 receiverPubKeyHash: Array[Byte], pk: PrivateKey25519, withdrawalEpochLength: Int,
+                                 constant: Array[Byte], sidechainId: Array[Byte], provingKeyPath: String,
+                                 checkProvingKey: Boolean, zk: Boolean, sidechainCreationVersion: Enumeration#Value): Array[Byte] = ???
+  }
+
+  @Test
+  def generateCswProofsInParallel(): Unit = {
+    val proofGenerationThreads = 2
+    val delayMs = 300L
+    val mockedSettings: SidechainSettings = getMockedSettings(timeout.duration, proofGenerationThreads)
+    val params: MainNetParams = MainNetParams()
+    val cswCircuit = new DelayedCswCircuit(delayMs)
+
+    // The wallet knows the owner of every box
+    val wallet: SidechainWallet = mock[SidechainWallet]
+    Mockito.when(wallet.secretByPublicKey25519Proposition(ArgumentMatchers.any[PublicKey25519Proposition]())).thenAnswer(_ => {
+      java.util.Optional.of(PrivateKey25519Creator.getInstance().generateSecret("secret".getBytes(StandardCharsets.UTF_8)).asInstanceOf[Secret])
+    })
+    val mockedSidechainNodeViewHolder = TestProbe()
+    mockedSidechainNodeViewHolder.setAutoPilot((sender: ActorRef, msg: Any) => {
+      msg match {
+        case GetDataFromCurrentView(f) =>
+          sender ! f(CurrentView(mock[SidechainHistory], mock[SidechainState], wallet, mock[SidechainMemoryPool]))
+      }
+      TestActor.KeepRunning
+    })
+
+    val cswManagerRef: TestActorRef[CswManager] = TestActorRef(
+      Props(new CswManager(mockedSettings, params, mockedSidechainNodeViewHolder.ref, cswCircuit)))
+    val cswManager: CswManager = cswManagerRef.underlyingActor
+
+    // skip initialization
+    cswManager.context.become(cswManager.workingCycle)
+
+    // Make sidechain ceased and define witnesses
+    val ftData: Seq[ForwardTransferCswData] = (1 to 6).map(seed => getForwardTransferCswData(seed * 1000L))
+    cswManager.hasSidechainCeased = true
+    cswManager.cswWitnessHolderOpt = Some(CswWitnessHolder(Map(), ftData.map(ft => new ByteArrayWrapper(ft.boxId) -> ft).toMap,
+      None, new Array[Byte](32), Seq(), new Array[Byte](32)))
+
+    // Test 1: request all the proofs, a repeated request is not queued again
+    ftData.foreach(ft => {
+      val status = Await.result(cswManagerRef ? GenerateCswProof(ft.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
+      assertEquals("Different status expected.", ProofGenerationStarted, status)
+    })
+    val status = Await.result(cswManagerRef ? GenerateCswProof(ftData.head.boxId, receiverAddress), timeout.duration).asInstanceOf[GenerateCswProofStatus]
+    assertEquals("Different status expected.", ProofGenerationInProcess, status)
+
+    // Test 2: wait for less than the serial generation of all the proofs
+    val watch = TestProbe()
+    watch.watch(cswManagerRef)
+    watch.expectNoMessage((ftData.size * delayMs - delayMs).millis)
+
+    assertEquals("Different proof queue size.", 0, cswManager.proofsInQueue.size)
+    assertTrue("No proof is process expected.", cswManager.proofsInProcess.isEmpty)
+    ftData.foreach(ft => {
+      val proofInfo = cswManager.generatedProofsMap(new ByteArrayWrapper(ft.boxId))
+      assertEquals("Different proof status expected.", Generated, proofInfo.status)
+      assertEquals("Different proof receiver expected.", Some(receiverAddress), proofInfo.receiverAddress)
+      assertArrayEquals("Different proof expected.", ft.boxId, proofInfo.scProof.get)
+    })
+    assertEquals("Different number of proofs in parallel expected.", proofGenerationThreads, cswCircuit.maxInProcess.get())
+
+    // Test 3: the proofs were started in request order, a group of proofGenerationThreads at a time
+    val startedBoxIds = cswCircuit.startedBoxIds.asScala.toSeq
+    assertEquals("Every proof expected to be generated once.", ftData.size, startedBoxIds.size)
+    assertEquals("Different proof generation order expected.",
+      ftData.map(ft => new ByteArrayWrapper(ft.boxId)).grouped(proofGenerationThreads).map(_.toSet).toList,
+      startedBoxIds.grouped(proofGenerationThreads).map(_.toSet).toList)
   }
 }
@@ -13,7 +13,7 @@ import io.horizen.fixtures.{CompanionsFixture, StoreFixture}
 import io.horizen.fork.{ForkManagerUtil, SimpleForkConfigurator}
 import io.horizen.params.{MainNetParams, NetworkParams, RegTestParams, TestNetParams}
 import io.horizen.secret.SecretSerializer
-import io.horizen.storage.SidechainSecretStorage
+import io.horizen.storage.{SidechainSecretStorage, StorageBatching}
 import io.horizen.utils.BytesUtils
 import io.horizen.utxo.SidechainNodeViewHolderRef
 import io.horizen.utxo.api.http.route.SidechainTransactionApiRoute
@@ -137,7 +137,8 @@ trait SidechainNodeViewHolderFixture
     timeProvider,
     defaultApplicationWallet,
     defaultApplicationState,
-    genesisBlock)
+    genesisBlock,
+    StorageBatching.NoBatching)
 
   val sidechainTransactionActorRef: ActorRef = SidechainTransactionActorRef(nodeViewHolderRef)
 
@@ -1,16 +1,18 @@
 package io.horizen.utxo.integration.storage
 
 import io.horizen.SidechainTypes
-import io.horizen.chain.SidechainBlockInfo
+import io.horizen.chain.{MainchainHeaderPowData, SidechainBlockInfo}
 import io.horizen.fixtures.{CompanionsFixture, SidechainBlockFixture, SidechainBlockInfoFixture, StoreFixture}
 import io.horizen.params.{MainNetParams, NetworkParams}
 import io.horizen.transaction.TransactionSerializer
 import io.horizen.utxo.block.SidechainBlock
+import io.horizen.utils.ByteArrayWrapper
 import io.horizen.utxo.storage.SidechainHistoryStorage
 import org.junit.Assert._
 import org.junit.Test
 import org.scalatestplus.junit.JUnitSuite
 import sparkz.core.consensus.ModifierSemanticValidity
+import sparkz.util.ModifierId
 
 import java.lang.{Byte => JByte}
 import java.util.{HashMap => JHashMap}
@@ -119,6 +121,8 @@ class SidechainHistoryStorageTest extends JUnitSuite with SidechainBlockFixture
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(secondBlock.id, thirdBlock.id), historyStorage.activeChainSince(secondBlock.id, None))
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(secondBlock.id, thirdBlock.id), historyStorage.activeChainAfter(genesisBlock.id, None))
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(thirdBlock.id), historyStorage.activeChainAfter(secondBlock.id, None))
+    val idsBeforeFork = historyStorage.activeChainIds
+    assertEquals("HistoryStorage different active chain ids expected", Seq(genesisBlock.id, secondBlock.id, thirdBlock.id), idsBeforeFork)
 
     // Add block from another chain after genesis one, which lead to Fork
     val forkBlock: SidechainBlock = generateNextSidechainBlock(genesisBlock, sidechainTransactionsCompanion, params, basicSeed = 991919L)
@@ -145,5 +149,74 @@ class SidechainHistoryStorageTest extends JUnitSuite with SidechainBlockFixture
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(forkBlock.id), historyStorage.activeChainSince(forkBlock.id, None))
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(forkBlock.id), historyStorage.activeChainAfter(genesisBlock.id, None))
     assertEquals("HistoryStorage different block chain expected form active chain", Seq(), historyStorage.activeChainAfter(forkBlock.id, None))
+    assertEquals("HistoryStorage different active chain ids expected", Seq(genesisBlock.id, forkBlock.id), historyStorage.activeChainIds)
+    assertEquals("Previously returned active chain ids expected not to change", Seq(genesisBlock.id, secondBlock.id, thirdBlock.id), idsBeforeFork)
+  }
+
+  @Test
+  def mainchainHeadersPowData(): Unit = {
+    // blocks with one mainchain header each, every header linked to the one of the previous block
+    val blocks: Seq[SidechainBlock] = generateSidechainBlockSeq(6, sidechainTransactionsCompanion, params, basicSeed = 5432L)
+    val chainParams: NetworkParams = MainNetParams(new Array[Byte](32), blocks.head.id)
+    val storage = getStorage()
+    val historyStorage = new SidechainHistoryStorage(storage, sidechainTransactionsCompanion, chainParams)
+
+    def setAsBest(block: SidechainBlock, blockInfo: SidechainBlockInfo): Unit = {
+      assertTrue("HistoryStorage expected to be updated", historyStorage.update(block, blockInfo).isSuccess)
+      assertTrue("HistoryStorage best block expected to be updated", historyStorage.setAsBestBlock(block, blockInfo).isSuccess)
+    }
+
+    def appendBlocks(chain: Seq[SidechainBlock], parentInfo: SidechainBlockInfo): Unit = {
+      chain.foldLeft(parentInfo) { (parentInfo, block) =>
+        val lastMainchainBaseInfo = historyStorage.getLastMainchainHeaderBaseInfoInclusion(block.parentId)
+        val blockInfo = generateBlockInfo(block, parentInfo, chainParams, lastMainchainBaseInfo.cumulativeCommTreeHash, validity = ModifierSemanticValidity.Valid)
+        setAsBest(block, blockInfo)
+        blockInfo
+      }
+    }
+
+    def expectedPowData(chain: Seq[SidechainBlock], count: Int): Seq[MainchainHeaderPowData] =
+      chain.flatMap(_.mainchainHeaders).map(MainchainHeaderPowData(_)).takeRight(count)
+
+    def assertPowData(storage: SidechainHistoryStorage, chain: Seq[SidechainBlock], blockId: ModifierId, count: Int): Unit =
+      assertEquals(s"Different mainchain headers PoW data expected for $count headers", Some(expectedPowData(chain, count)),
+        storage.activeChainMainchainHeadersPowData(blockId, count))
+
+    val genesisBlockInfo = generateGenesisBlockInfo(
+      Some(blocks.head.mainchainHeaders.head.hash),
+      Some(blocks.head.mainchainBlockReferencesData.head.headerHash),
+      ModifierSemanticValidity.Valid,
+      Some(blocks.head.timestamp))
+    setAsBest(blocks.head, genesisBlockInfo)
+    appendBlocks(blocks.tail, genesisBlockInfo)
+
+    // the last headers up to the given block, oldest first, and fewer if the active chain contains fewer headers
+    assertPowData(historyStorage, blocks, blocks.last.id, 3)
+    assertPowData(historyStorage, blocks, blocks.last.id, blocks.size)
+    assertEquals(Some(expectedPowData(blocks, blocks.size)), historyStorage.activeChainMainchainHeadersPowData(blocks.last.id, blocks.size + 10))
+    assertPowData(historyStorage, blocks.take(4), blocks(3).id, 2)
+
+    // after a restart the index is empty: the data is read from the blocks of the active chain
+    val reopenedHistoryStorage = new SidechainHistoryStorage(storage, sidechainTransactionsCompanion, chainParams)
+    assertPowData(reopenedHistoryStorage, blocks, blocks.last.id, blocks.size)
+    assertPowData(reopenedHistoryStorage, blocks.take(4), blocks(3).id, 3)
+
+    // fork after the third block: the reverted blocks are no longer in the active chain and the headers of the fork
+    // are taken in their place
+    val forkParent = blocks(2)
+    val forkBlocks = generateSidechainBlockSeq(4, sidechainTransactionsCompanion, chainParams, parentOpt = Some(forkParent.id),
+      basicSeed = 991919L, mcParent = Some(new ByteArrayWrapper(forkParent.mainchainHeaders.last.hash)))
+    appendBlocks(forkBlocks, historyStorage.blockInfoById(forkParent.id))
+    val activeChainBlocks = blocks.take(3) ++ forkBlocks
+
+    assertTrue("Reverted block expected to have no PoW data", historyStorage.activeChainMainchainHeadersPowData(blocks.last.id, 3).isEmpty)
+    assertPowData(historyStorage, activeChainBlocks, forkBlocks.last.id, 5)
+    assertPowData(historyStorage, activeChainBlocks, forkBlocks.last.id, activeChainBlocks.size)
+    assertPowData(historyStorage, blocks.take(3), forkParent.id, 3)
+
+    // back to a shorter chain: the data of the headers above the new best block is no longer returned
+    setAsBest(forkBlocks.head, historyStorage.blockInfoById(forkBlocks.head.id))
+    assertTrue("Reverted block expected to have no PoW data", historyStorage.activeChainMainchainHeadersPowData(forkBlocks.last.id, 3).isEmpty)
+    assertPowData(historyStorage, activeChainBlocks.take(4), forkBlocks.head.id, 4)
   }
 }
@@ -325,6 +325,28 @@ class SidechainMemoryPoolTest
     assertEquals("Put tx operation must not be successfull.", false, memoryPool.put(tx1).isSuccess)
   }
 
+  @Test
+  def spentBoxesIndex(): Unit = {
+    val memoryPool = SidechainMemoryPool.createEmptyMempool(getMockedMempoolSettings(300, 0))
+    val tx = getRegularTransaction
+    val incompatibleTx = getIncompatibleTransaction
+
+    assertEquals("Put operation must be success.", true, memoryPool.put(tx).isSuccess)
+    assertEquals("Put of a tx spending the same box must fail.", false, memoryPool.put(incompatibleTx).isSuccess)
+    assertEquals("Put of a list with a tx spending the same box must fail.", false, memoryPool.put(Seq(incompatibleTx)).isSuccess)
+
+    // the boxes spent by a removed tx can be spent again
+    memoryPool.remove(tx)
+    assertEquals("Put operation must be success.", true, memoryPool.put(incompatibleTx).isSuccess)
+    assertEquals("Put of the removed tx must fail.", false, memoryPool.put(tx).isSuccess)
+
+    // the index is kept by the filtered mempool
+    val filteredMemoryPool = memoryPool.filter(Seq(tx))
+    assertEquals("Put of the removed tx must fail.", false, filteredMemoryPool.put(tx).isSuccess)
+    val emptyMemoryPool = memoryPool.filter(Seq(incompatibleTx))
+    assertEquals("Put operation must be success.", true, emptyMemoryPool.put(tx).isSuccess)
+  }
+
   private def getMockedMempoolSettings(maxSize: Int, minFeeRate: Long): MempoolSettings = {
     val mockedSettings: MempoolSettings = mock[MempoolSettings]
     Mockito.when(mockedSettings.maxSize).thenReturn(maxSize)
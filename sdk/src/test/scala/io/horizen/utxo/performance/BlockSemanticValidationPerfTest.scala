@@ -0,0 +1,123 @@
+package io.horizen.utxo.performance
+
+import io.horizen.SidechainTypes
+import io.horizen.fixtures.{CompanionsFixture, SidechainBlockFixture, TransactionFixture}
+import io.horizen.history.validation.{SemanticValidationPipeline, SidechainBlockSemanticValidator}
+import io.horizen.params.{MainNetParams, NetworkParams}
+import io.horizen.proposition.Proposition
+import io.horizen.utxo.block.SidechainBlock
+import io.horizen.utxo.box.Box
+import io.horizen.utxo.transaction.SidechainTransaction
+import org.junit.Assert.{assertEquals, assertTrue}
+import org.junit.{Ignore, Test}
+
+import java.io.{BufferedWriter, FileWriter}
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.LockSupport
+import scala.concurrent.duration._
+import scala.util.{Random, Try}
+
+class BlockSemanticValidationPerfTest extends SidechainBlockFixture with TransactionFixture with CompanionsFixture {
+
+  private val sidechainTransactionsCompanion = getDefaultTransactionsCompanion
+
+  // a segment of the chain generated from fixed seeds, every block with the given number of regular transactions
+  private def generateSegment(numOfBlocks: Int, numOfTxsPerBlock: Int, params: NetworkParams): Seq[SidechainBlock] = {
+    val rnd = new Random(2023L)
+    val firstBlock = SidechainBlockFixture.generateSidechainBlock(sidechainTransactionsCompanion, params = params, includeReference = false)
+    (1 until numOfBlocks).foldLeft(Seq(firstBlock)) { (segment, i) =>
+      val txs = (1 to numOfTxsPerBlock).map(_ =>
+        generateRegularTransaction(rnd, firstBlock.timestamp * 1000 + i, 2, 2)
+          .asInstanceOf[SidechainTransaction[Proposition, Box[Proposition]]])
+      segment :+ generateNextSidechainBlock(segment.last, sidechainTransactionsCompanion, params,
+        basicSeed = 1000L + i, sidechainTransactions = txs)
+    }
+  }
+
+  // stands for the application of the block to the state and the wallet, that the node does right after the validation
+  private def applyBlock(applicationTimeNanos: Long): Unit = LockSupport.parkNanos(applicationTimeNanos)
+
+  /*
+  This method compares the number of blocks per second appended during the sync of a segment of the chain in two ways:
+  validating every block on the node view holder thread right before its application, as the node used to do, and
+  submitting the blocks of every received batch to the semantic validation pipeline, so that they are validated on the
+  workers while the previous ones are applied. The application of a block is simulated with a fixed duration.
+   */
+  @Test
+  @Ignore
+  def testSyncBlocksPerSecond(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/blockSemanticValidationTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Block semantic validation during sync performance test     *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfBlocks = 200
+      val numOfTxsPerBlock = 50
+      val batchSize = 16
+      val applicationTimeNanos = TimeUnit.MILLISECONDS.toNanos(2)
+
+      println(s"Creating $numOfBlocks blocks with $numOfTxsPerBlock transactions each...")
+      val params: NetworkParams = MainNetParams()
+      val blocks = generateSegment(numOfBlocks, numOfTxsPerBlock, params)
+      val validators = Seq(new SidechainBlockSemanticValidator[SidechainTypes#SCBT, SidechainBlock](params))
+
+      // warm up the validation code
+      blocks.take(batchSize).foreach(block => validators.foreach(_.validate(block)))
+
+      println("Validating the blocks before their application...")
+      var startTime = System.nanoTime()
+      val sequentialResults = blocks.map { block =>
+        val result = Try(validators.foreach(_.validate(block).get))
+        applyBlock(applicationTimeNanos)
+        result
+      }
+      val sequentialTimeMs = (System.nanoTime() - startTime) / 1000000
+
+      // Sanity check
+      assertTrue("Blocks of the segment expected to be valid", sequentialResults.forall(_.isSuccess))
+
+      out.write(s"Number of blocks:                          $numOfBlocks\n")
+      out.write(s"Number of transactions per block:          $numOfTxsPerBlock\n")
+      out.write(s"Number of blocks per batch:                $batchSize\n")
+      out.write(s"Application time per block:               ${applicationTimeNanos / 1000} us\n")
+      out.write(s"Duration of the sequential validation:     $sequentialTimeMs ms\n")
+      out.write(s"Blocks/sec with the sequential validation: ${numOfBlocks * 1000 / math.max(1, sequentialTimeMs)}\n\n")
+
+      for (threads <- Seq(1, 2, 4)) {
+        println(s"Validating the blocks in the pipeline with $threads threads...")
+        val pipeline = new SemanticValidationPipeline[SidechainBlock](validators, threads, batchSize, 10.seconds)
+        try {
+          startTime = System.nanoTime()
+          val pipelineResults = blocks.grouped(batchSize).flatMap { batch =>
+            batch.foreach(pipeline.submit)
+            batch.map { block =>
+              val result = pipeline.validate(block)
+              applyBlock(applicationTimeNanos)
+              result
+            }
+          }.toList
+          val pipelineTimeMs = (System.nanoTime() - startTime) / 1000000
+
+          // Sanity check
+          assertEquals(sequentialResults.map(_.isSuccess), pipelineResults.map(_.isSuccess))
+          assertEquals(0, pipeline.pendingCount)
+
+          println(s"$threads threads: sequential $sequentialTimeMs ms, pipeline $pipelineTimeMs ms")
+          out.write(s"Number of validation threads:              $threads\n")
+          out.write(s"Duration of the pipeline validation:       $pipelineTimeMs ms\n")
+          out.write(s"Blocks/sec with the pipeline validation:   ${numOfBlocks * 1000 / math.max(1, pipelineTimeMs)}\n\n")
+        } finally {
+          pipeline.shutdown()
+        }
+      }
+    } finally {
+      out.close()
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package io.horizen.utxo.performance
+
+import io.horizen.block.MainchainBlockReference
+import io.horizen.chain.SidechainBlockInfo
+import io.horizen.fixtures.{CompanionsFixture, SidechainBlockFixture, StoreFixture}
+import io.horizen.params.{MainNetParams, NetworkParams}
+import io.horizen.utils.ByteArrayWrapper
+import io.horizen.utxo.block.SidechainBlock
+import io.horizen.utxo.storage.SidechainHistoryStorage
+import org.junit.Assert.{assertEquals, assertTrue}
+import org.junit.{Ignore, Test}
+import sparkz.core.consensus.ModifierSemanticValidity
+
+import java.io.{BufferedWriter, FileWriter}
+import java.util.Calendar
+
+class MainchainHeadersPowDataPerfTest extends SidechainBlockFixture with StoreFixture with CompanionsFixture {
+
+  private val sidechainTransactionsCompanion = getDefaultTransactionsCompanion
+
+  // blocks after the first one with the given number of mainchain block references each, every header linked to the
+  // previous one
+  private def generateChain(firstBlock: SidechainBlock, numOfBlocks: Int, numOfHeadersPerBlock: Int, params: NetworkParams): Seq[SidechainBlock] = {
+    (1 until numOfBlocks).foldLeft(Seq(firstBlock)) { (chain, _) =>
+      val lastBlock = chain.last
+      val refs = (1 to numOfHeadersPerBlock).foldLeft(Seq[MainchainBlockReference]()) { (refs, _) =>
+        val prevHash = refs.lastOption.map(_.header.hash).getOrElse(lastBlock.mainchainHeaders.last.hash)
+        refs :+ generateMainchainBlockReference(Some(new ByteArrayWrapper(prevHash)))
+      }
+      chain :+ SidechainBlockFixture.copy(lastBlock,
+        parentId = lastBlock.id,
+        timestamp = lastBlock.timestamp + 10,
+        mainchainBlocksReferencesData = refs.map(_.data),
+        sidechainTransactions = Seq(),
+        mainchainHeaders = refs.map(_.header),
+        companion = sidechainTransactionsCompanion,
+        params = params)
+    }
+  }
+
+  /*
+  This method compares the collection of the time and bits of the last nPowAveragingWindow + nMedianTimeSpan
+  mainchain headers, done by ProofOfWorkVerifier.checkNextWorkRequired for every block with mainchain headers, in two
+  ways: walking back the parent blocks and reading each of them from the storage, as the verifier used to do, and
+  reading the mainchain headers PoW index of the history storage, both cold (after a restart) and warm.
+   */
+  @Test
+  @Ignore
+  def testNextWorkRequiredData(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/mainchainHeadersPowDataTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        Mainchain headers PoW data collection performance test     *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val numOfBlocks = 300
+      val numOfValidations = 1000
+
+      for (numOfHeadersPerBlock <- Seq(1, 5, 20)) {
+        println(s"Creating $numOfBlocks blocks with $numOfHeadersPerBlock mainchain headers each...")
+        val genesisBlock = SidechainBlockFixture.generateSidechainBlock(sidechainTransactionsCompanion)
+        val params: NetworkParams = MainNetParams(new Array[Byte](32), genesisBlock.id)
+        val blocks = generateChain(genesisBlock, numOfBlocks, numOfHeadersPerBlock, params)
+        val timeBitsDataSize = params.nPowAveragingWindow + params.nMedianTimeSpan
+
+        val storage = getStorage()
+        val historyStorage = new SidechainHistoryStorage(storage, sidechainTransactionsCompanion, params)
+        val genesisBlockInfo = generateGenesisBlockInfo(
+          Some(blocks.head.mainchainHeaders.head.hash),
+          Some(blocks.head.mainchainBlockReferencesData.head.headerHash),
+          ModifierSemanticValidity.Valid,
+          Some(blocks.head.timestamp))
+        historyStorage.update(blocks.head, genesisBlockInfo).get
+        historyStorage.setAsBestBlock(blocks.head, genesisBlockInfo).get
+        blocks.tail.foldLeft(genesisBlockInfo) { (parentInfo, block) =>
+          val lastMainchainBaseInfo = historyStorage.getLastMainchainHeaderBaseInfoInclusion(block.parentId)
+          val blockInfo: SidechainBlockInfo = generateBlockInfo(block, parentInfo, params,
+            lastMainchainBaseInfo.cumulativeCommTreeHash, validity = ModifierSemanticValidity.Valid)
+          historyStorage.update(block, blockInfo).get
+          historyStorage.setAsBestBlock(block, blockInfo).get
+          blockInfo
+        }
+
+        // parents of the validated blocks, far enough from the genesis to have a full window
+        val firstParent = math.min(blocks.size - 1, timeBitsDataSize / numOfHeadersPerBlock + 2)
+        val parentIds = (0 until numOfValidations).map(i => blocks(firstParent + i % (blocks.size - firstParent)).id)
+
+        // walk back the parent blocks, reading every one of them
+        var startTime = System.nanoTime()
+        val walkedData = parentIds.map { parentId =>
+          var timeBitsData = List[(Int, Int)]()
+          var currentBlockOpt = historyStorage.blockById(parentId)
+          while (timeBitsData.size < timeBitsDataSize && currentBlockOpt.isDefined) {
+            val currentBlock = currentBlockOpt.get
+            for (header <- currentBlock.mainchainHeaders.reverse if timeBitsData.size < timeBitsDataSize)
+              timeBitsData = (header.time, header.bits) :: timeBitsData
+            currentBlockOpt = historyStorage.blockById(currentBlock.parentId)
+          }
+          timeBitsData
+        }
+        val walkTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        // read the index after a restart: the first lookups index the headers from their blocks
+        val reopenedHistoryStorage = new SidechainHistoryStorage(storage, sidechainTransactionsCompanion, params)
+        startTime = System.nanoTime()
+        val coldIndexData = parentIds.map(parentId =>
+          reopenedHistoryStorage.activeChainMainchainHeadersPowData(parentId, timeBitsDataSize).get.map(data => (data.time, data.bits)))
+        val coldIndexTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        startTime = System.nanoTime()
+        val warmIndexData = parentIds.map(parentId =>
+          reopenedHistoryStorage.activeChainMainchainHeadersPowData(parentId, timeBitsDataSize).get.map(data => (data.time, data.bits)))
+        val warmIndexTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        // Sanity check
+        assertTrue(walkedData.forall(_.size == timeBitsDataSize))
+        assertEquals(walkedData, coldIndexData)
+        assertEquals(walkedData, warmIndexData)
+
+        println(s"$numOfHeadersPerBlock headers per block, $numOfValidations validations: block walk $walkTimeMs ms, " +
+          s"cold index $coldIndexTimeMs ms, warm index $warmIndexTimeMs ms")
+        out.write(s"Number of blocks:                          $numOfBlocks\n")
+        out.write(s"Number of mainchain headers per block:     $numOfHeadersPerBlock\n")
+        out.write(s"Number of validations:                     $numOfValidations\n")
+        out.write(s"Duration with the block walk:              $walkTimeMs ms\n")
+        out.write(s"Duration with the cold index:              $coldIndexTimeMs ms\n")
+        out.write(s"Duration with the warm index:              $warmIndexTimeMs ms\n\n")
+      }
+    } finally {
+      out.close()
+    }
+  }
+}
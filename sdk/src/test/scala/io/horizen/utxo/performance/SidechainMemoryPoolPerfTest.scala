@@ -0,0 +1,64 @@
+package io.horizen.utxo.performance
+
+import io.horizen.MempoolSettings
+import io.horizen.fixtures.TransactionFixture
+import io.horizen.utxo.mempool.SidechainMemoryPool
+import org.junit.Assert.assertEquals
+import org.junit.{Ignore, Test}
+import org.mockito.Mockito
+import org.scalatestplus.mockito.MockitoSugar
+
+import java.io.{BufferedWriter, FileWriter}
+import java.util.Calendar
+
+class SidechainMemoryPoolPerfTest extends MockitoSugar with TransactionFixture {
+
+  /*
+  This method measures the throughput of SidechainMemoryPool.put depending on the number of transactions already in
+  the mem pool. The compatibility of a new transaction is checked on the mem pool index of the spent boxes, so the
+  time of a put is expected not to grow with the size of the mem pool.
+   */
+  @Test
+  @Ignore
+  def testPutThroughput(): Unit = {
+    val out = new BufferedWriter(new FileWriter("log/sidechainMemoryPoolPutTest.txt", true))
+
+    val cal = Calendar.getInstance()
+    try {
+      out.write("*********************************************************************\n\n")
+      out.write("*        SidechainMemoryPool put performance test          *\n\n")
+      out.write("*********************************************************************\n\n")
+
+      out.write(s"Date and time of the test: ${cal.getTime}\n\n")
+
+      val mempoolSettings = mock[MempoolSettings]
+      Mockito.when(mempoolSettings.maxSize).thenReturn(1000)
+      Mockito.when(mempoolSettings.minFeeRate).thenReturn(0L)
+
+      val numOfMeasuredTxs = 1000
+      for (poolSize <- Seq(1000, 10000, 30000)) {
+        println(s"Creating ${poolSize + numOfMeasuredTxs} transactions...")
+        val txs = (1 to poolSize + numOfMeasuredTxs).map(_ => getRegularRandomTransaction(10, 1))
+        val (initialTxs, measuredTxs) = txs.splitAt(poolSize)
+
+        val mempool = SidechainMemoryPool.createEmptyMempool(mempoolSettings)
+        initialTxs.foreach(tx => mempool.put(tx).get)
+
+        val startTime = System.nanoTime()
+        measuredTxs.foreach(tx => mempool.put(tx).get)
+        val totalTimeMs = (System.nanoTime() - startTime) / 1000000
+
+        // Sanity check
+        assertEquals(poolSize + numOfMeasuredTxs, mempool.size)
+
+        val throughput = if (totalTimeMs > 0) numOfMeasuredTxs * 1000 / totalTimeMs else numOfMeasuredTxs * 1000
+        println(s"Pool size $poolSize: $numOfMeasuredTxs puts in $totalTimeMs ms")
+        out.write(s"Initial mem pool size:                     $poolSize\n")
+        out.write(s"Duration of $numOfMeasuredTxs puts:                  $totalTimeMs ms\n")
+        out.write(s"Throughput:                                $throughput tx/s\n\n")
+      }
+    } finally {
+      out.close()
+    }
+  }
+}
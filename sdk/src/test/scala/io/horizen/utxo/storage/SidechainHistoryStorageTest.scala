@@ -1,7 +1,7 @@
 package io.horizen.utxo.storage
 
 import io.horizen.SidechainTypes
-import io.horizen.chain.{MainchainHeaderBaseInfo, MainchainHeaderInfo, SidechainBlockInfo}
+import io.horizen.chain.{ActiveChainCheckpoint, MainchainHeaderBaseInfo, MainchainHeaderInfo, SidechainBlockInfo}
 import io.horizen.utxo.companion.SidechainTransactionsCompanion
 import io.horizen.cryptolibprovider.utils.CumulativeHashFunctions
 import io.horizen.fixtures.{CompanionsFixture, SidechainBlockFixture, SidechainBlockInfoFixture, VrfGenerator}
@@ -13,6 +13,7 @@ import io.horizen.utils.{Pair, _}
 import io.horizen.utxo.block.SidechainBlock
 import org.junit.Assert.{assertArrayEquals, assertEquals, assertFalse, assertTrue}
 import org.junit._
+import org.junit.rules.TemporaryFolder
 import org.mockito._
 import org.scalatestplus.junit.JUnitSuite
 import org.scalatestplus.mockito._
@@ -34,6 +35,10 @@ class SidechainHistoryStorageTest extends JUnitSuite with MockitoSugar with Side
 
   var params: NetworkParams = _
 
+  val _temporaryFolder = new TemporaryFolder()
+
+  @Rule def temporaryFolder = _temporaryFolder
+
   val height = 10
   val activeChainBlockList = new ListBuffer[SidechainBlock]()
   val activeChainBlockInfoList = new ListBuffer[SidechainBlockInfo]()
@@ -374,6 +379,84 @@ class SidechainHistoryStorageTest extends JUnitSuite with MockitoSugar with Side
     assertEquals("Storage returned wrong Last Mainchain HeaderBaseInfo inclusion", activeChainBlockInfoList.head.mainchainHeaderBaseInfo.last, historyStorage.getLastMainchainHeaderBaseInfoInclusion(activeChainBlockList.head.id))
   }
 
+  @Test
+  def testBlockCache(): Unit = {
+    val historyStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params)
+    val forkBlock = forkChainBlockList.last
+    val forkBlockIdKey = new ByteArrayWrapper(idToBytes(forkBlock.id))
+    val forkBlockInfoKey = new ByteArrayWrapper(Blake2b256(s"blockInfo${forkBlock.id}"))
+    val statsBefore = historyStorage.cacheStats
+
+    // Test 1: decoded block is read from the storage once and then served from the cache
+    assertEquals("Storage returned wrong block", forkBlock.id, historyStorage.blockById(forkBlock.id).get.id)
+    assertEquals("Storage returned wrong block", forkBlock.id, historyStorage.blockById(forkBlock.id).get.id)
+    Mockito.verify(mockedStorage, Mockito.times(1)).get(forkBlockIdKey)
+
+    // Test 2: block info of a block out of the active chain is read from the storage once
+    assertEquals("Storage returned wrong block info", forkChainBlockInfoList.last, historyStorage.blockInfoOptionById(forkBlock.id).get)
+    assertEquals("Storage returned wrong block info", forkChainBlockInfoList.last, historyStorage.blockInfoOptionById(forkBlock.id).get)
+    Mockito.verify(mockedStorage, Mockito.times(1)).get(forkBlockInfoKey)
+
+    val stats = historyStorage.cacheStats
+    assertEquals("Unexpected block cache hits", statsBefore.blockCacheHits + 1, stats.blockCacheHits)
+    assertEquals("Unexpected block cache misses", statsBefore.blockCacheMisses + 1, stats.blockCacheMisses)
+    assertEquals("Unexpected block info cache hits", statsBefore.blockInfoCacheHits + 1, stats.blockInfoCacheHits)
+    assertEquals("Unexpected block info cache misses", statsBefore.blockInfoCacheMisses + 1, stats.blockInfoCacheMisses)
+
+    // Test 3: rewriting the block info invalidates the cached one
+    assertTrue("Semantic validity update expected to succeed", historyStorage.updateSemanticValidity(forkBlock, ModifierSemanticValidity.Valid).isSuccess)
+    historyStorage.blockInfoOptionById(forkBlock.id)
+    Mockito.verify(mockedStorage, Mockito.times(2)).get(forkBlockInfoKey)
+
+    // Test 4: a zero sized cache keeps nothing
+    val noCacheHistoryStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params, 0, 0)
+    noCacheHistoryStorage.blockById(forkBlock.id)
+    noCacheHistoryStorage.blockById(forkBlock.id)
+    assertEquals("Unexpected block cache hits", 0, noCacheHistoryStorage.cacheStats.blockCacheHits)
+  }
+
+  @Test
+  def testActiveChainCheckpoint(): Unit = {
+    val checkpointFile = new java.io.File(temporaryFolder.getRoot, "activeChainCheckpoint")
+    val historyStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params,
+      activeChainCheckpoint = Some(new ActiveChainCheckpoint(checkpointFile, 0)))
+    assertFalse("Checkpoint file expected not to be written without a periodic interval", checkpointFile.exists())
+
+    // Test 1: checkpoint is written on demand
+    historyStorage.writeActiveChainCheckpoint()
+    assertTrue("Checkpoint file expected to be written", checkpointFile.exists())
+
+    // Test 2: the active chain is loaded from the checkpoint without reading block infos from the storage
+    Mockito.clearInvocations(mockedStorage)
+    val restoredHistoryStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params,
+      activeChainCheckpoint = Some(new ActiveChainCheckpoint(checkpointFile, 0)))
+    activeChainBlockList.init.foreach(block =>
+      Mockito.verify(mockedStorage, Mockito.never()).get(new ByteArrayWrapper(Blake2b256(s"blockInfo${block.id}"))))
+    assertEquals("Restored storage contains wrong height", height, restoredHistoryStorage.height)
+    assertEquals("Restored storage contains wrong best block", historyStorage.bestBlockInfo, restoredHistoryStorage.bestBlockInfo)
+    (0 until height).foreach { index =>
+      assertEquals("Restored storage contains wrong active chain", activeChainBlockList(index).id, restoredHistoryStorage.activeChainBlockId(index + 1).get)
+      checkMainchainContent(restoredHistoryStorage, activeChainBlockList, index)
+    }
+
+    // Test 3: the best block is a fork block not present in the checkpoint: the fork tail is replayed
+    val bestBlockData = storedDataList.find(_.getKey.equals(new ByteArrayWrapper(Array.fill(32)(-1: Byte)))).get
+    storedDataList -= bestBlockData
+    storedDataList += new Pair(bestBlockData.getKey, new ByteArrayWrapper(idToBytes(forkChainBlockList.last.id)))
+    val forkHistoryStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params,
+      activeChainCheckpoint = Some(new ActiveChainCheckpoint(checkpointFile, 0)))
+    assertEquals("Storage contains wrong height", forkChainBlockInfoList.last.height, forkHistoryStorage.height)
+    assertEquals("Storage contains wrong best block", forkChainBlockList.last.id, forkHistoryStorage.bestBlockId)
+    assertTrue("Fork block expected to be in active chain", forkHistoryStorage.isInActiveChain(forkChainBlockList.head.id))
+    assertFalse("Reverted block expected not to be in active chain", forkHistoryStorage.isInActiveChain(activeChainBlockList(1).id))
+
+    // Test 4: a corrupted checkpoint leads to a full rebuild
+    java.nio.file.Files.write(checkpointFile.toPath, Array[Byte](1, 2, 3))
+    val rebuiltHistoryStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params,
+      activeChainCheckpoint = Some(new ActiveChainCheckpoint(checkpointFile, 0)))
+    assertEquals("Storage contains wrong height", forkChainBlockInfoList.last.height, rebuiltHistoryStorage.height)
+  }
+
   @Test
   def testUpdates(): Unit = {
     val historyStorage = new SidechainHistoryStorage(mockedStorage, sidechainTransactionsCompanion, params)
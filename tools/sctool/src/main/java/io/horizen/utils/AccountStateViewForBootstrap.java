@@ -3,6 +3,7 @@ package io.horizen.utils;
 import io.horizen.account.state.AccountStateView;
 import io.horizen.account.state.MessageProcessor;
 import io.horizen.evm.StateDB;
+import scala.Option;
 import scala.collection.Seq;
 
 /**
@@ -11,7 +12,7 @@ import scala.collection.Seq;
  */
 public class AccountStateViewForBootstrap extends AccountStateView {
     public AccountStateViewForBootstrap(StateDB stateDb, Seq<MessageProcessor> messageProcessors) {
-        super(null, stateDb, messageProcessors);
+        super(null, stateDb, messageProcessors, Option.empty());
     }
 
     @Override